@@ -0,0 +1,185 @@
+package batch;
+
+import java.io.*;
+
+/**
+    * Yhden tiedoston eräajon tulos.
+    */
+public class BatchResult {
+    /**
+        * Luettu tiedosto.
+        */
+    private final File file;
+
+    /**
+        * Tiedosto, johon lopputila kirjoitettiin, tai null.
+        */
+    private final File output;
+
+    /**
+        * Soluautomaatin koko.
+        */
+    private final int cols, rows;
+
+    /**
+        * Suoritettujen tilasiirtymien lukumäärä.
+        */
+    private final int generations;
+
+    /**
+        * Kertoo, havaittiinko lopputilassa rytmi.
+        */
+    private final boolean periodic;
+
+    /**
+        * Elävien solujen lukumäärä lopputilassa.
+        */
+    private final long population;
+
+    /**
+        * Tilasiirtymiin kulunut aika nanosekunteina.
+        */
+    private final long nanos;
+
+    /**
+        * Virheilmoitus, tai null jos ajo onnistui.
+        */
+    private final String error;
+
+    /**
+        * Luo onnistuneen ajon tuloksen.
+        *
+        * @param file Luettu tiedosto.
+        * @param output Tiedosto, johon lopputila kirjoitettiin, tai null.
+        * @param cols Sarakkeiden lukumäärä.
+        * @param rows Rivien lukumäärä.
+        * @param generations Suoritettujen tilasiirtymien lukumäärä.
+        * @param periodic Kertoo, havaittiinko lopputilassa rytmi.
+        * @param population Elävien solujen lukumäärä lopputilassa.
+        * @param nanos Tilasiirtymiin kulunut aika nanosekunteina.
+        */
+    public BatchResult(File file, File output, int cols, int rows, int generations, boolean periodic, long population, long nanos) {
+        this.file = file;
+        this.output = output;
+        this.cols = cols;
+        this.rows = rows;
+        this.generations = generations;
+        this.periodic = periodic;
+        this.population = population;
+        this.nanos = nanos;
+        this.error = null;
+    }
+
+    /**
+        * Luo epäonnistuneen ajon tuloksen.
+        *
+        * @param file Luettu tiedosto.
+        * @param error Virheilmoitus.
+        */
+    public BatchResult(File file, String error) {
+        this.file = file;
+        this.output = null;
+        this.cols = 0;
+        this.rows = 0;
+        this.generations = 0;
+        this.periodic = false;
+        this.population = 0;
+        this.nanos = 0;
+        this.error = error;
+    }
+
+    /**
+        * Palauttaa luetun tiedoston.
+        *
+        * @return Tiedosto.
+        */
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+        * Palauttaa tiedoston, johon lopputila kirjoitettiin.
+        *
+        * @return Tiedosto, tai null jos lopputilaa ei kirjoitettu.
+        */
+    public File getOutput() {
+        return this.output;
+    }
+
+    /**
+        * Palauttaa sarakkeiden lukumäärän.
+        *
+        * @return Sarakkeiden lukumäärä.
+        */
+    public int getCols() {
+        return this.cols;
+    }
+
+    /**
+        * Palauttaa rivien lukumäärän.
+        *
+        * @return Rivien lukumäärä.
+        */
+    public int getRows() {
+        return this.rows;
+    }
+
+    /**
+        * Palauttaa suoritettujen tilasiirtymien lukumäärän.
+        *
+        * @return Tilasiirtymien lukumäärä.
+        */
+    public int getGenerations() {
+        return this.generations;
+    }
+
+    /**
+        * Kertoo, havaittiinko lopputilassa rytmi.
+        *
+        * @return Totuusarvo.
+        */
+    public boolean isPeriodic() {
+        return this.periodic;
+    }
+
+    /**
+        * Palauttaa elävien solujen lukumäärän lopputilassa.
+        *
+        * @return Elävien solujen lukumäärä.
+        */
+    public long getPopulation() {
+        return this.population;
+    }
+
+    /**
+        * Palauttaa tilasiirtymiin kuluneen ajan.
+        *
+        * @return Aika nanosekunteina.
+        */
+    public long getNanos() {
+        return this.nanos;
+    }
+
+    /**
+        * Palauttaa virheilmoituksen.
+        *
+        * @return Virheilmoitus, tai null jos ajo onnistui.
+        */
+    public String getError() {
+        return this.error;
+    }
+
+    /**
+        * Muodostaa tuloksesta sarkaimin erotellun yhteenvetorivin: tiedosto, koko, tilasiirtymät, rytmi, elävät solut, aika millisekunteina ja tilasiirtymät sekunnissa, tai epäonnistuneelle ajolle tiedosto ja virheilmoitus.
+        *
+        * @return Yhteenvetorivi.
+        */
+    public String toString() {
+        if(this.error != null) {
+            return this.file.getPath() + "\tERROR\t" + this.error;
+        }
+        double millis = this.nanos / 1e6;
+        double rate = this.nanos > 0 ? this.generations * 1e9 / this.nanos : 0;
+        return String.format("%s\t%dx%d\t%d\t%s\t%d\t%.1f\t%.1f", this.file.getPath(), this.cols, this.rows, this.generations, this.periodic ? "periodic" : "-", this.population, millis, rate);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,463 @@
+package batch;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import cellularautomaton.*;
+
+/**
+    * Komentoriviltä käytettävä eräajo, joka lataa .cells-tiedostot, suorittaa kullekin annetun määrän tilasiirtymiä ja kirjoittaa lopputilat sekä yhteenvedon ajoajoista ja elävien solujen lukumääristä. Tiedostot käsitellään rinnakkain säiepoolissa, kukin omalla soluautomaatillaan.
+    *
+    * Eräajo ei käytä AWT- eikä Swing-luokkia, joten sen voi ajaa palvelimella ilman näyttöä (esimerkiksi valitsimella -Djava.awt.headless=true):
+    *
+    * <pre>
+    * java -cp build batch.BatchRunner [-g sukupolvet] [-p] [-h historia] [-k ydin] [-t säikeet] [-o hakemisto] tiedosto...
+    * </pre>
+    *
+    * Hakemistoa annettaessa käsitellään kaikki sen .cells-tiedostot, binäärimuotoiset .cellb-tiedostot (ks. CABinaryFile) RLE-muotoiset .rle-tiedostot (ks. RLEFile) ja macrocell-muotoiset .mc-tiedostot (ks. MacrocellFile). Lopputila kirjoitetaan lähdetiedoston muodossa tiedostoon nimi-sukupolvi.pääte joko annettuun hakemistoon tai lähdetiedoston hakemistoon.
+    */
+public class BatchRunner {
+    /**
+        * Soluautomaattitiedostojen tiedostopääte.
+        */
+    public static final String FILE_EXTENSION = "cells";
+
+    /**
+        * Käsiteltävien tiedostojen tiedostopäätteet.
+        */
+    private static final String[] EXTENSIONS = {FILE_EXTENSION, CABinaryFile.FILE_EXTENSION, RLEFile.FILE_EXTENSION, MacrocellFile.FILE_EXTENSION};
+
+    /**
+        * Minimiarvo tilasiirtymien lukumäärälle.
+        */
+    private static final int MIN_GENERATIONS = 0;
+
+    /**
+        * Oletusarvo tilasiirtymien lukumäärälle.
+        */
+    private static final int DEFAULT_GENERATIONS = 1000;
+
+    /**
+        * Minimiarvo historian pituudelle.
+        */
+    private static final int MIN_HISTORY_LENGTH = 0;
+
+    /**
+        * Oletusarvo historian pituudelle. Rytmin tunnistus löytää enintään historian pituisia jaksoja.
+        */
+    private static final int DEFAULT_HISTORY_LENGTH = 64;
+
+    /**
+        * Minimiarvo säikeiden lukumäärälle.
+        */
+    private static final int MIN_THREADS = 1;
+
+    /**
+        * Tilasiirtymien enimmäismäärä tiedostoa kohden.
+        */
+    private int generations = DEFAULT_GENERATIONS;
+
+    /**
+        * Kertoo, lopetetaanko tiedoston tilasiirtymät, kun rytmi havaitaan.
+        */
+    private boolean stopWhenPeriodic = false;
+
+    /**
+        * Soluautomaattien historian pituus.
+        */
+    private int historyLength = DEFAULT_HISTORY_LENGTH;
+
+    /**
+        * Soluautomaattien tilasiirtymäydin.
+        */
+    private CA.KernelType kernelType = CA.KernelType.SWAR;
+
+    /**
+        * Rinnakkain käsiteltävien tiedostojen enimmäismäärä.
+        */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+        * Hakemisto, johon lopputilat kirjoitetaan, tai null jos ne kirjoitetaan lähdetiedostojen hakemistoihin.
+        */
+    private File outputDir = null;
+
+    /**
+        * Kertoo, kirjoitetaanko lopputilat tiedostoihin.
+        */
+    private boolean writeStates = true;
+
+    /**
+        * Palauttaa tilasiirtymien enimmäismäärän.
+        *
+        * @return Tilasiirtymien lukumäärä.
+        */
+    public int getGenerations() {
+        return this.generations;
+    }
+
+    /**
+        * Asettaa tilasiirtymien enimmäismäärän.
+        *
+        * @param generations Tilasiirtymien lukumäärä.
+        */
+    public void setGenerations(int generations) {
+        this.generations = Math.max(MIN_GENERATIONS, generations);
+    }
+
+    /**
+        * Kertoo, lopetetaanko tilasiirtymät, kun rytmi havaitaan.
+        *
+        * @return Totuusarvo.
+        */
+    public boolean getStopWhenPeriodic() {
+        return this.stopWhenPeriodic;
+    }
+
+    /**
+        * Asettaa, lopetetaanko tilasiirtymät, kun rytmi havaitaan.
+        *
+        * @param stop Totuusarvo.
+        */
+    public void setStopWhenPeriodic(boolean stop) {
+        this.stopWhenPeriodic = stop;
+    }
+
+    /**
+        * Palauttaa soluautomaattien historian pituuden.
+        *
+        * @return Historian pituus.
+        */
+    public int getHistoryLength() {
+        return this.historyLength;
+    }
+
+    /**
+        * Asettaa soluautomaattien historian pituuden.
+        *
+        * @param len Historian pituus.
+        */
+    public void setHistoryLength(int len) {
+        this.historyLength = Math.max(MIN_HISTORY_LENGTH, len);
+    }
+
+    /**
+        * Palauttaa soluautomaattien tilasiirtymäytimen tyypin.
+        *
+        * @return Ytimen tyyppi.
+        */
+    public CA.KernelType getKernelType() {
+        return this.kernelType;
+    }
+
+    /**
+        * Asettaa soluautomaattien tilasiirtymäytimen tyypin.
+        *
+        * @param type Ytimen tyyppi.
+        */
+    public void setKernelType(CA.KernelType type) {
+        this.kernelType = type;
+    }
+
+    /**
+        * Palauttaa rinnakkain käsiteltävien tiedostojen enimmäismäärän.
+        *
+        * @return Säikeiden lukumäärä.
+        */
+    public int getThreads() {
+        return this.threads;
+    }
+
+    /**
+        * Asettaa rinnakkain käsiteltävien tiedostojen enimmäismäärän.
+        *
+        * @param threads Säikeiden lukumäärä.
+        */
+    public void setThreads(int threads) {
+        this.threads = Math.max(MIN_THREADS, threads);
+    }
+
+    /**
+        * Palauttaa hakemiston, johon lopputilat kirjoitetaan.
+        *
+        * @return Hakemisto, tai null jos lopputilat kirjoitetaan lähdetiedostojen hakemistoihin.
+        */
+    public File getOutputDir() {
+        return this.outputDir;
+    }
+
+    /**
+        * Asettaa hakemiston, johon lopputilat kirjoitetaan.
+        *
+        * @param dir Hakemisto, tai null jos lopputilat kirjoitetaan lähdetiedostojen hakemistoihin.
+        */
+    public void setOutputDir(File dir) {
+        this.outputDir = dir;
+    }
+
+    /**
+        * Kertoo, kirjoitetaanko lopputilat tiedostoihin.
+        *
+        * @return Totuusarvo.
+        */
+    public boolean getWriteStates() {
+        return this.writeStates;
+    }
+
+    /**
+        * Asettaa, kirjoitetaanko lopputilat tiedostoihin.
+        *
+        * @param write Totuusarvo.
+        */
+    public void setWriteStates(boolean write) {
+        this.writeStates = write;
+    }
+
+    /**
+        * Käsittelee annetut tiedostot rinnakkain ja odottaa, kunnes kaikki ovat valmiita. Yksittäisen tiedoston virhe ei keskeytä muita, vaan se kirjataan tiedoston tulokseen.
+        *
+        * @param files Tiedostot.
+        *
+        * @return Tulokset samassa järjestyksessä kuin tiedostot.
+        *
+        * @exception InterruptedException Jos säie keskeytettiin odotettaessa.
+        */
+    public List<BatchResult> run(List<File> files) throws InterruptedException {
+        List<Callable<BatchResult>> tasks = new ArrayList<Callable<BatchResult>>();
+        for(final File file : files) {
+            tasks.add(new Callable<BatchResult>() {
+                public BatchResult call() {
+                    return BatchRunner.this.runFile(file);
+                }
+            });
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(this.threads, Math.max(1, files.size())));
+        try {
+            List<BatchResult> results = new ArrayList<BatchResult>();
+            for(Future<BatchResult> future : pool.invokeAll(tasks)) {
+                try {
+                    results.add(future.get());
+                } catch(ExecutionException e) {
+                    results.add(new BatchResult(files.get(results.size()), String.valueOf(e.getCause())));
+                }
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+        * Käsittelee yhden tiedoston: lataa tilan, suorittaa tilasiirtymät ja kirjoittaa lopputilan.
+        *
+        * @param file Tiedosto.
+        *
+        * @return Tulos.
+        */
+    public BatchResult runFile(File file) {
+        CAState state;
+        try {
+            state = load(file);
+        } catch(IOException e) {
+            return new BatchResult(file, "Input/output error: " + e.getMessage());
+        }
+        if(state == null) {
+            return new BatchResult(file, "The file does not contain valid save data");
+        }
+
+        CA template = new CA();
+        template.setHistoryLength(this.historyLength);
+        template.setKernelType(this.kernelType);
+        CA game = template.deriveNewCA(state);
+
+        long start = System.nanoTime();
+        int done = game.evolve(this.generations, this.stopWhenPeriodic);
+        long nanos = System.nanoTime() - start;
+        boolean periodic = game.isPeriodic();
+
+        File output = null;
+        if(this.writeStates) {
+            output = this.outputFile(file, done);
+            try {
+                save(game, output);
+            } catch(IOException e) {
+                return new BatchResult(file, "Error saving file " + output.getPath() + ": " + e.getMessage());
+            }
+        }
+        return new BatchResult(file, output, game.getCols(), game.getRows(), done, periodic, game.getPopulation(), nanos);
+    }
+
+    /**
+        * Muodostaa lopputilan tiedoston nimen.
+        *
+        * @param file Lähdetiedosto.
+        * @param generations Suoritettujen tilasiirtymien lukumäärä.
+        *
+        * @return Lopputilan tiedosto.
+        */
+    private File outputFile(File file, int generations) {
+        String name = file.getName();
+        String suffix = suffix(name);
+        if(suffix != null) {
+            name = name.substring(0, name.length() - suffix.length());
+        } else {
+            suffix = "." + FILE_EXTENSION;
+        }
+        File dir = this.outputDir != null ? this.outputDir : file.getAbsoluteFile().getParentFile();
+        return new File(dir, name + "-" + generations + suffix);
+    }
+
+    /**
+        * Palauttaa tiedoston nimen käsiteltävän tiedostopäätteen pisteineen.
+        *
+        * @param name Tiedoston nimi.
+        *
+        * @return Pääte, tai null jos tiedostoa ei käsitellä.
+        */
+    private static String suffix(String name) {
+        for(String extension : EXTENSIONS) {
+            if(name.endsWith("." + extension)) {
+                return "." + extension;
+            }
+        }
+        return null;
+    }
+
+    /**
+        * Lukee soluautomaattitilan tiedostosta. Tiedosto, jonka pääte on .rle, luetaan RLE-muotoisena, ja tiedosto, jonka pääte on .mc, macrocell-muotoisena elävät solut kattavaksi tilaksi. Binäärimuotoinen tiedosto tunnistetaan sisällöstä (ks. CABinaryFile.isBinary()), ja muut luetaan tekstimuotoisina.
+        *
+        * @param file Tiedosto.
+        *
+        * @return Soluautomaattitila, tai null jos tiedosto ei ole validi.
+        *
+        * @exception IOException Jos tiedoston lukeminen epäonnistui.
+        */
+    public static CAState load(File file) throws IOException {
+        if(file.getName().endsWith("." + RLEFile.FILE_EXTENSION)) {
+            return RLEFile.read(file);
+        }
+        if(file.getName().endsWith("." + MacrocellFile.FILE_EXTENSION)) {
+            return MacrocellFile.readState(file);
+        }
+        return CABinaryFile.isBinary(file) ? CABinaryFile.read(file) : CAFile.read(file);
+    }
+
+    /**
+        * Kirjoittaa soluautomaattitilan tiedostoon. Tiedosto, jonka pääte on .cellb, kirjoitetaan pakkaamattomana binäärimuotona, jonka voi ladata muistikuvattuna, tiedosto, jonka pääte on .rle, RLE-muotona ja tiedosto, jonka pääte on .mc, macrocell-muotona; muut tekstimuotona.
+        *
+        * @param state Soluautomaattitila.
+        * @param file Tiedosto.
+        *
+        * @exception IOException Jos tiedoston kirjoittaminen epäonnistui.
+        */
+    public static void save(CAState state, File file) throws IOException {
+        if(file.getName().endsWith("." + CABinaryFile.FILE_EXTENSION)) {
+            CABinaryFile.write(state, file, false);
+        } else if(file.getName().endsWith("." + RLEFile.FILE_EXTENSION)) {
+            RLEFile.write(state, file);
+        } else if(file.getName().endsWith("." + MacrocellFile.FILE_EXTENSION)) {
+            MacrocellFile.write(state, file);
+        } else {
+            CAFile.write(state, file);
+        }
+    }
+
+    /**
+        * Laajentaa hakemistot niiden sisältämiksi .cells-, .cellb-, .rle- ja .mc-tiedostoiksi aakkosjärjestyksessä. Muut tiedostot palautetaan sellaisinaan.
+        *
+        * @param paths Tiedostot ja hakemistot.
+        *
+        * @return Tiedostot.
+        */
+    public static List<File> expand(List<File> paths) {
+        List<File> files = new ArrayList<File>();
+        for(File path : paths) {
+            File[] children = path.isDirectory() ? path.listFiles() : null;
+            if(children != null) {
+                Arrays.sort(children);
+                for(File child : children) {
+                    if(child.isFile() && suffix(child.getName()) != null) {
+                        files.add(child);
+                    }
+                }
+            } else {
+                files.add(path);
+            }
+        }
+        return files;
+    }
+
+    /**
+        * Tulostaa käyttöohjeen.
+        */
+    private static void usage() {
+        System.err.println("Usage: java -cp Cells.jar batch.BatchRunner [options] file-or-directory...");
+        System.err.println("  -g N     generations to run (default " + DEFAULT_GENERATIONS + ")");
+        System.err.println("  -p       stop when the state becomes periodic");
+        System.err.println("  -h N     history length for period detection (default " + DEFAULT_HISTORY_LENGTH + ")");
+        System.err.println("  -k TYPE  evolve kernel: " + Arrays.toString(CA.KernelType.values()));
+        System.err.println("  -t N     files run concurrently (default: number of processors)");
+        System.err.println("  -o DIR   directory for final states (default: next to each input file)");
+        System.err.println("  -n       do not write final states");
+    }
+
+    /**
+        * Jäsentää komentoriviparametrit, käsittelee tiedostot ja tulostaa yhteenvedon. Ohjelman paluukoodi on nollasta poikkeava, jos jokin tiedosto epäonnistui.
+        *
+        * @param args Komentoriviparametrit.
+        */
+    public static void main(String[] args) throws InterruptedException {
+        BatchRunner runner = new BatchRunner();
+        List<File> paths = new ArrayList<File>();
+        try {
+            for(int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if(arg.equals("-g")) {
+                    runner.setGenerations(Integer.parseInt(args[++i]));
+                } else if(arg.equals("-p")) {
+                    runner.setStopWhenPeriodic(true);
+                } else if(arg.equals("-h")) {
+                    runner.setHistoryLength(Integer.parseInt(args[++i]));
+                } else if(arg.equals("-k")) {
+                    runner.setKernelType(CA.KernelType.valueOf(args[++i].toUpperCase()));
+                } else if(arg.equals("-t")) {
+                    runner.setThreads(Integer.parseInt(args[++i]));
+                } else if(arg.equals("-o")) {
+                    runner.setOutputDir(new File(args[++i]));
+                } else if(arg.equals("-n")) {
+                    runner.setWriteStates(false);
+                } else if(arg.startsWith("-")) {
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                } else {
+                    paths.add(new File(arg));
+                }
+            }
+        } catch(RuntimeException e) {
+            System.err.println("Invalid arguments: " + e.getMessage());
+            usage();
+            System.exit(2);
+        }
+        if(paths.isEmpty()) {
+            usage();
+            System.exit(2);
+        }
+
+        List<File> files = expand(paths);
+        long start = System.nanoTime();
+        List<BatchResult> results = runner.run(files);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        int failed = 0;
+        System.out.println("file\tsize\tgenerations\tperiodic\tpopulation\tms\tgenerations/s");
+        for(BatchResult result : results) {
+            System.out.println(result);
+            if(result.getError() != null) {
+                failed++;
+            }
+        }
+        System.out.printf("%d files, %d failed, %.2f s%n", results.size(), failed, seconds);
+        System.exit(failed > 0 ? 1 : 0);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,174 @@
+package batch;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+    * Satunnaisista alkutiloista syntyneiden kuvioiden lukumäärät tunnisteittain (ks. ObjectCode). Laskurit ovat säieturvallisia, joten useat haut voivat lisätä samaan laskentaan rinnakkain, ja eri ajojen laskennat voidaan yhdistää.
+    *
+    * Tiedostomuodossa ensimmäinen rivi on "#soups", sarkain ja alkutilojen lukumäärä, ja kullakin seuraavalla rivillä on tunniste, sarkain ja lukumäärä yleisimmästä harvinaisimpaan.
+    */
+public class Census {
+    /**
+        * Alkutilojen lukumäärän ilmaiseva rivin alku tiedostossa.
+        */
+    private static final String SOUPS_HEADER = "#soups";
+
+    /**
+        * Kuvioiden lukumäärät tunnisteittain.
+        */
+    private final ConcurrentMap<String, AtomicLong> counts = new ConcurrentHashMap<String, AtomicLong>();
+
+    /**
+        * Laskentaan lisättyjen alkutilojen lukumäärä.
+        */
+    private final AtomicLong soups = new AtomicLong();
+
+    /**
+        * Lisää tunnisteen lukumäärää.
+        *
+        * @param code Tunniste.
+        * @param count Lisättävä määrä.
+        */
+    public void add(String code, long count) {
+        AtomicLong counter = this.counts.get(code);
+        if(counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = this.counts.putIfAbsent(code, created);
+            if(counter == null) {
+                counter = created;
+            }
+        }
+        counter.addAndGet(count);
+    }
+
+    /**
+        * Lisää alkutilojen lukumäärää.
+        *
+        * @param count Lisättävä määrä.
+        */
+    public void addSoups(long count) {
+        this.soups.addAndGet(count);
+    }
+
+    /**
+        * Palauttaa tunnisteen lukumäärän.
+        *
+        * @param code Tunniste.
+        *
+        * @return Lukumäärä.
+        */
+    public long getCount(String code) {
+        AtomicLong counter = this.counts.get(code);
+        return counter != null ? counter.get() : 0;
+    }
+
+    /**
+        * Palauttaa laskentaan lisättyjen alkutilojen lukumäärän.
+        *
+        * @return Alkutilojen lukumäärä.
+        */
+    public long getSoups() {
+        return this.soups.get();
+    }
+
+    /**
+        * Palauttaa tunnisteet yleisimmästä harvinaisimpaan; samanlukuiset aakkosjärjestyksessä.
+        *
+        * @return Tunnisteet.
+        */
+    public List<String> getCodes() {
+        final Map<String, Long> snapshot = new HashMap<String, Long>();
+        for(Map.Entry<String, AtomicLong> entry : this.counts.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().get());
+        }
+        List<String> codes = new ArrayList<String>(snapshot.keySet());
+        Collections.sort(codes, new Comparator<String>() {
+            public int compare(String a, String b) {
+                int byCount = Long.compare(snapshot.get(b), snapshot.get(a));
+                return byCount != 0 ? byCount : a.compareTo(b);
+            }
+        });
+        return codes;
+    }
+
+    /**
+        * Lisää toisen laskennan lukumäärät tähän laskentaan.
+        *
+        * @param other Toinen laskenta.
+        */
+    public void merge(Census other) {
+        for(Map.Entry<String, AtomicLong> entry : other.counts.entrySet()) {
+            this.add(entry.getKey(), entry.getValue().get());
+        }
+        this.addSoups(other.getSoups());
+    }
+
+    /**
+        * Lukee laskennan tiedostosta. Puuttuva tiedosto tulkitaan tyhjäksi laskennaksi.
+        *
+        * @param file Tiedosto.
+        *
+        * @return Laskenta.
+        *
+        * @exception IOException Jos tiedoston lukeminen epäonnistui tai se ei ole laskentatiedosto.
+        */
+    public static Census read(File file) throws IOException {
+        Census census = new Census();
+        if(!file.exists()) {
+            return census;
+        }
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while((line = reader.readLine()) != null) {
+                if(line.isEmpty()) {
+                    continue;
+                }
+                int tab = line.indexOf('\t');
+                if(tab < 0) {
+                    throw new IOException("Invalid census line: " + line);
+                }
+                long count;
+                try {
+                    count = Long.parseLong(line.substring(tab + 1));
+                } catch(NumberFormatException e) {
+                    throw new IOException("Invalid census line: " + line);
+                }
+                String code = line.substring(0, tab);
+                if(code.equals(SOUPS_HEADER)) {
+                    census.addSoups(count);
+                } else {
+                    census.add(code, count);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return census;
+    }
+
+    /**
+        * Kirjoittaa laskennan tiedostoon. Laskenta kirjoitetaan ensin väliaikaiseen tiedostoon, joka siirretään lopuksi vanhan tiedoston tilalle, joten keskeytynyt kirjoitus ei turmele aiempaa laskentaa.
+        *
+        * @param file Tiedosto.
+        *
+        * @exception IOException Jos tiedoston kirjoittaminen epäonnistui.
+        */
+    public void write(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        Writer writer = new BufferedWriter(new FileWriter(temp));
+        try {
+            writer.write(SOUPS_HEADER + "\t" + this.getSoups() + "\n");
+            for(String code : this.getCodes()) {
+                writer.write(code + "\t" + this.getCount(code) + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
\ No newline at end of file
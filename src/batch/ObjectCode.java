@@ -0,0 +1,156 @@
+package batch;
+
+import java.util.*;
+
+import utils.*;
+
+/**
+    * Muodostaa kuvioille Catagolue-tietokannan käyttämän apgcode-tunnisteen, joka on sama kaikille saman kuvion vaiheille, kierroille ja peilauksille. Tunniste koostuu tyyppietuliitteestä ja kuvion kanonisesta laajennetusta Wechsler-esityksestä:
+    *
+    * <pre>
+    * xs&lt;elävät solut&gt;_... = asetelma, esimerkiksi xs4_33 (block)
+    * xp&lt;jakso&gt;_...        = oskillaattori, esimerkiksi xp2_7 (blinker)
+    * xq&lt;jakso&gt;_...        = avaruusalus, esimerkiksi xq4_153 (glider)
+    * </pre>
+    *
+    * Wechsler-esityksessä kuvio jaetaan viiden rivin kaistoihin, jotka erotetaan merkillä "z". Kaistan kukin sarake koodataan merkiksi 0...v, jonka bitti i on kaistan rivi i. Peräkkäiset tyhjät sarakkeet lyhennetään: "w" on kaksi, "x" kolme ja "y" ja sitä seuraava merkki 4...39 tyhjää saraketta; kaistan lopun tyhjät sarakkeet jätetään pois. Kanoninen esitys on lyhin, ja samanpituisista aakkosjärjestyksessä ensimmäinen, kaikista vaiheista ja suunnista.
+    */
+abstract public class ObjectCode {
+    /**
+        * Sarakkeiden koodausmerkit.
+        */
+    private static final String CHARS = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+    /**
+        * Kaistan rivien lukumäärä.
+        */
+    private static final int STRIP_ROWS = 5;
+
+    /**
+        * Suurin tyhjien sarakkeiden määrä, jonka "y"-merkintä kattaa.
+        */
+    private static final int MAX_Y_RUN = 39;
+
+    /**
+        * Muodostaa tunnisteen asetelmalle.
+        *
+        * @param cells Asetelman elävät solut.
+        *
+        * @return Tunniste.
+        */
+    public static String stillLife(List<Cell> cells) {
+        return "xs" + cells.size() + "_" + canonical(Collections.singletonList(cells));
+    }
+
+    /**
+        * Muodostaa tunnisteen oskillaattorille tai avaruusalukselle.
+        *
+        * @param phases Kuvion kaikki jakson vaiheet.
+        * @param moves Kertoo, onko kuvio avaruusalus.
+        *
+        * @return Tunniste.
+        */
+    public static String periodic(List<List<Cell>> phases, boolean moves) {
+        if(!moves && phases.size() == 1) {
+            return stillLife(phases.get(0));
+        }
+        return (moves ? "xq" : "xp") + phases.size() + "_" + canonical(phases);
+    }
+
+    /**
+        * Muodostaa vaiheiden kanonisen Wechsler-esityksen.
+        *
+        * @param phases Kuvion vaiheet.
+        *
+        * @return Lyhin ja aakkosjärjestyksessä ensimmäinen esitys.
+        */
+    public static String canonical(List<List<Cell>> phases) {
+        String best = null;
+        for(List<Cell> phase : phases) {
+            for(int orientation = 0; orientation < 8; orientation++) {
+                String code = wechsler(phase, orientation);
+                if(best == null || code.length() < best.length() || (code.length() == best.length() && code.compareTo(best) < 0)) {
+                    best = code;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+        * Muodostaa kuvion Wechsler-esityksen annetussa suunnassa.
+        *
+        * @param cells Elävät solut.
+        * @param orientation Suunta: bitti 0 peilaa vaakasuunnassa, bitti 1 pystysuunnassa ja bitti 2 vaihtaa akselit.
+        *
+        * @return Esitys.
+        */
+    static String wechsler(List<Cell> cells, int orientation) {
+        if(cells.isEmpty()) {
+            return "0";
+        }
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        int[] xs = new int[cells.size()];
+        int[] ys = new int[cells.size()];
+        for(int i = 0; i < cells.size(); i++) {
+            Cell cell = cells.get(i);
+            int x = (orientation & 1) != 0 ? -cell.x : cell.x;
+            int y = (orientation & 2) != 0 ? -cell.y : cell.y;
+            xs[i] = (orientation & 4) != 0 ? y : x;
+            ys[i] = (orientation & 4) != 0 ? x : y;
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+
+        int width = maxX - minX + 1;
+        int strips = (maxY - minY) / STRIP_ROWS + 1;
+        int[][] columns = new int[strips][width];
+        for(int i = 0; i < xs.length; i++) {
+            int y = ys[i] - minY;
+            columns[y / STRIP_ROWS][xs[i] - minX] |= 1 << (y % STRIP_ROWS);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for(int strip = 0; strip < strips; strip++) {
+            if(strip > 0) {
+                sb.append('z');
+            }
+            int zeros = 0;
+            for(int value : columns[strip]) {
+                if(value == 0) {
+                    zeros++;
+                    continue;
+                }
+                appendZeros(sb, zeros);
+                zeros = 0;
+                sb.append(CHARS.charAt(value));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+        * Lisää esitykseen lyhennetyn merkinnän tyhjille sarakkeille.
+        *
+        * @param sb Esitys.
+        * @param zeros Tyhjien sarakkeiden lukumäärä.
+        */
+    private static void appendZeros(StringBuilder sb, int zeros) {
+        while(zeros > MAX_Y_RUN) {
+            sb.append("yz");
+            zeros -= MAX_Y_RUN;
+        }
+        if(zeros == 1) {
+            sb.append('0');
+        } else if(zeros == 2) {
+            sb.append('w');
+        } else if(zeros == 3) {
+            sb.append('x');
+        } else if(zeros >= 4) {
+            sb.append('y').append(CHARS.charAt(zeros - 4));
+        }
+    }
+}
\ No newline at end of file
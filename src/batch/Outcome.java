@@ -0,0 +1,31 @@
+package batch;
+
+/**
+    * Rajatun ajon lopputuloksen luokittelu.
+    */
+public enum Outcome {
+    /**
+        * Kaikki solut kuolivat.
+        */
+    DIES_OUT,
+    
+    /**
+        * Tila vakiintui muuttumattomaksi (jakso 1).
+        */
+    STABLE,
+    
+    /**
+        * Tila alkoi toistua yli yhden sukupolven jaksoissa.
+        */
+    OSCILLATES,
+    
+    /**
+        * Elävät solut levisivät ruudukon reunalle asti.
+        */
+    GROWS,
+    
+    /**
+        * Tila ei vakiintunut, toistunut eikä levinnyt reunalle sukupolvien enimmäismäärän aikana.
+        */
+    CHAOTIC
+}
\ No newline at end of file
@@ -0,0 +1,585 @@
+package batch;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import cellularautomaton.*;
+import utils.*;
+
+/**
+    * Käy läpi syntymä- ja eloonjäämissääntöjen avaruuden (CARules.KEY_COUNT sääntöä) tai sen suodatetun osajoukon ja luokittelee kunkin säännön lopputuloksen: kuolee, vakiintuu, oskilloi, kasvaa tai pysyy kaoottisena. Kullekin säännölle ajetaan samat alkutilat, joko annettu kuvio tai toistettavasti arvotut satunnaiset alkutilat, rajatun määrän sukupolvia DEAD-reunakäyttäytymisellä.
+    *
+    * Säännöt jaetaan lohkoihin, jotka lasketaan rinnakkain säiepoolissa, ja tulokset kirjoitetaan tiedostoon sitä mukaa kuin ne valmistuvat (ks. RuleResult.CSV_HEADER). Mikäli tulostiedosto on jo olemassa, siinä olevat säännöt ohitetaan, joten keskeytynyttä ajoa voi jatkaa samalla komennolla:
+    *
+    * <pre>
+    * java -cp build batch.RuleExplorer [-g sukupolvet] [-s koko] [-n alkutilat] [-c alkutilan koko] [-d tiheys] [-seed siemen] [-f kuvio.cells] [-require B3/S] [-exclude B0/S] [-t säikeet] tulokset.csv
+    * </pre>
+    */
+public class RuleExplorer {
+    /**
+        * Yhden tehtävän kattamien peräkkäisten sääntötunnisteiden lukumäärä.
+        */
+    private static final int CHUNK_RULES = 256;
+
+    /**
+        * Minimiarvo sukupolvien enimmäismäärälle.
+        */
+    private static final int MIN_GENERATIONS = 1;
+
+    /**
+        * Oletusarvo sukupolvien enimmäismäärälle.
+        */
+    private static final int DEFAULT_GENERATIONS = 500;
+
+    /**
+        * Oletusarvo historian pituudelle, eli pisin tunnistettava oskillaation jakso.
+        */
+    private static final int DEFAULT_HISTORY_LENGTH = 64;
+
+    /**
+        * Minimiarvo historian pituudelle.
+        */
+    private static final int MIN_HISTORY_LENGTH = 1;
+
+    /**
+        * Oletusarvo ruudukon sivun pituudelle.
+        */
+    private static final int DEFAULT_BOARD_SIZE = 64;
+
+    /**
+        * Oletusarvo satunnaisen alkutilan sivun pituudelle.
+        */
+    private static final int DEFAULT_SOUP_SIZE = 16;
+
+    /**
+        * Oletusarvo satunnaisten alkutilojen lukumäärälle.
+        */
+    private static final int DEFAULT_SOUPS = 1;
+
+    /**
+        * Minimiarvo satunnaisten alkutilojen lukumäärälle.
+        */
+    private static final int MIN_SOUPS = 1;
+
+    /**
+        * Oletusarvo satunnaisen alkutilan elävien solujen osuudelle.
+        */
+    private static final double DEFAULT_DENSITY = 0.5;
+
+    /**
+        * Minimiarvo säikeiden lukumäärälle.
+        */
+    private static final int MIN_THREADS = 1;
+
+    /**
+        * Sukupolvien enimmäismäärä alkutilaa kohden.
+        */
+    private int generations = DEFAULT_GENERATIONS;
+
+    /**
+        * Soluautomaattien historian pituus.
+        */
+    private int historyLength = DEFAULT_HISTORY_LENGTH;
+
+    /**
+        * Ruudukon sivun pituus.
+        */
+    private int boardSize = DEFAULT_BOARD_SIZE;
+
+    /**
+        * Satunnaisen alkutilan sivun pituus.
+        */
+    private int soupSize = DEFAULT_SOUP_SIZE;
+
+    /**
+        * Satunnaisten alkutilojen lukumäärä.
+        */
+    private int soups = DEFAULT_SOUPS;
+
+    /**
+        * Satunnaisen alkutilan elävien solujen osuus.
+        */
+    private double density = DEFAULT_DENSITY;
+
+    /**
+        * Satunnaisten alkutilojen siemen. Alkutila i arvotaan siemenellä seed + i.
+        */
+    private long seed = 0;
+
+    /**
+        * Alkutilana käytettävä kuvio, tai null jos alkutilat arvotaan.
+        */
+    private CAState pattern = null;
+
+    /**
+        * Sääntötunnisteen bitit, joiden on oltava asetettuja.
+        */
+    private int requiredKey = 0;
+
+    /**
+        * Sääntötunnisteen bitit, jotka eivät saa olla asetettuja.
+        */
+    private int excludedKey = 0;
+
+    /**
+        * Rinnakkain laskettavien lohkojen enimmäismäärä.
+        */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+        * Viimeisimmässä ajossa läpikäytyjen sääntöjen lukumäärät lopputuloksittain.
+        */
+    private final int[] totals = new int[Outcome.values().length];
+
+    /**
+        * Asettaa sukupolvien enimmäismäärän alkutilaa kohden.
+        *
+        * @param generations Sukupolvien lukumäärä.
+        */
+    public void setGenerations(int generations) {
+        this.generations = Math.max(MIN_GENERATIONS, generations);
+    }
+
+    /**
+        * Asettaa historian pituuden, eli pisimmän tunnistettavan oskillaation jakson.
+        *
+        * @param len Historian pituus.
+        */
+    public void setHistoryLength(int len) {
+        this.historyLength = Math.max(MIN_HISTORY_LENGTH, len);
+    }
+
+    /**
+        * Asettaa ruudukon sivun pituuden. Kuviota käytettäessä ruudukko on kuitenkin vähintään kuvion kokoinen reunuksineen.
+        *
+        * @param size Sivun pituus.
+        */
+    public void setBoardSize(int size) {
+        this.boardSize = Math.max(CAState.MIN_DIMENSION, size);
+    }
+
+    /**
+        * Asettaa satunnaisen alkutilan sivun pituuden. Alkutila sijoitetaan ruudukon keskelle.
+        *
+        * @param size Sivun pituus.
+        */
+    public void setSoupSize(int size) {
+        this.soupSize = Math.max(1, size);
+    }
+
+    /**
+        * Asettaa satunnaisten alkutilojen lukumäärän.
+        *
+        * @param soups Alkutilojen lukumäärä.
+        */
+    public void setSoups(int soups) {
+        this.soups = Math.max(MIN_SOUPS, soups);
+    }
+
+    /**
+        * Asettaa satunnaisen alkutilan elävien solujen osuuden.
+        *
+        * @param density Osuus väliltä [0, 1].
+        */
+    public void setDensity(double density) {
+        this.density = Math.max(0, Math.min(1, density));
+    }
+
+    /**
+        * Asettaa satunnaisten alkutilojen siemenen.
+        *
+        * @param seed Siemen.
+        */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+        * Asettaa alkutilana käytettävän kuvion. Kuvion säännöistä ei välitetä.
+        *
+        * @param pattern Kuvio, tai null jos alkutilat arvotaan.
+        */
+    public void setPattern(CAState pattern) {
+        this.pattern = pattern;
+    }
+
+    /**
+        * Rajaa läpikäytävät säännöt niihin, joissa on kaikki annettujen sääntöjen syntymä- ja eloonjäämissäännöt.
+        *
+        * @param rules Vaaditut säännöt.
+        */
+    public void setRequired(CARules rules) {
+        this.requiredKey = rules.getKey();
+    }
+
+    /**
+        * Rajaa läpikäytävät säännöt niihin, joissa ei ole yhtään annettujen sääntöjen syntymä- tai eloonjäämissääntöä.
+        *
+        * @param rules Kielletyt säännöt.
+        */
+    public void setExcluded(CARules rules) {
+        this.excludedKey = rules.getKey();
+    }
+
+    /**
+        * Asettaa rinnakkain laskettavien lohkojen enimmäismäärän.
+        *
+        * @param threads Säikeiden lukumäärä.
+        */
+    public void setThreads(int threads) {
+        this.threads = Math.max(MIN_THREADS, threads);
+    }
+
+    /**
+        * Kertoo, kuuluuko sääntö läpikäytäviin sääntöihin.
+        *
+        * @param key Sääntötunniste.
+        *
+        * @return Totuusarvo.
+        */
+    public boolean accepts(int key) {
+        return (key & this.requiredKey) == this.requiredKey && (key & this.excludedKey) == 0;
+    }
+
+    /**
+        * Palauttaa viimeisimmässä ajossa läpikäytyjen sääntöjen lukumäärän, joiden lopputulos oli annettu.
+        *
+        * @param outcome Lopputulos.
+        *
+        * @return Sääntöjen lukumäärä.
+        */
+    public synchronized int getTotal(Outcome outcome) {
+        return this.totals[outcome.ordinal()];
+    }
+
+    /**
+        * Käy läpi kaikki suodatuksen läpäisevät säännöt, joita tulostiedostossa ei vielä ole, ja lisää niiden tulokset tiedostoon. Tiedoston lopussa oleva keskeneräinen rivi poistetaan ennen jatkamista.
+        *
+        * @param output Tulostiedosto.
+        *
+        * @return Tässä ajossa läpikäytyjen sääntöjen lukumäärä.
+        *
+        * @exception IOException Jos tulostiedoston lukeminen tai kirjoittaminen epäonnistui.
+        * @exception InterruptedException Jos säie keskeytettiin odotettaessa.
+        */
+    public int run(File output) throws IOException, InterruptedException {
+        BitSet done = output.exists() ? resume(output) : new BitSet();
+        final List<boolean[][]> starts = this.startStates();
+        synchronized(this) {
+            Arrays.fill(this.totals, 0);
+        }
+
+        List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+        final Writer writer = new BufferedWriter(new FileWriter(output, true));
+        try {
+            if(output.length() == 0) {
+                writer.write(RuleResult.CSV_HEADER + "\n");
+                writer.flush();
+            }
+            for(int first = 0; first < CARules.KEY_COUNT; first += CHUNK_RULES) {
+                final List<Integer> keys = new ArrayList<Integer>();
+                for(int key = first; key < first + CHUNK_RULES; key++) {
+                    if(this.accepts(key) && !done.get(key)) {
+                        keys.add(key);
+                    }
+                }
+                if(!keys.isEmpty()) {
+                    tasks.add(new Callable<Integer>() {
+                        public Integer call() throws IOException {
+                            return RuleExplorer.this.exploreChunk(keys, starts, writer);
+                        }
+                    });
+                }
+            }
+
+            ExecutorService pool = Executors.newFixedThreadPool(this.threads);
+            try {
+                int explored = 0;
+                for(Future<Integer> future : pool.invokeAll(tasks)) {
+                    try {
+                        explored += future.get();
+                    } catch(ExecutionException e) {
+                        if(e.getCause() instanceof IOException) {
+                            throw (IOException) e.getCause();
+                        }
+                        throw new IllegalStateException("Rule exploration failed", e.getCause());
+                    }
+                }
+                return explored;
+            } finally {
+                pool.shutdownNow();
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+        * Käy läpi yhden lohkon säännöt yhdellä soluautomaatilla ja kirjoittaa tulokset.
+        *
+        * @param keys Sääntötunnisteet.
+        * @param starts Alkutilat.
+        * @param writer Tulostiedosto, jonka käyttö synkronoidaan olion itsensä kautta.
+        *
+        * @return Läpikäytyjen sääntöjen lukumäärä.
+        *
+        * @exception IOException Jos kirjoittaminen epäonnistui.
+        */
+    private int exploreChunk(List<Integer> keys, List<boolean[][]> starts, Writer writer) throws IOException {
+        CA game = this.newGame();
+        for(int key : keys) {
+            RuleResult result = this.explore(game, CARules.fromKey(key), starts);
+            synchronized(writer) {
+                writer.write(result + "\n");
+            }
+            synchronized(this) {
+                this.totals[result.getOutcome().ordinal()]++;
+            }
+        }
+        synchronized(writer) {
+            writer.flush();
+        }
+        return keys.size();
+    }
+
+    /**
+        * Luokittelee yksittäisen säännön lopputuloksen.
+        *
+        * @param rules Säännöt. Reunakäyttäytymisestä ei välitetä.
+        *
+        * @return Tulos.
+        */
+    public RuleResult explore(CARules rules) {
+        return this.explore(this.newGame(), rules, this.startStates());
+    }
+
+    /**
+        * Ajaa säännöillä kaikki alkutilat ja kokoaa niiden lopputulokset.
+        *
+        * @param game Soluautomaatti, jota käytetään.
+        * @param rules Säännöt.
+        * @param starts Alkutilat.
+        *
+        * @return Tulos.
+        */
+    private RuleResult explore(CA game, CARules rules, List<boolean[][]> starts) {
+        rules = rules.clone();
+        rules.setEdgeBehavior(CARules.EdgeBehavior.DEAD);
+        game.setRules(rules);
+        RuleResult result = new RuleResult(rules.getKey());
+        for(boolean[][] start : starts) {
+            game.setCells(start);
+            Outcome outcome = classify(game, this.generations);
+            result.add(outcome, game.getPeriod());
+        }
+        return result;
+    }
+
+    /**
+        * Suorittaa tilasiirtymiä, kunnes lopputulos on selvillä tai sukupolvien enimmäismäärä täyttyy. Oskillaation jakso saadaan tämän jälkeen getPeriod()-metodilla.
+        *
+        * @param game Soluautomaatti alkutilassaan.
+        * @param generations Sukupolvien enimmäismäärä.
+        *
+        * @return Lopputulos.
+        */
+    public static Outcome classify(CA game, int generations) {
+        int lastCol = game.getCols() - 1;
+        int lastRow = game.getRows() - 1;
+        for(int gen = 0; gen < generations; gen++) {
+            game.evolve();
+            Bounds<Cell> bounds = game.getLiveBounds();
+            if(bounds == null) {
+                return Outcome.DIES_OUT;
+            }
+            if(bounds.a.x == 0 || bounds.a.y == 0 || bounds.b.x == lastCol || bounds.b.y == lastRow) {
+                return Outcome.GROWS;
+            }
+            if(game.isPeriodic()) {
+                return game.getPeriod() == 1 ? Outcome.STABLE : Outcome.OSCILLATES;
+            }
+        }
+        return Outcome.CHAOTIC;
+    }
+
+    /**
+        * Luo läpikäynnissä käytettävän soluautomaatin.
+        *
+        * @return Soluautomaatti.
+        */
+    private CA newGame() {
+        CA game = new CA();
+        game.setHistoryLength(this.historyLength);
+        return game;
+    }
+
+    /**
+        * Muodostaa alkutilat: kuvion keskitettynä ruudukkoon tai satunnaiset alkutilat ruudukon keskellä.
+        *
+        * @return Alkutilat.
+        */
+    private List<boolean[][]> startStates() {
+        List<boolean[][]> starts = new ArrayList<boolean[][]>();
+        if(this.pattern != null) {
+            int cols = Math.max(this.boardSize, this.pattern.getCols() + 2);
+            int rows = Math.max(this.boardSize, this.pattern.getRows() + 2);
+            boolean[][] start = Grid.getDeadGrid(cols, rows);
+            int left = (cols - this.pattern.getCols()) / 2;
+            int top = (rows - this.pattern.getRows()) / 2;
+            for(int col = 0; col < this.pattern.getCols(); col++) {
+                for(int row = 0; row < this.pattern.getRows(); row++) {
+                    start[left + col][top + row] = this.pattern.getCell(col, row);
+                }
+            }
+            starts.add(start);
+        } else {
+            int size = Math.min(this.soupSize, this.boardSize - 2);
+            int offset = (this.boardSize - size) / 2;
+            for(int i = 0; i < this.soups; i++) {
+                Random random = new Random(this.seed + i);
+                boolean[][] start = Grid.getDeadGrid(this.boardSize, this.boardSize);
+                for(int col = 0; col < size; col++) {
+                    for(int row = 0; row < size; row++) {
+                        start[offset + col][offset + row] = random.nextDouble() < this.density;
+                    }
+                }
+                starts.add(start);
+            }
+        }
+        return starts;
+    }
+
+    /**
+        * Poistaa tulostiedoston lopusta keskeneräisen rivin ja lukee tiedostossa jo olevat sääntötunnisteet.
+        *
+        * @param file Tulostiedosto.
+        *
+        * @return Tiedostossa olevat sääntötunnisteet.
+        *
+        * @exception IOException Jos tiedoston käsittely epäonnistui.
+        */
+    private static BitSet resume(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            long end = raf.length();
+            while(end > 0) {
+                raf.seek(end - 1);
+                if(raf.read() == '\n') {
+                    break;
+                }
+                end--;
+            }
+            raf.setLength(end);
+        } finally {
+            raf.close();
+        }
+
+        BitSet done = new BitSet(CARules.KEY_COUNT);
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while((line = reader.readLine()) != null) {
+                int comma = line.indexOf(',');
+                try {
+                    int key = Integer.parseInt(line.substring(0, comma));
+                    if(0 <= key && key < CARules.KEY_COUNT) {
+                        done.set(key);
+                    }
+                } catch(RuntimeException e) {
+                    // Otsakerivi tai muu kuin tulosrivi.
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return done;
+    }
+
+    /**
+        * Tulostaa käyttöohjeen.
+        */
+    private static void usage() {
+        System.err.println("Usage: java -cp Cells.jar batch.RuleExplorer [options] results.csv");
+        System.err.println("  -g N         generations per start state (default " + DEFAULT_GENERATIONS + ")");
+        System.err.println("  -h N         longest detected period (default " + DEFAULT_HISTORY_LENGTH + ")");
+        System.err.println("  -s N         board side length (default " + DEFAULT_BOARD_SIZE + ")");
+        System.err.println("  -n N         random soups per rule (default " + DEFAULT_SOUPS + ")");
+        System.err.println("  -c N         soup side length (default " + DEFAULT_SOUP_SIZE + ")");
+        System.err.println("  -d X         soup density (default " + DEFAULT_DENSITY + ")");
+        System.err.println("  -seed N      seed of the first soup (default 0)");
+        System.err.println("  -f FILE      use the pattern in a .cells file instead of soups");
+        System.err.println("  -require B/S only rules containing all of these conditions, e.g. B3/S");
+        System.err.println("  -exclude B/S only rules containing none of these conditions, e.g. B0/S");
+        System.err.println("  -t N         threads (default: number of processors)");
+    }
+
+    /**
+        * Jäsentää komentoriviparametrit, käy säännöt läpi ja tulostaa yhteenvedon.
+        *
+        * @param args Komentoriviparametrit.
+        */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        RuleExplorer explorer = new RuleExplorer();
+        File output = null;
+        try {
+            for(int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if(arg.equals("-g")) {
+                    explorer.setGenerations(Integer.parseInt(args[++i]));
+                } else if(arg.equals("-h")) {
+                    explorer.setHistoryLength(Integer.parseInt(args[++i]));
+                } else if(arg.equals("-s")) {
+                    explorer.setBoardSize(Integer.parseInt(args[++i]));
+                } else if(arg.equals("-n")) {
+                    explorer.setSoups(Integer.parseInt(args[++i]));
+                } else if(arg.equals("-c")) {
+                    explorer.setSoupSize(Integer.parseInt(args[++i]));
+                } else if(arg.equals("-d")) {
+                    explorer.setDensity(Double.parseDouble(args[++i]));
+                } else if(arg.equals("-seed")) {
+                    explorer.setSeed(Long.parseLong(args[++i]));
+                } else if(arg.equals("-f")) {
+                    File file = new File(args[++i]);
+                    CAState pattern = BatchRunner.load(file);
+                    if(pattern == null) {
+                        throw new IllegalArgumentException("The file " + file.getPath() + " does not contain valid save data");
+                    }
+                    explorer.setPattern(pattern);
+                } else if(arg.equals("-require") || arg.equals("-exclude")) {
+                    CARules rules = CARules.parseRuleString(args[++i]);
+                    if(rules == null) {
+                        throw new IllegalArgumentException("Invalid rule string " + args[i]);
+                    }
+                    if(arg.equals("-require")) {
+                        explorer.setRequired(rules);
+                    } else {
+                        explorer.setExcluded(rules);
+                    }
+                } else if(arg.equals("-t")) {
+                    explorer.setThreads(Integer.parseInt(args[++i]));
+                } else if(arg.startsWith("-") || output != null) {
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                } else {
+                    output = new File(arg);
+                }
+            }
+        } catch(RuntimeException e) {
+            System.err.println("Invalid arguments: " + e.getMessage());
+            usage();
+            System.exit(2);
+        }
+        if(output == null) {
+            usage();
+            System.exit(2);
+        }
+
+        long start = System.nanoTime();
+        int explored = explorer.run(output);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        for(Outcome outcome : Outcome.values()) {
+            System.out.println(outcome + "\t" + explorer.getTotal(outcome));
+        }
+        System.out.printf("%d rules, %.2f s, %.1f rules/s%n", explored, seconds, explored / seconds);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,109 @@
+package batch;
+
+import cellularautomaton.*;
+
+/**
+    * Yhden säännön tulos sääntöavaruuden läpikäynnissä: kunkin alkutilan lopputuloksen luokittelu koottuna.
+    */
+public class RuleResult {
+    /**
+        * Tulostiedoston otsakerivi.
+        */
+    public static final String CSV_HEADER = "key,rule,outcome,period,dies_out,stable,oscillates,grows,chaotic";
+
+    /**
+        * Sääntöjen tunniste (ks. CARules.getKey()).
+        */
+    private final int key;
+
+    /**
+        * Alkutilojen lukumäärät lopputuloksittain Outcome-arvojen järjestyksessä.
+        */
+    private final int[] counts = new int[Outcome.values().length];
+
+    /**
+        * Pisin havaittu oskillaation jakso, tai 0.
+        */
+    private int period = 0;
+
+    /**
+        * Luo tyhjän tuloksen.
+        *
+        * @param key Sääntöjen tunniste.
+        */
+    public RuleResult(int key) {
+        this.key = key;
+    }
+
+    /**
+        * Lisää tulokseen yhden alkutilan lopputuloksen.
+        *
+        * @param outcome Lopputulos.
+        * @param period Rytmin jakso, tai 0 jos rytmiä ei havaittu.
+        */
+    public void add(Outcome outcome, int period) {
+        this.counts[outcome.ordinal()]++;
+        if(outcome == Outcome.OSCILLATES) {
+            this.period = Math.max(this.period, period);
+        }
+    }
+
+    /**
+        * Palauttaa sääntöjen tunnisteen.
+        *
+        * @return Tunniste.
+        */
+    public int getKey() {
+        return this.key;
+    }
+
+    /**
+        * Palauttaa niiden alkutilojen lukumäärän, joiden lopputulos oli annettu.
+        *
+        * @param outcome Lopputulos.
+        *
+        * @return Alkutilojen lukumäärä.
+        */
+    public int getCount(Outcome outcome) {
+        return this.counts[outcome.ordinal()];
+    }
+
+    /**
+        * Palauttaa pisimmän havaitun oskillaation jakson.
+        *
+        * @return Jakso, tai 0 jos mikään alkutila ei oskilloinut.
+        */
+    public int getPeriod() {
+        return this.period;
+    }
+
+    /**
+        * Palauttaa säännön lopputuloksen eli yleisimmän alkutilojen lopputuloksen. Tasapelissä valitaan Outcome-järjestyksessä ensimmäinen.
+        *
+        * @return Lopputulos.
+        */
+    public Outcome getOutcome() {
+        Outcome best = Outcome.DIES_OUT;
+        for(Outcome outcome : Outcome.values()) {
+            if(this.counts[outcome.ordinal()] > this.counts[best.ordinal()]) {
+                best = outcome;
+            }
+        }
+        return best;
+    }
+
+    /**
+        * Muodostaa tuloksesta CSV_HEADER-otsakkeen mukaisen pilkuin erotellun rivin.
+        *
+        * @return Tulosrivi.
+        */
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(this.key).append(',').append(CARules.fromKey(this.key).toRuleString());
+        sb.append(',').append(this.getOutcome()).append(',').append(this.period);
+        for(int count : this.counts) {
+            sb.append(',').append(count);
+        }
+        return sb.toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,641 @@
+package batch;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import cellularautomaton.*;
+import utils.*;
+
+/**
+    * Hakee kuvioita satunnaisista alkutiloista: kukin alkutila ajetaan rajattomalla tasolla, kunnes se vakiintuu, minkä jälkeen jäljelle jääneet kuviot erotellaan ja luokitellaan asetelmiksi, oskillaattoreiksi ja avaruusaluksiksi, ja niiden tunnisteet (ks. ObjectCode) lisätään laskentaan. Alkutilat lasketaan rinnakkain säiepoolissa.
+    *
+    * Alkutila i arvotaan siemenellä seed + i, joten jokainen alkutila voidaan toistaa. Tila katsotaan vakiintuneeksi, kun elävien solujen lukumäärä on toistunut samalla jaksolla riittävän pitkään; rajattomalla tasolla poispäin kiitävät avaruusalukset eivät estä vakiintumista. Kuviot erotellaan yhtenäisistä osista yhdistämällä ne osat, jotka vaikuttavat toistensa kehitykseen (ks. separate()). Kukin kuvio ajetaan erikseen, kunnes sen muoto toistuu; mikäli näin ei käy, kuvion tunniste on UNKNOWN.
+    *
+    * <pre>
+    * java -cp build batch.SoupSearch [-n alkutilat] [-seed siemen] [-r B3/S23] [-s koko] [-d tiheys] [-g sukupolvet] [-t säikeet] [laskenta.txt]
+    * </pre>
+    *
+    * Mikäli laskentatiedosto annetaan, sen aiempi laskenta yhdistetään uuteen, haku jatkuu siitä alkutilasta, johon aiempi laskenta päättyi, ja tiedosto päivitetään säännöllisesti haun aikana.
+    */
+public class SoupSearch {
+    /**
+        * Tunniste alkutiloille, jotka eivät vakiintuneet sukupolvien enimmäismäärän aikana.
+        */
+    public static final String UNSTABILIZED = "zz_UNSTABILIZED";
+
+    /**
+        * Tunniste kuvioille, joiden muoto ei toistunut erikseen ajettuna.
+        */
+    public static final String UNKNOWN = "zz_UNKNOWN";
+
+    /**
+        * Pisin tunnistettava jakso.
+        */
+    private static final int MAX_PERIOD = 60;
+
+    /**
+        * Vähimmäismäärä sukupolvia, joiden ajan elävien solujen lukumäärän on toistuttava, jotta tila katsotaan vakiintuneeksi. Vähintään kaksi jaksoa vaaditaan aina.
+        */
+    private static final int MIN_STABLE_WINDOW = 60;
+
+    /**
+        * Elävien solujen lukumäärien rengaspuskurin koko. Puskurin tulee kattaa pisin tarkastelu, eli 2 * MAX_PERIOD + MAX_PERIOD sukupolvea.
+        */
+    private static final int POPULATION_HISTORY = 256;
+
+    /**
+        * Sukupolvien määrä vakiintumistarkistusten välillä.
+        */
+    private static final int CHECK_INTERVAL = 30;
+
+    /**
+        * Oletusarvo sukupolvien enimmäismäärälle alkutilaa kohden.
+        */
+    private static final int DEFAULT_MAX_GENERATIONS = 20000;
+
+    /**
+        * Minimiarvo sukupolvien enimmäismäärälle.
+        */
+    private static final int MIN_MAX_GENERATIONS = CHECK_INTERVAL;
+
+    /**
+        * Elävien solujen enimmäismäärä, jonka ylittävä alkutila katsotaan vakiintumattomaksi.
+        */
+    private static final long MAX_POPULATION = 1 << 15;
+
+    /**
+        * Oletusarvo alkutilan sivun pituudelle.
+        */
+    private static final int DEFAULT_SOUP_SIZE = 16;
+
+    /**
+        * Oletusarvo alkutilan elävien solujen osuudelle.
+        */
+    private static final double DEFAULT_DENSITY = 0.5;
+
+    /**
+        * Minimiarvo säikeiden lukumäärälle.
+        */
+    private static final int MIN_THREADS = 1;
+
+    /**
+        * Kerralla laskettavien alkutilojen määrä komentoriviltä ajettaessa, eli kuinka usein edistyminen tulostetaan ja laskenta tallennetaan.
+        */
+    private static final int SOUPS_PER_REPORT = 1000;
+
+    /**
+        * Säännöt.
+        */
+    private CARules rules = CARules.newLifeRules();
+
+    /**
+        * Alkutilan sivun pituus.
+        */
+    private int soupSize = DEFAULT_SOUP_SIZE;
+
+    /**
+        * Alkutilan elävien solujen osuus.
+        */
+    private double density = DEFAULT_DENSITY;
+
+    /**
+        * Alkutilojen siemen.
+        */
+    private long seed = 0;
+
+    /**
+        * Sukupolvien enimmäismäärä alkutilaa kohden.
+        */
+    private int maxGenerations = DEFAULT_MAX_GENERATIONS;
+
+    /**
+        * Rinnakkain laskettavien alkutilojen enimmäismäärä.
+        */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+        * Asettaa säännöt. Reunakäyttäytymisestä ei välitetä, koska taso on rajaton.
+        *
+        * @param rules Säännöt.
+        *
+        * @exception IllegalArgumentException Jos säännöissä on syntymäsääntö 0, jota rajaton taso ei tue.
+        */
+    public void setRules(CARules rules) {
+        if(rules.getBirthRule(0)) {
+            throw new IllegalArgumentException("Rules with birth on 0 neighbours are not supported");
+        }
+        this.rules = rules.clone();
+    }
+
+    /**
+        * Asettaa alkutilan sivun pituuden.
+        *
+        * @param size Sivun pituus.
+        */
+    public void setSoupSize(int size) {
+        this.soupSize = Math.max(1, size);
+    }
+
+    /**
+        * Asettaa alkutilan elävien solujen osuuden.
+        *
+        * @param density Osuus väliltä [0, 1].
+        */
+    public void setDensity(double density) {
+        this.density = Math.max(0, Math.min(1, density));
+    }
+
+    /**
+        * Asettaa alkutilojen siemenen.
+        *
+        * @param seed Siemen.
+        */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+        * Asettaa sukupolvien enimmäismäärän alkutilaa kohden.
+        *
+        * @param generations Sukupolvien lukumäärä.
+        */
+    public void setMaxGenerations(int generations) {
+        this.maxGenerations = Math.max(MIN_MAX_GENERATIONS, generations);
+    }
+
+    /**
+        * Asettaa rinnakkain laskettavien alkutilojen enimmäismäärän.
+        *
+        * @param threads Säikeiden lukumäärä.
+        */
+    public void setThreads(int threads) {
+        this.threads = Math.max(MIN_THREADS, threads);
+    }
+
+    /**
+        * Arpoo alkutilan. Sama siemen ja indeksi tuottavat aina saman alkutilan.
+        *
+        * @param seed Siemen.
+        * @param index Alkutilan indeksi.
+        * @param size Sivun pituus.
+        * @param density Elävien solujen osuus.
+        *
+        * @return Alkutila.
+        */
+    public static boolean[][] soup(long seed, long index, int size, double density) {
+        Random random = new Random(seed + index);
+        boolean[][] cells = new boolean[size][size];
+        for(int col = 0; col < size; col++) {
+            for(int row = 0; row < size; row++) {
+                cells[col][row] = random.nextDouble() < density;
+            }
+        }
+        return cells;
+    }
+
+    /**
+        * Laskee alkutilat first, ..., first + count - 1 rinnakkain ja lisää niiden kuviot laskentaan.
+        *
+        * @param census Laskenta.
+        * @param first Ensimmäisen alkutilan indeksi.
+        * @param count Alkutilojen lukumäärä.
+        *
+        * @exception InterruptedException Jos säie keskeytettiin odotettaessa.
+        */
+    public void run(final Census census, long first, long count) throws InterruptedException {
+        final AtomicLong next = new AtomicLong(first);
+        final long end = first + count;
+        ExecutorService pool = Executors.newFixedThreadPool(this.threads);
+        try {
+            for(int i = 0; i < this.threads; i++) {
+                pool.execute(new Runnable() {
+                    public void run() {
+                        for(long index = next.getAndIncrement(); index < end; index = next.getAndIncrement()) {
+                            SoupSearch.this.search(index, census);
+                        }
+                    }
+                });
+            }
+            pool.shutdown();
+            while(!pool.awaitTermination(1, TimeUnit.DAYS)) {
+                // Odotetaan, kunnes kaikki alkutilat on laskettu.
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+        * Laskee yhden alkutilan ja lisää sen kuviot laskentaan.
+        *
+        * @param index Alkutilan indeksi.
+        * @param census Laskenta.
+        */
+    public void search(long index, Census census) {
+        UnboundedCA game = this.newGame();
+        boolean[][] soup = soup(this.seed, index, this.soupSize, this.density);
+        for(int col = 0; col < this.soupSize; col++) {
+            for(int row = 0; row < this.soupSize; row++) {
+                if(soup[col][row]) {
+                    game.setCell(col, row, true);
+                }
+            }
+        }
+
+        long[] populations = new long[POPULATION_HISTORY];
+        populations[0] = game.getPopulation();
+        boolean stable = false;
+        for(int gen = 1; gen <= this.maxGenerations && !stable; gen++) {
+            game.evolve();
+            long population = game.getPopulation();
+            if(population > MAX_POPULATION) {
+                break;
+            }
+            populations[gen % POPULATION_HISTORY] = population;
+            if(gen % CHECK_INTERVAL == 0) {
+                stable = isStable(populations, gen);
+            }
+        }
+
+        if(stable) {
+            for(List<Cell> object : separate(game.getLiveCells())) {
+                census.add(this.classify(object), 1);
+            }
+        } else {
+            census.add(UNSTABILIZED, 1);
+        }
+        census.addSoups(1);
+    }
+
+    /**
+        * Kertoo, onko elävien solujen lukumäärä toistunut jollakin enintään MAX_PERIOD sukupolven jaksolla vähintään MIN_STABLE_WINDOW sukupolven ja kahden jakson ajan.
+        *
+        * @param populations Elävien solujen lukumäärät rengaspuskurina; sukupolven g lukumäärä on indeksissä g % POPULATION_HISTORY.
+        * @param gen Viimeisin sukupolvi.
+        *
+        * @return Totuusarvo.
+        */
+    private static boolean isStable(long[] populations, int gen) {
+        for(int period = 1; period <= MAX_PERIOD; period++) {
+            int window = Math.max(MIN_STABLE_WINDOW, 2 * period);
+            if(gen < window + period) {
+                break;
+            }
+            boolean repeats = true;
+            for(int g = gen; g > gen - window && repeats; g--) {
+                repeats = populations[g % POPULATION_HISTORY] == populations[(g - period) % POPULATION_HISTORY];
+            }
+            if(repeats) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+        * Erottelee elävät solut kuvioiksi. Solut jaetaan ensin yhtenäisiin osiin, joissa solut ovat toistensa naapureita. Osat, joiden etäisyys on enintään kaksi solua, voivat vaikuttaa samaan soluun, joten ne yhdistetään samaksi kuvioksi, mikäli niiden yhdessä ajettu kehitys poikkeaa erikseen ajettujen kehitysten yhdisteestä jonakin MAX_PERIOD ensimmäisestä sukupolvesta.
+        *
+        * @param cells Elävät solut.
+        *
+        * @return Kuviot.
+        */
+    List<List<Cell>> separate(List<Cell> cells) {
+        Map<Long, Integer> index = new HashMap<Long, Integer>();
+        for(int i = 0; i < cells.size(); i++) {
+            index.put(pack(cells.get(i).x, cells.get(i).y), i);
+        }
+        int[] component = new int[cells.size()];
+        for(int i = 0; i < component.length; i++) {
+            component[i] = i;
+        }
+        link(cells, index, component, 1);
+        List<List<Cell>> parts = group(cells, component);
+
+        int[] part = new int[cells.size()];
+        for(int i = 0; i < parts.size(); i++) {
+            for(Cell cell : parts.get(i)) {
+                part[index.get(pack(cell.x, cell.y))] = i;
+            }
+        }
+        int[] object = new int[parts.size()];
+        for(int i = 0; i < object.length; i++) {
+            object[i] = i;
+        }
+        Set<Long> tested = new HashSet<Long>();
+        for(int i = 0; i < cells.size(); i++) {
+            Cell cell = cells.get(i);
+            for(int dx = -2; dx <= 2; dx++) {
+                for(int dy = -2; dy <= 2; dy++) {
+                    Integer j = index.get(pack(cell.x + dx, cell.y + dy));
+                    if(j == null || part[i] == part[j] || !tested.add(pack(Math.min(part[i], part[j]), Math.max(part[i], part[j])))) {
+                        continue;
+                    }
+                    if(find(object, part[i]) != find(object, part[j]) && this.interacts(parts.get(part[i]), parts.get(part[j]))) {
+                        object[find(object, part[i])] = find(object, part[j]);
+                    }
+                }
+            }
+        }
+
+        Map<Integer, List<Cell>> objects = new LinkedHashMap<Integer, List<Cell>>();
+        for(int i = 0; i < parts.size(); i++) {
+            int root = find(object, i);
+            List<Cell> cellsOfObject = objects.get(root);
+            if(cellsOfObject == null) {
+                cellsOfObject = new ArrayList<Cell>();
+                objects.put(root, cellsOfObject);
+            }
+            cellsOfObject.addAll(parts.get(i));
+        }
+        return new ArrayList<List<Cell>>(objects.values());
+    }
+
+    /**
+        * Yhdistää samaan ryhmään solut, joiden etäisyys on enintään annettu määrä soluja kumpaankin suuntaan.
+        *
+        * @param cells Solut.
+        * @param index Solujen indeksit pakattujen koordinaattien mukaan.
+        * @param parent Solujen ryhmät union-find-rakenteena.
+        * @param reach Etäisyys.
+        */
+    private static void link(List<Cell> cells, Map<Long, Integer> index, int[] parent, int reach) {
+        for(int i = 0; i < cells.size(); i++) {
+            Cell cell = cells.get(i);
+            for(int dx = -reach; dx <= reach; dx++) {
+                for(int dy = -reach; dy <= reach; dy++) {
+                    Integer j = index.get(pack(cell.x + dx, cell.y + dy));
+                    if(j != null) {
+                        parent[find(parent, i)] = find(parent, j);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+        * Kokoaa solut ryhmiksi union-find-rakenteen mukaan.
+        *
+        * @param cells Solut.
+        * @param parent Solujen ryhmät union-find-rakenteena.
+        *
+        * @return Ryhmät.
+        */
+    private static List<List<Cell>> group(List<Cell> cells, int[] parent) {
+        Map<Integer, List<Cell>> groups = new LinkedHashMap<Integer, List<Cell>>();
+        for(int i = 0; i < cells.size(); i++) {
+            int root = find(parent, i);
+            List<Cell> group = groups.get(root);
+            if(group == null) {
+                group = new ArrayList<Cell>();
+                groups.put(root, group);
+            }
+            group.add(cells.get(i));
+        }
+        return new ArrayList<List<Cell>>(groups.values());
+    }
+
+    /**
+        * Kertoo, vaikuttavatko kaksi erillistä solujoukkoa toistensa kehitykseen MAX_PERIOD ensimmäisen sukupolven aikana.
+        *
+        * @param a Ensimmäinen joukko.
+        * @param b Toinen joukko.
+        *
+        * @return Totuusarvo.
+        */
+    private boolean interacts(List<Cell> a, List<Cell> b) {
+        UnboundedCA first = this.newGame();
+        UnboundedCA second = this.newGame();
+        UnboundedCA both = this.newGame();
+        for(Cell cell : a) {
+            first.setCell(cell.x, cell.y, true);
+            both.setCell(cell.x, cell.y, true);
+        }
+        for(Cell cell : b) {
+            second.setCell(cell.x, cell.y, true);
+            both.setCell(cell.x, cell.y, true);
+        }
+        for(int gen = 1; gen <= MAX_PERIOD; gen++) {
+            first.evolve();
+            second.evolve();
+            both.evolve();
+            List<Cell> separately = first.getLiveCells();
+            separately.addAll(second.getLiveCells());
+            if(!Arrays.equals(key(both.getLiveCells()), key(separately))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+        * Etsii alkion ryhmän edustajan ja lyhentää polut.
+        *
+        * @param parent Alkioiden vanhemmat.
+        * @param i Alkio.
+        *
+        * @return Edustaja.
+        */
+    private static int find(int[] parent, int i) {
+        while(parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+        * Luokittelee yksittäisen kuvion ajamalla sitä erikseen, kunnes sen muoto toistuu.
+        *
+        * @param object Kuvion elävät solut.
+        *
+        * @return Kuvion tunniste, tai UNKNOWN jos muoto ei toistunut MAX_PERIOD sukupolven aikana.
+        */
+    public String classify(List<Cell> object) {
+        if(object.isEmpty()) {
+            return UNKNOWN;
+        }
+        UnboundedCA game = this.newGame();
+        for(Cell cell : object) {
+            game.setCell(cell.x, cell.y, true);
+        }
+        Cell origin = minimum(object);
+        List<Cell> start = translate(object, origin);
+        long[] startKey = key(start);
+
+        List<List<Cell>> phases = new ArrayList<List<Cell>>();
+        phases.add(start);
+        for(int gen = 1; gen <= MAX_PERIOD; gen++) {
+            game.evolve();
+            List<Cell> cells = game.getLiveCells();
+            if(cells.isEmpty() || cells.size() > MAX_POPULATION) {
+                return UNKNOWN;
+            }
+            Cell corner = minimum(cells);
+            List<Cell> phase = translate(cells, corner);
+            if(Arrays.equals(key(phase), startKey)) {
+                boolean moves = corner.x != origin.x || corner.y != origin.y;
+                return ObjectCode.periodic(phases, moves);
+            }
+            phases.add(phase);
+        }
+        return UNKNOWN;
+    }
+
+    /**
+        * Luo haussa käytettävän automaatin.
+        *
+        * @return Tyhjä automaatti ilman historiaa.
+        */
+    private UnboundedCA newGame() {
+        UnboundedCA game = new UnboundedCA();
+        game.setHistoryLength(0);
+        game.setRules(this.rules);
+        return game;
+    }
+
+    /**
+        * Palauttaa solujen rajaavan suorakulmion vasemman yläkulman.
+        *
+        * @param cells Epätyhjä joukko soluja.
+        *
+        * @return Vasen yläkulma.
+        */
+    private static Cell minimum(List<Cell> cells) {
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        for(Cell cell : cells) {
+            minX = Math.min(minX, cell.x);
+            minY = Math.min(minY, cell.y);
+        }
+        return new Cell(minX, minY);
+    }
+
+    /**
+        * Siirtää solut siten, että annettu piste siirtyy origoon.
+        *
+        * @param cells Solut.
+        * @param origin Piste.
+        *
+        * @return Siirretyt solut.
+        */
+    private static List<Cell> translate(List<Cell> cells, Cell origin) {
+        List<Cell> translated = new ArrayList<Cell>(cells.size());
+        for(Cell cell : cells) {
+            translated.add(new Cell(cell.x - origin.x, cell.y - origin.y));
+        }
+        return translated;
+    }
+
+    /**
+        * Muodostaa solujoukosta järjestyksestä riippumattoman vertailuavaimen.
+        *
+        * @param cells Solut.
+        *
+        * @return Pakatut koordinaatit järjestettynä.
+        */
+    private static long[] key(List<Cell> cells) {
+        long[] key = new long[cells.size()];
+        for(int i = 0; i < key.length; i++) {
+            key[i] = pack(cells.get(i).x, cells.get(i).y);
+        }
+        Arrays.sort(key);
+        return key;
+    }
+
+    /**
+        * Pakkaa koordinaatit yhteen lukuun.
+        *
+        * @param x Sarakekoordinaatti.
+        * @param y Rivikoordinaatti.
+        *
+        * @return Pakatut koordinaatit.
+        */
+    private static long pack(int x, int y) {
+        return ((long) y << 32) | (x & 0xFFFFFFFFL);
+    }
+
+    /**
+        * Tulostaa käyttöohjeen.
+        */
+    private static void usage() {
+        System.err.println("Usage: java -cp Cells.jar batch.SoupSearch [options] [census.txt]");
+        System.err.println("  -n N     soups to search (default " + SOUPS_PER_REPORT + ")");
+        System.err.println("  -seed N  seed; soup i is generated with seed + i (default 0)");
+        System.err.println("  -first N index of the first soup (default: soups already in the census file)");
+        System.err.println("  -r B/S   rules (default B3/S23)");
+        System.err.println("  -s N     soup side length (default " + DEFAULT_SOUP_SIZE + ")");
+        System.err.println("  -d X     soup density (default " + DEFAULT_DENSITY + ")");
+        System.err.println("  -g N     generations before a soup counts as unstabilized (default " + DEFAULT_MAX_GENERATIONS + ")");
+        System.err.println("  -t N     threads (default: number of processors)");
+    }
+
+    /**
+        * Jäsentää komentoriviparametrit, laskee alkutilat ja tulostaa edistymisen sekä lopuksi laskennan yleisimmät kuviot.
+        *
+        * @param args Komentoriviparametrit.
+        */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        SoupSearch search = new SoupSearch();
+        long soups = SOUPS_PER_REPORT;
+        long first = -1;
+        File file = null;
+        try {
+            for(int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if(arg.equals("-n")) {
+                    soups = Long.parseLong(args[++i]);
+                } else if(arg.equals("-seed")) {
+                    search.setSeed(Long.parseLong(args[++i]));
+                } else if(arg.equals("-first")) {
+                    first = Long.parseLong(args[++i]);
+                } else if(arg.equals("-r")) {
+                    CARules rules = CARules.parseRuleString(args[++i]);
+                    if(rules == null) {
+                        throw new IllegalArgumentException("Invalid rule string " + args[i]);
+                    }
+                    search.setRules(rules);
+                } else if(arg.equals("-s")) {
+                    search.setSoupSize(Integer.parseInt(args[++i]));
+                } else if(arg.equals("-d")) {
+                    search.setDensity(Double.parseDouble(args[++i]));
+                } else if(arg.equals("-g")) {
+                    search.setMaxGenerations(Integer.parseInt(args[++i]));
+                } else if(arg.equals("-t")) {
+                    search.setThreads(Integer.parseInt(args[++i]));
+                } else if(arg.startsWith("-") || file != null) {
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                } else {
+                    file = new File(arg);
+                }
+            }
+        } catch(RuntimeException e) {
+            System.err.println("Invalid arguments: " + e.getMessage());
+            usage();
+            System.exit(2);
+        }
+
+        Census census = file != null ? Census.read(file) : new Census();
+        if(first < 0) {
+            first = census.getSoups();
+        }
+        long start = System.nanoTime();
+        for(long done = 0; done < soups; ) {
+            long count = Math.min(SOUPS_PER_REPORT, soups - done);
+            search.run(census, first + done, count);
+            done += count;
+            if(file != null) {
+                census.write(file);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.err.printf("%d/%d soups, %.1f soups/s%n", done, soups, done / seconds);
+        }
+
+        List<String> codes = census.getCodes();
+        for(int i = 0; i < codes.size() && i < 20; i++) {
+            System.out.println(codes.get(i) + "\t" + census.getCount(codes.get(i)));
+        }
+        System.out.println(census.getSoups() + " soups in census, " + codes.size() + " distinct objects");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,51 @@
+package cellularautomaton;
+
+/**
+    * Soluautomaatin yhteinen rajapinta riippumatta siitä, miten tila on tallennettu ja miten tilasiirtymät lasketaan.
+    */
+public interface Automaton {
+    /**
+        * Palauttaa automaatin käyttämät säännöt. Palautettu sääntöolio on kopio automaatin säännöistä, ei suora viittaus.
+        *
+        * @return Automaatin säännöt.
+        */
+    CARules getRules();
+
+    /**
+        * Asettaa automaatille uudet säännöt. Automaatin säännöiksi asetetaan kopio annetusta sääntöoliosta.
+        *
+        * @param rules Uudet säännöt.
+        */
+    void setRules(CARules rules);
+
+    /**
+        * Suorittaa yhden sääntöjen mukaisen tilasiirtymän ja säilöö vanhan tilan historiaan.
+        */
+    void evolve();
+
+    /**
+        * Kertoo, löytyykö automaatin nykyinen tila historiasta.
+        *
+        * @return Totuusarvo, joka kertoo havaittiinko rytmi.
+        */
+    boolean isPeriodic();
+
+    /**
+        * Palauttaa automaatin historian pituuden.
+        *
+        * @return Historian pituus.
+        */
+    int getHistoryLength();
+
+    /**
+        * Asettaa automaatin historian pituuden ja tyhjentää historian.
+        *
+        * @param len Historian uusi pituus.
+        */
+    void setHistoryLength(int len);
+
+    /**
+        * Tyhjentää historian.
+        */
+    void resetHistory();
+}
\ No newline at end of file
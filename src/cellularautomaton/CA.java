@@ -1,13 +1,59 @@
 package cellularautomaton;
 
 import java.io.*;
+import java.util.concurrent.*;
 
 import utils.*;
 
 /**
     * Soluautomaatin ydintoiminnallisuus.
     */
-public class CA extends CAState {
+public class CA extends CAState implements Automaton {
+    /**
+        * Tilasiirtymien laskentatapa.
+        */
+    public enum EvolutionMode {
+        /**
+            * Jokainen solu lasketaan jokaisessa tilasiirtymässä.
+            */
+        FULL,
+        
+        /**
+            * Lasketaan vain edellisessä tilasiirtymässä muuttuneiden solujen naapurustot. Tulos on sama kuin FULL-tavalla, mutta harvoilla kuvioilla suurissa ruudukoissa huomattavasti nopeampi. Jos muutoksia on paljon, lasketaan koko ruudukko.
+            */
+        ACTIVE
+    }
+    
+    /**
+        * Koko ruudukon tilasiirtymän laskeva ydin. Kaikki ytimet tuottavat saman tuloksen.
+        */
+    public enum KernelType {
+        /**
+            * Bittirinnakkainen ydin, joka laskee 64 solua kerrallaan bittitasoisilla summaimilla.
+            */
+        SWAR,
+        
+        /**
+            * Hakutaulukkoydin, joka lukee kunkin solun seuraavan tilan säännöistä kootusta taulukosta solun naapuruston bittiasetelman perusteella.
+            */
+        LOOKUP,
+        
+        /**
+            * Erotuvan summan ydin, joka laskee sarakkeiden pystysummat kerran ja liu'uttaa vaakasuuntaista ikkunaa niiden yli.
+            */
+        RUNNING_SUM,
+        
+        /**
+            * Vektorisoitu ydin, joka laskee bittirinnakkaiset summaimet usealle sanalle kerrallaan Vector API:lla. Vaatii käynnistysvalitsimen --add-modules jdk.incubator.vector; ilman sitä käytetään SWAR-ydintä.
+            */
+        VECTOR,
+        
+        /**
+            * Säännöille ajon aikana käännetty bittirinnakkainen ydin, jossa säännöt ja reunakäyttäytyminen ovat vakioita. Vaatii Java-kääntäjän (JDK); ilman sitä tai kääntämisen epäonnistuessa käytetään SWAR-ydintä. Kunkin sääntöyhdistelmän ensimmäinen käyttö kääntää ytimen, mikä voi kestää sekunnin.
+            */
+        COMPILED
+    }
+    
     /**
         * Minimiarvo tilahistorian pituudelle.
         */
@@ -18,170 +64,784 @@ public class CA extends CAState {
         */
     private static final int DEFAULT_HISTORY_LENGTH = 2;
     
+    /**
+        * Minimiarvo rinnakkaisuudelle. Arvo 1 tarkoittaa, että tilasiirtymät lasketaan kutsuvassa säikeessä.
+        */
+    private static final int MIN_PARALLELISM = 1;
+    
+    /**
+        * Minimiarvo rinnakkain laskettavan rivivälin koolle.
+        */
+    private static final int MIN_BAND_ROWS = 1;
+    
+    /**
+        * Oletusarvo rinnakkain laskettavan rivivälin koolle.
+        */
+    private static final int DEFAULT_MIN_BAND_ROWS = 64;
+    
+    /**
+        * Vektoriytimen vaatiman Vector API -moduulin nimi.
+        */
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    
+    /**
+        * Historian tarkistuspisteiden vähimmäisväli sukupolvina. Tarkistuspisteitä otetaan historian pituuden välein, mutta lyhyellä historialla harvemmin, jotta jokaista sukupolvea ei tarvitse kopioida.
+        */
+    private static final int MIN_CHECKPOINT_INTERVAL = 64;
+    
+    /**
+        * Liikeanalyysin historian minimipituus. Nolla tarkoittaa, ettei liikettä analysoida.
+        */
+    private static final int MIN_MOTION_WINDOW = 0;
+    
     /**
         * Soluautomaatin väliaikaismuistiin säilötty tila.
         */
-    private boolean[][] storedCells;
+    private BitGrid storedCells;
     
     /**
         * Soluautomaatin seuraava tila.
         */
-    private boolean[][] newCells;
+    private BitGrid newCells;
+    
+    /**
+        * Tilahistorian tiivisteet rengaspuskurina. Sukupolven g tilan tiiviste on indeksissä g % historyHashes.length.
+        */
+    private long[] historyHashes;
+    
+    /**
+        * Historian aloittamisesta kuluneiden sukupolvien lukumäärä.
+        */
+    private long generation;
+    
+    /**
+        * Viimeisin historian tarkistuspiste, eli täsmällinen kopio sukupolven checkpointGeneration tilasta.
+        */
+    private BitGrid checkpoint;
+    
+    /**
+        * Viimeisintä edeltävä tarkistuspiste, eli kopio sukupolven checkpointGeneration - checkpointInterval() tilasta.
+        */
+    private BitGrid previousCheckpoint;
+    
+    /**
+        * Viimeisimmän tarkistuspisteen sukupolvi, tai -1 jos tarkistuspistettä ei ole.
+        */
+    private long checkpointGeneration;
+    
+    /**
+        * Tilat, joilla historian tilat lasketaan tarkistuspisteistä uudelleen tiivisteiden täsmätessä.
+        */
+    private BitGrid replayCells, replayNewCells;
+    
+    /**
+        * Seuraavan tilan tilastot, jotka vaihdetaan nykyisen tilan tilastoiksi tilasiirtymän päätteeksi.
+        */
+    private GridStats nextStats = new GridStats();
+    
+    /**
+        * Seuraavan tilan ruudukon rivit, joilla voi olla eläviä soluja: rivit newCellsFromRow, ..., newCellsToRow - 1. Muiden rivien sanat ovat nollia, joten niitä ei tarvitse tyhjentää, kun tyhjiä rivejä ohitetaan.
+        */
+    private int newCellsFromRow, newCellsToRow;
+    
+    /**
+        * Nykyisen tilan tiiviste, mikäli cellsHashValid on tosi.
+        */
+    private long cellsHash;
+    
+    /**
+        * Kertoo, vastaako cellsHash nykyistä tilaa.
+        */
+    private boolean cellsHashValid;
+    
+    /**
+        * Viive, jolla nykyinen tila on varmistetusti toistunut historiassa, tai 0 jos rytmiä ei ole varmistettu. Koska tilasiirtymät ovat deterministisiä, kerran varmistettu rytmi säilyy seuraavissakin tilasiirtymissä.
+        */
+    private int periodicLag;
+    
+    /**
+        * Koko ruudukon tilasiirtymän laskevan ytimen tyyppi.
+        */
+    private KernelType kernelType = KernelType.SWAR;
+    
+    /**
+        * Nykyisistä säännöistä koottu tilasiirtymäydin.
+        */
+    private RowKernel kernel;
+    
+    /**
+        * Nykyisistä säännöistä koottu bittirinnakkainen ydin, jota muutoksia seuraava laskentatapa käyttää yksittäisten sanojen laskemiseen.
+        */
+    private SwarKernel wordKernel;
+    
+    /**
+        * Tilasiirtymien laskentatapa.
+        */
+    private EvolutionMode evolutionMode = EvolutionMode.FULL;
+    
+    /**
+        * Muuttuneiden solujen seuranta ACTIVE-laskentatapaa varten.
+        */
+    private ChangeTracker changes;
     
     /**
-        * Tilahistoria.
+        * Koko ruudukon tilasiirtymän laskemiseen käytettävien säikeiden lukumäärä.
         */
-    private boolean[][][] history;
+    private int parallelism = MIN_PARALLELISM;
+    
+    /**
+        * Rinnakkain laskettavan rivivälin vähimmäiskoko.
+        */
+    private int minBandRows = DEFAULT_MIN_BAND_ROWS;
+    
+    /**
+        * Käyttäjän antama säiepooli rinnakkaista laskentaa varten, tai null.
+        */
+    private ForkJoinPool executor = null;
+    
+    /**
+        * Automaatin itse luoma säiepooli, jota käytetään jos käyttäjä ei ole antanut omaansa.
+        */
+    private ForkJoinPool ownPool = null;
+    
+    /**
+        * Liikeanalyysin historian pituus, tai 0 jos liikettä ei analysoida.
+        */
+    private int motionWindow = MIN_MOTION_WINDOW;
+    
+    /**
+        * Liikeanalyysi, tai null jos sitä ei ole vielä luotu nykyiselle ruudukolle.
+        */
+    private MotionAnalyzer motion = null;
     
     /**
         * Luo oletuskokoisen, oletussäännöillä ja oletuspituisella historialla varustetun soluautomaattitilan.
         */
     public CA() {
         super();
+        this.buildKernels();
         this.storePattern();
         this.setHistoryLength(DEFAULT_HISTORY_LENGTH);
     }
     
     /**
-        * Asettaa annetun solun arvon seuraavassa tilassa.
+        * Korvaa automaatin soluruudukon annetulla tiivistetyllä ruudukolla ja varaa samankokoisen ruudukon seuraavaa tilaa varten.
+        * 
+        * @param grid Uusi soluruudukko.
+        */
+    protected void setGrid(BitGrid grid) {
+        super.setGrid(grid);
+        releaseGrid(this.newCells);
+        this.newCells = grid.like(this.getCols(), this.getRows());
+        this.newCellsFromRow = 0;
+        this.newCellsToRow = 0;
+        this.changes = new ChangeTracker(this.getCols(), this.getRows());
+        
+        // Apuruudukot varataan uudelleen samaan muistiin kuin uusi ruudukko.
+        releaseGrid(this.checkpoint);
+        releaseGrid(this.previousCheckpoint);
+        releaseGrid(this.replayCells);
+        releaseGrid(this.replayNewCells);
+        this.checkpoint = null;
+        this.previousCheckpoint = null;
+        this.replayCells = null;
+        this.replayNewCells = null;
+        this.restartHistory();
+    }
+    
+    /**
+        * Asettaa areenan, josta soluruudukot jatkossa varataan, ja siirtää nykyisen tilan sinne (ks. CAState.setArena()). Myös tilapäismuistiin säilötty tila siirretään, ja seuraavan tilan ruudukko, tarkistuspisteet ja uudelleenlaskennan ruudukot varataan uudelleen uuteen muistiin, joten vanhan areenan saa sulkea heti tämän jälkeen.
+        *
+        * @param arena Areena, tai null jos ruudukot varataan Javan keosta.
+        */
+    public void setArena(GridArena arena) {
+        super.setArena(arena);
+        if(this.storedCells != null) {
+            BitGrid stored = this.newGrid(this.storedCells.getCols(), this.storedCells.getRows());
+            if(!this.storedCells.isReleased()) {
+                stored.copyFrom(this.storedCells);
+                this.storedCells.release();
+            }
+            this.storedCells = stored;
+        }
+    }
+    
+    /**
+        * Vapauttaa ruudukon, mikäli se on olemassa.
+        *
+        * @param grid Ruudukko tai null.
+        */
+    private static void releaseGrid(BitGrid grid) {
+        if(grid != null) {
+            grid.release();
+        }
+    }
+    
+    /**
+        * Asettaa annetussa sijainnissa olevan solun tilan. Palauttaa true, jos solu on olemassa, muutoin false.
         *
         * @param col Solun sarakekoordinaatti.
         * @param row Solun rivikoordinaatti.
         * @param live Solun uusi tila.
+        *
+        * @return Kertoo, onnistuiko solun tilan asettaminen.
         */
-    private void setNewCell(int col, int row, boolean live) {
-        this.newCells[col][row] = live;
+    public boolean setCell(int col, int row, boolean live) {
+        this.changes.invalidate();
+        this.restartHistory();
+        return super.setCell(col, row, live);
     }
     
     /**
-        * Korvaa automaatin soluruudukon annetulla taulukolla. Mikäli annettu taulukko on liian pieni, se suurennetaan minimiulottuvuuksien kokoiseksi.
-        * 
-        * @param cells Uusi soluruudukko.
+        * Asettaa soluautomaatille uudet säännöt ja kokoaa niistä uudet tilasiirtymäytimet.
+        *
+        * @param rules Uudet säännöt.
+        */
+    public void setRules(CARules rules) {
+        super.setRules(rules);
+        this.buildKernels();
+        this.changes.invalidate();
+        this.restartHistory();
+    }
+    
+    /**
+        * Palauttaa koko ruudukon tilasiirtymän laskevan ytimen tyypin.
+        *
+        * @return Ytimen tyyppi.
+        */
+    public KernelType getKernelType() {
+        return this.kernelType;
+    }
+    
+    /**
+        * Asettaa koko ruudukon tilasiirtymän laskevan ytimen tyypin. Ydin ei vaikuta tilasiirtymien tulokseen. Mikäli ydin ei ole käytettävissä (ks. isKernelAvailable()), tilasiirtymät lasketaan SWAR-ytimellä.
+        *
+        * @param type Ytimen tyyppi.
+        */
+    public void setKernelType(KernelType type) {
+        this.kernelType = type;
+        this.buildKernels();
+    }
+    
+    /**
+        * Kertoo, voidaanko annettua ydintyyppiä käyttää tässä ajoympäristössä. Mikäli ydin ei ole käytettävissä, sen sijaan käytetään SWAR-ydintä.
+        *
+        * @param type Ytimen tyyppi.
+        *
+        * @return Totuusarvo.
+        */
+    public static boolean isKernelAvailable(KernelType type) {
+        if(type == KernelType.VECTOR) {
+            // VectorKernel-luokkaan ei saa viitata ennen tarkistusta, koska sen alustus vaatii moduulin.
+            return ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
+        } else if(type == KernelType.COMPILED) {
+            return RuleCompiler.isAvailable();
+        }
+        return true;
+    }
+    
+    /**
+        * Kokoaa tilasiirtymäytimet nykyisistä säännöistä.
+        */
+    private void buildKernels() {
+        this.wordKernel = new SwarKernel(this.rules);
+        if(this.kernelType == KernelType.LOOKUP) {
+            this.kernel = new LookupKernel(this.rules);
+        } else if(this.kernelType == KernelType.RUNNING_SUM) {
+            this.kernel = new RunningSumKernel(this.rules);
+        } else if(this.kernelType == KernelType.VECTOR && isKernelAvailable(KernelType.VECTOR)) {
+            this.kernel = new VectorKernel(this.rules);
+        } else if(this.kernelType == KernelType.COMPILED) {
+            RowKernel compiled = RuleCompiler.compile(this.rules);
+            this.kernel = compiled != null ? compiled : this.wordKernel;
+        } else {
+            this.kernel = this.wordKernel;
+        }
+    }
+    
+    /**
+        * Palauttaa automaatin tilasiirtymien laskentatavan.
+        *
+        * @return Laskentatapa.
+        */
+    public EvolutionMode getEvolutionMode() {
+        return this.evolutionMode;
+    }
+    
+    /**
+        * Asettaa automaatin tilasiirtymien laskentatavan. Laskentatapa ei vaikuta tilasiirtymien tulokseen.
+        *
+        * @param mode Uusi laskentatapa.
         */
-    public void setCells(boolean[][] cells) {
-        super.setCells(cells);
-        this.newCells = Grid.getDeadGrid(this.getCols(), this.getRows());
+    public void setEvolutionMode(EvolutionMode mode) {
+        this.evolutionMode = mode;
+        this.changes.invalidate();
+    }
+    
+    /**
+        * Palauttaa tilasiirtymien laskemiseen käytettävien säikeiden lukumäärän.
+        *
+        * @return Rinnakkaisuus.
+        */
+    public int getParallelism() {
+        return this.parallelism;
+    }
+    
+    /**
+        * Asettaa tilasiirtymien laskemiseen käytettävien säikeiden lukumäärän. Kun arvo on suurempi kuin 1, ruudukko jaetaan riviväleihin, jotka lasketaan rinnakkain. Mikäli annettu arvo on pienempi kuin minimiarvo, käytetään minimiarvoa.
+        *
+        * @param parallelism Uusi rinnakkaisuus.
+        */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(MIN_PARALLELISM, parallelism);
+    }
+    
+    /**
+        * Palauttaa rinnakkain laskettavan rivivälin vähimmäiskoon.
+        *
+        * @return Rivien lukumäärä.
+        */
+    public int getMinBandRows() {
+        return this.minBandRows;
+    }
+    
+    /**
+        * Asettaa rinnakkain laskettavan rivivälin vähimmäiskoon. Pienillä ruudukoilla tehtävien jakamisen kustannus ylittää rinnakkaisuudesta saatavan hyödyn. Mikäli annettu arvo on pienempi kuin minimiarvo, käytetään minimiarvoa.
+        *
+        * @param rows Rivien lukumäärä.
+        */
+    public void setMinBandRows(int rows) {
+        this.minBandRows = Math.max(MIN_BAND_ROWS, rows);
+    }
+    
+    /**
+        * Asettaa säiepoolin, jossa rinnakkaiset tilasiirtymät lasketaan. Jos pooli on null, automaatti luo tarvittaessa oman poolinsa, jonka koko on getParallelism().
+        *
+        * @param executor Säiepooli tai null.
+        */
+    public void setExecutor(ForkJoinPool executor) {
+        this.executor = executor;
+    }
+    
+    /**
+        * Palauttaa säiepoolin, jossa tilasiirtymä lasketaan, tai null jos laskenta tapahtuu kutsuvassa säikeessä.
+        *
+        * @return Säiepooli tai null.
+        */
+    private ForkJoinPool getPool() {
+        if(this.parallelism <= MIN_PARALLELISM) {
+            return null;
+        } else if(this.executor != null) {
+            return this.executor;
+        }
+        if(this.ownPool == null || this.ownPool.getParallelism() != this.parallelism) {
+            if(this.ownPool != null) {
+                this.ownPool.shutdown();
+            }
+            this.ownPool = new ForkJoinPool(this.parallelism);
+        }
+        return this.ownPool;
     }
     
     /**
         * Säilöö automaatin nykyisen tilan tilapäismuistiin.
         */
     public void storePattern() {
-        this.storedCells = this.copyCells();
+        if(this.storedCells != null) {
+            this.storedCells.release();
+        }
+        this.storedCells = this.copyGrid();
     }
     
     /**
         * Alustaa automaatin tilan tilapäismuistissa säilötyn tilan mukaiseksi.
         */
     public void recallPattern() {
-        this.cells = Grid.copy(this.storedCells);
+        BitGrid grid = this.newGrid(this.storedCells.getCols(), this.storedCells.getRows());
+        grid.copyFrom(this.storedCells);
+        this.setGrid(grid);
     }
     
     /**
         * Palauttaa automaatin historian pituuden.
         */
     public int getHistoryLength() {
-        return this.history.length;
+        return this.historyHashes.length;
     }
     
     /**
-        * Asettaa automaatin historian pituuden ja tyhjentää historiataulukon. Mikäli annettu pituus on pienempi kuin historian minimipituus, käytetään minimipituutta.
+        * Asettaa automaatin historian pituuden ja tyhjentää historian. Historian pituus on pisin rytmi, jonka isPeriodic() tunnistaa. Mikäli annettu pituus on pienempi kuin historian minimipituus, käytetään minimipituutta.
         *
         * @param len Historian uusi pituus.
         */
     public void setHistoryLength(int len) {
         len = Math.max(MIN_HISTORY_LENGTH, len);
-        this.history = new boolean[len][this.getCols()][this.getRows()];
+        this.historyHashes = new long[len];
+        this.restartHistory();
     }
     
     /**
-        * Tyhjentää historiataulukon.
+        * Tyhjentää historian.
         */
     public void resetHistory() {
-        this.setHistoryLength(this.history.length);
+        this.restartHistory();
+    }
+    
+    /**
+        * Aloittaa historian alusta nykyisestä tilasta. Historia on aloitettava alusta aina, kun tilaa tai sääntöjä muutetaan tilasiirtymien ulkopuolella, koska historian tiloja lasketaan tarvittaessa uudelleen tarkistuspisteistä.
+        */
+    private void restartHistory() {
+        this.restartHashHistory();
+        if(this.motion != null) {
+            this.motion.reset();
+        }
+    }
+    
+    /**
+        * Aloittaa tilahistorian alusta koskematta liikeanalyysin historiaan.
+        */
+    private void restartHashHistory() {
+        this.generation = 0;
+        this.checkpointGeneration = -1;
+        this.cellsHashValid = false;
+        this.periodicLag = 0;
     }
     
     /**
         * Suorittaa yhden sääntöjen mukaisen tilasiirtymän ja säilöö vanhan tilan historiaan.
         */
     public void evolve() {
-        int cols = this.getCols();
-        int rows = this.getRows();
-        
-        for(int col = 0; col < cols; col++) {
-            for(int row = 0; row < rows; row++) {
-                int aliveNeighbors = this.countAliveNeighbors(col, row);
-                boolean live;
-                if(this.getCell(col, row)) {
-                    live = this.rules.getSurvivalRule(aliveNeighbors);
-                } else {
-                    live = this.rules.getBirthRule(aliveNeighbors);
-                }
-                this.setNewCell(col, row, live);
-            }
-        }
+        boolean sparse = this.computeNext();
+        this.analyzeMotion();
         this.updateHistory();
+        this.updateHash(sparse);
         this.swapArrays();
     }
     
     /**
-        * Laskee solun elossa olevien naapureiden lukumäärän. Reunoilla sijaitseville soluille tämä määrittyy automaatin reunakäyttäytymisen mukaan.
+        * Suorittaa annetun määrän tilasiirtymiä yhdellä kutsulla. Vastaa saman määrän evolve()-kutsuja, mutta historiaan säilötään vain viimeiset getHistoryLength() tilaa, joten välivaiheista ei tehdä kopioita.
         *
-        * @param centerCol Solun sarakekoordinaatti.
-        * @param centerRow Solun rivikoordinaatti.
+        * @param n Tilasiirtymien lukumäärä.
         *
-        * @return Elävien naapurisolujen lukumäärä.
+        * @return Suoritettujen tilasiirtymien lukumäärä, eli n.
         */
-    private int countAliveNeighbors(int centerCol, int centerRow) {
-        int aliveCount = 0;
-        for(int col = centerCol - 1; col <= centerCol + 1; col++) {
-            for(int row = centerRow - 1; row <= centerRow + 1; row++) {
-                boolean atCenter = col == centerCol && row == centerRow;
-                if(!atCenter && this.getCell(col, row)) {
-                    aliveCount++;
+    public int evolve(int n) {
+        return this.evolve(n, false);
+    }
+    
+    /**
+        * Suorittaa enintään annetun määrän tilasiirtymiä yhdellä kutsulla ja lopettaa halutessa heti, kun isPeriodic() havaitsee rytmin. Rytmin tunnistaminen vaatii nykyisen tilan säilömistä historiaan jokaisen tilasiirtymän jälkeen; muutoin historiaan säilötään vain viimeiset getHistoryLength() tilaa.
+        *
+        * @param n Tilasiirtymien enimmäismäärä.
+        * @param stopWhenPeriodic Lopetetaanko, kun rytmi havaitaan.
+        *
+        * @return Suoritettujen tilasiirtymien lukumäärä.
+        */
+    public int evolve(int n, boolean stopWhenPeriodic) {
+        int len = this.historyHashes.length;
+        for(int gen = 1; gen <= n; gen++) {
+            boolean sparse = this.computeNext();
+            this.analyzeMotion();
+            if(stopWhenPeriodic || n - gen < len) {
+                if(!stopWhenPeriodic && n - gen == len - 1 && gen > 1) {
+                    // Välivaiheita ei säilötty, joten historia alkaa viimeisistä tiloista.
+                    this.restartHashHistory();
                 }
+                this.updateHistory();
+                this.updateHash(sparse);
+            } else {
+                this.cellsHashValid = false;
+            }
+            this.swapArrays();
+            if(stopWhenPeriodic && this.isPeriodic()) {
+                return gen;
+            }
+        }
+        return Math.max(0, n);
+    }
+    
+    /**
+        * Laskee nykyisen tilan seuraajan seuraavan tilan ruudukkoon valitun laskentatavan mukaan.
+        *
+        * @return Kertoo, laskettiinko vain muuttuneiden sanojen naapurustot.
+        */
+    private boolean computeNext() {
+        if(this.evolutionMode == EvolutionMode.ACTIVE && this.changes.isSparse()) {
+            this.changes.evolveChanged(this.wordKernel, this.cells, this.newCells);
+            this.stats.validate(this.cells, false);
+            this.changes.updateStats(this.cells, this.newCells, this.stats, this.nextStats);
+            return true;
+        } else {
+            this.sweepLiveRows();
+            if(this.evolutionMode == EvolutionMode.ACTIVE) {
+                this.changes.collectChanges(this.cells, this.newCells);
+            }
+            return false;
+        }
+    }
+    
+    /**
+        * Päivittää liikeanalyysin seuraavaan tilaan, mikäli liikettä analysoidaan. ACTIVE-laskentatavassa analyysi käy läpi vain muuttuneet sanat, muutoin se vertaa tiloja koko ruudukolta.
+        */
+    private void analyzeMotion() {
+        if(this.motionWindow == 0) {
+            return;
+        }
+        boolean wrap = this.rules.getEdgeBehavior() == CARules.EdgeBehavior.WRAP;
+        if(this.motion == null || !this.motion.fits(this.getCols(), this.getRows(), wrap, this.motionWindow)) {
+            this.motion = new MotionAnalyzer(this.getCols(), this.getRows(), wrap, this.motionWindow);
+        }
+        this.motion.advance(this.cells, this.newCells, this.evolutionMode == EvolutionMode.ACTIVE ? this.changes : null);
+    }
+    
+    /**
+        * Laskee seuraavan tilan koko ruudukolle ja kokoaa samalla seuraavan tilan tilastot. Mikäli säännöt eivät synnytä soluja tyhjästä (ei syntymäsääntöä nollalle naapurille eikä ALIVE-reunoja), lasketaan vain elävien solujen rajaavan suorakulmion rivit yhden rivin marginaalilla, ja muut rivit tyhjennetään. WRAP-reunoilla rivejä ohitetaan vain, kun marginaali ei ylitä ruudukon ylä- tai alareunaa.
+        */
+    private void sweepLiveRows() {
+        int rows = this.getRows();
+        int from = 0;
+        int to = rows;
+        CARules.EdgeBehavior eb = this.rules.getEdgeBehavior();
+        if(!this.rules.getBirthRule(0) && eb != CARules.EdgeBehavior.ALIVE) {
+            this.stats.validate(this.cells, true);
+            if(this.stats.isEmpty()) {
+                to = 0;
+            } else if(eb == CARules.EdgeBehavior.DEAD || (this.stats.minRow > 0 && this.stats.maxRow < rows - 1)) {
+                from = Math.max(0, this.stats.minRow - 1);
+                to = Math.min(rows, this.stats.maxRow + 2);
             }
         }
-        return aliveCount;
+        
+        clearRows(this.newCells, this.newCellsFromRow, Math.min(this.newCellsToRow, from));
+        clearRows(this.newCells, Math.max(this.newCellsFromRow, to), this.newCellsToRow);
+        this.nextStats.reset();
+        ForkJoinPool pool = this.getPool();
+        if(pool == null) {
+            this.kernel.evolve(this.cells, this.newCells, from, to, this.nextStats);
+        } else if(from < to) {
+            ParallelSweep.evolve(pool, this.kernel, this.cells, this.newCells, from, to, this.minBandRows, this.nextStats);
+        }
     }
     
     /**
-        * Säilöö automaatin nykyisen tilan historiaan. Mikäli historia on täynnä, vanhin säilötty tila poistetaan.
+        * Tyhjentää ruudukon annetut rivit.
+        *
+        * @param grid Ruudukko.
+        * @param fromRow Ensimmäinen tyhjennettävä rivi.
+        * @param toRow Viimeistä tyhjennettävää riviä seuraava rivi.
+        */
+    private static void clearRows(BitGrid grid, int fromRow, int toRow) {
+        for(int row = fromRow; row < toRow; row++) {
+            for(int k = 0; k < grid.getWordsPerRow(); k++) {
+                grid.setWord(row, k, 0L);
+            }
+        }
+    }
+    
+    /**
+        * Laskee koko ruudukon seuraavan tilan, rinnakkain mikäli rinnakkaisuus on suurempi kuin 1.
+        *
+        * @param src Nykyinen tila.
+        * @param dst Seuraava tila.
+        */
+    private void sweep(BitGrid src, BitGrid dst) {
+        ForkJoinPool pool = this.getPool();
+        if(pool == null) {
+            this.kernel.evolve(src, dst);
+        } else {
+            ParallelSweep.evolve(pool, this.kernel, src, dst, 0, src.getRows(), this.minBandRows, new GridStats());
+        }
+    }
+    
+    /**
+        * Säilöö automaatin nykyisen tilan tiivisteen historiaan. Tilasta otetaan täsmällinen kopio vain tarkistuspisteissä, joita tarvitaan kerrallaan kaksi historian pituudesta riippumatta.
         */
     private void updateHistory() {
-        boolean[][] prev = this.copyCells();
-        for(int i = 0; i < this.history.length; i++) {
-            boolean[][] cur = this.history[i];
-            this.history[i] = prev;
-            prev = cur;
+        int len = this.historyHashes.length;
+        if(len == 0) {
+            return;
+        }
+        this.historyHashes[(int) (this.generation % len)] = this.getCellsHash();
+        if(this.generation % this.checkpointInterval() == 0) {
+            BitGrid oldest = this.previousCheckpoint;
+            this.previousCheckpoint = this.checkpoint;
+            if(oldest != null && oldest.getCols() == this.getCols() && oldest.getRows() == this.getRows()) {
+                oldest.copyFrom(this.cells);
+                this.checkpoint = oldest;
+            } else {
+                this.checkpoint = this.copyGrid();
+            }
+            this.checkpointGeneration = this.generation;
         }
+        this.generation++;
     }
     
     /**
-        * Kertoo, onko automaatissa havaittavissa toistuva rytmi. Jos automaatin nykyinen tila löytyy historasta, on rytmi olemassa.
+        * Päivittää tiivisteen vastaamaan seuraavaa tilaa. Mikäli vain muuttuneiden sanojen naapurustot laskettiin, tiiviste päivitetään muuttuneiden sanojen osalta, muutoin se lasketaan koko ruudukosta.
+        *
+        * @param sparse Kertoo, laskettiinko vain muuttuneiden sanojen naapurustot.
+        */
+    private void updateHash(boolean sparse) {
+        if(this.historyHashes.length == 0) {
+            this.cellsHashValid = false;
+        } else if(sparse && this.cellsHashValid) {
+            this.cellsHash ^= this.changes.hashDelta(this.cells, this.newCells);
+        } else {
+            this.cellsHash = this.newCells.stateHash();
+            this.cellsHashValid = true;
+        }
+    }
+    
+    /**
+        * Palauttaa nykyisen tilan tiivisteen ja laskee sen tarvittaessa.
+        *
+        * @return Tiiviste.
+        */
+    private long getCellsHash() {
+        if(!this.cellsHashValid) {
+            this.cellsHash = this.cells.stateHash();
+            this.cellsHashValid = true;
+        }
+        return this.cellsHash;
+    }
+    
+    /**
+        * Palauttaa tarkistuspisteiden välin sukupolvina. Väli on vähintään historian pituus, jolloin jokainen historian tila on viimeisimmässä tai sitä edeltävässä tarkistuspisteessä tai niiden jälkeen.
+        *
+        * @return Tarkistuspisteiden väli.
+        */
+    private int checkpointInterval() {
+        return Math.max(MIN_CHECKPOINT_INTERVAL, this.historyHashes.length);
+    }
+    
+    /**
+        * Kertoo, onko automaatissa havaittavissa toistuva rytmi. Jos automaatin nykyinen tila löytyy historiasta, on rytmi olemassa. Historian paikat, joihin ei vielä ole säilötty tilaa, vastaavat kuollutta ruudukkoa.
+        *
+        * Tilaa verrataan ensin historian tiivisteisiin. Tiivisteen täsmätessä historian tila lasketaan uudelleen lähimmästä tarkistuspisteestä ja sitä verrataan nykyiseen tilaan täsmällisesti, joten tiivisteiden yhteentörmäykset eivät aiheuta vääriä havaintoja.
         *
         * @return Totuusarvo, joka kertoo havaittiinko rytmi.
         */
     public boolean isPeriodic() {
-        for(boolean[][] state : this.history) {
-            if(Grid.equal(state, this.cells)) {
+        int len = this.historyHashes.length;
+        if(len == 0) {
+            return false;
+        }
+        if(this.periodicLag > 0) {
+            return true;
+        }
+        long hash = this.getCellsHash();
+        for(int lag = 1; lag <= len; lag++) {
+            if(lag > this.generation) {
+                return hash == 0L && this.cells.isEmpty();
+            }
+            if(this.historyHashes[(int) ((this.generation - lag) % len)] == hash && this.matchesHistory(lag)) {
+                this.periodicLag = lag;
                 return true;
             }
         }
         return false;
     }
     
+    /**
+        * Palauttaa havaitun rytmin jakson eli lyhimmän viiveen, jolla nykyinen tila löytyy historiasta. Tyhjän ruudukon jakso on 1, vaikka historiaa ei vielä olisi.
+        *
+        * @return Jakso sukupolvina, tai 0 jos rytmiä ei havaittu (ks. isPeriodic()).
+        */
+    public int getPeriod() {
+        if(!this.isPeriodic()) {
+            return 0;
+        }
+        return this.periodicLag > 0 ? this.periodicLag : 1;
+    }
+    
+    /**
+        * Palauttaa liikeanalyysin historian pituuden eli pisimmän jakson, jonka getMotion() tunnistaa.
+        *
+        * @return Historian pituus, tai 0 jos liikettä ei analysoida.
+        */
+    public int getMotionWindow() {
+        return this.motionWindow;
+    }
+    
+    /**
+        * Asettaa liikeanalyysin historian pituuden ja tyhjentää sen. Analyysin kustannus sukupolvea kohden ei riipu historian pituudesta, joten sen voi pitää käytössä pitkissäkin ajoissa. Mikäli annettu pituus on pienempi kuin minimipituus, käytetään minimipituutta.
+        *
+        * @param len Historian pituus, tai 0 jos liikettä ei analysoida.
+        */
+    public void setMotionWindow(int len) {
+        this.motionWindow = Math.max(MIN_MOTION_WINDOW, len);
+        this.motion = null;
+    }
+    
+    /**
+        * Palauttaa nykyisen tilan liikkeen: lyhimmän jakson, jonka jälkeen tila toistuu joko paikallaan tai siirtyneenä, sekä siirtymän. Toisin kuin isPeriodic(), tunnistaa myös avaruusalukset, kuten gliderit. Liike tunnistetaan vain, kun liikeanalyysi on käytössä (ks. setMotionWindow()), ja se perustuu tiivisteisiin (ks. MotionAnalyzer).
+        *
+        * @return Liike, tai null jos nykyinen tila ei toistu liikeanalyysin historiassa.
+        */
+    public Motion getMotion() {
+        return this.motion != null ? this.motion.getMotion() : null;
+    }
+    
+    /**
+        * Vertaa nykyistä tilaa täsmällisesti annetun viiveen päässä historiassa olevaan tilaan laskemalla historian tilan uudelleen lähimmästä sitä edeltävästä tarkistuspisteestä.
+        *
+        * @param lag Viive sukupolvina, enintään historian pituus.
+        *
+        * @return Kertoo, ovatko tilat samat.
+        */
+    private boolean matchesHistory(int lag) {
+        long target = this.generation - lag;
+        BitGrid base = this.checkpoint;
+        long baseGeneration = this.checkpointGeneration;
+        if(baseGeneration > target) {
+            base = this.previousCheckpoint;
+            baseGeneration -= this.checkpointInterval();
+        }
+        if(baseGeneration == target) {
+            return base.equals(this.cells);
+        }
+        
+        if(this.replayCells == null || this.replayCells.getCols() != this.getCols() || this.replayCells.getRows() != this.getRows()) {
+            this.replayCells = this.cells.like(this.getCols(), this.getRows());
+            this.replayNewCells = this.cells.like(this.getCols(), this.getRows());
+        }
+        this.replayCells.copyFrom(base);
+        for(long gen = baseGeneration; gen < target; gen++) {
+            this.sweep(this.replayCells, this.replayNewCells);
+            BitGrid temp = this.replayCells;
+            this.replayCells = this.replayNewCells;
+            this.replayNewCells = temp;
+        }
+        return this.replayCells.equals(this.cells);
+    }
+    
     /**
         * Vaihtaa automaatin nykyisen ja seuraavan tilan paikkoja keskenään. Tulos on, että entinen seuraava tila siirtyy nykyiseksi tilaksi ja entistä nykyistä tilaa voidaan muokata kun halutaan määrittää uusi seuraava tila.
         */
     private void swapArrays() {
-        boolean[][] tempNew = this.newCells;
+        BitGrid tempNew = this.newCells;
         this.newCells = this.cells;
         this.cells = tempNew;
+        
+        GridStats tempStats = this.nextStats;
+        this.nextStats = this.stats;
+        this.stats = tempStats;
+        
+        // Entisen nykyisen tilan elävät solut ovat sen rajaavan suorakulmion riveillä.
+        if(!this.nextStats.hasBounds()) {
+            this.newCellsFromRow = 0;
+            this.newCellsToRow = this.getRows();
+        } else if(this.nextStats.isEmpty()) {
+            this.newCellsFromRow = 0;
+            this.newCellsToRow = 0;
+        } else {
+            this.newCellsFromRow = this.nextStats.minRow;
+            this.newCellsToRow = this.nextStats.maxRow + 1;
+        }
     }
     
     /**
-        * Luo uuden soluautomaatin, jonka CA-spesifiset ominaisuudet (historian pituus) kopioidaan tältä soluautomaatilta, mutta tila ja säännöt kopioidaan annetulta CAState-oliolta.
+        * Luo uuden soluautomaatin, jonka CA-spesifiset ominaisuudet (historian pituus, liikeanalyysin historian pituus, laskentatapa, ydin, rinnakkaisuusasetukset ja areena) kopioidaan tältä soluautomaatilta, mutta tila ja säännöt kopioidaan annetulta CAState-oliolta.
         *
         * @param state Soluautomaattitila.
         *
@@ -190,8 +850,17 @@ public class CA extends CAState {
     public CA deriveNewCA(CAState state) {
         CA newGame = new CA();
         newGame.setRules(state.getRules());
-        newGame.setCells(state.cells);
+        newGame.arena = this.arena;
+        BitGrid grid = newGame.newGrid(state.getCols(), state.getRows());
+        grid.copyFrom(state.cells);
+        newGame.setGrid(grid);
         newGame.setHistoryLength(this.getHistoryLength());
+        newGame.setEvolutionMode(this.evolutionMode);
+        newGame.setParallelism(this.parallelism);
+        newGame.setMinBandRows(this.minBandRows);
+        newGame.setExecutor(this.executor);
+        newGame.setKernelType(this.kernelType);
+        newGame.setMotionWindow(this.motionWindow);
         return newGame;
     }
 }
\ No newline at end of file
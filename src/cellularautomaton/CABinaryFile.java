@@ -0,0 +1,700 @@
+package cellularautomaton;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.zip.*;
+
+import utils.*;
+
+/**
+    * Soluruudukkotiloja binäärimuotoon kirjoittava ja siitä lukeva työkaluluokka. Binäärimuoto esittää saman tilan kuin CAFile-tekstimuoto, mutta tiheätkin ruudukot vievät enintään noin yhden bitin solua kohden, ja pakkaamaton tiedosto voidaan ladata muistikuvattuna kopioimalla rivit suoraan ruudukkoon.
+    *
+    * Kaikki luvut ovat little-endian-järjestyksessä. Tiedosto alkaa 20 tavun otsakkeella:
+    *
+    * <pre>
+    * tavut 0-3   tunniste "CELB"
+    * tavu 4      muodon versio (1)
+    * tavu 5      liput; bitti 0 = sisältö on deflate-pakattu
+    * tavu 6      reunakäyttäytyminen: 0 = dead, 1 = alive, 2 = wrap
+    * tavu 7      varattu (0)
+    * tavut 8-11  sarakkeiden lukumäärä
+    * tavut 12-15 rivien lukumäärä
+    * tavut 16-17 syntymäsäännöt bittimaskina, bitti n = syntymä n naapurilla
+    * tavut 18-19 eloonjäämissäännöt bittimaskina
+    * </pre>
+    *
+    * Otsaketta seuraa sisältö, jossa kukin rivi alkaa koodaustavalla, ja joka on deflate-lipun ollessa asetettu pakattu kokonaisuudessaan:
+    *
+    * <pre>
+    * 0 = tyhjä rivi
+    * 1 = bittipakattu rivi: rivin 64-bittiset sanat samassa muodossa kuin BitGrid, eli sarake 64k+i on sanan k bitti i
+    * 2 = ajopituuskoodattu rivi: ajojen lukumäärä ja ajojen pituudet vuorotellen kuolleesta alkaen, kukin LEB128-muuttuvapituisena lukuna; rivin lopun kuollut ajo jätetään pois
+    * </pre>
+    *
+    * Kirjoittaessa kullekin riville valitaan lyhyempi koodaustapa, joten harvat rivit vievät muutaman tavun ja tiheät rivit eivät koskaan enempää kuin bittipakattuina.
+    */
+abstract public class CABinaryFile {
+    /**
+        * Binäärimuotoisen tiedoston tunnistettu tiedostopääte.
+        */
+    public static final String FILE_EXTENSION = "cellb";
+
+    /**
+        * Tiedoston alun tunniste "CELB" little-endian-lukuna.
+        */
+    private static final int MAGIC = 'C' | 'E' << 8 | 'L' << 16 | 'B' << 24;
+
+    /**
+        * Kirjoitettava ja uusin luettavissa oleva muodon versio.
+        */
+    private static final int VERSION = 1;
+
+    /**
+        * Lippu, joka ilmaisee sisällön olevan deflate-pakattu.
+        */
+    private static final int FLAG_DEFLATE = 1;
+
+    /**
+        * Otsakkeen koko tavuina.
+        */
+    private static final int HEADER_SIZE = 20;
+
+    /**
+        * Rivien koodaustavat.
+        */
+    private static final int ROW_EMPTY = 0, ROW_PACKED = 1, ROW_RUNS = 2;
+
+    /**
+        * Virtojen puskurien koko tavuina.
+        */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+        * Reunakäyttäytymiset koodiensa järjestyksessä.
+        */
+    private static final CARules.EdgeBehavior[] EDGE_BEHAVIORS = {CARules.EdgeBehavior.DEAD, CARules.EdgeBehavior.ALIVE, CARules.EdgeBehavior.WRAP};
+
+    /**
+        * Lukee CAState-olion tavupuskurista. Pakkaamattoman sisällön bittipakatut rivit kopioidaan puskurista suoraan ruudukkoon, joten esimerkiksi muistikuvatun tiedoston lataaminen ei juuri vaadi jäsentämistä.
+        *
+        * @param buffer Tavupuskuri, jonka sijainti on tiedoston alussa. Puskurin tavujärjestys muutetaan little-endianiksi.
+        *
+        * @return CAState-olio jos puskurin sisältö on validi, muutoin null.
+        */
+    public static CAState read(ByteBuffer buffer) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if(buffer.remaining() < HEADER_SIZE) {
+            return null;
+        }
+        ByteBuffer header = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        header.limit(HEADER_SIZE);
+        buffer.position(buffer.position() + HEADER_SIZE);
+        Inflater inflater = null;
+        try {
+            Source source;
+            if((header.get(5) & FLAG_DEFLATE) != 0) {
+                inflater = new Inflater();
+                source = new StreamSource(new InflaterInputStream(new ByteBufferInputStream(buffer), inflater, BUFFER_SIZE));
+            } else {
+                source = new BufferSource(buffer);
+            }
+            CAState state = read(header, source);
+            // Pakatun sisällön perässä ei saa olla ylimääräisiä tavuja.
+            return inflater == null || (inflater.getRemaining() == 0 && !buffer.hasRemaining()) ? state : null;
+        } catch(IOException e) {
+            return null;
+        } finally {
+            if(inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+        * Lukee CAState-olion tavuvirrasta. Virtaa ei suljeta.
+        *
+        * @param stream Tavuvirta.
+        *
+        * @return CAState-olio jos virran sisältö on validi, muutoin null. Myös kesken loppuva tai virheellisesti pakattu sisältö tulkitaan epäkelvoksi.
+        *
+        * @exception IOException Jos virran lukeminen epäonnistui.
+        */
+    public static CAState read(InputStream stream) throws IOException {
+        byte[] bytes = new byte[HEADER_SIZE];
+        int n = 0;
+        while(n < HEADER_SIZE) {
+            int count = stream.read(bytes, n, HEADER_SIZE - n);
+            if(count < 0) {
+                return null;
+            }
+            n += count;
+        }
+        ByteBuffer header = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        Inflater inflater = null;
+        try {
+            InputStream body;
+            if((header.get(5) & FLAG_DEFLATE) != 0) {
+                inflater = new Inflater();
+                body = new InflaterInputStream(stream, inflater, BUFFER_SIZE);
+            } else {
+                body = new BufferedInputStream(stream, BUFFER_SIZE);
+            }
+            CAState state = read(header, new StreamSource(body));
+            return inflater == null || (inflater.getRemaining() == 0 && stream.read() == -1) ? state : null;
+        } catch(ZipException e) {
+            return null;
+        } catch(EOFException e) {
+            // Pakattu sisältö katkesi kesken.
+            return null;
+        } finally {
+            if(inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+        * Lukee CAState-olion tiedostosta kuvaamalla sen muistiin (ks. read(ByteBuffer)).
+        *
+        * @param file Tiedosto.
+        *
+        * @return CAState-olio jos tiedoston sisältö on validi, muutoin null.
+        *
+        * @exception FileNotFoundException Jos tiedoston avaaminen epäonnistui.
+        * @exception IOException Jos tiedoston lukeminen epäonnistui.
+        */
+    public static CAState read(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+        * Kertoo, alkaako tiedosto binäärimuodon tunnisteella. Tekstimuotoinen tiedosto alkaa aina numerolla, joten muodot voidaan erottaa toisistaan sisällön perusteella.
+        *
+        * @param file Tiedosto.
+        *
+        * @return Totuusarvo.
+        *
+        * @exception IOException Jos tiedoston lukeminen epäonnistui.
+        */
+    public static boolean isBinary(File file) throws IOException {
+        InputStream stream = new FileInputStream(file);
+        try {
+            int magic = 0;
+            for(int i = 0; i < 4; i++) {
+                int b = stream.read();
+                if(b < 0) {
+                    return false;
+                }
+                magic |= b << (8 * i);
+            }
+            return magic == MAGIC;
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+        * Jäsentää otsakkeen ja lukee sisällön rivi kerrallaan suoraan tilan ruudukkoon.
+        *
+        * @param header Otsake.
+        * @param source Sisältö.
+        *
+        * @return CAState-olio jos sisältö on validi, muutoin null.
+        *
+        * @exception IOException Jos sisällön lukeminen epäonnistui.
+        */
+    private static CAState read(ByteBuffer header, Source source) throws IOException {
+        int flags = header.get(5) & 0xFF;
+        int edge = header.get(6) & 0xFF;
+        int cols = header.getInt(8);
+        int rows = header.getInt(12);
+        int birth = header.getShort(16) & 0xFFFF;
+        int survival = header.getShort(18) & 0xFFFF;
+        int ruleMask = (1 << CARules.NEIGHBOR_COUNT) - 1;
+        if(header.getInt(0) != MAGIC || header.get(4) != VERSION || (flags & ~FLAG_DEFLATE) != 0 || edge >= EDGE_BEHAVIORS.length
+            || header.get(7) != 0 || cols < CAState.MIN_DIMENSION || rows < CAState.MIN_DIMENSION
+            || (birth & ~ruleMask) != 0 || (survival & ~ruleMask) != 0 || !source.hasRows(rows)) {
+            return null;
+        }
+
+        CARules rules = CARules.fromKey(birth | survival << CARules.NEIGHBOR_COUNT);
+        rules.setEdgeBehavior(EDGE_BEHAVIORS[edge]);
+        CAState state = new CAState();
+        state.setRules(rules);
+        state.setDimensions(cols, rows);
+        BitGrid grid = state.cells;
+        int wordsPerRow = grid.getWordsPerRow();
+        long[] words = new long[wordsPerRow];
+        long lastMask = BitGrid.lastWordMask(cols);
+        for(int row = 0; row < rows; row++) {
+            int tag = source.read();
+            if(tag == ROW_PACKED) {
+                if(!source.readWords(words, wordsPerRow) || (words[wordsPerRow - 1] & ~lastMask) != 0) {
+                    return null;
+                }
+                grid.setRow(row, words);
+            } else if(tag == ROW_RUNS) {
+                if(!readRuns(source, words, cols)) {
+                    return null;
+                }
+                grid.setRow(row, words);
+            } else if(tag != ROW_EMPTY) {
+                return null;
+            }
+        }
+        state.stats.invalidate();
+        return source.read() == -1 ? state : null;
+    }
+
+    /**
+        * Lukee ajopituuskoodatun rivin.
+        *
+        * @param source Sisältö.
+        * @param words Rivin sanat, jotka korvataan luetulla rivillä.
+        * @param cols Sarakkeiden lukumäärä.
+        *
+        * @return Kertoo, oliko rivi validi.
+        *
+        * @exception IOException Jos sisällön lukeminen epäonnistui.
+        */
+    private static boolean readRuns(Source source, long[] words, int cols) throws IOException {
+        java.util.Arrays.fill(words, 0L);
+        long count = readVarint(source);
+        if(count < 0 || count > cols + 1L) {
+            return false;
+        }
+        long col = 0;
+        for(long i = 0; i < count; i++) {
+            long length = readVarint(source);
+            if(length < 0 || col + length > cols) {
+                return false;
+            }
+            if((i & 1) != 0) {
+                setRange(words, (int) col, (int) (col + length));
+            }
+            col += length;
+        }
+        return true;
+    }
+
+    /**
+        * Asettaa rivin sarakkeet annetulla välillä eläviksi.
+        *
+        * @param words Rivin sanat.
+        * @param from Ensimmäinen sarake.
+        * @param to Viimeistä seuraava sarake.
+        */
+    static void setRange(long[] words, int from, int to) {
+        while(from < to) {
+            int k = from >>> 6;
+            int end = Math.min(to, (k + 1) * BitGrid.WORD_SIZE);
+            int bits = end - from;
+            long mask = bits == BitGrid.WORD_SIZE ? -1L : ((1L << bits) - 1) << (from & 63);
+            words[k] |= mask;
+            from = end;
+        }
+    }
+
+    /**
+        * Lukee LEB128-muuttuvapituisen ei-negatiivisen luvun.
+        *
+        * @param source Sisältö.
+        *
+        * @return Luku, tai -1 jos sisältö loppui tai luku ei mahdu 63 bittiin.
+        *
+        * @exception IOException Jos sisällön lukeminen epäonnistui.
+        */
+    private static long readVarint(Source source) throws IOException {
+        long value = 0;
+        for(int shift = 0; shift < 63; shift += 7) {
+            int b = source.read();
+            if(b < 0) {
+                return -1;
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+
+    /**
+        * Kirjoittaa soluautomaattitilan binäärimuodossa tavuvirtaan. Virta tyhjennetään mutta sitä ei suljeta.
+        *
+        * @param game Soluautomaattitila.
+        * @param stream Tavuvirta.
+        * @param deflate Pakataanko sisältö.
+        *
+        * @exception IOException Jos virtaan kirjoittaminen epäonnistui.
+        */
+    public static void write(CAState game, OutputStream stream, boolean deflate) throws IOException {
+        int cols = game.getCols();
+        int rows = game.getRows();
+        CARules rules = game.getRules();
+        int key = rules.getKey();
+        int edge = java.util.Arrays.asList(EDGE_BEHAVIORS).indexOf(rules.getEdgeBehavior());
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.put((byte) VERSION);
+        header.put((byte) (deflate ? FLAG_DEFLATE : 0));
+        header.put((byte) edge);
+        header.put((byte) 0);
+        header.putInt(cols);
+        header.putInt(rows);
+        header.putShort((short) (key & ((1 << CARules.NEIGHBOR_COUNT) - 1)));
+        header.putShort((short) (key >>> CARules.NEIGHBOR_COUNT));
+        stream.write(header.array());
+
+        Deflater deflater = deflate ? new Deflater() : null;
+        try {
+            OutputStream body = deflate ? new DeflaterOutputStream(stream, deflater, BUFFER_SIZE) : stream;
+            BufferedOutputStream out = new BufferedOutputStream(body, BUFFER_SIZE);
+            BitGrid grid = game.cells;
+            int wordsPerRow = grid.getWordsPerRow();
+            long[] words = new long[wordsPerRow];
+            byte[] packed = new byte[wordsPerRow * 8];
+            ByteBuffer packedBuffer = ByteBuffer.wrap(packed).order(ByteOrder.LITTLE_ENDIAN);
+            int[] runs = new int[Math.min(cols + 1, packed.length)];
+            for(int row = 0; row < rows; row++) {
+                grid.getRow(row, words);
+                int runCount = runs(words, cols, runs);
+                if(runCount == 0) {
+                    out.write(ROW_EMPTY);
+                } else if(runCount < 0) {
+                    out.write(ROW_PACKED);
+                    packedBuffer.clear();
+                    packedBuffer.asLongBuffer().put(words);
+                    out.write(packed);
+                } else {
+                    out.write(ROW_RUNS);
+                    writeVarint(out, runCount);
+                    for(int i = 0; i < runCount; i++) {
+                        writeVarint(out, runs[i]);
+                    }
+                }
+            }
+            out.flush();
+            if(deflate) {
+                ((DeflaterOutputStream) body).finish();
+            }
+            stream.flush();
+        } finally {
+            if(deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+        * Kirjoittaa soluautomaattitilan binäärimuodossa tiedostoon.
+        *
+        * @param game Soluautomaattitila.
+        * @param file Tiedosto.
+        * @param deflate Pakataanko sisältö.
+        *
+        * @exception FileNotFoundException Jos tiedoston avaaminen kirjoitettavaksi epäonnistui.
+        * @exception IOException Jos tiedostoon kirjoittaminen epäonnistui.
+        */
+    public static void write(CAState game, File file, boolean deflate) throws IOException {
+        OutputStream stream = new FileOutputStream(file);
+        try {
+            write(game, stream, deflate);
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+        * Laskee rivin ajot vuorotellen kuolleesta alkaen ilman rivin lopun kuollutta ajoa. Laskenta keskeytetään, kun ajopituuskoodaus tulisi bittipakkausta pidemmäksi.
+        *
+        * @param words Rivin sanat.
+        * @param cols Sarakkeiden lukumäärä.
+        * @param runs Taulukko, johon ajot kirjoitetaan.
+        *
+        * @return Ajojen lukumäärä (0 tyhjällä rivillä), tai -1 jos rivi kannattaa bittipakata.
+        */
+    private static int runs(long[] words, int cols, int[] runs) {
+        int packedSize = words.length * 8;
+        int size = 0;
+        int count = 0;
+        int col = 0;
+        boolean live = false;
+        while(col < cols) {
+            int next = nextChange(words, col, live, cols);
+            if(next == cols && !live) {
+                break;
+            }
+            if(count == runs.length) {
+                return -1;
+            }
+            runs[count++] = next - col;
+            size += varintSize(next - col);
+            if(varintSize(count) + size >= packedSize) {
+                return -1;
+            }
+            col = next;
+            live = !live;
+        }
+        return count;
+    }
+
+    /**
+        * Etsii ensimmäisen sarakkeen, josta alkaen solun tila eroaa annetusta.
+        *
+        * @param words Rivin sanat.
+        * @param from Sarake, josta haku aloitetaan.
+        * @param live Nykyinen tila.
+        * @param cols Sarakkeiden lukumäärä.
+        *
+        * @return Sarake, tai cols jos tila ei muutu rivin loppuun mennessä.
+        */
+    static int nextChange(long[] words, int from, boolean live, int cols) {
+        long flip = live ? -1L : 0L;
+        int k = from >>> 6;
+        long word = (words[k] ^ flip) & (-1L << (from & 63));
+        while(word == 0L) {
+            k++;
+            if(k == words.length) {
+                return cols;
+            }
+            word = words[k] ^ flip;
+        }
+        return Math.min(cols, k * BitGrid.WORD_SIZE + Long.numberOfTrailingZeros(word));
+    }
+
+    /**
+        * Palauttaa luvun LEB128-esityksen pituuden.
+        *
+        * @param value Ei-negatiivinen luku.
+        *
+        * @return Pituus tavuina.
+        */
+    private static int varintSize(int value) {
+        int size = 1;
+        while(value >= 0x80) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+        * Kirjoittaa ei-negatiivisen luvun LEB128-muuttuvapituisena.
+        *
+        * @param out Tavuvirta.
+        * @param value Luku.
+        *
+        * @exception IOException Jos kirjoittaminen epäonnistui.
+        */
+    private static void writeVarint(OutputStream out, int value) throws IOException {
+        while(value >= 0x80) {
+            out.write(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+        * Sisältö, josta rivit luetaan.
+        */
+    private abstract static class Source {
+        /**
+            * Lukee seuraavan tavun.
+            *
+            * @return Tavu, tai -1 jos sisältö on lopussa.
+            *
+            * @exception IOException Jos lukeminen epäonnistui.
+            */
+        abstract int read() throws IOException;
+
+        /**
+            * Lukee little-endian-järjestyksessä olevia 64-bittisiä sanoja.
+            *
+            * @param dst Taulukko, johon sanat luetaan.
+            * @param n Sanojen lukumäärä.
+            *
+            * @return Kertoo, riittikö sisältö.
+            *
+            * @exception IOException Jos lukeminen epäonnistui.
+            */
+        abstract boolean readWords(long[] dst, int n) throws IOException;
+
+        /**
+            * Kertoo, voiko sisällössä olla annettu määrä rivejä. Kukin rivi vie vähintään yhden tavun, joten tunnetun pituisesta sisällöstä voidaan hylätä liian suuret ulottuvuudet ennen ruudukon varaamista.
+            *
+            * @param rows Rivien lukumäärä.
+            *
+            * @return Totuusarvo.
+            */
+        boolean hasRows(int rows) {
+            return true;
+        }
+    }
+
+    /**
+        * Tavupuskurista suoraan luettava sisältö.
+        */
+    private static final class BufferSource extends Source {
+        /**
+            * Tavupuskuri little-endian-järjestyksessä.
+            */
+        private final ByteBuffer buffer;
+
+        /**
+            * @param buffer Tavupuskuri little-endian-järjestyksessä.
+            */
+        BufferSource(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+            * Lukee seuraavan tavun.
+            *
+            * @return Tavu, tai -1 jos sisältö on lopussa.
+            */
+        int read() {
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+        }
+
+        /**
+            * Lukee little-endian-järjestyksessä olevia 64-bittisiä sanoja.
+            *
+            * @param dst Taulukko, johon sanat luetaan.
+            * @param n Sanojen lukumäärä.
+            *
+            * @return Kertoo, riittikö sisältö.
+            */
+        boolean readWords(long[] dst, int n) {
+            if(this.buffer.remaining() < 8L * n) {
+                return false;
+            }
+            for(int i = 0; i < n; i++) {
+                dst[i] = this.buffer.getLong();
+            }
+            return true;
+        }
+
+        /**
+            * Kertoo, onko puskurissa vähintään yksi tavu kullekin riville.
+            *
+            * @param rows Rivien lukumäärä.
+            *
+            * @return Totuusarvo.
+            */
+        boolean hasRows(int rows) {
+            return this.buffer.remaining() >= rows;
+        }
+    }
+
+    /**
+        * Tavuvirrasta luettava sisältö, esimerkiksi purettava deflate-virta.
+        */
+    private static final class StreamSource extends Source {
+        /**
+            * Tavuvirta.
+            */
+        private final InputStream stream;
+
+        /**
+            * Bittipakatun rivin tavut.
+            */
+        private byte[] bytes = new byte[0];
+
+        /**
+            * @param stream Puskuroitu tavuvirta.
+            */
+        StreamSource(InputStream stream) {
+            this.stream = stream;
+        }
+
+        /**
+            * Lukee seuraavan tavun.
+            *
+            * @return Tavu, tai -1 jos sisältö on lopussa.
+            *
+            * @exception IOException Jos lukeminen epäonnistui.
+            */
+        int read() throws IOException {
+            return this.stream.read();
+        }
+
+        /**
+            * Lukee little-endian-järjestyksessä olevia 64-bittisiä sanoja.
+            *
+            * @param dst Taulukko, johon sanat luetaan.
+            * @param n Sanojen lukumäärä.
+            *
+            * @return Kertoo, riittikö sisältö.
+            *
+            * @exception IOException Jos lukeminen epäonnistui.
+            */
+        boolean readWords(long[] dst, int n) throws IOException {
+            if(this.bytes.length < 8 * n) {
+                this.bytes = new byte[8 * n];
+            }
+            int read = 0;
+            while(read < 8 * n) {
+                int count = this.stream.read(this.bytes, read, 8 * n - read);
+                if(count < 0) {
+                    return false;
+                }
+                read += count;
+            }
+            ByteBuffer.wrap(this.bytes, 0, 8 * n).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(dst, 0, n);
+            return true;
+        }
+    }
+
+    /**
+        * Tavupuskurista lukeva tavuvirta, jonka kautta pakattu sisältö puretaan.
+        */
+    private static final class ByteBufferInputStream extends InputStream {
+        /**
+            * Tavupuskuri.
+            */
+        private final ByteBuffer buffer;
+
+        /**
+            * @param buffer Tavupuskuri.
+            */
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+            * Lukee seuraavan tavun.
+            *
+            * @return Tavu, tai -1 jos puskuri on lopussa.
+            */
+        public int read() {
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+        }
+
+        /**
+            * Lukee tavuja taulukkoon.
+            *
+            * @param dst Taulukko.
+            * @param offset Ensimmäisen tavun paikka taulukossa.
+            * @param length Luettavien tavujen enimmäismäärä.
+            *
+            * @return Luettujen tavujen lukumäärä, tai -1 jos puskuri on lopussa.
+            */
+        public int read(byte[] dst, int offset, int length) {
+            if(!this.buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(length, this.buffer.remaining());
+            this.buffer.get(dst, offset, n);
+            return n;
+        }
+    }
+}
\ No newline at end of file
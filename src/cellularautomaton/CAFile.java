@@ -1,6 +1,8 @@
 package cellularautomaton;
 
-import java.util.regex.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
 
 import utils.*;
 
@@ -12,20 +14,22 @@ import utils.*;
     * Syntaksi (EBNF):
     *
     * <pre>
-    * data = otsake , "|" , sisältö ;
+    * data = otsake , "|" , sisältö , { "|" } ;
     *
-    * otsake = koko , "/" , reunakäyttäytyminen , "/" , syntymäsäännöt , "/" , eloonjäämissäännöt ;
-    * koko = luku , "," , luku ;
+    * otsake = koko , "/" , reunakäyttäytyminen , "/" , syntymäsäännöt , "/" , eloonjäämissäännöt , { "/" } ;
+    * koko = luku , "," , luku , { "," } ;
     * reunakäyttäytyminen = "dead" | "alive" | "wrap" ;
-    * syntymäsäännöt = luku , { "," , luku } ;
-    * eloonjäämissäännöt = luku , { "," , luku } ;
+    * syntymäsäännöt = [ luku , { "," , luku } , { "," } ] ;
+    * eloonjäämissäännöt = [ luku , { "," , luku } , { "," } ] ;
     *
-    * sisältö = eläväsolu , { "/" , eläväsolu } ;
-    * eläväsolu = luku , "," , luku ;
+    * sisältö = [ eläväsolu , { "/" , eläväsolu } ] , { "/" } ;
+    * eläväsolu = luku , "," , luku , { "," } ;
     *
-    * luku = numero , { numero } ;
+    * luku = [ "+" | "-" ] , numero , { numero } ;
     * numero = "0" | "1" | "2" | "3" | "4" | "5" | "6" | "7" | "8" | "9" ;
     * </pre>
+    *
+    * Valinnaiset loppuerottimet ja etumerkit vastaavat aiemman String.split- ja Integer.parseInt-pohjaisen jäsentimen hyväksymiä tiedostoja. Negatiivinen luku on sallittu vain nollana, ja myös muut Unicoden numeromerkit kelpaavat numeroiksi. Sisällön jälkeen sallitaan lisäksi tyhjätilamerkkejä.
     */
 abstract public class CAFile {
     /**
@@ -58,6 +62,36 @@ abstract public class CAFile {
         */
     private static final char SEP_ITEM        = ',';
     
+    /**
+        * Luku- ja jäsennyspuskurin koko merkkeinä.
+        */
+    private static final int BUFFER_SIZE = 1 << 16;
+    
+    /**
+        * Sisältöosan jäsennyksen keskeneräisen luvun arvo, kun lukua ei ole aloitettu.
+        */
+    private static final long NONE = -1;
+    
+    /**
+        * Sisältöosan jäsennyksen keskeneräisen luvun arvo solujen erotusmerkin jälkeen, kun seuraavaa solua ei ole vielä aloitettu.
+        */
+    private static final long AFTER_SEPARATOR = -2;
+    
+    /**
+        * Sisältöosan jäsennyksen keskeneräisen luvun arvo etumerkin jälkeen ennen ensimmäistä numeroa.
+        */
+    private static final long AFTER_SIGN = -3;
+    
+    /**
+        * Sisältöosan jäsennyksen keskeneräisen luvun arvo solun perään kirjoitettujen ylimääräisten pilkkujen jälkeen. Tätä ja seuraavaa pienemmissä tiloissa uutta lukua ei saa aloittaa.
+        */
+    private static final long AFTER_CELL = -4;
+    
+    /**
+        * Sisältöosan jäsennyksen keskeneräisen luvun arvo, kun sisällön lopussa on useampi solujen erotusmerkki peräkkäin tai sisältö alkaa erotusmerkillä.
+        */
+    private static final long TRAILING = -5;
+    
     /**
         * Luo CAState-olion annetusta merkkijonoesityksestä.
         *
@@ -67,102 +101,389 @@ abstract public class CAFile {
         */
     public static CAState read(String str) {
         try {
-            String[] sections = str.split(charToRegex(SEP_SECTION));
-            guard(sections.length == 2);
-            
-            String header = sections[0];
-            CAState state = readHeader(header);
-            guard(state != null);
-            
-            String body = sections[1];
-            state = readBody(body, state);
-            guard(state != null);
-            
-            return state;
-        } catch(Exception e) {
+            return read(new StringReader(str));
+        } catch(IOException e) {
             return null;
         }
     }
     
     /**
-        * Tiedosto-otsakkeen jäsentävä apumetodi.
+        * Lukee CAState-olion merkkivirrasta. Virta jäsennetään yhdellä läpikäynnillä kiinteän kokoisen puskurin kautta, ja solut asetetaan sitä mukaa kuin ne luetaan, joten muistia varataan tilan ruudukon lisäksi vain vakiomäärä riippumatta elävien solujen lukumäärästä. Virtaa ei suljeta.
+        *
+        * @param reader Merkkivirta.
         *
-        * @param header Otsake.
+        * @return CAState-olio jos virran sisältö on validi, muutoin null.
         *
-        * @return CAState-olio, jonka säännöt on asetettu otsakkeen mukaan, mikäli se on validi. Muutoin null.
+        * @exception IOException Jos virran lukeminen epäonnistui.
         */
-    private static CAState readHeader(String header) {
+    public static CAState read(Reader reader) throws IOException {
+        return parse(new Input(reader, null));
+    }
+    
+    /**
+        * Lukee CAState-olion tavupuskurista, jonka tavut tulkitaan ASCII-merkeiksi. Puskurin sijainti siirtyy luetun sisällön loppuun.
+        *
+        * @param buffer Tavupuskuri, esimerkiksi muistikuvattu tiedosto.
+        *
+        * @return CAState-olio jos puskurin sisältö on validi, muutoin null.
+        */
+    public static CAState read(ByteBuffer buffer) {
         try {
-            String[] headerSubsections = header.split(charToRegex(SEP_SUBSECTION));
-            guard(headerSubsections.length == 4);
-
-            String dimsSub = headerSubsections[0];
-            String[] dimsSubItems = dimsSub.split(charToRegex(SEP_ITEM));
-            guard(dimsSubItems.length == 2);
-            int cols = Integer.parseInt(dimsSubItems[0]);
-            guard(cols >= CAState.MIN_DIMENSION);
-            int rows = Integer.parseInt(dimsSubItems[1]);
-            guard(rows >= CAState.MIN_DIMENSION);
-
-            String edgeBehaviorSub = headerSubsections[1];
-            CARules.EdgeBehavior eb = stringToEB(edgeBehaviorSub);
+            return parse(new Input(null, buffer));
+        } catch(IOException e) {
+            return null;
+        }
+    }
+    
+    /**
+        * Lukee CAState-olion tiedostosta. Tiedosto kuvataan muistiin ja jäsennetään suoraan tavuina (ks. read(ByteBuffer)).
+        *
+        * @param file Tiedosto.
+        *
+        * @return CAState-olio jos tiedoston sisältö on validi, muutoin null.
+        *
+        * @exception FileNotFoundException Jos tiedoston avaaminen epäonnistui.
+        * @exception IOException Jos tiedoston lukeminen epäonnistui.
+        */
+    public static CAState read(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+    
+    /**
+        * Jäsentää otsakkeen ja sisältöosan yhdellä läpikäynnillä.
+        *
+        * @param in Syöte.
+        *
+        * @return CAState-olio jos syöte on validi, muutoin null.
+        *
+        * @exception IOException Jos syötteen lukeminen epäonnistui.
+        */
+    private static CAState parse(Input in) throws IOException {
+        try {
+            int cols = readNumber(in);
+            expect(in, SEP_ITEM);
+            int rows = readNumber(in);
+            skip(in, SEP_ITEM);
+            expect(in, SEP_SUBSECTION);
+            guard(cols >= CAState.MIN_DIMENSION && rows >= CAState.MIN_DIMENSION);
+            
+            // Reunakäyttäytymisen merkkijonoista pisin on "alive", joten pidempää ei tarvitse lukea.
+            StringBuilder ebStr = new StringBuilder();
+            int c;
+            while((c = in.read()) != SEP_SUBSECTION) {
+                guard(c != -1 && ebStr.length() < EBSTR_ALIVE.length());
+                ebStr.append((char) c);
+            }
+            CARules.EdgeBehavior eb = stringToEB(ebStr.toString());
             guard(eb != null);
-
+            
             CARules rules = new CARules();
             rules.setEdgeBehavior(eb);
-
-            String birthRulesSub = headerSubsections[2];
-            String[] birthRulesSubItems = birthRulesSub.split(charToRegex(SEP_ITEM));
-            for(String item : birthRulesSubItems) {
-                int neighbors = Integer.parseInt(item);
-                guard(0 <= neighbors && neighbors < CARules.NEIGHBOR_COUNT);
-                rules.setBirthRule(neighbors, true);
-            }
-
-            String survivalRulesSub = headerSubsections[3];
-            String[] survivalRulesSubItems = survivalRulesSub.split(charToRegex(SEP_ITEM));
-            for(String item : survivalRulesSubItems) {
-                int neighbors = Integer.parseInt(item);
-                guard(0 <= neighbors && neighbors < CARules.NEIGHBOR_COUNT);
-                rules.setSurvivalRule(neighbors, true);
-            }
+            readRules(in, rules, true);
+            expect(in, SEP_SUBSECTION);
+            readRules(in, rules, false);
+            skip(in, SEP_SUBSECTION);
+            expect(in, SEP_SECTION);
             
             CAState state = new CAState();
             state.setRules(rules);
-            state.setCells(Grid.getDeadGrid(cols, rows));
+            state.setDimensions(cols, rows);
+            readBody(in, state);
             
             return state;
+        } catch(IOException e) {
+            throw e;
         } catch(Exception e) {
             return null;
         }
     }
     
     /**
-        * Sisältöosan jäsentävä apumetodi.
+        * Jäsentää syntymä- tai eloonjäämissääntöjen pilkuin erotellun luettelon, joka voi olla tyhjä ja jonka lopussa voi olla ylimääräisiä pilkkuja. Luettelon päättävää erotusmerkkiä ei lueta.
         *
-        * @param body Sisältöosa.
-        * @param state Soluautomaattitila.
+        * @param in Syöte.
+        * @param rules Säännöt, joihin luetut säännöt asetetaan.
+        * @param birth Kertoo, ovatko säännöt syntymä- vai eloonjäämissääntöjä.
         *
-        * @return CAState-olio, jonka säännöt on kopioitu annetusta soluautomaattitilasta ja solut on asetettu jäsennetyn sisältömerkkijonon mukaisesti, mikäli se on validi. Muutoin null.
+        * @exception Exception Jos luettelo ei ole validi.
         */
-    private static CAState readBody(String body, CAState state) {
-        try {
-            String[] bodySubsections = body.split(charToRegex(SEP_SUBSECTION));
-            for(String cell : bodySubsections) {
-                String[] items = cell.split(charToRegex(SEP_ITEM));
-                guard(items.length == 2);
-                
-                int col = Integer.parseInt(items[0]);
-                guard(0 <= col && col < state.getCols());
-                int row = Integer.parseInt(items[1]);
-                guard(0 <= row && row < state.getRows());
-                
-                state.setCell(col, row, true);
+    private static void readRules(Input in, CARules rules, boolean birth) throws Exception {
+        if(!isNumberStart(in.peek())) {
+            return;
+        }
+        int commas;
+        do {
+            int neighbors = readNumber(in);
+            guard(neighbors < CARules.NEIGHBOR_COUNT);
+            if(birth) {
+                rules.setBirthRule(neighbors, true);
+            } else {
+                rules.setSurvivalRule(neighbors, true);
             }
-            
-            return state;
-        } catch(Exception e) {
-            return null;
+            commas = skip(in, SEP_ITEM);
+        } while(commas == 1 && isNumberStart(in.peek()));
+    }
+    
+    /**
+        * Jäsentää sisältöosan, joka voi olla tyhjä, ja asettaa luetut solut eläviksi suoraan tilan ruudukkoon. Sisällön jälkeen sallitaan tyhjätilamerkkejä, kuten tiedoston lopun rivinvaihto.
+        *
+        * Sisältö on valtaosa suuresta tiedostosta, joten se jäsennetään suoraan syötteen puskurista tilakoneella, jonka tila (luettu sarake ja keskeneräinen luku) säilyy puskurin täyttöjen yli. Tilastot merkitään vanhentuneiksi vasta lopuksi, jolloin ne lasketaan tarvittaessa kerralla.
+        *
+        * @param in Syöte.
+        * @param state Soluautomaattitila, jonka kaikki solut ovat kuolleita.
+        *
+        * @exception Exception Jos sisältöosa ei ole validi.
+        */
+    private static void readBody(Input in, CAState state) throws Exception {
+        BitGrid grid = state.cells;
+        int cols = state.getCols();
+        int rows = state.getRows();
+        // Negatiivinen arvo tarkoittaa, ettei lukua ole aloitettu; tarkempi tila on jokin vakioista NONE...TRAILING.
+        long col = -1;
+        long value = NONE;
+        boolean negative = false;
+        boolean end = false;
+        while(!end && (in.pos < in.limit || in.fill())) {
+            char[] buffer = in.buffer;
+            int limit = in.limit;
+            int i = in.pos;
+            for(; i < limit; i++) {
+                char c = buffer[i];
+                int d = digit(c);
+                if(d >= 0) {
+                    guard(value > AFTER_CELL);
+                    value = (value < 0 ? 0 : value * 10) + d;
+                    guard(value <= Integer.MAX_VALUE);
+                } else if(c == SEP_ITEM) {
+                    if(col >= 0 && value >= 0) {
+                        // Solun perässä olevat pilkut ohitetaan.
+                        guard(!negative || value == 0);
+                        guard(col < cols && value < rows);
+                        grid.set((int) col, (int) value, true);
+                        col = -1;
+                        value = AFTER_CELL;
+                        negative = false;
+                    } else if(value != AFTER_CELL) {
+                        guard(col < 0 && value >= 0 && (!negative || value == 0));
+                        col = value;
+                        value = NONE;
+                        negative = false;
+                    }
+                } else if(c == SEP_SUBSECTION) {
+                    if(col >= 0) {
+                        guard(value >= 0 && (!negative || value == 0) && col < cols && value < rows);
+                        grid.set((int) col, (int) value, true);
+                        value = AFTER_SEPARATOR;
+                    } else {
+                        // Peräkkäiset tai alkuun kirjoitetut erotusmerkit sallitaan vain sisällön lopussa.
+                        guard(value == AFTER_CELL || value <= AFTER_SEPARATOR || (value == NONE && !negative));
+                        value = value == AFTER_CELL ? AFTER_SEPARATOR : TRAILING;
+                    }
+                    col = -1;
+                    negative = false;
+                } else if((c == '+' || c == '-') && (value == NONE || value == AFTER_SEPARATOR)) {
+                    value = AFTER_SIGN;
+                    negative = c == '-';
+                } else {
+                    end = true;
+                    break;
+                }
+            }
+            in.pos = i;
+        }
+        
+        if(col >= 0 || value >= 0 || value == AFTER_SIGN) {
+            guard(col >= 0 && value >= 0 && (!negative || value == 0) && col < cols && value < rows);
+            grid.set((int) col, (int) value, true);
+        }
+        state.stats.invalidate();
+        
+        skip(in, SEP_SECTION);
+        int c;
+        while((c = in.read()) != -1) {
+            guard(Character.isWhitespace(c));
+        }
+    }
+    
+    /**
+        * Jäsentää luvun, joka mahtuu int-tyyppiin ja jota voi edeltää etumerkki. Negatiivinen etumerkki sallitaan vain nollalle, koska muut negatiiviset luvut eivät kelpaa mihinkään tiedoston kenttään.
+        *
+        * @param in Syöte.
+        *
+        * @return Ei-negatiivinen luku.
+        *
+        * @exception Exception Jos syötteessä ei ole lukua tai luku on liian suuri tai negatiivinen.
+        */
+    private static int readNumber(Input in) throws Exception {
+        int c = in.read();
+        boolean negative = c == '-';
+        if(c == '+' || c == '-') {
+            c = in.read();
+        }
+        long value = digit(c);
+        guard(value >= 0);
+        int d;
+        while((d = digit(in.peek())) >= 0) {
+            in.read();
+            value = value * 10 + d;
+            guard(value <= Integer.MAX_VALUE);
+        }
+        guard(!negative || value == 0);
+        return (int) value;
+    }
+    
+    /**
+        * Palauttaa numeromerkin arvon. Kuten Integer.parseInt, hyväksyy myös muut Unicoden numeromerkit.
+        *
+        * @param c Merkki, tai -1.
+        *
+        * @return Numeron arvo, tai -1 jos merkki ei ole numero.
+        */
+    private static int digit(int c) {
+        if('0' <= c && c <= '9') {
+            return c - '0';
+        }
+        return c >= 0x80 ? Character.digit(c, 10) : -1;
+    }
+    
+    /**
+        * Kertoo, voiko luku alkaa annetulla merkillä.
+        *
+        * @param c Merkki, tai -1.
+        *
+        * @return Totuusarvo.
+        */
+    private static boolean isNumberStart(int c) {
+        return digit(c) >= 0 || c == '+' || c == '-';
+    }
+    
+    /**
+        * Ohittaa peräkkäiset annetut merkit.
+        *
+        * @param in Syöte.
+        * @param skipped Ohitettava merkki.
+        *
+        * @return Ohitettujen merkkien lukumäärä.
+        *
+        * @exception IOException Jos syötteen lukeminen epäonnistui.
+        */
+    private static int skip(Input in, char skipped) throws IOException {
+        int count = 0;
+        while(in.peek() == skipped) {
+            in.read();
+            count++;
+        }
+        return count;
+    }
+    
+    /**
+        * Lukee seuraavan merkin ja varmistaa, että se on odotettu.
+        *
+        * @param in Syöte.
+        * @param expected Odotettu merkki.
+        *
+        * @exception Exception Jos merkki ei ollut odotettu.
+        */
+    private static void expect(Input in, char expected) throws Exception {
+        guard(in.read() == expected);
+    }
+    
+    /**
+        * Merkkivirrasta tai tavupuskurista puskuroiden luettava syöte. Käytössä myös muiden tekstimuotojen jäsentimissä (ks. RLEFile).
+        */
+    static final class Input {
+        /**
+            * Merkkivirta, tai null jos luetaan tavupuskurista.
+            */
+        private final Reader reader;
+        
+        /**
+            * Tavupuskuri, tai null jos luetaan merkkivirrasta.
+            */
+        private final ByteBuffer bytes;
+        
+        /**
+            * Luetut merkit.
+            */
+        final char[] buffer = new char[BUFFER_SIZE];
+        
+        /**
+            * Tavupuskurista kerralla kopioitavat tavut.
+            */
+        private byte[] byteBuffer;
+        
+        /**
+            * Seuraavan merkin sijainti puskurissa ja puskurin merkkien lukumäärä.
+            */
+        int pos = 0, limit = 0;
+        
+        /**
+            * @param reader Merkkivirta, tai null.
+            * @param bytes Tavupuskuri, tai null.
+            */
+        Input(Reader reader, ByteBuffer bytes) {
+            this.reader = reader;
+            this.bytes = bytes;
+        }
+        
+        /**
+            * Lukee seuraavan merkin.
+            *
+            * @return Merkki, tai -1 jos syöte on lopussa.
+            *
+            * @exception IOException Jos merkkivirran lukeminen epäonnistui.
+            */
+        int read() throws IOException {
+            if(this.pos == this.limit && !this.fill()) {
+                return -1;
+            }
+            return this.buffer[this.pos++];
+        }
+        
+        /**
+            * Palauttaa seuraavan merkin lukematta sitä.
+            *
+            * @return Merkki, tai -1 jos syöte on lopussa.
+            *
+            * @exception IOException Jos merkkivirran lukeminen epäonnistui.
+            */
+        int peek() throws IOException {
+            if(this.pos == this.limit && !this.fill()) {
+                return -1;
+            }
+            return this.buffer[this.pos];
+        }
+        
+        /**
+            * Täyttää puskurin seuraavilla merkeillä.
+            *
+            * @return Kertoo, saatiinko merkkejä, eli onko syöte vielä kesken.
+            *
+            * @exception IOException Jos merkkivirran lukeminen epäonnistui.
+            */
+        boolean fill() throws IOException {
+            int n;
+            if(this.reader != null) {
+                n = this.reader.read(this.buffer, 0, this.buffer.length);
+            } else {
+                n = Math.min(this.bytes.remaining(), this.buffer.length);
+                if(this.byteBuffer == null) {
+                    this.byteBuffer = new byte[this.buffer.length];
+                }
+                this.bytes.get(this.byteBuffer, 0, n);
+                for(int i = 0; i < n; i++) {
+                    this.buffer[i] = (char) (this.byteBuffer[i] & 0xFF);
+                }
+            }
+            this.pos = 0;
+            this.limit = Math.max(0, n);
+            return this.limit > 0;
         }
     }
     
@@ -173,7 +494,7 @@ abstract public class CAFile {
         *
         * @exception Exception Ilmaisee, että predikaatti oli epätosi.
         */
-    private static void guard(boolean predicate) throws Exception {
+    static void guard(boolean predicate) throws Exception {
         if(!predicate) {
             throw new Exception();
         }
@@ -187,11 +508,62 @@ abstract public class CAFile {
         * @return Soluautomaattitilaa esittävä merkkijono.
         */
     public static String write(CAState game) {
-        String result = "";
-        result += writeHeader(game.getCols(), game.getRows(), game.getRules());
-        result += SEP_SECTION;
-        result += writeBody(game.copyCells());
-        return result;
+        StringWriter writer = new StringWriter();
+        try {
+            write(game, writer);
+        } catch(IOException e) {
+            // StringWriter ei heitä poikkeuksia.
+            throw new IllegalStateException(e);
+        }
+        return writer.toString();
+    }
+    
+    /**
+        * Kirjoittaa soluautomaattitilan merkkijonoesityksen merkkivirtaan. Esitys kirjoitetaan kiinteän kokoisen puskurin kautta sitä mukaa kuin elävät solut löytyvät, joten koko esitystä ei muodosteta muistiin, ja aika on lineaarinen ruudukon sanojen ja elävien solujen lukumäärään nähden. Virtaa ei suljeta eikä tyhjennetä.
+        *
+        * @param game Soluautomaattitila.
+        * @param writer Merkkivirta.
+        *
+        * @exception IOException Jos virtaan kirjoittaminen epäonnistui.
+        */
+    public static void write(CAState game, Writer writer) throws IOException {
+        Output out = new Output(writer);
+        out.write(writeHeader(game.getCols(), game.getRows(), game.getRules()));
+        out.write(SEP_SECTION);
+        writeBody(game.cells, out);
+        out.flush();
+    }
+    
+    /**
+        * Kirjoittaa soluautomaattitilan merkkijonoesityksen tavuvirtaan ASCII-merkkeinä (ks. write(CAState, Writer)). Virta tyhjennetään mutta sitä ei suljeta.
+        *
+        * @param game Soluautomaattitila.
+        * @param stream Tavuvirta.
+        *
+        * @exception IOException Jos virtaan kirjoittaminen epäonnistui.
+        */
+    public static void write(CAState game, OutputStream stream) throws IOException {
+        Writer writer = new OutputStreamWriter(stream, "US-ASCII");
+        write(game, writer);
+        writer.flush();
+    }
+    
+    /**
+        * Kirjoittaa soluautomaattitilan merkkijonoesityksen tiedostoon (ks. write(CAState, Writer)).
+        *
+        * @param game Soluautomaattitila.
+        * @param file Tiedosto.
+        *
+        * @exception FileNotFoundException Jos tiedoston avaaminen kirjoitettavaksi epäonnistui.
+        * @exception IOException Jos tiedostoon kirjoittaminen epäonnistui.
+        */
+    public static void write(CAState game, File file) throws IOException {
+        OutputStream stream = new FileOutputStream(file);
+        try {
+            write(game, stream);
+        } finally {
+            stream.close();
+        }
     }
     
     /**
@@ -221,19 +593,25 @@ abstract public class CAFile {
         * @return Syntymä- ja eloonjäämissääntöjen merkkijonoesitys.
         */
     private static String lifeRulesToString(CARules rules) {
-        String birth = "";
-        String survival = "";
-        for(int i = 0; i < rules.NEIGHBOR_COUNT; i++) {
-           if(rules.getBirthRule(i)) {
-               birth = append(birth, SEP_ITEM, "" + i);
-           }
-           if(rules.getSurvivalRule(i)) {
-               survival = append(survival, SEP_ITEM, "" + i);
-           }
+        StringBuilder birth = new StringBuilder();
+        StringBuilder survival = new StringBuilder();
+        for(int i = 0; i < CARules.NEIGHBOR_COUNT; i++) {
+            if(rules.getBirthRule(i)) {
+                if(birth.length() > 0) {
+                    birth.append(SEP_ITEM);
+                }
+                birth.append(i);
+            }
+            if(rules.getSurvivalRule(i)) {
+                if(survival.length() > 0) {
+                    survival.append(SEP_ITEM);
+                }
+                survival.append(i);
+            }
         }
-        return birth + SEP_SUBSECTION + survival;
+        return birth.toString() + SEP_SUBSECTION + survival;
     }
-        
+    
     /**
         * Kääntää reunakäyttäytymisen merkkijonoksi.
         *
@@ -273,64 +651,137 @@ abstract public class CAFile {
     }
     
     /**
-        * Luo merkkijonoesityksen soluruudukosta.
+        * Kirjoittaa sisältöosan. Solut kirjoitetaan sarakkeittain ja kunkin sarakkeen sisällä riveittäin kuten aiemmissakin tiedostoissa. Rivijärjestyksessä tallennetusta ruudukosta luetaan kerrallaan 64 sarakkeen kaista, josta otetaan talteen vain nollasta eroavat sanat, joten tyhjät alueet ohitetaan sanoittain.
         *
-        * @param cells Soluruudukko.
+        * @param grid Soluruudukko.
+        * @param out Tuloste.
         *
-        * @return Soluruudukon merkkijonoesitys.
+        * @exception IOException Jos kirjoittaminen epäonnistui.
         */
-    private static String writeBody(boolean[][] cells) {
-        int cols = Grid.getCols(cells);
-        int rows = Grid.getRows(cells);
-        String body = "";
-        
-        for(int col = 0; col < cols; col++) {
+    private static void writeBody(BitGrid grid, Output out) throws IOException {
+        int rows = grid.getRows();
+        long[] words = new long[rows];
+        int[] liveRows = new int[rows];
+        boolean first = true;
+        for(int k = 0; k < grid.getWordsPerRow(); k++) {
+            int count = 0;
+            long columns = 0L;
             for(int row = 0; row < rows; row++) {
-                if(cells[col][row]) {
-                    body = append(body, SEP_SUBSECTION, cellToString(col, row));
+                long word = grid.getWord(row, k);
+                if(word != 0L) {
+                    words[count] = word;
+                    liveRows[count++] = row;
+                    columns |= word;
                 }
             }
+            while(columns != 0L) {
+                int bit = Long.numberOfTrailingZeros(columns);
+                int col = k * BitGrid.WORD_SIZE + bit;
+                for(int i = 0; i < count; i++) {
+                    if((words[i] >>> bit & 1L) != 0) {
+                        if(!first) {
+                            out.write(SEP_SUBSECTION);
+                        }
+                        first = false;
+                        out.writeNumber(col);
+                        out.write(SEP_ITEM);
+                        out.writeNumber(liveRows[i]);
+                    }
+                }
+                columns &= columns - 1;
+            }
         }
-        return body;
     }
     
     /**
-        * Luo merkkijonoesityksen yksittäisestä elävästä solusta.
-        *
-        * @param col Solun sarakekoordinaatti.
-        * @param row Solun rivikoordinaatti.
-        *
-        * @return Solun merkkijonoesitys.
+        * Merkkivirtaan puskuroiden kirjoitettava tuloste. Käytössä myös muiden tekstimuotojen kirjoittimissa (ks. RLEFile).
         */
-    private static String cellToString(int col, int row) {
-        return "" + col + SEP_ITEM + row;
-    }
-    
-    /**
-        * Apumetodi, jolla yhdistetään kaksi merkkijonoa ja asetetaan niiden väliin erotusmerkki.
-        *
-        * @param str Alkuosa.
-        * @param sep Erotusmerkki.
-        * @param item Loppuosa.
-        * 
-        * @return Yhdistetty merkkijono.
-        */
-    private static String append(String str, char sep, String item) {
-        if(!str.equals("")) {
-            str += sep;
+    static final class Output {
+        /**
+            * Suurimman int-luvun numeroiden lukumäärä.
+            */
+        private static final int MAX_DIGITS = 10;
+        
+        /**
+            * Merkkivirta.
+            */
+        private final Writer writer;
+        
+        /**
+            * Kirjoittamista odottavat merkit.
+            */
+        private final char[] buffer = new char[BUFFER_SIZE];
+        
+        /**
+            * Puskurin merkkien lukumäärä.
+            */
+        private int pos = 0;
+        
+        /**
+            * @param writer Merkkivirta.
+            */
+        Output(Writer writer) {
+            this.writer = writer;
+        }
+        
+        /**
+            * Kirjoittaa merkin.
+            *
+            * @param c Merkki.
+            *
+            * @exception IOException Jos kirjoittaminen epäonnistui.
+            */
+        void write(char c) throws IOException {
+            if(this.pos == this.buffer.length) {
+                this.flush();
+            }
+            this.buffer[this.pos++] = c;
+        }
+        
+        /**
+            * Kirjoittaa merkkijonon.
+            *
+            * @param str Merkkijono.
+            *
+            * @exception IOException Jos kirjoittaminen epäonnistui.
+            */
+        void write(String str) throws IOException {
+            for(int i = 0; i < str.length(); i++) {
+                this.write(str.charAt(i));
+            }
+        }
+        
+        /**
+            * Kirjoittaa ei-negatiivisen luvun kymmenjärjestelmässä muodostamatta siitä merkkijonoa.
+            *
+            * @param value Luku.
+            *
+            * @exception IOException Jos kirjoittaminen epäonnistui.
+            */
+        void writeNumber(int value) throws IOException {
+            if(this.buffer.length - this.pos < MAX_DIGITS) {
+                this.flush();
+            }
+            int start = this.pos;
+            do {
+                this.buffer[this.pos++] = (char) ('0' + value % 10);
+                value /= 10;
+            } while(value > 0);
+            for(int i = start, j = this.pos - 1; i < j; i++, j--) {
+                char c = this.buffer[i];
+                this.buffer[i] = this.buffer[j];
+                this.buffer[j] = c;
+            }
+        }
+        
+        /**
+            * Kirjoittaa puskurin merkit merkkivirtaan.
+            *
+            * @exception IOException Jos kirjoittaminen epäonnistui.
+            */
+        void flush() throws IOException {
+            this.writer.write(this.buffer, 0, this.pos);
+            this.pos = 0;
         }
-        str += item;
-        return str;
-    }
-    
-    /**
-        * Apumetodi, joka luo merkkiliteraalia esittävän regex-arvon merkkijonojen split()-metodia varten.
-        *
-        * @param c Merkki.
-        *
-        * @return Regex.
-        */
-    private static String charToRegex(char c) {
-        return Pattern.quote("" + c);
     }
 }
\ No newline at end of file
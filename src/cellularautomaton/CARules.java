@@ -20,6 +20,11 @@ public class CARules implements Cloneable {
         */
     public static final int NEIGHBOR_COUNT = 9;
     
+    /**
+        * Erilaisten syntymä- ja eloonjäämissääntöyhdistelmien lukumäärä, eli sääntötunnisteiden (ks. getKey()) lukumäärä.
+        */
+    public static final int KEY_COUNT = 1 << (2 * NEIGHBOR_COUNT);
+    
     /**
         * Automaatin reunakäyttäytyminen.
         */
@@ -134,4 +139,86 @@ public class CARules implements Cloneable {
         }
         return rules;
     }
+    
+    /**
+        * Palauttaa sääntöjen tunnisteen, jonka bitti n on syntymäsääntö ja bitti NEIGHBOR_COUNT + n eloonjäämissääntö n naapurille. Reunakäyttäytyminen ei sisälly tunnisteeseen.
+        *
+        * @return Tunniste väliltä [0, KEY_COUNT-1].
+        */
+    public int getKey() {
+        int key = 0;
+        for(int n = 0; n < NEIGHBOR_COUNT; n++) {
+            if(this.birthRules[n]) {
+                key |= 1 << n;
+            }
+            if(this.survivalRules[n]) {
+                key |= 1 << (NEIGHBOR_COUNT + n);
+            }
+        }
+        return key;
+    }
+    
+    /**
+        * Luo säännöt tunnisteesta (ks. getKey()). Reunakäyttäytymiseksi asetetaan DEAD.
+        *
+        * @param key Tunniste väliltä [0, KEY_COUNT-1].
+        *
+        * @return Säännöt.
+        */
+    public static CARules fromKey(int key) {
+        CARules rules = new CARules();
+        for(int n = 0; n < NEIGHBOR_COUNT; n++) {
+            rules.birthRules[n] = ((key >>> n) & 1) != 0;
+            rules.survivalRules[n] = ((key >>> (NEIGHBOR_COUNT + n)) & 1) != 0;
+        }
+        return rules;
+    }
+    
+    /**
+        * Luo syntymä- ja eloonjäämissäännöistä B/S-merkkijonon, esimerkiksi Game of Life -säännöille "B3/S23". Reunakäyttäytyminen ei sisälly merkkijonoon.
+        *
+        * @return Sääntömerkkijono.
+        */
+    public String toRuleString() {
+        StringBuilder sb = new StringBuilder("B");
+        for(int n = 0; n < NEIGHBOR_COUNT; n++) {
+            if(this.birthRules[n]) {
+                sb.append(n);
+            }
+        }
+        sb.append("/S");
+        for(int n = 0; n < NEIGHBOR_COUNT; n++) {
+            if(this.survivalRules[n]) {
+                sb.append(n);
+            }
+        }
+        return sb.toString();
+    }
+    
+    /**
+        * Jäsentää B/S-muotoisen sääntömerkkijonon, esimerkiksi "B3/S23" tai "b36/s23". Osien järjestys on vapaa, ja kumpi tahansa osa voi puuttua tai olla tyhjä. Reunakäyttäytymiseksi asetetaan DEAD.
+        *
+        * @param str Sääntömerkkijono.
+        *
+        * @return Säännöt, tai null jos merkkijono ei ole validi.
+        */
+    public static CARules parseRuleString(String str) {
+        CARules rules = new CARules();
+        boolean[] target = null;
+        for(int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if(c == 'B' || c == 'b') {
+                target = rules.birthRules;
+            } else if(c == 'S' || c == 's') {
+                target = rules.survivalRules;
+            } else if(c == '/' && target != null) {
+                target = null;
+            } else if(c >= '0' && c < '0' + NEIGHBOR_COUNT && target != null) {
+                target[c - '0'] = true;
+            } else {
+                return null;
+            }
+        }
+        return rules;
+    }
 }
\ No newline at end of file
@@ -25,15 +25,25 @@ public class CAState {
     private final static int DEFAULT_ROWS   = 32;
     
     /**
-        * Soluruudukkoa esittävä kaksiulotteinen taulukko. Kaksiarvoisen boolean-tyypin käyttäminen rajoittaa solujen mahdolliset tilat kahteen.
+        * Soluruudukko bittitiivistettynä. Yksi bitti solua kohden rajoittaa solujen mahdolliset tilat kahteen.
         */
-    protected boolean[][] cells;
+    protected BitGrid cells;
     
     /**
         * Automaatin säännöt.
         */
     protected CARules rules;
     
+    /**
+        * Areena, josta soluruudukot varataan Javan keon ulkopuolelta, tai null jos ruudukot ovat keossa.
+        */
+    protected GridArena arena;
+    
+    /**
+        * Soluruudukon tilastot, jotka päivitetään solujen muuttuessa.
+        */
+    GridStats stats = new GridStats();
+    
     /**
         * Luo oletuskokoisen, oletussäännöillä varustetun soluautomaattitilan.
         */
@@ -48,7 +58,7 @@ public class CAState {
         * @return Sarakkeiden lukumäärä.
         */
     public int getCols() {
-        return Grid.getCols(this.cells);
+        return this.cells.getCols();
     }
     
     /**
@@ -57,7 +67,7 @@ public class CAState {
         * @return Rivien lukumäärä.
         */
     public int getRows() {
-        return Grid.getRows(this.cells);
+        return this.cells.getRows();
     }
     
     /**
@@ -69,6 +79,49 @@ public class CAState {
         return new Bounds<Cell>(new Cell(0, 0), new Cell(this.getCols() - 1, this.getRows() - 1));
     }
     
+    /**
+        * Palauttaa elävien solujen lukumäärän. Lukumäärä pidetään ajan tasalla solujen muuttuessa, joten ruudukko käydään läpi vain, kun koko ruudukko on korvattu.
+        *
+        * @return Elävien solujen lukumäärä.
+        */
+    public long getPopulation() {
+        this.stats.validate(this.cells, false);
+        return this.stats.population;
+    }
+    
+    /**
+        * Palauttaa elävien solujen rajaavan suorakulmion. Suorakulmio pidetään ajan tasalla solujen muuttuessa; ruudukko käydään läpi vain, kun koko ruudukko on korvattu tai solu on kuollut suorakulmion reunalla.
+        *
+        * @return Vasemman yläkulman ja oikean alakulman elävien solujen koordinaatit, tai null jos eläviä soluja ei ole.
+        */
+    public Bounds<Cell> getLiveBounds() {
+        this.stats.validate(this.cells, true);
+        if(this.stats.isEmpty()) {
+            return null;
+        }
+        return new Bounds<Cell>(new Cell(this.stats.minCol, this.stats.minRow), new Cell(this.stats.maxCol, this.stats.maxRow));
+    }
+    
+    /**
+        * Palauttaa viimeisimmässä tilasiirtymässä syntyneiden solujen lukumäärän. Yksittäisten solujen muokkaamista ei lasketa.
+        *
+        * @return Syntyneiden solujen lukumäärä.
+        */
+    public long getBirths() {
+        this.stats.validate(this.cells, false);
+        return this.stats.births;
+    }
+    
+    /**
+        * Palauttaa viimeisimmässä tilasiirtymässä kuolleiden solujen lukumäärän. Yksittäisten solujen muokkaamista ei lasketa.
+        *
+        * @return Kuolleiden solujen lukumäärä.
+        */
+    public long getDeaths() {
+        this.stats.validate(this.cells, false);
+        return this.stats.deaths;
+    }
+    
     /**
         * Kertoo, onko annetussa sijainnissa oleva solu elossa. Mikäli solu sijaitsee ruudukon ulkopuolella, palautettava arvo määräytyy käytettävien sääntöjen EdgeBehavior-arvon mukaan.
         *
@@ -79,7 +132,7 @@ public class CAState {
     public boolean getCell(int col, int row) {
         boolean cell;
         if(this.cellExists(col, row)) {
-            cell = this.cells[col][row];
+            cell = this.cells.get(col, row);
         } else {
             CARules.EdgeBehavior eb = rules.getEdgeBehavior();
             if(eb == CARules.EdgeBehavior.DEAD) {
@@ -89,7 +142,7 @@ public class CAState {
             } else { // wrap
                 col = Maths.mod(col, this.getCols());
                 row = Maths.mod(row, this.getRows());
-                cell = this.cells[col][row];
+                cell = this.cells.get(col, row);
             }
         }
         return cell;
@@ -106,7 +159,10 @@ public class CAState {
         */
     public boolean setCell(int col, int row, boolean live) {
         if(this.cellExists(col, row)) {
-            this.cells[col][row] = live;
+            if(this.cells.get(col, row) != live) {
+                this.cells.set(col, row, live);
+                this.stats.cellChanged(col, row, live);
+            }
             return true;
         } else {
             return false;
@@ -126,14 +182,74 @@ public class CAState {
             cells = Grid.resize(cells, Math.max(MIN_DIMENSION, cols), Math.max(MIN_DIMENSION, rows));
         }
         
-        this.cells = Grid.copy(cells);
+        BitGrid grid = this.newGrid(Grid.getCols(cells), Grid.getRows(cells));
+        grid.copyFrom(BitGrid.fromCells(cells));
+        this.setGrid(grid);
+    }
+    
+    /**
+        * Korvaa automaatin soluruudukon annetun kokoisella ruudukolla, jonka kaikki solut ovat kuolleita. Toisin kuin setCells(), metodi ei tarvitse boolean[][]-taulukkoa, joten sillä voi luoda myös keon ulkopuolisen ruudukon, joka ei mahtuisi kekoon. Mikäli annettu koko on liian pieni, käytetään minimiulottuvuuksia.
+        *
+        * @param cols Sarakkeiden lukumäärä.
+        * @param rows Rivien lukumäärä.
+        */
+    public void setDimensions(int cols, int rows) {
+        this.setGrid(this.newGrid(Math.max(MIN_DIMENSION, cols), Math.max(MIN_DIMENSION, rows)));
+    }
+    
+    /**
+        * Palauttaa areenan, josta soluruudukot varataan.
+        *
+        * @return Areena, tai null jos ruudukot ovat Javan keossa.
+        */
+    public GridArena getArena() {
+        return this.arena;
+    }
+    
+    /**
+        * Asettaa areenan, josta soluruudukot jatkossa varataan, ja siirtää nykyisen tilan sinne. Areenan sulkeminen vapauttaa automaatin ruudukot, joten automaattia ei saa käyttää areenan sulkemisen jälkeen, ellei sille ensin aseteta uutta areenaa; tällöin tila on kadonnut ja kaikki solut ovat kuolleita.
+        *
+        * @param arena Areena, tai null jos ruudukot varataan Javan keosta.
+        */
+    public void setArena(GridArena arena) {
+        this.arena = arena;
+        BitGrid grid = this.newGrid(this.getCols(), this.getRows());
+        if(!this.cells.isReleased()) {
+            grid.copyFrom(this.cells);
+        }
+        this.setGrid(grid);
+    }
+    
+    /**
+        * Varaa annetun kokoisen tyhjän ruudukon areenasta tai, jos areenaa ei ole, Javan keosta.
+        *
+        * @param cols Sarakkeiden lukumäärä.
+        * @param rows Rivien lukumäärä.
+        *
+        * @return Uusi ruudukko.
+        */
+    protected BitGrid newGrid(int cols, int rows) {
+        return this.arena != null ? this.arena.allocate(cols, rows) : new BitGrid(cols, rows);
+    }
+    
+    /**
+        * Korvaa automaatin soluruudukon annetulla tiivistetyllä ruudukolla. Ruudukkoa ei kopioida, vaan se otetaan sellaisenaan automaatin käyttöön, ja vanha ruudukko vapautetaan. Metodi olettaa ruudukon olevan vähintään minimiulottuvuuksien kokoinen.
+        *
+        * @param grid Uusi soluruudukko.
+        */
+    protected void setGrid(BitGrid grid) {
+        if(this.cells != null && this.cells != grid) {
+            this.cells.release();
+        }
+        this.cells = grid;
+        this.stats.invalidate();
     }
         
     /**
         * Alustaa kaikki solut kuolleiksi.
         */
     public void erase() {
-        this.setCells(Grid.getDeadGrid(this.getCols(), this.getRows()));
+        this.setGrid(this.newGrid(this.getCols(), this.getRows()));
     }
     
     /**
@@ -155,12 +271,12 @@ public class CAState {
     }
     
     /**
-        * Kertoo, onko annetussa sijainnissa solua, eli ovatko koordinaatit rajojen sisällä.
+        * Kertoo, onko annetussa sijainnissa solua, eli ovatko koordinaatit rajojen sisällä. Vertailu tehdään suoraan koordinaateille, koska metodia kutsutaan jokaisella solun luku- ja kirjoituskerralla.
         *
         * @return Solun olemassaolosta kertova totuusarvo.
         */
     private boolean cellExists(int col, int row) {
-        return this.getBoundaries().contains(new Cell(col, row));
+        return 0 <= col && col < this.cells.getCols() && 0 <= row && row < this.cells.getRows();
     }
     
     /**
@@ -169,6 +285,15 @@ public class CAState {
         * @return Solutaulukon kopio.
         */
     public boolean[][] copyCells() {
-        return Grid.copy(this.cells);
+        return this.cells.toCells();
+    }
+    
+    /**
+        * Luo kopion automaatin käyttämästä tiivistetystä soluruudukosta. Kopio varataan samaan muistiin kuin automaatin ruudukko.
+        *
+        * @return Soluruudukon kopio.
+        */
+    public BitGrid copyGrid() {
+        return this.cells.copy();
     }
 }
\ No newline at end of file
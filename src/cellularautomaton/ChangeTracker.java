@@ -0,0 +1,203 @@
+package cellularautomaton;
+
+import utils.*;
+
+/**
+    * Pitää kirjaa edellisessä tilasiirtymässä muuttuneista sanoista (64 solun riviosista) ja laskee seuraavan tilan vain niiden naapurustoista. Sana, jonka naapurustossa mikään ei muuttunut, ei voi itsekään muuttua.
+    *
+    * Luokka olettaa, että seuraavan tilan ruudukko sisältää edellisen sukupolven tilan, joka eroaa nykyisestä vain muuttuneiksi kirjatuissa sanoissa. Kun muuttuneita sanoja on paljon, tai kun tilaa on muokattu tilasiirtymien ulkopuolella, lasketaan koko ruudukko ja muutokset kirjataan vertailemalla.
+    */
+class ChangeTracker {
+    /**
+        * Muuttuneiden sanojen osuuden käänteisluku, jonka ylittyessä lasketaan koko ruudukko. Harvassa laskennassa jokainen muuttunut sana aiheuttaa enimmillään yhdeksän sanan laskemisen, joten raja on tätä tiukempi.
+        */
+    private static final int DENSITY_LIMIT = 16;
+
+    /**
+        * Rivien lukumäärä.
+        */
+    private final int rows;
+
+    /**
+        * Yhden rivin sanojen lukumäärä.
+        */
+    private final int wordsPerRow;
+
+    /**
+        * Edellisessä tilasiirtymässä muuttuneiden sanojen indeksit, tai null jos muutoksia ei ole vielä kirjattu.
+        */
+    private int[] changed;
+
+    /**
+        * Muuttuneiden sanojen lukumäärä.
+        */
+    private int changedCount = 0;
+
+    /**
+        * Laskettavaksi jo merkityt sanat bittikarttana.
+        */
+    private long[] marked;
+
+    /**
+        * Laskettavaksi merkittyjen sanojen indeksit.
+        */
+    private int[] candidates;
+
+    /**
+        * Kertoo, onko seuraavaksi laskettava koko ruudukko.
+        */
+    private boolean fullSweep = true;
+
+    /**
+        * Luo seurannan annetun kokoiselle ruudukolle. Seurannan taulukot varataan vasta, kun muutoksia kirjataan ensimmäisen kerran, joten seurannasta ei aiheudu muistinkulutusta, jos ACTIVE-laskentatapaa ei käytetä.
+        *
+        * @param cols Sarakkeiden lukumäärä.
+        * @param rows Rivien lukumäärä.
+        */
+    ChangeTracker(int cols, int rows) {
+        this.rows = rows;
+        this.wordsPerRow = BitGrid.wordsPerRow(cols);
+    }
+
+    /**
+        * Ilmoittaa, että tilaa on muutettu tilasiirtymien ulkopuolella, jolloin seuraavaksi on laskettava koko ruudukko.
+        */
+    void invalidate() {
+        this.fullSweep = true;
+    }
+
+    /**
+        * Kertoo, voidaanko seuraava tila laskea pelkkien muuttuneiden sanojen naapurustoista. Muussa tapauksessa on laskettava koko ruudukko ja kirjattava muutokset collectChanges()-metodilla.
+        *
+        * @return Totuusarvo.
+        */
+    boolean isSparse() {
+        return !this.fullSweep && this.changedCount <= this.wordsPerRow * this.rows / DENSITY_LIMIT;
+    }
+
+    /**
+        * Kirjaa muuttuneiksi kaikki sanat, joissa ruudukot eroavat toisistaan.
+        *
+        * @param src Nykyinen tila.
+        * @param dst Seuraava tila.
+        */
+    void collectChanges(BitGrid src, BitGrid dst) {
+        if(this.changed == null) {
+            int words = this.wordsPerRow * this.rows;
+            this.changed = new int[words];
+            this.candidates = new int[words];
+            this.marked = new long[BitGrid.wordsPerRow(words)];
+        }
+        this.fullSweep = false;
+        this.changedCount = 0;
+        for(int row = 0; row < this.rows; row++) {
+            for(int k = 0; k < this.wordsPerRow; k++) {
+                if(src.getWord(row, k) != dst.getWord(row, k)) {
+                    this.changed[this.changedCount++] = row * this.wordsPerRow + k;
+                }
+            }
+        }
+    }
+
+    /**
+        * Laskee uudelleen vain muuttuneiden sanojen naapurustot ja kirjaa uudet muutokset.
+        *
+        * @param kernel Tilasiirtymäydin.
+        * @param src Nykyinen tila.
+        * @param dst Edellinen tila, joka korvataan seuraavalla tilalla.
+        */
+    void evolveChanged(SwarKernel kernel, BitGrid src, BitGrid dst) {
+        boolean wrap = kernel.wraps();
+        int candidateCount = 0;
+        for(int i = 0; i < this.changedCount; i++) {
+            int row = this.changed[i] / this.wordsPerRow;
+            int k = this.changed[i] % this.wordsPerRow;
+            for(int r = row - 1; r <= row + 1; r++) {
+                for(int c = k - 1; c <= k + 1; c++) {
+                    int nr = r;
+                    int nc = c;
+                    if(wrap) {
+                        nr = Maths.mod(r, this.rows);
+                        nc = Maths.mod(c, this.wordsPerRow);
+                    } else if(r < 0 || r >= this.rows || c < 0 || c >= this.wordsPerRow) {
+                        continue;
+                    }
+                    int index = nr * this.wordsPerRow + nc;
+                    long bit = 1L << index;
+                    if((this.marked[index >>> 6] & bit) == 0) {
+                        this.marked[index >>> 6] |= bit;
+                        this.candidates[candidateCount++] = index;
+                    }
+                }
+            }
+        }
+
+        this.changedCount = 0;
+        for(int i = 0; i < candidateCount; i++) {
+            int index = this.candidates[i];
+            this.marked[index >>> 6] = 0L;
+            int row = index / this.wordsPerRow;
+            int k = index % this.wordsPerRow;
+            long next = kernel.evolveWord(src, row, k);
+            dst.setWord(row, k, next);
+            if(next != src.getWord(row, k)) {
+                this.changed[this.changedCount++] = index;
+            }
+        }
+    }
+
+    /**
+        * Laskee, miten ruudukon tiiviste (ks. BitGrid.stateHash()) muuttuu edellisessä evolveChanged()-kutsussa. Tuloksen ja nykyisen tilan tiivisteen XOR-summa on seuraavan tilan tiiviste.
+        *
+        * @param src Nykyinen tila.
+        * @param dst Seuraava tila.
+        *
+        * @return Tiivisteen muutos.
+        */
+    long hashDelta(BitGrid src, BitGrid dst) {
+        long delta = 0L;
+        for(int i = 0; i < this.changedCount; i++) {
+            int index = this.changed[i];
+            int row = index / this.wordsPerRow;
+            int k = index % this.wordsPerRow;
+            delta ^= BitGrid.wordHash(src.getWord(row, k), index) ^ BitGrid.wordHash(dst.getWord(row, k), index);
+        }
+        return delta;
+    }
+
+    /**
+        * Päivittää nykyisen tilan tilastoista seuraavan tilan tilastot edellisessä evolveChanged()-kutsussa muuttuneiden sanojen perusteella.
+        *
+        * @param src Nykyinen tila.
+        * @param dst Seuraava tila.
+        * @param current Nykyisen tilan tilastot, joiden tulee olla ajan tasalla.
+        * @param next Tilastot, joihin seuraavan tilan tilastot kirjoitetaan.
+        */
+    void updateStats(BitGrid src, BitGrid dst, GridStats current, GridStats next) {
+        next.copyFrom(current);
+        next.births = 0;
+        next.deaths = 0;
+        for(int i = 0; i < this.changedCount; i++) {
+            int index = this.changed[i];
+            int row = index / this.wordsPerRow;
+            int k = index % this.wordsPerRow;
+            next.wordChanged(row, k, src.getWord(row, k), dst.getWord(row, k));
+        }
+    }
+
+    /**
+        * Päivittää liikeanalyysin tiivisteet edellisessä evolveChanged()- tai collectChanges()-kutsussa muuttuneiden sanojen perusteella.
+        *
+        * @param src Nykyinen tila.
+        * @param dst Seuraava tila.
+        * @param motion Liikeanalyysi.
+        */
+    void updateMotion(BitGrid src, BitGrid dst, MotionAnalyzer motion) {
+        for(int i = 0; i < this.changedCount; i++) {
+            int index = this.changed[i];
+            int row = index / this.wordsPerRow;
+            int k = index % this.wordsPerRow;
+            motion.wordChanged(row, k, src.getWord(row, k), dst.getWord(row, k));
+        }
+    }
+}
\ No newline at end of file
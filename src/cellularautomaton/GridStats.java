@@ -0,0 +1,285 @@
+package cellularautomaton;
+
+import utils.*;
+
+/**
+    * Ruudukon tilastot: elävien solujen lukumäärä, elävien solujen rajaava suorakulmio sekä viimeisimmässä tilasiirtymässä syntyneiden ja kuolleiden solujen lukumäärät. Tilasiirtymäytimet kokoavat tilastot rivi kerrallaan laskennan ohessa, ja yksittäisten solujen muutokset päivitetään niihin suoraan, joten ruudukkoa ei tarvitse käydä läpi tilastoja kysyttäessä.
+    *
+    * Solun kuoleminen rajaavan suorakulmion reunalla voi kutistaa suorakulmiota, mitä ei voi päätellä ilman ruudukon läpikäyntiä. Tällöin suorakulmio merkitään vanhentuneeksi ja lasketaan uudelleen vasta, kun sitä tarvitaan.
+    */
+class GridStats {
+    /**
+        * Elävien solujen lukumäärä.
+        */
+    long population;
+
+    /**
+        * Syntyneiden solujen lukumäärä.
+        */
+    long births;
+
+    /**
+        * Kuolleiden solujen lukumäärä.
+        */
+    long deaths;
+
+    /**
+        * Rajaavan suorakulmion reunat. Tyhjällä ruudukolla minRow > maxRow.
+        */
+    int minCol, minRow, maxCol, maxRow;
+
+    /**
+        * Kertoo, ovatko elävien solujen lukumäärä ja syntyneiden ja kuolleiden lukumäärät ajan tasalla.
+        */
+    private boolean valid = false;
+
+    /**
+        * Kertoo, onko rajaava suorakulmio ajan tasalla.
+        */
+    private boolean boundsValid = false;
+
+    /**
+        * Alustaa tilastot tyhjän ruudukon tilastoiksi, joihin rivejä voi lisätä addEvolvedRow()-metodilla.
+        */
+    void reset() {
+        this.population = 0;
+        this.births = 0;
+        this.deaths = 0;
+        this.clearBounds();
+        this.valid = true;
+    }
+
+    /**
+        * Asettaa rajaavaksi suorakulmioksi tyhjän ruudukon suorakulmion.
+        */
+    private void clearBounds() {
+        this.minCol = Integer.MAX_VALUE;
+        this.minRow = Integer.MAX_VALUE;
+        this.maxCol = -1;
+        this.maxRow = -1;
+        this.boundsValid = true;
+    }
+
+    /**
+        * Merkitsee tilastot vanhentuneiksi, jolloin ne lasketaan uudelleen seuraavalla validate()-kutsulla.
+        */
+    void invalidate() {
+        this.valid = false;
+        this.boundsValid = false;
+    }
+
+    /**
+        * Laskee vanhentuneet tilastot uudelleen käymällä ruudukon läpi. Syntyneiden ja kuolleiden lukumäärät säilyvät, mikäli ne ovat ajan tasalla, ja muutoin ne nollataan.
+        *
+        * @param grid Ruudukko, jonka tilastoja tämä olio kuvaa.
+        * @param bounds Kertoo, tarvitaanko myös rajaava suorakulmio. Mikäli ei, ruudukko käydään läpi vain elävien solujen lukumäärän ollessa vanhentunut.
+        */
+    void validate(BitGrid grid, boolean bounds) {
+        if(this.valid && (this.boundsValid || !bounds)) {
+            return;
+        }
+        long births = this.valid ? this.births : 0;
+        long deaths = this.valid ? this.deaths : 0;
+        this.reset();
+        long[] row = new long[grid.getWordsPerRow()];
+        for(int r = 0; r < grid.getRows(); r++) {
+            grid.getRow(r, row);
+            this.addRow(r, row);
+        }
+        this.births = births;
+        this.deaths = deaths;
+    }
+
+    /**
+        * Kertoo, onko rajaava suorakulmio ajan tasalla.
+        *
+        * @return Totuusarvo.
+        */
+    boolean hasBounds() {
+        return this.boundsValid;
+    }
+
+    /**
+        * Kertoo, onko ruudukossa eläviä soluja. Olettaa tilastojen olevan ajan tasalla.
+        *
+        * @return Totuusarvo.
+        */
+    boolean isEmpty() {
+        return this.population == 0;
+    }
+
+    /**
+        * Lisää tilastoihin rivin elävät solut.
+        *
+        * @param row Rivi.
+        * @param words Rivin sanat.
+        */
+    private void addRow(int row, long[] words) {
+        boolean live = false;
+        for(int k = 0; k < words.length; k++) {
+            if(words[k] != 0L) {
+                this.population += Long.bitCount(words[k]);
+                this.addColumns(k, words[k]);
+                live = true;
+            }
+        }
+        if(live) {
+            this.addRowBounds(row);
+        }
+    }
+
+    /**
+        * Lisää tilastoihin tilasiirtymässä lasketun rivin: rivin seuraavan tilan elävät solut sekä syntyneet ja kuolleet solut.
+        *
+        * @param row Rivi.
+        * @param before Rivin nykyinen tila reunustettuna (sana k on indeksissä k + 1).
+        * @param after Rivin seuraava tila ilman reunuksia.
+        * @param cols Sarakkeiden lukumäärä. Viimeisen sanan itäinen reunussolu jätetään huomiotta.
+        */
+    void addEvolvedRow(int row, long[] before, long[] after, int cols) {
+        boolean live = false;
+        int last = after.length - 1;
+        for(int k = 0; k < after.length; k++) {
+            long next = after[k];
+            long current = k < last ? before[k + 1] : before[k + 1] & BitGrid.lastWordMask(cols);
+            if(next != 0L) {
+                this.population += Long.bitCount(next);
+                this.addColumns(k, next);
+                live = true;
+            }
+            if(next != current) {
+                this.births += Long.bitCount(next & ~current);
+                this.deaths += Long.bitCount(current & ~next);
+            }
+        }
+        if(live) {
+            this.addRowBounds(row);
+        }
+    }
+
+    /**
+        * Laajentaa rajaavan suorakulmion kattamaan sanan elävien solujen sarakkeet.
+        *
+        * @param k Sanan indeksi rivillä.
+        * @param word Nollasta poikkeava sana.
+        */
+    private void addColumns(int k, long word) {
+        int first = (k << 6) + Long.numberOfTrailingZeros(word);
+        int last = (k << 6) + 63 - Long.numberOfLeadingZeros(word);
+        if(first < this.minCol) {
+            this.minCol = first;
+        }
+        if(last > this.maxCol) {
+            this.maxCol = last;
+        }
+    }
+
+    /**
+        * Laajentaa rajaavan suorakulmion kattamaan annetun rivin.
+        *
+        * @param row Rivi.
+        */
+    private void addRowBounds(int row) {
+        if(row < this.minRow) {
+            this.minRow = row;
+        }
+        if(row > this.maxRow) {
+            this.maxRow = row;
+        }
+    }
+
+    /**
+        * Yhdistää toisen, tästä erillisen rivivälin tilastot näihin tilastoihin.
+        *
+        * @param other Toisen rivivälin tilastot.
+        */
+    void merge(GridStats other) {
+        this.population += other.population;
+        this.births += other.births;
+        this.deaths += other.deaths;
+        this.minCol = Math.min(this.minCol, other.minCol);
+        this.minRow = Math.min(this.minRow, other.minRow);
+        this.maxCol = Math.max(this.maxCol, other.maxCol);
+        this.maxRow = Math.max(this.maxRow, other.maxRow);
+    }
+
+    /**
+        * Kopioi toisen olion tilastot tähän olioon.
+        *
+        * @param other Tilastot.
+        */
+    void copyFrom(GridStats other) {
+        this.population = other.population;
+        this.births = other.births;
+        this.deaths = other.deaths;
+        this.minCol = other.minCol;
+        this.minRow = other.minRow;
+        this.maxCol = other.maxCol;
+        this.maxRow = other.maxRow;
+        this.valid = other.valid;
+        this.boundsValid = other.boundsValid;
+    }
+
+    /**
+        * Päivittää tilastot yhden sanan muutoksen mukaan. Syntyneet ja kuolleet solut lisätään laskureihin.
+        *
+        * @param row Sanan rivi.
+        * @param k Sanan indeksi rivillä.
+        * @param before Sanan vanha arvo.
+        * @param after Sanan uusi arvo.
+        */
+    void wordChanged(int row, int k, long before, long after) {
+        if(!this.valid) {
+            return;
+        }
+        long born = after & ~before;
+        long died = before & ~after;
+        this.births += Long.bitCount(born);
+        this.deaths += Long.bitCount(died);
+        this.population += Long.bitCount(born) - Long.bitCount(died);
+        if(this.population == 0) {
+            this.clearBounds();
+            return;
+        }
+        if(!this.boundsValid) {
+            return;
+        }
+        if(died != 0L && (row == this.minRow || row == this.maxRow || onColumn(k, died, this.minCol) || onColumn(k, died, this.maxCol))) {
+            this.boundsValid = false;
+            return;
+        }
+        if(born != 0L) {
+            this.addColumns(k, born);
+            this.addRowBounds(row);
+        }
+    }
+
+    /**
+        * Kertoo, onko sanan bittien joukossa annetun sarakkeen solu.
+        *
+        * @param k Sanan indeksi rivillä.
+        * @param bits Sanan bitit.
+        * @param col Sarake.
+        *
+        * @return Totuusarvo.
+        */
+    private static boolean onColumn(int k, long bits, int col) {
+        return (col >>> 6) == k && ((bits >>> col) & 1L) != 0;
+    }
+
+    /**
+        * Päivittää tilastot yksittäisen solun muutoksen mukaan. Toisin kuin tilasiirtymässä, muutosta ei lasketa syntyneeksi tai kuolleeksi soluksi.
+        *
+        * @param col Solun sarakekoordinaatti.
+        * @param row Solun rivikoordinaatti.
+        * @param live Solun uusi tila.
+        */
+    void cellChanged(int col, int row, boolean live) {
+        long births = this.births;
+        long deaths = this.deaths;
+        long bit = 1L << col;
+        this.wordChanged(row, col >>> 6, live ? 0L : bit, live ? bit : 0L);
+        this.births = births;
+        this.deaths = deaths;
+    }
+}
\ No newline at end of file
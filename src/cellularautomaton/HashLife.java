@@ -0,0 +1,1047 @@
+package cellularautomaton;
+
+import java.util.*;
+
+import utils.*;
+
+/**
+    * Rajaton soluautomaatti, joka on toteutettu HashLife-algoritmilla.
+    *
+    * Tila esitetään nelipuuna, jonka samanlaiset alipuut jaetaan (hash consing): jokaista erilaista solmua on muistissa vain yksi kopio. Kullekin solmulle muistetaan sen keskiosan tila tietyn ajan kuluttua, joten säännöllisten kuvioiden (esim. liukujatykkien) evoluutio voidaan laskea eksponentiaalisin hypyin.
+    *
+    * Taso on rajaton, joten reunakäyttäytymisellä ei ole merkitystä. Sääntöjä, joissa kuollut solu herää henkiin ilman eläviä naapureita (syntymäsääntö 0), ei tueta, koska ne täyttäisivät äärettömän tason.
+    *
+    * Koordinaatisto on keskitetty origoon: juurisolmu, jonka taso on L, kattaa sarakkeet ja rivit välillä [-2^(L-1), 2^(L-1)-1].
+    */
+public class HashLife implements Automaton {
+    /**
+        * Nelipuun solmu. Tason 0 solmut ovat yksittäisiä soluja, tason L solmu kattaa 2^L x 2^L solua.
+        */
+    static final class Node {
+        /**
+            * Neljännekset: luode, koillinen, lounas ja kaakko.
+            */
+        final Node nw, ne, sw, se;
+
+        /**
+            * Solmun taso.
+            */
+        final int level;
+
+        /**
+            * Elävien solujen lukumäärä.
+            */
+        final long population;
+
+        /**
+            * Solmun yksilöivä tunniste, jota käytetään hajautusarvon laskemiseen.
+            */
+        final int id;
+
+        /**
+            * Seuraava solmu samassa hajautustaulun ketjussa.
+            */
+        Node next;
+
+        /**
+            * Muistettu tulos: solmun keskiosa 2^resultStep sukupolven kuluttua.
+            */
+        Node result;
+
+        /**
+            * Sukupolvihypyn kaksikantainen logaritmi, jolle result on laskettu.
+            */
+        int resultStep = -1;
+
+        /**
+            * Roskienkeruun merkintä.
+            */
+        boolean marked;
+
+        /**
+            * Luo lehtisolmun.
+            *
+            * @param id Tunniste.
+            * @param live Solun tila.
+            */
+        Node(int id, boolean live) {
+            this.nw = this.ne = this.sw = this.se = null;
+            this.level = 0;
+            this.population = live ? 1 : 0;
+            this.id = id;
+        }
+
+        /**
+            * Luo sisäsolmun.
+            *
+            * @param id Tunniste.
+            * @param nw Luoteinen neljännes.
+            * @param ne Koillinen neljännes.
+            * @param sw Lounainen neljännes.
+            * @param se Kaakkoinen neljännes.
+            */
+        Node(int id, Node nw, Node ne, Node sw, Node se) {
+            this.nw = nw;
+            this.ne = ne;
+            this.sw = sw;
+            this.se = se;
+            this.level = nw.level + 1;
+            this.population = nw.population + ne.population + sw.population + se.population;
+            this.id = id;
+        }
+    }
+
+    /**
+        * Minimiarvo tilahistorian pituudelle.
+        */
+    private static final int MIN_HISTORY_LENGTH = 0;
+
+    /**
+        * Oletusarvo historian pituudelle.
+        */
+    private static final int DEFAULT_HISTORY_LENGTH = 2;
+
+    /**
+        * Oletusarvo solmuvälimuistin enimmäiskoolle.
+        */
+    private static final int DEFAULT_MAX_NODES = 1 << 20;
+
+    /**
+        * Minimiarvo solmuvälimuistin enimmäiskoolle.
+        */
+    private static final int MIN_MAX_NODES = 1 << 10;
+
+    /**
+        * Suurin sallittu juurisolmun taso. Tätä suuremmat koordinaatit eivät mahtuisi long-tyyppiin.
+        */
+    static final int MAX_LEVEL = 62;
+
+    /**
+        * Kuollut ja elävä lehtisolmu.
+        */
+    static final Node DEAD = new Node(0, false), ALIVE = new Node(1, true);
+
+    /**
+        * Solmujen hajautustaulu ketjutettuina listoina.
+        */
+    private Node[] table = new Node[1 << 10];
+
+    /**
+        * Hajautustaulussa olevien solmujen lukumäärä.
+        */
+    private int size = 0;
+
+    /**
+        * Solmuvälimuistin enimmäiskoko, jonka ylittyminen käynnistää roskienkeruun.
+        */
+    private int maxNodes = DEFAULT_MAX_NODES;
+
+    /**
+        * Solmujen lukumäärä, jonka ylittyminen käynnistää seuraavan roskienkeruun. Raja on enimmäiskoko, ellei pelkkä tilan rakenne vie yli kolmea neljäsosaa siitä; silloin raja on kaksinkertainen säilyneiden solmujen määrään nähden, jottei keruu toistu jokaisessa tilasiirtymän osalaskennassa.
+        */
+    private int gcThreshold = DEFAULT_MAX_NODES;
+
+    /**
+        * Käynnissä olevan tilasiirtymän laskennan keskeneräiset solmut, jotka roskienkeruun on säilytettävä.
+        */
+    private ArrayList<Node> pinned = new ArrayList<Node>();
+
+    /**
+        * Seuraavaksi luotavan solmun tunniste.
+        */
+    private int nextId = 2;
+
+    /**
+        * Kunkin tason tyhjä solmu. Solmut luodaan tarvittaessa.
+        */
+    private Node[] emptyNodes = new Node[MAX_LEVEL + 1];
+
+    /**
+        * Automaatin säännöt.
+        */
+    private CARules rules;
+
+    /**
+        * Säännöistä laskettu taulukko, joka kertoo 4x4-ruudukon keskimmäisten 2x2 solun seuraavan tilan.
+        */
+    private byte[] baseTable;
+
+    /**
+        * Nykyisen tilan juurisolmu.
+        */
+    private Node root;
+
+    /**
+        * Alusta kuluneiden sukupolvien lukumäärä.
+        */
+    private long generation = 0;
+
+    /**
+        * Tilahistoria normalisoituina juurisolmuina.
+        */
+    private Node[] history;
+
+    /**
+        * Luo tyhjän, Game of Life -säännöillä ja oletuspituisella historialla varustetun automaatin.
+        */
+    public HashLife() {
+        this.emptyNodes[0] = DEAD;
+        this.setRules(CARules.newLifeRules());
+        this.root = this.emptyNode(3);
+        this.setHistoryLength(DEFAULT_HISTORY_LENGTH);
+    }
+
+    /**
+        * Palauttaa automaatin käyttämät säännöt. Palautettu sääntöolio on kopio automaatin säännöistä, ei suora viittaus.
+        *
+        * @return Automaatin säännöt.
+        */
+    public CARules getRules() {
+        return this.rules.clone();
+    }
+
+    /**
+        * Asettaa automaatille uudet säännöt ja tyhjentää muistetut tulokset.
+        *
+        * @param rules Uudet säännöt.
+        *
+        * @exception IllegalArgumentException Jos säännöissä on syntymäsääntö nollalle naapurille.
+        */
+    public void setRules(CARules rules) {
+        if(rules.getBirthRule(0)) {
+            throw new IllegalArgumentException("HashLife does not support birth on 0 neighbors");
+        }
+        this.rules = rules.clone();
+        this.baseTable = RuleTable.forRules(this.rules).next4x4();
+        this.clearResults();
+    }
+
+    /**
+        * Palauttaa solmuvälimuistin enimmäiskoon.
+        *
+        * @return Solmujen enimmäismäärä.
+        */
+    public int getMaxNodes() {
+        return this.maxNodes;
+    }
+
+    /**
+        * Asettaa solmuvälimuistin enimmäiskoon. Kun solmuja on tätä enemmän, myös kesken hypyn poistetaan kaikki solmut, joihin nykyisestä tilasta, historiasta, keskeneräisestä laskennasta tai niiden muistetuista tuloksista ei ole viittausta. Jos solmuja on tämän jälkeen yli kolme neljäsosaa enimmäiskoosta, myös muistetut tulokset poistetaan. Raja on pehmeä vain, jos pelkkä tilan ja keskeneräisen laskennan rakenne vie yli kolme neljäsosaa enimmäiskoosta: silloin seuraava keruu tehdään vasta, kun solmujen määrä on kaksinkertaistunut. Mikäli annettu koko on pienempi kuin minimikoko, käytetään minimikokoa.
+        *
+        * @param maxNodes Solmujen enimmäismäärä.
+        */
+    public void setMaxNodes(int maxNodes) {
+        this.maxNodes = Math.max(MIN_MAX_NODES, maxNodes);
+        this.gcThreshold = this.maxNodes;
+    }
+
+    /**
+        * Palauttaa välimuistissa olevien solmujen lukumäärän.
+        *
+        * @return Solmujen lukumäärä.
+        */
+    public int getNodeCount() {
+        return this.size;
+    }
+
+    /**
+        * Palauttaa alusta kuluneiden sukupolvien lukumäärän.
+        *
+        * @return Sukupolvien lukumäärä.
+        */
+    public long getGeneration() {
+        return this.generation;
+    }
+
+    /**
+        * Palauttaa elävien solujen lukumäärän.
+        *
+        * @return Elävien solujen lukumäärä.
+        */
+    public long getPopulation() {
+        return this.root.population;
+    }
+
+    /**
+        * Kertoo, onko annetussa sijainnissa oleva solu elossa.
+        *
+        * @param col Solun sarakekoordinaatti.
+        * @param row Solun rivikoordinaatti.
+        *
+        * @return Solun tila.
+        */
+    public boolean getCell(long col, long row) {
+        if(!this.contains(this.root, col, row)) {
+            return false;
+        }
+        long half = 1L << (this.root.level - 1);
+        return this.getCell(this.root, col + half, row + half);
+    }
+
+    /**
+        * Asettaa annetussa sijainnissa olevan solun tilan. Tasoa laajennetaan tarvittaessa.
+        *
+        * @param col Solun sarakekoordinaatti.
+        * @param row Solun rivikoordinaatti.
+        * @param live Solun uusi tila.
+        */
+    public void setCell(long col, long row, boolean live) {
+        while(!this.contains(this.root, col, row)) {
+            this.root = this.expand(this.root);
+        }
+        long half = 1L << (this.root.level - 1);
+        this.root = this.setCell(this.root, col + half, row + half, live);
+    }
+
+    /**
+        * Alustaa kaikki solut kuolleiksi.
+        */
+    public void erase() {
+        this.root = this.emptyNode(3);
+    }
+
+    /**
+        * Korvaa automaatin tilan annetun soluautomaattitilan soluilla siten, että tilan solu (col, row) sijoitetaan koordinaatteihin (col, row). Myös säännöt kopioidaan.
+        *
+        * @param state Soluautomaattitila.
+        */
+    public void setState(CAState state) {
+        this.setRules(state.getRules());
+        BitGrid grid = state.copyGrid();
+        int level = 1;
+        while((1L << (level - 1)) < Math.max(grid.getCols(), grid.getRows())) {
+            level++;
+        }
+        long half = 1L << (level - 1);
+        this.root = this.build(grid, -half, -half, level);
+        this.generation = 0;
+        this.resetHistory();
+    }
+
+    /**
+        * Luo soluautomaattitilan, jonka solut kopioidaan annetulta alueelta. Tilaan asetetaan automaatin säännöt.
+        *
+        * @param col Alueen vasemman yläkulman sarakekoordinaatti.
+        * @param row Alueen vasemman yläkulman rivikoordinaatti.
+        * @param cols Alueen sarakkeiden lukumäärä.
+        * @param rows Alueen rivien lukumäärä.
+        *
+        * @return Soluautomaattitila.
+        */
+    public CAState toState(long col, long row, int cols, int rows) {
+        BitGrid grid = new BitGrid(Math.max(CAState.MIN_DIMENSION, cols), Math.max(CAState.MIN_DIMENSION, rows));
+        long half = 1L << (this.root.level - 1);
+        this.rasterize(this.root, -half, -half, grid, col, row);
+        CAState state = new CAState();
+        state.setRules(this.rules);
+        state.setGrid(grid);
+        return state;
+    }
+
+    /**
+        * Luo soluautomaattitilan elävät solut rajaavalta alueelta (ks. getBounds()). Tilaan asetetaan automaatin säännöt.
+        *
+        * @return Soluautomaattitila, tai pienin mahdollinen tyhjä tila jos eläviä soluja ei ole.
+        *
+        * @exception IllegalStateException Jos alue on liian suuri soluautomaattitilaksi.
+        */
+    public CAState toState() {
+        long[] bounds = this.getBounds();
+        if(bounds == null) {
+            return this.toState(0, 0, 0, 0);
+        }
+        long cols = bounds[2] - bounds[0] + 1;
+        long rows = bounds[3] - bounds[1] + 1;
+        if(cols > Integer.MAX_VALUE || rows > Integer.MAX_VALUE) {
+            throw new IllegalStateException("HashLife pattern is too large for a grid");
+        }
+        return this.toState(bounds[0], bounds[1], (int) cols, (int) rows);
+    }
+
+    /**
+        * Palauttaa elävät solut rajaavan suorakulmion. Kunkin erilaisen solmun rajat lasketaan vain kerran, joten aika on verrannollinen erilaisten solmujen eikä solujen lukumäärään.
+        *
+        * @return Taulukko {vasen sarake, ylin rivi, oikea sarake, alin rivi}, tai null jos eläviä soluja ei ole.
+        */
+    public long[] getBounds() {
+        long[] bounds = bounds(this.root, new IdentityHashMap<Node, long[]>());
+        if(bounds == null) {
+            return null;
+        }
+        long half = 1L << (this.root.level - 1);
+        return new long[] {bounds[0] - half, bounds[1] - half, bounds[2] - half, bounds[3] - half};
+    }
+
+    /**
+        * Laskee solmun elävät solut rajaavan suorakulmion solmun vasemmasta yläkulmasta mitattuna.
+        *
+        * @param node Solmu.
+        * @param memo Jo lasketut rajat solmuittain.
+        *
+        * @return Taulukko {vasen sarake, ylin rivi, oikea sarake, alin rivi}, tai null jos solmu on tyhjä.
+        */
+    private static long[] bounds(Node node, Map<Node, long[]> memo) {
+        if(node.population == 0) {
+            return null;
+        }
+        if(node.level == 0) {
+            return new long[] {0, 0, 0, 0};
+        }
+        long[] result = memo.get(node);
+        if(result != null) {
+            return result;
+        }
+        long half = 1L << (node.level - 1);
+        Node[] quadrants = {node.nw, node.ne, node.sw, node.se};
+        for(int i = 0; i < quadrants.length; i++) {
+            long[] b = bounds(quadrants[i], memo);
+            if(b == null) {
+                continue;
+            }
+            long dx = (i & 1) * half;
+            long dy = (i >> 1) * half;
+            if(result == null) {
+                result = new long[] {b[0] + dx, b[1] + dy, b[2] + dx, b[3] + dy};
+            } else {
+                result[0] = Math.min(result[0], b[0] + dx);
+                result[1] = Math.min(result[1], b[1] + dy);
+                result[2] = Math.max(result[2], b[2] + dx);
+                result[3] = Math.max(result[3], b[3] + dy);
+            }
+        }
+        memo.put(node, result);
+        return result;
+    }
+
+    /**
+        * Palauttaa nykyisen tilan juurisolmun.
+        *
+        * @return Juurisolmu.
+        */
+    Node getRoot() {
+        return this.root;
+    }
+
+    /**
+        * Korvaa automaatin tilan annetulla juurisolmulla, jonka keskipiste sijoitetaan origoon, ja tyhjentää historian. Solmun on oltava tämän automaatin solmu (ks. join()).
+        *
+        * @param root Juurisolmu, jonka taso on vähintään 1 ja enintään MAX_LEVEL.
+        * @param generation Alusta kuluneiden sukupolvien lukumäärä.
+        */
+    void setRoot(Node root, long generation) {
+        this.root = root;
+        this.generation = generation;
+        this.resetHistory();
+    }
+
+    /**
+        * Suorittaa yhden sääntöjen mukaisen tilasiirtymän ja säilöö vanhan tilan historiaan.
+        */
+    public void evolve() {
+        this.evolve(1);
+    }
+
+    /**
+        * Siirtää automaattia annetun määrän sukupolvia eteenpäin ja säilöö vanhan tilan historiaan. Sukupolvien määrä jaetaan kahden potensseihin, joista kukin lasketaan yhtenä hyppynä, joten kustannus kasvaa säännöllisillä kuvioilla vain logaritmisesti sukupolvien määrän suhteen.
+        *
+        * @param generations Sukupolvien lukumäärä.
+        */
+    public void evolve(long generations) {
+        this.updateHistory();
+        while(generations > 0) {
+            int step = Long.numberOfTrailingZeros(generations);
+            this.step(step);
+            generations &= generations - 1;
+        }
+    }
+
+    /**
+        * Siirtää automaattia 2^step sukupolvea eteenpäin.
+        *
+        * @param step Sukupolvihypyn kaksikantainen logaritmi.
+        */
+    private void step(int step) {
+        this.pinned.clear();
+        if(this.size > this.gcThreshold) {
+            this.collectGarbage();
+        }
+        Node node = this.root;
+        while(node.level < step + 3 || this.center(this.center(node)).population != node.population) {
+            node = this.expand(node);
+        }
+        this.root = this.successor(node, step);
+        this.generation += 1L << step;
+    }
+
+    /**
+        * Palauttaa automaatin historian pituuden.
+        *
+        * @return Historian pituus.
+        */
+    public int getHistoryLength() {
+        return this.history.length;
+    }
+
+    /**
+        * Asettaa automaatin historian pituuden ja tyhjentää historian. Mikäli annettu pituus on pienempi kuin historian minimipituus, käytetään minimipituutta.
+        *
+        * @param len Historian uusi pituus.
+        */
+    public void setHistoryLength(int len) {
+        len = Math.max(MIN_HISTORY_LENGTH, len);
+        this.history = new Node[len];
+        for(int i = 0; i < len; i++) {
+            this.history[i] = this.emptyNode(1);
+        }
+    }
+
+    /**
+        * Tyhjentää historian.
+        */
+    public void resetHistory() {
+        this.setHistoryLength(this.history.length);
+    }
+
+    /**
+        * Säilöö automaatin nykyisen tilan historiaan. Mikäli historia on täynnä, vanhin säilötty tila poistetaan.
+        */
+    private void updateHistory() {
+        Node prev = this.normalize(this.root);
+        for(int i = 0; i < this.history.length; i++) {
+            Node cur = this.history[i];
+            this.history[i] = prev;
+            prev = cur;
+        }
+    }
+
+    /**
+        * Kertoo, onko automaatissa havaittavissa toistuva rytmi. Koska samanlaiset tilat esitetään samalla solmulla, vertailu historiaan on vakioaikainen tilaa kohden.
+        *
+        * @return Totuusarvo, joka kertoo havaittiinko rytmi.
+        */
+    public boolean isPeriodic() {
+        Node current = this.normalize(this.root);
+        for(Node state : this.history) {
+            if(state == current) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+        * Pienentää juurisolmua niin kauan kuin kaikki elävät solut mahtuvat sen keskiosaan. Samanlaiset tilat tuottavat tämän jälkeen saman solmun.
+        *
+        * @param node Juurisolmu.
+        *
+        * @return Pienin samaa tilaa esittävä keskitetty solmu.
+        */
+    private Node normalize(Node node) {
+        while(node.level > 1) {
+            Node center = this.center(node);
+            if(center.population != node.population) {
+                break;
+            }
+            node = center;
+        }
+        return node;
+    }
+
+    /**
+        * Palauttaa solmun, jonka neljännekset ovat annetut. Jos samanlainen solmu on jo olemassa, palautetaan se.
+        *
+        * @param nw Luoteinen neljännes.
+        * @param ne Koillinen neljännes.
+        * @param sw Lounainen neljännes.
+        * @param se Kaakkoinen neljännes.
+        *
+        * @return Solmu.
+        */
+    Node join(Node nw, Node ne, Node sw, Node se) {
+        int hash = hash(nw, ne, sw, se);
+        int index = hash & (this.table.length - 1);
+        for(Node node = this.table[index]; node != null; node = node.next) {
+            if(node.nw == nw && node.ne == ne && node.sw == sw && node.se == se) {
+                return node;
+            }
+        }
+        Node node = new Node(this.nextId++, nw, ne, sw, se);
+        node.next = this.table[index];
+        this.table[index] = node;
+        this.size++;
+        if(this.size > this.table.length) {
+            this.resizeTable();
+        }
+        return node;
+    }
+
+    /**
+        * Laskee solmun hajautusarvon sen neljännesten tunnisteista.
+        *
+        * @return Hajautusarvo.
+        */
+    private static int hash(Node nw, Node ne, Node sw, Node se) {
+        int h = nw.id;
+        h = h * 0x9E3779B1 + ne.id;
+        h = h * 0x9E3779B1 + sw.id;
+        h = h * 0x9E3779B1 + se.id;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+        * Kaksinkertaistaa hajautustaulun koon.
+        */
+    private void resizeTable() {
+        Node[] old = this.table;
+        this.table = new Node[old.length * 2];
+        for(Node chain : old) {
+            while(chain != null) {
+                Node next = chain.next;
+                this.insert(chain);
+                chain = next;
+            }
+        }
+    }
+
+    /**
+        * Lisää olemassa olevan solmun hajautustauluun.
+        *
+        * @param node Solmu.
+        */
+    private void insert(Node node) {
+        int index = hash(node.nw, node.ne, node.sw, node.se) & (this.table.length - 1);
+        node.next = this.table[index];
+        this.table[index] = node;
+    }
+
+    /**
+        * Palauttaa annetun tason tyhjän solmun.
+        *
+        * @param level Taso.
+        *
+        * @return Tyhjä solmu.
+        */
+    Node emptyNode(int level) {
+        if(this.emptyNodes[level] == null) {
+            Node e = this.emptyNode(level - 1);
+            this.emptyNodes[level] = this.join(e, e, e, e);
+        }
+        return this.emptyNodes[level];
+    }
+
+    /**
+        * Luo tasoa suuremman solmun, jonka keskiosa on annettu solmu ja reunat tyhjiä.
+        *
+        * @param node Solmu.
+        *
+        * @return Laajennettu solmu.
+        */
+    Node expand(Node node) {
+        if(node.level >= MAX_LEVEL) {
+            throw new IllegalStateException("HashLife universe is too large");
+        }
+        Node e = this.emptyNode(node.level - 1);
+        return this.join(
+            this.join(e, e, e, node.nw),
+            this.join(e, e, node.ne, e),
+            this.join(e, node.sw, e, e),
+            this.join(node.se, e, e, e)
+        );
+    }
+
+    /**
+        * Palauttaa solmun keskimmäisen neljänneksen kokoisen alueen.
+        *
+        * @param node Solmu, jonka taso on vähintään 2.
+        *
+        * @return Keskiosa.
+        */
+    private Node center(Node node) {
+        return this.join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw);
+    }
+
+    /**
+        * Palauttaa kahden vaakasuunnassa vierekkäisen solmun rajalla olevan solmun.
+        *
+        * @param w Läntinen solmu.
+        * @param e Itäinen solmu.
+        *
+        * @return Rajalla oleva solmu.
+        */
+    private Node centerHorizontal(Node w, Node e) {
+        return this.join(w.ne, e.nw, w.se, e.sw);
+    }
+
+    /**
+        * Palauttaa kahden pystysuunnassa vierekkäisen solmun rajalla olevan solmun.
+        *
+        * @param n Pohjoinen solmu.
+        * @param s Eteläinen solmu.
+        *
+        * @return Rajalla oleva solmu.
+        */
+    private Node centerVertical(Node n, Node s) {
+        return this.join(n.sw, n.se, s.nw, s.ne);
+    }
+
+    /**
+        * Laskee solmun keskiosan tilan 2^step sukupolven kuluttua. Tulos muistetaan solmuun. Jos välimuisti on täynnä, roskienkeruu tehdään ennen laskentaa; tätä varten laskennan keskeneräiset solmut pidetään pinned-listassa.
+        *
+        * @param node Solmu, jonka taso on vähintään step + 2.
+        * @param step Sukupolvihypyn kaksikantainen logaritmi.
+        *
+        * @return Keskiosan tuleva tila.
+        */
+    private Node successor(Node node, int step) {
+        if(node.result != null && node.resultStep == step) {
+            return node.result;
+        }
+
+        int pinnedCount = this.pinned.size();
+        this.pinned.add(node);
+        if(this.size > this.gcThreshold) {
+            this.collectGarbage();
+        }
+
+        Node result;
+        if(node.population == 0) {
+            result = this.emptyNode(node.level - 1);
+        } else if(node.level == 2) {
+            result = this.baseCase(node);
+        } else {
+            Node n00 = node.nw;
+            Node n01 = this.pin(this.centerHorizontal(node.nw, node.ne));
+            Node n02 = node.ne;
+            Node n10 = this.pin(this.centerVertical(node.nw, node.sw));
+            Node n11 = this.pin(this.center(node));
+            Node n12 = this.pin(this.centerVertical(node.ne, node.se));
+            Node n20 = node.sw;
+            Node n21 = this.pin(this.centerHorizontal(node.sw, node.se));
+            Node n22 = node.se;
+
+            int substep;
+            if(step == node.level - 2) {
+                // Täysi hyppy: kaksi puolikkaan mittaista hyppyä peräkkäin.
+                substep = step - 1;
+                n00 = this.pin(this.successor(n00, substep));
+                n01 = this.pin(this.successor(n01, substep));
+                n02 = this.pin(this.successor(n02, substep));
+                n10 = this.pin(this.successor(n10, substep));
+                n11 = this.pin(this.successor(n11, substep));
+                n12 = this.pin(this.successor(n12, substep));
+                n20 = this.pin(this.successor(n20, substep));
+                n21 = this.pin(this.successor(n21, substep));
+                n22 = this.pin(this.successor(n22, substep));
+            } else {
+                // Lyhyempi hyppy: vain jälkimmäinen vaihe vie aikaa.
+                substep = step;
+                n00 = this.pin(this.center(n00));
+                n01 = this.pin(this.center(n01));
+                n02 = this.pin(this.center(n02));
+                n10 = this.pin(this.center(n10));
+                n11 = this.pin(this.center(n11));
+                n12 = this.pin(this.center(n12));
+                n20 = this.pin(this.center(n20));
+                n21 = this.pin(this.center(n21));
+                n22 = this.pin(this.center(n22));
+            }
+
+            Node nw = this.pin(this.successor(this.join(n00, n01, n10, n11), substep));
+            Node ne = this.pin(this.successor(this.join(n01, n02, n11, n12), substep));
+            Node sw = this.pin(this.successor(this.join(n10, n11, n20, n21), substep));
+            Node se = this.successor(this.join(n11, n12, n21, n22), substep);
+            result = this.join(nw, ne, sw, se);
+        }
+
+        node.result = result;
+        node.resultStep = step;
+        while(this.pinned.size() > pinnedCount) {
+            this.pinned.remove(this.pinned.size() - 1);
+        }
+        return result;
+    }
+
+    /**
+        * Lisää solmun käynnissä olevan laskennan säilytettäviin solmuihin.
+        *
+        * @param node Solmu.
+        *
+        * @return Sama solmu.
+        */
+    private Node pin(Node node) {
+        this.pinned.add(node);
+        return node;
+    }
+
+    /**
+        * Laskee tason 2 solmun (4x4 solua) keskimmäisten 2x2 solun seuraavan tilan sääntötaulukosta.
+        *
+        * @param node Tason 2 solmu.
+        *
+        * @return Tason 1 solmu.
+        */
+    private Node baseCase(Node node) {
+        int cells = quadrantBits(node.nw)
+            | (quadrantBits(node.ne) << 2)
+            | (quadrantBits(node.sw) << 8)
+            | (quadrantBits(node.se) << 10);
+        int result = this.baseTable[cells];
+        return this.join(leaf(result & 1), leaf(result & 2), leaf(result & 4), leaf(result & 8));
+    }
+
+    /**
+        * Palauttaa tason 1 solmun solut 4x4-ruudukon bittiasetelmassa (bitti y*4 + x).
+        *
+        * @param node Tason 1 solmu.
+        *
+        * @return Solujen bitit.
+        */
+    private static int quadrantBits(Node node) {
+        return (int) node.nw.population
+            | ((int) node.ne.population << 1)
+            | ((int) node.sw.population << 4)
+            | ((int) node.se.population << 5);
+    }
+
+    /**
+        * Palauttaa lehtisolmun.
+        *
+        * @param bit Nollasta poikkeava, jos solu on elossa.
+        *
+        * @return Lehtisolmu.
+        */
+    private static Node leaf(int bit) {
+        return bit != 0 ? ALIVE : DEAD;
+    }
+
+    /**
+        * Kertoo, mahtuuko koordinaatti juurisolmun kattamalle alueelle.
+        *
+        * @param node Juurisolmu.
+        * @param col Sarakekoordinaatti.
+        * @param row Rivikoordinaatti.
+        *
+        * @return Totuusarvo.
+        */
+    private boolean contains(Node node, long col, long row) {
+        long half = 1L << (node.level - 1);
+        return -half <= col && col < half && -half <= row && row < half;
+    }
+
+    /**
+        * Palauttaa solun tilan solmun sisäisissä koordinaateissa.
+        *
+        * @param node Solmu.
+        * @param col Sarakekoordinaatti välillä [0, 2^taso).
+        * @param row Rivikoordinaatti välillä [0, 2^taso).
+        *
+        * @return Solun tila.
+        */
+    private boolean getCell(Node node, long col, long row) {
+        while(node.level > 0) {
+            if(node.population == 0) {
+                return false;
+            }
+            long half = 1L << (node.level - 1);
+            if(row < half) {
+                node = col < half ? node.nw : node.ne;
+            } else {
+                node = col < half ? node.sw : node.se;
+                row -= half;
+            }
+            if(col >= half) {
+                col -= half;
+            }
+        }
+        return node == ALIVE;
+    }
+
+    /**
+        * Palauttaa solmun, jossa yhden solun tila on muutettu.
+        *
+        * @param node Solmu.
+        * @param col Sarakekoordinaatti välillä [0, 2^taso).
+        * @param row Rivikoordinaatti välillä [0, 2^taso).
+        * @param live Solun uusi tila.
+        *
+        * @return Muutettu solmu.
+        */
+    private Node setCell(Node node, long col, long row, boolean live) {
+        if(node.level == 0) {
+            return live ? ALIVE : DEAD;
+        }
+        long half = 1L << (node.level - 1);
+        long c = col & (half - 1);
+        long r = row & (half - 1);
+        if(row < half) {
+            if(col < half) {
+                return this.join(this.setCell(node.nw, c, r, live), node.ne, node.sw, node.se);
+            } else {
+                return this.join(node.nw, this.setCell(node.ne, c, r, live), node.sw, node.se);
+            }
+        } else {
+            if(col < half) {
+                return this.join(node.nw, node.ne, this.setCell(node.sw, c, r, live), node.se);
+            } else {
+                return this.join(node.nw, node.ne, node.sw, this.setCell(node.se, c, r, live));
+            }
+        }
+    }
+
+    /**
+        * Rakentaa solmun ruudukon alueesta. Ruudukon ulkopuoliset solut ovat kuolleita.
+        *
+        * @param grid Ruudukko.
+        * @param col Alueen vasemman yläkulman sarakekoordinaatti automaatin koordinaatistossa.
+        * @param row Alueen vasemman yläkulman rivikoordinaatti automaatin koordinaatistossa.
+        * @param level Rakennettavan solmun taso.
+        *
+        * @return Solmu.
+        */
+    private Node build(BitGrid grid, long col, long row, int level) {
+        long size = 1L << level;
+        if(col + size <= 0 || row + size <= 0 || col >= grid.getCols() || row >= grid.getRows()) {
+            return this.emptyNode(level);
+        }
+        if(level == 0) {
+            return grid.get((int) col, (int) row) ? ALIVE : DEAD;
+        }
+        long half = size / 2;
+        return this.join(
+            this.build(grid, col, row, level - 1),
+            this.build(grid, col + half, row, level - 1),
+            this.build(grid, col, row + half, level - 1),
+            this.build(grid, col + half, row + half, level - 1)
+        );
+    }
+
+    /**
+        * Kopioi solmun elävät solut ruudukkoon. Tyhjiin alipuihin ei laskeuduta.
+        *
+        * @param node Solmu.
+        * @param col Solmun vasemman yläkulman sarakekoordinaatti.
+        * @param row Solmun vasemman yläkulman rivikoordinaatti.
+        * @param grid Kohderuudukko.
+        * @param gridCol Ruudukon vasemman yläkulman sarakekoordinaatti.
+        * @param gridRow Ruudukon vasemman yläkulman rivikoordinaatti.
+        */
+    private void rasterize(Node node, long col, long row, BitGrid grid, long gridCol, long gridRow) {
+        long size = 1L << node.level;
+        if(node.population == 0
+            || col + size <= gridCol || row + size <= gridRow
+            || col >= gridCol + grid.getCols() || row >= gridRow + grid.getRows()) {
+            return;
+        }
+        if(node.level == 0) {
+            grid.set((int) (col - gridCol), (int) (row - gridRow), true);
+            return;
+        }
+        long half = size / 2;
+        this.rasterize(node.nw, col, row, grid, gridCol, gridRow);
+        this.rasterize(node.ne, col + half, row, grid, gridCol, gridRow);
+        this.rasterize(node.sw, col, row + half, grid, gridCol, gridRow);
+        this.rasterize(node.se, col + half, row + half, grid, gridCol, gridRow);
+    }
+
+    /**
+        * Poistaa muistetut tulokset kaikista solmuista.
+        */
+    private void clearResults() {
+        for(Node chain : this.table) {
+            for(Node node = chain; node != null; node = node.next) {
+                node.result = null;
+                node.resultStep = -1;
+            }
+        }
+    }
+
+    /**
+        * Poistaa hajautustaulusta tarpeettomat solmut ja asettaa seuraavan keruun rajan. Jos muistettujen tulosten säilyttäminen jättää solmuja yli kolme neljäsosaa enimmäiskoosta, kerätään uudelleen tuloksia säilyttämättä.
+        */
+    private void collectGarbage() {
+        int limit = this.maxNodes / 4 * 3;
+        this.sweep(true);
+        if(this.size > limit) {
+            this.sweep(false);
+        }
+        this.gcThreshold = this.size > limit ? (int) Math.min(Integer.MAX_VALUE, 2L * this.size) : this.maxNodes;
+    }
+
+    /**
+        * Poistaa hajautustaulusta solmut, joihin nykyisestä tilasta, historiasta, tyhjistä solmuista, keskeneräisestä laskennasta tai halutessa näistä saavutettavien solmujen muistetuista tuloksista ei ole viittausta. Säilyneiden solmujen tulokset säilytetään, jos tulossolmukin säilyy; muuten tulos tyhjennetään. Tulosten tuloksia ei seurata, jottei koko välimuisti jää eloon.
+        *
+        * @param keepResults Kertoo, säilytetäänkö saavutettavien solmujen muistetut tulokset.
+        */
+    private void sweep(boolean keepResults) {
+        ArrayList<Node> reachable = new ArrayList<Node>();
+        this.mark(this.root, reachable);
+        for(Node node : this.history) {
+            this.mark(node, reachable);
+        }
+        for(Node node : this.emptyNodes) {
+            if(node != null) {
+                this.mark(node, reachable);
+            }
+        }
+        for(Node node : this.pinned) {
+            this.mark(node, reachable);
+        }
+        if(keepResults) {
+            for(Node node : reachable) {
+                if(node.result != null) {
+                    this.mark(node.result, null);
+                }
+            }
+        }
+
+        Node[] old = this.table;
+        int capacity = 1 << 10;
+        while(capacity < this.size / 2) {
+            capacity *= 2;
+        }
+        this.table = new Node[capacity];
+        this.size = 0;
+        for(Node chain : old) {
+            while(chain != null) {
+                Node next = chain.next;
+                if(chain.marked) {
+                    if(chain.result != null && (!keepResults || chain.result.level > 0 && !chain.result.marked)) {
+                        chain.result = null;
+                        chain.resultStep = -1;
+                    }
+                    this.insert(chain);
+                    this.size++;
+                }
+                chain = next;
+            }
+        }
+        for(Node chain : this.table) {
+            for(Node node = chain; node != null; node = node.next) {
+                node.marked = false;
+            }
+        }
+        while(this.size > this.table.length) {
+            this.resizeTable();
+        }
+    }
+
+    /**
+        * Merkitsee solmun ja sen jälkeläiset säilytettäviksi.
+        *
+        * @param node Solmu.
+        * @param marked Lista, johon lisätään uudet merkityt solmut, tai null.
+        */
+    private void mark(Node node, List<Node> marked) {
+        if(node.level == 0 || node.marked) {
+            return;
+        }
+        node.marked = true;
+        if(marked != null) {
+            marked.add(node);
+        }
+        this.mark(node.nw, marked);
+        this.mark(node.ne, marked);
+        this.mark(node.sw, marked);
+        this.mark(node.se, marked);
+    }
+}
\ No newline at end of file
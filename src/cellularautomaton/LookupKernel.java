@@ -0,0 +1,64 @@
+package cellularautomaton;
+
+import utils.*;
+
+/**
+    * Hakutaulukkoon perustuva tilasiirtymäydin. Jokaisen solun seuraava tila luetaan säännöistä kootusta RuleTable-taulukosta solun 3x3-naapuruston bittiasetelman perusteella. Naapurustoa liu'utetaan rivillä sarake kerrallaan, joten kustakin solusta luetaan vain yksi uusi sarake.
+    */
+class LookupKernel extends RowKernel {
+    /**
+        * Säännöistä koottu hakutaulukko.
+        */
+    private final RuleTable table;
+
+    /**
+        * Luo ytimen annetuille säännöille.
+        *
+        * @param rules Soluautomaatin säännöt.
+        */
+    LookupKernel(CARules rules) {
+        super(rules);
+        this.table = RuleTable.forRules(rules);
+    }
+
+    /**
+        * Laskee yhden rivin seuraavan tilan liu'uttamalla naapurustoa rivin alusta loppuun. Reunussarakkeet luetaan puskureista kuten muutkin sarakkeet.
+        *
+        * @param up Edellinen rivi reunuksineen.
+        * @param mid Laskettava rivi reunuksineen.
+        * @param down Seuraava rivi reunuksineen.
+        * @param out Puskuri, johon seuraava tila kirjoitetaan.
+        * @param cols Sarakkeiden lukumäärä.
+        */
+    void evolveRow(long[] up, long[] mid, long[] down, long[] out, int cols) {
+        int neighborhood = column(up, mid, down, -1) | (column(up, mid, down, 0) << 3);
+        long word = 0L;
+        for(int col = 0; col < cols; col++) {
+            neighborhood |= column(up, mid, down, col + 1) << 6;
+            if(this.table.next(neighborhood)) {
+                word |= 1L << col;
+            }
+            neighborhood >>>= 3;
+
+            if((col & (BitGrid.WORD_SIZE - 1)) == BitGrid.WORD_SIZE - 1 || col == cols - 1) {
+                out[col >>> 6] = word;
+                word = 0L;
+            }
+        }
+    }
+
+    /**
+        * Palauttaa reunustettujen rivien sarakkeen kolmen solun tilat kolmen bitin ryhmänä (ylempi, keskimmäinen, alempi).
+        *
+        * @param up Edellinen rivi reunuksineen.
+        * @param mid Laskettava rivi reunuksineen.
+        * @param down Seuraava rivi reunuksineen.
+        * @param col Sarake väliltä -1...cols.
+        *
+        * @return Sarakkeen bitit.
+        */
+    private static int column(long[] up, long[] mid, long[] down, int col) {
+        int k = 1 + (col >> 6);
+        return (int) (((up[k] >>> col) & 1L) | (((mid[k] >>> col) & 1L) << 1) | (((down[k] >>> col) & 1L) << 2));
+    }
+}
\ No newline at end of file
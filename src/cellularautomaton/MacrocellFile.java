@@ -0,0 +1,361 @@
+package cellularautomaton;
+
+import java.io.*;
+import java.util.*;
+
+/**
+    * Golly-ohjelman macrocell-muotoisia tiedostoja HashLife-automaateiksi lukeva ja niistä kirjoittava työkaluluokka. Macrocell-tiedosto esittää tilan nelipuuna, jonka kukin erilainen solmu kirjoitetaan vain kerran, joten säännölliset kuviot voivat kattaa paljon suuremman alueen kuin mikään ruudukko:
+    *
+    * <pre>
+    * [M2] (Cells)
+    * #R B3/S23
+    * .*$..*$***$
+    * 4 0 0 0 1
+    * </pre>
+    *
+    * Ensimmäinen rivi alkaa tunnisteella "[M2]". Risuaidalla alkavat rivit ovat kommentteja, paitsi "#R" säännöt (ks. RLEFile) ja "#G" sukupolven numero. Muut rivit ovat solmuja, jotka numeroidaan ykkösestä alkaen; numero 0 on tyhjä solmu. Tason 3 solmu (8x8 solua) kirjoitetaan rivinä, jossa "." on kuollut solu, "*" elävä solu ja "$" rivin loppu. Suurempi solmu kirjoitetaan muodossa "taso luode koillinen lounas kaakko", jossa neljännekset ovat aiempien solmujen numeroita. Viimeinen solmu on juurisolmu, jonka keskipiste on origossa.
+    *
+    * Luettu tila on HashLife-automaatin solmuja, joten lukeminen vie aikaa ja muistia erilaisten solmujen eikä solujen lukumäärän verran. Tilasta voidaan rasteroida soluautomaattitilaksi tarvittava alue (ks. HashLife.toState()).
+    */
+abstract public class MacrocellFile {
+    /**
+        * Macrocell-tiedostojen tiedostopääte.
+        */
+    public static final String FILE_EXTENSION = "mc";
+
+    /**
+        * Tiedoston ensimmäisen rivin alku.
+        */
+    private static final String MAGIC = "[M2]";
+
+    /**
+        * Rivinä kirjoitettavien solmujen taso.
+        */
+    private static final int LEAF_LEVEL = 3;
+
+    /**
+        * Rivinä kirjoitettavan solmun leveys ja korkeus.
+        */
+    private static final int LEAF_SIZE = 1 << LEAF_LEVEL;
+
+    /**
+        * Tason 3 solmun kuollut solu, elävä solu ja rivin loppu.
+        */
+    private static final char LEAF_DEAD = '.', LEAF_ALIVE = '*', LEAF_ROW_END = '$';
+
+    /**
+        * Luo HashLife-automaatin macrocell-muotoisesta merkkijonosta.
+        *
+        * @param str Macrocell-muotoinen merkkijono.
+        *
+        * @return Automaatti jos merkkijono on validi, muutoin null.
+        */
+    public static HashLife read(String str) {
+        try {
+            return read(new StringReader(str));
+        } catch(IOException e) {
+            return null;
+        }
+    }
+
+    /**
+        * Lukee HashLife-automaatin macrocell-muotoisesta merkkivirrasta. Virtaa ei suljeta.
+        *
+        * @param reader Merkkivirta.
+        *
+        * @return Automaatti jos virran sisältö on validi, muutoin null.
+        *
+        * @exception IOException Jos virran lukeminen epäonnistui.
+        */
+    public static HashLife read(Reader reader) throws IOException {
+        BufferedReader in = new BufferedReader(reader);
+        try {
+            String line = in.readLine();
+            CAFile.guard(line != null && line.startsWith(MAGIC));
+            HashLife life = new HashLife();
+            long generation = 0;
+            List<HashLife.Node> nodes = new ArrayList<HashLife.Node>();
+            while((line = in.readLine()) != null) {
+                if(line.isEmpty()) {
+                    continue;
+                }
+                char c = line.charAt(0);
+                if(line.startsWith("#R")) {
+                    CARules rules = RLEFile.parseRule(line.substring(2).trim());
+                    CAFile.guard(rules != null);
+                    life.setRules(rules);
+                } else if(line.startsWith("#G")) {
+                    generation = Long.parseLong(line.substring(2).trim());
+                    CAFile.guard(generation >= 0);
+                } else if(c == '#') {
+                    continue;
+                } else if(c == LEAF_DEAD || c == LEAF_ALIVE || c == LEAF_ROW_END) {
+                    nodes.add(build(life, readLeaf(line), 0, 0, LEAF_LEVEL));
+                } else {
+                    nodes.add(readNode(life, line, nodes));
+                }
+            }
+            HashLife.Node root = nodes.isEmpty() ? life.emptyNode(LEAF_LEVEL) : nodes.get(nodes.size() - 1);
+            life.setRoot(root, generation);
+            return life;
+        } catch(IOException e) {
+            throw e;
+        } catch(Exception e) {
+            // Myös virheelliset luvut ja HashLife-automaatin hylkäämät säännöt tekevät tiedostosta epäkelvon.
+            return null;
+        }
+    }
+
+    /**
+        * Lukee HashLife-automaatin macrocell-tiedostosta.
+        *
+        * @param file Tiedosto.
+        *
+        * @return Automaatti jos tiedoston sisältö on validi, muutoin null.
+        *
+        * @exception FileNotFoundException Jos tiedoston avaaminen epäonnistui.
+        * @exception IOException Jos tiedoston lukeminen epäonnistui.
+        */
+    public static HashLife read(File file) throws IOException {
+        Reader reader = new FileReader(file);
+        try {
+            return read(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+        * Lukee macrocell-tiedostosta soluautomaattitilan, joka kattaa kuvion elävät solut (ks. HashLife.toState()). Reunakäyttäytymiseksi asetetaan DEAD.
+        *
+        * @param file Tiedosto.
+        *
+        * @return Soluautomaattitila jos tiedoston sisältö on validi, muutoin null.
+        *
+        * @exception FileNotFoundException Jos tiedoston avaaminen epäonnistui.
+        * @exception IOException Jos tiedoston lukeminen epäonnistui.
+        * @exception IllegalStateException Jos kuvio on liian suuri soluautomaattitilaksi.
+        */
+    public static CAState readState(File file) throws IOException {
+        HashLife life = read(file);
+        return life != null ? life.toState() : null;
+    }
+
+    /**
+        * Jäsentää tason 3 solmun rivin.
+        *
+        * @param line Rivi.
+        *
+        * @return Solut bitteinä: sarakkeen x ja rivin y solu on bitti y * 8 + x.
+        *
+        * @exception Exception Jos rivi ei ole validi.
+        */
+    private static long readLeaf(String line) throws Exception {
+        long bits = 0L;
+        int col = 0;
+        int row = 0;
+        for(int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if(c == LEAF_ROW_END) {
+                CAFile.guard(row < LEAF_SIZE);
+                row++;
+                col = 0;
+            } else {
+                CAFile.guard((c == LEAF_DEAD || c == LEAF_ALIVE) && col < LEAF_SIZE && row < LEAF_SIZE);
+                if(c == LEAF_ALIVE) {
+                    bits |= 1L << (row * LEAF_SIZE + col);
+                }
+                col++;
+            }
+        }
+        return bits;
+    }
+
+    /**
+        * Jäsentää sisäsolmun rivin "taso luode koillinen lounas kaakko".
+        *
+        * @param life Automaatti, jonka solmuja käytetään.
+        * @param line Rivi.
+        * @param nodes Aiemmin luetut solmut numerojärjestyksessä ykkösestä alkaen.
+        *
+        * @return Solmu.
+        *
+        * @exception Exception Jos rivi ei ole validi.
+        */
+    private static HashLife.Node readNode(HashLife life, String line, List<HashLife.Node> nodes) throws Exception {
+        String[] parts = line.trim().split("\\s+");
+        CAFile.guard(parts.length == 5);
+        int level = Integer.parseInt(parts[0]);
+        CAFile.guard(level > LEAF_LEVEL && level <= HashLife.MAX_LEVEL);
+        HashLife.Node[] quadrants = new HashLife.Node[4];
+        for(int i = 0; i < quadrants.length; i++) {
+            int index = Integer.parseInt(parts[i + 1]);
+            CAFile.guard(index >= 0 && index <= nodes.size());
+            quadrants[i] = index == 0 ? life.emptyNode(level - 1) : nodes.get(index - 1);
+            CAFile.guard(quadrants[i].level == level - 1);
+        }
+        return life.join(quadrants[0], quadrants[1], quadrants[2], quadrants[3]);
+    }
+
+    /**
+        * Rakentaa solmun tason 3 solmun soluista.
+        *
+        * @param life Automaatti, jonka solmuja käytetään.
+        * @param bits Solut bitteinä (ks. readLeaf()).
+        * @param col Solmun vasemman yläkulman sarake.
+        * @param row Solmun vasemman yläkulman rivi.
+        * @param level Solmun taso.
+        *
+        * @return Solmu.
+        */
+    private static HashLife.Node build(HashLife life, long bits, int col, int row, int level) {
+        if(level == 0) {
+            return (bits >>> (row * LEAF_SIZE + col) & 1L) != 0 ? HashLife.ALIVE : HashLife.DEAD;
+        }
+        int half = 1 << (level - 1);
+        return life.join(
+            build(life, bits, col, row, level - 1),
+            build(life, bits, col + half, row, level - 1),
+            build(life, bits, col, row + half, level - 1),
+            build(life, bits, col + half, row + half, level - 1)
+        );
+    }
+
+    /**
+        * Luo HashLife-automaatin tilan macrocell-muotoisen merkkijonoesityksen.
+        *
+        * @param life Automaatti.
+        *
+        * @return Macrocell-muotoinen merkkijono.
+        */
+    public static String write(HashLife life) {
+        StringWriter writer = new StringWriter();
+        try {
+            write(life, writer);
+        } catch(IOException e) {
+            // StringWriter ei heitä poikkeuksia.
+            throw new IllegalStateException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+        * Kirjoittaa HashLife-automaatin tilan macrocell-muodossa merkkivirtaan. Kukin erilainen solmu kirjoitetaan kerran ennen sitä käyttäviä solmuja, joten aika on verrannollinen erilaisten solmujen lukumäärään. Virtaa ei suljeta eikä tyhjennetä.
+        *
+        * @param life Automaatti.
+        * @param writer Merkkivirta.
+        *
+        * @exception IOException Jos virtaan kirjoittaminen epäonnistui.
+        */
+    public static void write(HashLife life, Writer writer) throws IOException {
+        HashLife.Node root = life.getRoot();
+        while(root.level < LEAF_LEVEL) {
+            root = life.expand(root);
+        }
+        writer.write(MAGIC + " (Cells)\n");
+        writer.write("#R " + life.getRules().toRuleString() + "\n");
+        if(life.getGeneration() != 0) {
+            writer.write("#G " + life.getGeneration() + "\n");
+        }
+        writeNode(root, writer, new IdentityHashMap<HashLife.Node, Integer>());
+    }
+
+    /**
+        * Kirjoittaa soluautomaattitilan macrocell-muodossa merkkivirtaan siten, että tilan solu (col, row) sijoitetaan koordinaatteihin (col, row) (ks. HashLife.setState()). Reunakäyttäytymistä ei kirjoiteta. Virtaa ei suljeta eikä tyhjennetä.
+        *
+        * @param game Soluautomaattitila.
+        * @param writer Merkkivirta.
+        *
+        * @exception IOException Jos virtaan kirjoittaminen epäonnistui.
+        * @exception IllegalArgumentException Jos säännöissä on syntymäsääntö nollalle naapurille.
+        */
+    public static void write(CAState game, Writer writer) throws IOException {
+        HashLife life = new HashLife();
+        life.setState(game);
+        write(life, writer);
+    }
+
+    /**
+        * Kirjoittaa soluautomaattitilan macrocell-tiedostoon (ks. write(CAState, Writer)).
+        *
+        * @param game Soluautomaattitila.
+        * @param file Tiedosto.
+        *
+        * @exception FileNotFoundException Jos tiedoston avaaminen kirjoitettavaksi epäonnistui.
+        * @exception IOException Jos tiedostoon kirjoittaminen epäonnistui.
+        * @exception IllegalArgumentException Jos säännöissä on syntymäsääntö nollalle naapurille.
+        */
+    public static void write(CAState game, File file) throws IOException {
+        Writer writer = new BufferedWriter(new FileWriter(file));
+        try {
+            write(game, writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+        * Kirjoittaa solmun ja ne sen jälkeläiset, joita ei ole vielä kirjoitettu.
+        *
+        * @param node Solmu, jonka taso on vähintään 3.
+        * @param writer Merkkivirta.
+        * @param indices Kirjoitettujen solmujen numerot.
+        *
+        * @return Solmun numero, tai 0 jos solmu on tyhjä.
+        *
+        * @exception IOException Jos kirjoittaminen epäonnistui.
+        */
+    private static int writeNode(HashLife.Node node, Writer writer, Map<HashLife.Node, Integer> indices) throws IOException {
+        if(node.population == 0) {
+            return 0;
+        }
+        Integer index = indices.get(node);
+        if(index != null) {
+            return index;
+        }
+        StringBuilder sb = new StringBuilder();
+        if(node.level == LEAF_LEVEL) {
+            long bits = leafBits(node, 0, 0);
+            for(int row = 0; row < LEAF_SIZE && bits >>> (row * LEAF_SIZE) != 0L; row++) {
+                int cells = (int) (bits >>> (row * LEAF_SIZE)) & 0xFF;
+                for(int col = 0; cells >>> col != 0; col++) {
+                    sb.append((cells >>> col & 1) != 0 ? LEAF_ALIVE : LEAF_DEAD);
+                }
+                sb.append(LEAF_ROW_END);
+            }
+        } else {
+            sb.append(node.level);
+            sb.append(' ').append(writeNode(node.nw, writer, indices));
+            sb.append(' ').append(writeNode(node.ne, writer, indices));
+            sb.append(' ').append(writeNode(node.sw, writer, indices));
+            sb.append(' ').append(writeNode(node.se, writer, indices));
+        }
+        writer.write(sb.append('\n').toString());
+        index = indices.size() + 1;
+        indices.put(node, index);
+        return index;
+    }
+
+    /**
+        * Kokoaa enintään tason 3 solmun solut bitteinä (ks. readLeaf()).
+        *
+        * @param node Solmu.
+        * @param col Solmun vasemman yläkulman sarake tason 3 solmussa.
+        * @param row Solmun vasemman yläkulman rivi tason 3 solmussa.
+        *
+        * @return Solut bitteinä.
+        */
+    private static long leafBits(HashLife.Node node, int col, int row) {
+        if(node.population == 0) {
+            return 0L;
+        }
+        if(node.level == 0) {
+            return 1L << (row * LEAF_SIZE + col);
+        }
+        int half = 1 << (node.level - 1);
+        return leafBits(node.nw, col, row)
+            | leafBits(node.ne, col + half, row)
+            | leafBits(node.sw, col, row + half)
+            | leafBits(node.se, col + half, row + half);
+    }
+}
\ No newline at end of file
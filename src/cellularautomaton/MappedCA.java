@@ -0,0 +1,474 @@
+package cellularautomaton;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+import utils.*;
+
+/**
+    * Soluautomaatti, jonka nykyinen ja seuraava tila ovat kahdessa muistikuvatussa tiedostossa. Tilasiirtymä lukee nykyisen tilan tiedostoa kolmen rivin liukuvana ikkunana ja kirjoittaa seuraavan tilan toiseen tiedostoon, minkä jälkeen tiedostojen roolit vaihdetaan samaan tapaan kuin CA-luokan kaksoispuskurissa. Keskusmuistissa pidetään vain muutama rivi kerrallaan, joten ruudukko voi olla suurempi kuin käytettävissä oleva muisti.
+    *
+    * Kummankin tiedoston alussa on otsake, johon tallennetaan ruudukon koko, säännöt, tiedoston sisältämän tilan sukupolvi ja tieto siitä, onko tila kirjoitettu loppuun. Tilasiirtymä merkitsee kohdetiedoston keskeneräiseksi ennen kirjoittamista ja valmiiksi vasta, kun kaikki rivit ovat tallessa levyllä, eikä se koskaan kirjoita nykyisen tilan tiedostoon. Kaatumisen jälkeen open() jatkaa siitä tiedostosta, jossa on uusin valmis tila.
+    *
+    * Vanhempia tiloja ei säilytetä, joten historian pituus on enintään 1: rytmi tunnistetaan, kun tila ei muutu tilasiirtymässä. Solujen muokkaukset kirjoitetaan nykyisen tilan tiedostoon, ja ne ovat tallessa levyllä viimeistään flush()-kutsun jälkeen.
+    */
+public class MappedCA implements Automaton, Closeable {
+    /**
+        * Tiedoston tunniste otsakkeen alussa ("CELLMAP1").
+        */
+    private static final long MAGIC = 0x3150414D4C4C4543L;
+
+    /**
+        * Otsakkeen koko tavuina. Ruudukon sanat alkavat otsakkeen jälkeen.
+        */
+    static final int HEADER_SIZE = 64;
+
+    /**
+        * Minimiarvo tilahistorian pituudelle.
+        */
+    private static final int MIN_HISTORY_LENGTH = 0;
+
+    /**
+        * Maksimiarvo tilahistorian pituudelle.
+        */
+    private static final int MAX_HISTORY_LENGTH = 1;
+
+    /**
+        * Tiedostokanavat.
+        */
+    private final FileChannel[] channels = new FileChannel[2];
+
+    /**
+        * Tiedostoihin kuvatut ruudukot.
+        */
+    private final MappedBitGrid[] grids = new MappedBitGrid[2];
+
+    /**
+        * Nykyisen tilan sisältävän tiedoston indeksi.
+        */
+    private int current = 0;
+
+    /**
+        * Nykyisen tilan sukupolvi.
+        */
+    private long generation = 0;
+
+    /**
+        * Automaatin säännöt.
+        */
+    private CARules rules;
+
+    /**
+        * Säännöistä koottu tilasiirtymäydin.
+        */
+    private RowKernel kernel;
+
+    /**
+        * Historian pituus.
+        */
+    private int historyLength = MAX_HISTORY_LENGTH;
+
+    /**
+        * Kertoo, sisältääkö toinen tiedosto nykyistä tilaa edeltävän tilan.
+        */
+    private boolean historyValid = false;
+
+    /**
+        * Avaa tiedostot luku- ja kirjoitustilaan. Puuttuvat tiedostot luodaan.
+        *
+        * @param first Ensimmäinen tiedosto.
+        * @param second Toinen tiedosto.
+        *
+        * @exception IOException Jos tiedostojen avaaminen epäonnistuu.
+        */
+    private MappedCA(File first, File second) throws IOException {
+        this.channels[0] = FileChannel.open(first.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        try {
+            this.channels[1] = FileChannel.open(second.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        } catch(IOException e) {
+            this.channels[0].close();
+            throw e;
+        }
+    }
+
+    /**
+        * Luo annettuihin tiedostoihin uuden automaatin, jonka kaikki solut ovat kuolleita. Tiedostojen aiempi sisältö korvataan.
+        *
+        * @param first Ensimmäinen tiedosto, johon alkutila tallennetaan.
+        * @param second Toinen tiedosto.
+        * @param cols Sarakkeiden lukumäärä.
+        * @param rows Rivien lukumäärä.
+        * @param rules Automaatin säännöt.
+        *
+        * @return Automaatti.
+        *
+        * @exception IOException Jos tiedostojen luominen epäonnistuu.
+        */
+    public static MappedCA create(File first, File second, int cols, int rows, CARules rules) throws IOException {
+        MappedCA game = new MappedCA(first, second);
+        try {
+            game.rules = rules.clone();
+            game.kernel = new SwarKernel(game.rules);
+            for(int i = 0; i < 2; i++) {
+                game.channels[i].truncate(0);
+                game.grids[i] = new MappedBitGrid(game.channels[i], HEADER_SIZE, Math.max(CAState.MIN_DIMENSION, cols), Math.max(CAState.MIN_DIMENSION, rows));
+            }
+            game.writeHeader(1, -1, false);
+            game.writeHeader(0, 0, true);
+        } catch(IOException | RuntimeException e) {
+            game.close();
+            throw e;
+        }
+        return game;
+    }
+
+    /**
+        * Avaa aiemmin luodun automaatin. Automaatti jatkaa siitä tiedostosta, jossa on uusin loppuun kirjoitettu tila, joten keskeytynyt tilasiirtymä jätetään huomiotta.
+        *
+        * @param first Ensimmäinen tiedosto.
+        * @param second Toinen tiedosto.
+        *
+        * @return Automaatti.
+        *
+        * @exception IOException Jos tiedostojen lukeminen epäonnistuu tai kummassakaan tiedostossa ei ole valmista tilaa.
+        */
+    public static MappedCA open(File first, File second) throws IOException {
+        MappedCA game = new MappedCA(first, second);
+        try {
+            ByteBuffer[] headers = {game.readHeader(0), game.readHeader(1)};
+            int chosen = -1;
+            for(int i = 0; i < 2; i++) {
+                if(headers[i] != null && headers[i].getInt(32) != 0 && (chosen < 0 || headers[i].getLong(16) > headers[chosen].getLong(16))) {
+                    chosen = i;
+                }
+            }
+            if(chosen < 0) {
+                throw new IOException("No complete generation in " + first + " or " + second);
+            }
+            ByteBuffer header = headers[chosen];
+            int cols = header.getInt(8);
+            int rows = header.getInt(12);
+            game.current = chosen;
+            game.generation = header.getLong(16);
+            game.rules = decodeRules(header.getInt(24), header.getInt(28));
+            game.kernel = new SwarKernel(game.rules);
+            for(int i = 0; i < 2; i++) {
+                game.grids[i] = new MappedBitGrid(game.channels[i], HEADER_SIZE, cols, rows);
+            }
+            ByteBuffer other = headers[1 - chosen];
+            game.historyValid = other != null && other.getInt(32) != 0 && other.getLong(16) == game.generation - 1
+                && other.getInt(8) == cols && other.getInt(12) == rows;
+        } catch(IOException | RuntimeException e) {
+            game.close();
+            throw e;
+        }
+        return game;
+    }
+
+    /**
+        * Lukee tiedoston otsakkeen.
+        *
+        * @param i Tiedoston indeksi.
+        *
+        * @return Otsake, tai null jos tiedosto on liian lyhyt tai sen tunniste on väärä.
+        *
+        * @exception IOException Jos lukeminen epäonnistuu.
+        */
+    private ByteBuffer readHeader(int i) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while(header.hasRemaining()) {
+            if(this.channels[i].read(header, header.position()) < 0) {
+                return null;
+            }
+        }
+        return header.getLong(0) == MAGIC ? header : null;
+    }
+
+    /**
+        * Kirjoittaa tiedoston otsakkeen ja odottaa, kunnes se on tallessa levyllä.
+        *
+        * @param i Tiedoston indeksi.
+        * @param generation Tiedoston sisältämän tilan sukupolvi.
+        * @param complete Kertoo, onko tila kirjoitettu loppuun.
+        *
+        * @exception IOException Jos kirjoittaminen epäonnistuu.
+        */
+    private void writeHeader(int i, long generation, boolean complete) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(0, MAGIC);
+        header.putInt(8, this.grids[i].getCols());
+        header.putInt(12, this.grids[i].getRows());
+        header.putLong(16, generation);
+        header.putInt(24, RuleTable.ruleKey(this.rules));
+        header.putInt(28, this.rules.getEdgeBehavior().ordinal());
+        header.putInt(32, complete ? 1 : 0);
+        while(header.hasRemaining()) {
+            this.channels[i].write(header, header.position());
+        }
+        this.channels[i].force(false);
+    }
+
+    /**
+        * Muodostaa säännöt otsakkeeseen tallennetuista arvoista.
+        *
+        * @param key Syntymä- ja eloonjäämissäännöt RuleTable.ruleKey()-metodin muodossa.
+        * @param edge Reunakäyttäytymisen järjestysnumero.
+        *
+        * @return Säännöt.
+        *
+        * @exception IOException Jos reunakäyttäytyminen on tuntematon.
+        */
+    private static CARules decodeRules(int key, int edge) throws IOException {
+        CARules.EdgeBehavior[] behaviors = CARules.EdgeBehavior.values();
+        if(edge < 0 || edge >= behaviors.length) {
+            throw new IOException("Unknown edge behavior " + edge);
+        }
+        CARules rules = new CARules();
+        rules.setEdgeBehavior(behaviors[edge]);
+        for(int n = 0; n < CARules.NEIGHBOR_COUNT; n++) {
+            rules.setBirthRule(n, ((key >>> n) & 1) != 0);
+            rules.setSurvivalRule(n, ((key >>> (CARules.NEIGHBOR_COUNT + n)) & 1) != 0);
+        }
+        return rules;
+    }
+
+    /**
+        * Palauttaa sarakkeiden lukumäärän.
+        *
+        * @return Sarakkeiden lukumäärä.
+        */
+    public int getCols() {
+        return this.grids[this.current].getCols();
+    }
+
+    /**
+        * Palauttaa rivien lukumäärän.
+        *
+        * @return Rivien lukumäärä.
+        */
+    public int getRows() {
+        return this.grids[this.current].getRows();
+    }
+
+    /**
+        * Palauttaa nykyisen tilan sukupolven. Alkutilan sukupolvi on 0.
+        *
+        * @return Sukupolvi.
+        */
+    public long getGeneration() {
+        return this.generation;
+    }
+
+    /**
+        * Palauttaa automaatin käyttämät säännöt. Palautettu sääntöolio on kopio automaatin säännöistä, ei suora viittaus.
+        *
+        * @return Automaatin säännöt.
+        */
+    public CARules getRules() {
+        return this.rules.clone();
+    }
+
+    /**
+        * Asettaa automaatille uudet säännöt ja tallentaa ne nykyisen tilan tiedoston otsakkeeseen.
+        *
+        * @param rules Uudet säännöt.
+        *
+        * @exception UncheckedIOException Jos otsakkeen kirjoittaminen epäonnistuu.
+        */
+    public void setRules(CARules rules) {
+        this.rules = rules.clone();
+        this.kernel = new SwarKernel(this.rules);
+        try {
+            this.writeHeader(this.current, this.generation, true);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.resetHistory();
+    }
+
+    /**
+        * Kertoo, onko annetussa sijainnissa oleva solu elossa. Ruudukon ulkopuolisten solujen tila määräytyy reunakäyttäytymisen mukaan kuten soluautomaattitilassa.
+        *
+        * @param col Solun sarakekoordinaatti.
+        * @param row Solun rivikoordinaatti.
+        *
+        * @return Solun tila.
+        */
+    public boolean getCell(int col, int row) {
+        MappedBitGrid grid = this.grids[this.current];
+        if(0 <= col && col < grid.getCols() && 0 <= row && row < grid.getRows()) {
+            return grid.get(col, row);
+        }
+        CARules.EdgeBehavior eb = this.rules.getEdgeBehavior();
+        if(eb == CARules.EdgeBehavior.DEAD) {
+            return false;
+        } else if(eb == CARules.EdgeBehavior.ALIVE) {
+            return true;
+        }
+        return grid.get(Maths.mod(col, grid.getCols()), Maths.mod(row, grid.getRows()));
+    }
+
+    /**
+        * Asettaa annetussa sijainnissa olevan solun tilan.
+        *
+        * @param col Solun sarakekoordinaatti.
+        * @param row Solun rivikoordinaatti.
+        * @param live Solun uusi tila.
+        *
+        * @return Totuusarvo, joka kertoo onko solu ruudukon sisällä.
+        */
+    public boolean setCell(int col, int row, boolean live) {
+        MappedBitGrid grid = this.grids[this.current];
+        if(col < 0 || col >= grid.getCols() || row < 0 || row >= grid.getRows()) {
+            return false;
+        }
+        grid.set(col, row, live);
+        this.historyValid = false;
+        return true;
+    }
+
+    /**
+        * Alustaa kaikki solut kuolleiksi.
+        */
+    public void erase() {
+        this.grids[this.current].clear();
+        this.historyValid = false;
+    }
+
+    /**
+        * Korvaa automaatin tilan ja säännöt annetun samankokoisen soluautomaattitilan tilalla ja säännöillä.
+        *
+        * @param state Soluautomaattitila.
+        *
+        * @exception IllegalArgumentException Jos tilan koko poikkeaa automaatin koosta.
+        */
+    public void setState(CAState state) {
+        if(state.getCols() != this.getCols() || state.getRows() != this.getRows()) {
+            throw new IllegalArgumentException("State of " + state.getCols() + "x" + state.getRows() + " cells does not match mapped grid of " + this.getCols() + "x" + this.getRows() + " cells");
+        }
+        this.grids[this.current].copyFrom(state.cells);
+        this.setRules(state.getRules());
+    }
+
+    /**
+        * Luo soluautomaattitilan, jonka solut kopioidaan annetulta alueelta. Ruudukon ulkopuoliset solut ovat kuolleita. Tilaan asetetaan automaatin säännöt.
+        *
+        * @param col Alueen vasemman yläkulman sarakekoordinaatti.
+        * @param row Alueen vasemman yläkulman rivikoordinaatti.
+        * @param cols Alueen sarakkeiden lukumäärä.
+        * @param rows Alueen rivien lukumäärä.
+        *
+        * @return Soluautomaattitila.
+        */
+    public CAState toState(int col, int row, int cols, int rows) {
+        BitGrid grid = new BitGrid(Math.max(CAState.MIN_DIMENSION, cols), Math.max(CAState.MIN_DIMENSION, rows));
+        for(int r = 0; r < grid.getRows(); r++) {
+            for(int c = 0; c < grid.getCols(); c++) {
+                if(this.getCell(col + c, row + r)) {
+                    grid.set(c, r, true);
+                }
+            }
+        }
+        CAState state = new CAState();
+        state.setRules(this.rules);
+        state.setGrid(grid);
+        return state;
+    }
+
+    /**
+        * Siirtää automaatin seuraavaan tilaan. Seuraava tila kirjoitetaan toiseen tiedostoon, joka merkitään valmiiksi vasta, kun kaikki sen rivit ovat tallessa levyllä.
+        *
+        * @exception UncheckedIOException Jos tiedostoon kirjoittaminen epäonnistuu.
+        */
+    public void evolve() {
+        int target = 1 - this.current;
+        try {
+            this.writeHeader(target, this.generation + 1, false);
+            this.kernel.evolve(this.grids[this.current], this.grids[target]);
+            this.grids[target].force();
+            this.writeHeader(target, this.generation + 1, true);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.current = target;
+        this.generation++;
+        this.historyValid = true;
+    }
+
+    /**
+        * Kirjoittaa nykyisen tilan muutokset tiedostoon ja odottaa, kunnes ne ovat tallessa levyllä.
+        */
+    public void flush() {
+        this.grids[this.current].force();
+    }
+
+    /**
+        * Palauttaa historian pituuden.
+        *
+        * @return Historian pituus.
+        */
+    public int getHistoryLength() {
+        return this.historyLength;
+    }
+
+    /**
+        * Asettaa automaatin historian pituuden ja tyhjentää historian. Pituus rajataan välille [0, 1], koska tiedostoissa on tilaa vain nykyiselle ja edelliselle tilalle.
+        *
+        * @param len Historian uusi pituus.
+        */
+    public void setHistoryLength(int len) {
+        this.historyLength = Math.min(MAX_HISTORY_LENGTH, Math.max(MIN_HISTORY_LENGTH, len));
+        this.historyValid = false;
+    }
+
+    /**
+        * Tyhjentää historian.
+        */
+    public void resetHistory() {
+        this.setHistoryLength(this.historyLength);
+    }
+
+    /**
+        * Kertoo, onko automaatissa havaittavissa toistuva rytmi. Rytmi on olemassa, jos edellinen tila on tallessa ja sama kuin nykyinen tila. Tiedostoja verrataan riveittäin.
+        *
+        * @return Totuusarvo, joka kertoo havaittiinko rytmi.
+        */
+    public boolean isPeriodic() {
+        if(this.historyLength == 0 || !this.historyValid) {
+            return false;
+        }
+        MappedBitGrid now = this.grids[this.current];
+        MappedBitGrid previous = this.grids[1 - this.current];
+        long[] a = new long[now.getWordsPerRow()];
+        long[] b = new long[now.getWordsPerRow()];
+        for(int row = 0; row < now.getRows(); row++) {
+            now.getRow(row, a);
+            previous.getRow(row, b);
+            if(!Arrays.equals(a, b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+        * Purkaa muistikuvaukset ja sulkee tiedostot. Valmiit tilat säilyvät tiedostoissa, ja automaatin voi avata uudelleen open()-metodilla. Suljetun automaatin solujen käsittely aiheuttaa IllegalStateException-poikkeuksen.
+        *
+        * @exception IOException Jos tiedoston sulkeminen epäonnistuu.
+        */
+    public void close() throws IOException {
+        for(int i = 0; i < 2; i++) {
+            if(this.grids[i] != null) {
+                this.grids[i].release();
+            }
+        }
+        for(int i = 0; i < 2; i++) {
+            if(this.channels[i] != null) {
+                this.channels[i].close();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,132 @@
+package cellularautomaton;
+
+import utils.*;
+
+/**
+    * Toistuvan kuvion liike: jakso sekä siirtymä, jonka verran kuvio on jakson aikana siirtynyt. Paikallaan pysyvän oskillaattorin tai asetelman siirtymä on nolla, avaruusaluksen muu.
+    *
+    * Siirtymän x-komponentti kasvaa sarakkeiden ja y-komponentti rivien suuntaan. WRAP-reunoilla siirtymä ilmoitetaan lyhimpänä mahdollisena, eli kummankin komponentin itseisarvo on enintään puolet ruudukon leveydestä tai korkeudesta.
+    */
+public class Motion {
+    /**
+        * Jakso sukupolvina.
+        */
+    private final int period;
+
+    /**
+        * Siirtymä jakson aikana sarakkeina ja riveinä.
+        */
+    private final int dx, dy;
+
+    /**
+        * @param period Jakso sukupolvina.
+        * @param dx Siirtymä sarakkeina.
+        * @param dy Siirtymä riveinä.
+        */
+    public Motion(int period, int dx, int dy) {
+        this.period = period;
+        this.dx = dx;
+        this.dy = dy;
+    }
+
+    /**
+        * Palauttaa jakson.
+        *
+        * @return Jakso sukupolvina.
+        */
+    public int getPeriod() {
+        return this.period;
+    }
+
+    /**
+        * Palauttaa jakson aikaisen siirtymän sarakkeina.
+        *
+        * @return Siirtymän x-komponentti.
+        */
+    public int getDx() {
+        return this.dx;
+    }
+
+    /**
+        * Palauttaa jakson aikaisen siirtymän riveinä.
+        *
+        * @return Siirtymän y-komponentti.
+        */
+    public int getDy() {
+        return this.dy;
+    }
+
+    /**
+        * Kertoo, siirtyykö kuvio, eli onko se avaruusalus.
+        *
+        * @return Totuusarvo.
+        */
+    public boolean isMoving() {
+        return this.dx != 0 || this.dy != 0;
+    }
+
+    /**
+        * Palauttaa nopeuden tavanomaisessa muodossa valonnopeuden c (yksi solu sukupolvessa) murtolukuna, esimerkiksi glider "c/4" ja lightweight spaceship "c/2". Nopeus lasketaan siirtymän suuremmasta komponentista.
+        *
+        * @return Nopeus, tai "0" jos kuvio ei siirry.
+        */
+    public String getSpeed() {
+        long distance = Math.max(Math.abs(this.dx), Math.abs(this.dy));
+        if(distance == 0) {
+            return "0";
+        }
+        long divisor = Maths.gcd(distance, this.period);
+        long numerator = distance / divisor;
+        long denominator = this.period / divisor;
+        return (numerator == 1 ? "" : Long.toString(numerator)) + "c" + (denominator == 1 ? "" : "/" + denominator);
+    }
+
+    /**
+        * Palauttaa liikkeen suunnan luokan.
+        *
+        * @return "orthogonal", "diagonal" tai "oblique", tai null jos kuvio ei siirry.
+        */
+    public String getDirection() {
+        if(!this.isMoving()) {
+            return null;
+        } else if(this.dx == 0 || this.dy == 0) {
+            return "orthogonal";
+        } else if(Math.abs(this.dx) == Math.abs(this.dy)) {
+            return "diagonal";
+        } else {
+            return "oblique";
+        }
+    }
+
+    /**
+        * Vertaa liikettä toiseen olioon.
+        *
+        * @param o Verrattava olio.
+        *
+        * @return Kertoo, onko o liike, jolla on sama jakso ja siirtymä.
+        */
+    public boolean equals(Object o) {
+        if(!(o instanceof Motion)) {
+            return false;
+        }
+        Motion other = (Motion) o;
+        return this.period == other.period && this.dx == other.dx && this.dy == other.dy;
+    }
+
+    /**
+        * Laskee liikkeen tiivisteen.
+        *
+        * @return Tiiviste.
+        */
+    public int hashCode() {
+        return (this.period * 31 + this.dx) * 31 + this.dy;
+    }
+
+    /**
+        * Luo liikkeestä kuvauksen, esimerkiksi "period 4, displacement (1, 1), c/4 diagonal".
+        */
+    public String toString() {
+        String s = "period " + this.period + ", displacement (" + this.dx + ", " + this.dy + ")";
+        return this.isMoving() ? s + ", " + this.getSpeed() + " " + this.getDirection() : s;
+    }
+}
\ No newline at end of file
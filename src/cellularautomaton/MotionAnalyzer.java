@@ -0,0 +1,411 @@
+package cellularautomaton;
+
+import java.math.BigInteger;
+import java.util.*;
+
+import utils.*;
+
+/**
+    * Tunnistaa toistuvat kuviot myös silloin, kun ne ovat siirtyneet: oskillaattorit, asetelmat ja avaruusalukset, kuten gliderit. Elävien solujen joukosta lasketaan tiiviste, josta siirtymä voidaan erottaa, ja sitä verrataan viimeisimpien sukupolvien tiivisteisiin hajautustaulun avulla.
+    *
+    * Solu (x, y) lisää tiivisteisiin alkion ω^x ν^y ja ω^x ν^(2y) alkuluvun p jäännösluokkakunnassa, missä ω ja ν ovat ykkösenjuuria, joiden kertaluvut ovat ruudukon leveys ja korkeus. Kuvion siirtäminen vektorilla (dx, dy) kertoo ensimmäisen tiivisteen alkiolla ω^dx ν^dy ja toisen alkiolla ω^dx ν^(2dy), joten tiivisteiden korottaminen leveyden ja korkeuden pienimpään yhteiseen jaettavaan antaa siirtymästä riippumattoman avaimen, ja tiivisteiden osamääristä saadaan itse siirtymä. WRAP-reunoilla siirtymät ovat syklisiä, joten laskenta tehdään ruudukon kokoisessa toruksessa. Muilla reunoilla käytetään kaksinkertaisen kokoista torusta, jossa kaksi ruudukkoon mahtuvaa kuviota ovat toistensa syklisiä siirtoja vain, jos ne ovat toistensa tavallisia siirtoja.
+    *
+    * Tiivisteet päivitetään kunkin tilasiirtymän muuttuneiden solujen perusteella, ja vertailu historiaan on hajautustaulun haku, joten analyysi maksaa sukupolvea kohden vain muuttuneiden sanojen läpikäynnin, eikä historian pituus vaikuta siihen. Toisin kuin CA.isPeriodic(), analyysi ei vertaa tiloja täsmällisesti, joten tiivisteiden yhteentörmäys voi tuottaa väärän havainnon todennäköisyydellä, joka on luokkaa 2^-50 vertailua kohden.
+    */
+class MotionAnalyzer {
+    /**
+        * Modulin yläraja (ks. Maths.mulMod()).
+        */
+    private static final long MAX_MODULUS = 1L << 50;
+
+    /**
+        * Ruudukon ulottuvuudet.
+        */
+    private final int cols, rows;
+
+    /**
+        * Kertoo, lasketaanko siirtymät WRAP-reunojen mukaisesti syklisinä.
+        */
+    private final boolean wrap;
+
+    /**
+        * Torus, jossa siirtymät lasketaan: WRAP-reunoilla ruudukon kokoinen, muutoin kaksinkertainen.
+        */
+    private final int width, height;
+
+    /**
+        * Jäännösluokkakunnan alkuluku p, jolle p - 1 on jaollinen leveydellä ja korkeudella.
+        */
+    private final long modulus;
+
+    /**
+        * Leveyden ja korkeuden pienin yhteinen jaettava, johon korottaminen poistaa tiivisteistä siirtymän vaikutuksen.
+        */
+    private final long order;
+
+    /**
+        * Potenssit ω^x sarakkeittain, ν^y riveittäin ja ν^(2y) riveittäin.
+        */
+    private final long[] colPowers, rowPowers, rowPowers2;
+
+    /**
+        * Sarakkeiden ja rivien potenssit suuruusjärjestyksessä sekä niiden eksponentit, joista siirtymä haetaan binäärihaulla.
+        */
+    private final long[] sortedColPowers, sortedRowPowers;
+    private final int[] colLogs, rowLogs;
+
+    /**
+        * Nykyisen tilan tiivisteet.
+        */
+    private long first, second;
+
+    /**
+        * Kertoo, vastaavatko tiivisteet nykyistä tilaa.
+        */
+    private boolean valid = false;
+
+    /**
+        * Viimeisimpien sukupolvien avaimet ja tiivisteet rengaspuskurina. Sukupolven g tiedot ovat indeksissä g % historian pituus.
+        */
+    private final long[] keys, firsts, seconds;
+
+    /**
+        * Seuraavaksi kirjattavan sukupolven numero.
+        */
+    private long generation = 0;
+
+    /**
+        * Kunkin historiassa olevan avaimen viimeisin sukupolvi.
+        */
+    private final Map<Long, Long> latest = new HashMap<Long, Long>();
+
+    /**
+        * Nykyisen tilan liike, tai null jos tila ei toistu historiassa.
+        */
+    private Motion motion = null;
+
+    /**
+        * Luo analyysin annetun kokoiselle ruudukolle.
+        *
+        * @param cols Sarakkeiden lukumäärä.
+        * @param rows Rivien lukumäärä.
+        * @param wrap Kertoo, ovatko reunat WRAP-reunat.
+        * @param window Historian pituus eli pisin tunnistettava jakso.
+        *
+        * @exception IllegalArgumentException Jos ruudukko on liian suuri analysoitavaksi.
+        */
+    MotionAnalyzer(int cols, int rows, boolean wrap, int window) {
+        this.cols = cols;
+        this.rows = rows;
+        this.wrap = wrap;
+        this.width = wrap ? cols : 2 * cols;
+        this.height = wrap ? rows : 2 * rows;
+        this.order = (long) this.width / Maths.gcd(this.width, this.height) * this.height;
+        this.modulus = findPrime(this.order);
+
+        this.colPowers = powers(rootOfUnity(this.width, this.modulus), this.width, this.modulus);
+        this.rowPowers = powers(rootOfUnity(this.height, this.modulus), this.height, this.modulus);
+        this.rowPowers2 = new long[this.height];
+        for(int y = 0; y < this.height; y++) {
+            this.rowPowers2[y] = Maths.mulMod(this.rowPowers[y], this.rowPowers[y], this.modulus);
+        }
+        this.sortedColPowers = this.colPowers.clone();
+        this.colLogs = logTable(this.sortedColPowers);
+        this.sortedRowPowers = this.rowPowers.clone();
+        this.rowLogs = logTable(this.sortedRowPowers);
+
+        this.keys = new long[window];
+        this.firsts = new long[window];
+        this.seconds = new long[window];
+    }
+
+    /**
+        * Etsii alkuluvun muotoa k * order + 1 modulin ylärajan alapuolelta.
+        *
+        * @param order Luku, jolla p - 1 on oltava jaollinen.
+        *
+        * @return Alkuluku.
+        */
+    private static long findPrime(long order) {
+        for(long k = (MAX_MODULUS - 2) / order; k >= 1; k--) {
+            long p = k * order + 1;
+            if(BigInteger.valueOf(p).isProbablePrime(40)) {
+                return p;
+            }
+        }
+        throw new IllegalArgumentException("Grid too large for motion analysis");
+    }
+
+    /**
+        * Etsii ykkösenjuuren, jonka kertaluku on täsmälleen n.
+        *
+        * @param n Kertaluku, jolla p - 1 on jaollinen.
+        * @param p Alkuluku.
+        *
+        * @return Ykkösenjuuri.
+        */
+    private static long rootOfUnity(int n, long p) {
+        List<Integer> factors = new ArrayList<Integer>();
+        int rest = n;
+        for(int q = 2; (long) q * q <= rest; q++) {
+            if(rest % q == 0) {
+                factors.add(q);
+                while(rest % q == 0) {
+                    rest /= q;
+                }
+            }
+        }
+        if(rest > 1) {
+            factors.add(rest);
+        }
+
+        for(long base = 2; ; base++) {
+            long root = Maths.powMod(base, (p - 1) / n, p);
+            boolean primitive = true;
+            for(int q : factors) {
+                primitive &= Maths.powMod(root, n / q, p) != 1;
+            }
+            if(primitive) {
+                return root;
+            }
+        }
+    }
+
+    /**
+        * Laskee potenssit root^0...root^(n-1).
+        *
+        * @param root Kantaluku.
+        * @param n Potenssien lukumäärä.
+        * @param p Moduli.
+        *
+        * @return Potenssit.
+        */
+    private static long[] powers(long root, int n, long p) {
+        long[] result = new long[n];
+        long power = 1;
+        for(int i = 0; i < n; i++) {
+            result[i] = power;
+            power = Maths.mulMod(power, root, p);
+        }
+        return result;
+    }
+
+    /**
+        * Järjestää potenssit suuruusjärjestykseen ja palauttaa niiden eksponentit samassa järjestyksessä.
+        *
+        * @param powers Potenssit eksponenttien järjestyksessä; järjestetään paikallaan.
+        *
+        * @return Eksponentit.
+        */
+    private static int[] logTable(long[] powers) {
+        Integer[] order = new Integer[powers.length];
+        for(int i = 0; i < powers.length; i++) {
+            order[i] = i;
+        }
+        final long[] original = powers.clone();
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Long.compare(original[a], original[b]);
+            }
+        });
+        int[] logs = new int[powers.length];
+        for(int i = 0; i < powers.length; i++) {
+            logs[i] = order[i];
+            powers[i] = original[order[i]];
+        }
+        return logs;
+    }
+
+    /**
+        * Kertoo, sopiiko analyysi annetulle ruudukolle ja historian pituudelle.
+        *
+        * @param cols Sarakkeiden lukumäärä.
+        * @param rows Rivien lukumäärä.
+        * @param wrap Kertoo, ovatko reunat WRAP-reunat.
+        * @param window Historian pituus.
+        *
+        * @return Totuusarvo.
+        */
+    boolean fits(int cols, int rows, boolean wrap, int window) {
+        return this.cols == cols && this.rows == rows && this.wrap == wrap && this.keys.length == window;
+    }
+
+    /**
+        * Tyhjentää historian. Tiivisteet lasketaan seuraavalla advance()-kutsulla uudelleen ruudukosta.
+        */
+    void reset() {
+        this.valid = false;
+        this.generation = 0;
+        this.latest.clear();
+        this.motion = null;
+    }
+
+    /**
+        * Päivittää analyysin tilasiirtymän jälkeiseen tilaan. Mikäli historia on tyhjennetty, myös nykyinen tila kirjataan historiaan.
+        *
+        * @param src Nykyinen tila.
+        * @param dst Seuraava tila.
+        * @param changes Seuranta, jonka muuttuneiksi kirjaamat sanat ovat ainoat, joissa tilat eroavat, tai null jos tiloja on verrattava koko ruudukolta.
+        */
+    void advance(BitGrid src, BitGrid dst, ChangeTracker changes) {
+        if(!this.valid) {
+            this.first = 0;
+            this.second = 0;
+            for(int row = 0; row < this.rows; row++) {
+                for(int k = 0; k < src.getWordsPerRow(); k++) {
+                    this.wordChanged(row, k, 0L, src.getWord(row, k));
+                }
+            }
+            this.valid = true;
+            this.record();
+        }
+
+        if(changes != null) {
+            changes.updateMotion(src, dst, this);
+        } else {
+            for(int row = 0; row < this.rows; row++) {
+                for(int k = 0; k < src.getWordsPerRow(); k++) {
+                    long before = src.getWord(row, k);
+                    long after = dst.getWord(row, k);
+                    if(before != after) {
+                        this.wordChanged(row, k, before, after);
+                    }
+                }
+            }
+        }
+        this.record();
+    }
+
+    /**
+        * Päivittää tiivisteet yhden sanan muutoksen perusteella.
+        *
+        * @param row Sanan rivi.
+        * @param k Sanan indeksi rivillä.
+        * @param before Sanan vanha arvo.
+        * @param after Sanan uusi arvo.
+        */
+    void wordChanged(int row, int k, long before, long after) {
+        long p = this.modulus;
+        long diff = before ^ after;
+        while(diff != 0) {
+            int bit = Long.numberOfTrailingZeros(diff);
+            long colPower = this.colPowers[k * BitGrid.WORD_SIZE + bit];
+            long a = Maths.mulMod(colPower, this.rowPowers[row], p);
+            long b = Maths.mulMod(colPower, this.rowPowers2[row], p);
+            if((after >>> bit & 1L) != 0) {
+                this.first = add(this.first, a, p);
+                this.second = add(this.second, b, p);
+            } else {
+                this.first = add(this.first, p - a, p);
+                this.second = add(this.second, p - b, p);
+            }
+            diff &= diff - 1;
+        }
+    }
+
+    /**
+        * Laskee summan jäännöksen.
+        *
+        * @param a Ensimmäinen yhteenlaskettava väliltä [0, p].
+        * @param b Toinen yhteenlaskettava väliltä [0, p].
+        * @param p Moduli.
+        *
+        * @return Summan a+b jäännös modulo p.
+        */
+    private static long add(long a, long b, long p) {
+        long sum = a + b;
+        return sum >= p ? sum - p : sum;
+    }
+
+    /**
+        * Vertaa nykyistä tilaa historiaan, päivittää havaitun liikkeen ja kirjaa tilan historiaan.
+        */
+    private void record() {
+        int window = this.keys.length;
+        if(window == 0) {
+            return;
+        }
+        long p = this.modulus;
+        long key = Maths.powMod(this.first, this.order, p) * 0x9E3779B97F4A7C15L ^ Maths.powMod(this.second, this.order, p);
+
+        this.motion = null;
+        Long previous = this.latest.get(key);
+        if(previous != null) {
+            int slot = (int) (previous % window);
+            this.motion = this.displacement(this.generation - previous, this.firsts[slot], this.seconds[slot]);
+        }
+
+        int slot = (int) (this.generation % window);
+        if(this.generation >= window && this.latest.get(this.keys[slot]) == this.generation - window) {
+            this.latest.remove(this.keys[slot]);
+        }
+        this.keys[slot] = key;
+        this.firsts[slot] = this.first;
+        this.seconds[slot] = this.second;
+        this.latest.put(key, this.generation);
+        this.generation++;
+    }
+
+    /**
+        * Päättelee, millä siirtymällä historian tila kuvautuu nykyiseksi tilaksi.
+        *
+        * @param lag Historian tilan etäisyys sukupolvina.
+        * @param oldFirst Historian tilan ensimmäinen tiiviste.
+        * @param oldSecond Historian tilan toinen tiiviste.
+        *
+        * @return Liike, tai null jos tilat eivät ole toistensa siirtoja.
+        */
+    private Motion displacement(long lag, long oldFirst, long oldSecond) {
+        long p = this.modulus;
+        if(oldFirst == 0 || oldSecond == 0 || this.first == 0 || this.second == 0) {
+            // Nolla ei kerro siirtymää (esimerkiksi tyhjä tai toruksen ympäri jaksollinen kuvio), joten vain paikallaan toistuminen hyväksytään.
+            return oldFirst == this.first && oldSecond == this.second ? new Motion((int) lag, 0, 0) : null;
+        }
+        long firstRatio = Maths.mulMod(this.first, inverse(oldFirst, p), p);
+        long secondRatio = Maths.mulMod(this.second, inverse(oldSecond, p), p);
+        int dy = log(this.sortedRowPowers, this.rowLogs, Maths.mulMod(secondRatio, inverse(firstRatio, p), p));
+        if(dy < 0) {
+            return null;
+        }
+        int dx = log(this.sortedColPowers, this.colLogs, Maths.mulMod(firstRatio, inverse(this.rowPowers[dy], p), p));
+        if(dx < 0) {
+            return null;
+        }
+        return new Motion((int) lag, dx > this.width / 2 ? dx - this.width : dx, dy > this.height / 2 ? dy - this.height : dy);
+    }
+
+    /**
+        * Laskee käänteisalkion Fermat'n pienen lauseen avulla.
+        *
+        * @param a Nollasta eroava alkio.
+        * @param p Alkuluku.
+        *
+        * @return Alkio, jonka tulo a:n kanssa on 1.
+        */
+    private static long inverse(long a, long p) {
+        return Maths.powMod(a, p - 2, p);
+    }
+
+    /**
+        * Hakee potenssin eksponentin.
+        *
+        * @param sorted Potenssit suuruusjärjestyksessä.
+        * @param logs Potenssien eksponentit.
+        * @param power Haettava potenssi.
+        *
+        * @return Eksponentti, tai -1 jos luku ei ole potenssi.
+        */
+    private static int log(long[] sorted, int[] logs, long power) {
+        int i = Arrays.binarySearch(sorted, power);
+        return i >= 0 ? logs[i] : -1;
+    }
+
+    /**
+        * Palauttaa nykyisen tilan liikkeen.
+        *
+        * @return Liike, tai null jos tila ei toistu historiassa.
+        */
+    Motion getMotion() {
+        return this.motion;
+    }
+}
\ No newline at end of file
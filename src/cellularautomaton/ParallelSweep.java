@@ -0,0 +1,104 @@
+package cellularautomaton;
+
+import java.util.concurrent.*;
+
+import utils.*;
+
+/**
+    * Jakaa ruudukon vaakasuuntaisiin riviväleihin, jotka lasketaan rinnakkain ForkJoinPool-säiepoolissa. Kukin tehtävä kirjoittaa vain omiin riveihinsä, joten kohderuudukkoa ei tarvitse lukita. Rivivälin reunojen naapuririvit (myös WRAP-reunojen yli) luetaan lähderuudukosta, jota ei muokata laskennan aikana.
+    */
+class ParallelSweep extends RecursiveAction {
+    /**
+        * Sarjallistamisversio. RecursiveAction on sarjallistuva, mutta tehtäviä ei koskaan sarjallisteta.
+        */
+    private static final long serialVersionUID = 1L;
+
+    /**
+        * Tilasiirtymäydin.
+        */
+    private final RowKernel kernel;
+
+    /**
+        * Nykyinen tila.
+        */
+    private final BitGrid src;
+
+    /**
+        * Seuraava tila.
+        */
+    private final BitGrid dst;
+
+    /**
+        * Rivivälin ensimmäinen rivi.
+        */
+    private final int fromRow;
+
+    /**
+        * Rivivälin viimeistä riviä seuraava rivi.
+        */
+    private final int toRow;
+
+    /**
+        * Suurin rivimäärä, joka lasketaan jakamatta.
+        */
+    private final int bandRows;
+
+    /**
+        * Rivivälin tilastot.
+        */
+    private final GridStats stats = new GridStats();
+
+    /**
+        * @param kernel Tilasiirtymäydin.
+        * @param src Nykyinen tila.
+        * @param dst Seuraava tila.
+        * @param fromRow Rivivälin ensimmäinen rivi.
+        * @param toRow Rivivälin viimeistä riviä seuraava rivi.
+        * @param bandRows Suurin rivimäärä, joka lasketaan jakamatta.
+        */
+    private ParallelSweep(RowKernel kernel, BitGrid src, BitGrid dst, int fromRow, int toRow, int bandRows) {
+        this.kernel = kernel;
+        this.src = src;
+        this.dst = dst;
+        this.fromRow = fromRow;
+        this.toRow = toRow;
+        this.bandRows = bandRows;
+        this.stats.reset();
+    }
+
+    /**
+        * Laskee lähderuudukon annettujen rivien seuraavan tilan kohderuudukkoon rinnakkain ja lisää rivit annettuihin tilastoihin. Rivivälejä luodaan enintään neljä kertaa rinnakkaisuuden verran, jotta kuorma tasaantuu, mutta rivivälin koko on aina vähintään minBandRows.
+        *
+        * @param pool Säiepooli.
+        * @param kernel Tilasiirtymäydin.
+        * @param src Nykyinen tila.
+        * @param dst Seuraava tila.
+        * @param fromRow Ensimmäinen laskettava rivi.
+        * @param toRow Viimeistä laskettavaa riviä seuraava rivi.
+        * @param minBandRows Rivivälin vähimmäiskoko.
+        * @param stats Tilastot.
+        */
+    static void evolve(ForkJoinPool pool, RowKernel kernel, BitGrid src, BitGrid dst, int fromRow, int toRow, int minBandRows, GridStats stats) {
+        int bands = pool.getParallelism() * 4;
+        int bandRows = Math.max(minBandRows, (toRow - fromRow + bands - 1) / bands);
+        ParallelSweep sweep = new ParallelSweep(kernel, src, dst, fromRow, toRow, bandRows);
+        pool.invoke(sweep);
+        stats.merge(sweep.stats);
+    }
+
+    /**
+        * Laskee rivivälin suoraan tai jakaa sen kahtia ja yhdistää puoliskojen tilastot.
+        */
+    protected void compute() {
+        if(this.toRow - this.fromRow <= this.bandRows) {
+            this.kernel.evolveRows(this.src, this.dst, this.fromRow, this.toRow, this.stats);
+        } else {
+            int mid = (this.fromRow + this.toRow) >>> 1;
+            ParallelSweep first = new ParallelSweep(this.kernel, this.src, this.dst, this.fromRow, mid, this.bandRows);
+            ParallelSweep second = new ParallelSweep(this.kernel, this.src, this.dst, mid, this.toRow, this.bandRows);
+            invokeAll(first, second);
+            this.stats.merge(first.stats);
+            this.stats.merge(second.stats);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,415 @@
+package cellularautomaton;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.regex.*;
+
+import utils.*;
+
+/**
+    * Soluruudukkotiloja yleisesti käytettyyn ajopituuskoodattuun RLE-muotoon kirjoittava ja siitä lukeva työkaluluokka. Useimmat julkaistut kuviot ovat tässä muodossa:
+    *
+    * <pre>
+    * #N Glider
+    * #C Kommenttirivit alkavat merkillä #.
+    * x = 3, y = 3, rule = B3/S23
+    * bob$2bo$3o!
+    * </pre>
+    *
+    * Otsakerivin x ja y ovat ruudukon leveys ja korkeus, ja rule on B/S-muotoinen sääntömerkkijono (myös vanha S/B-muoto "23/3" hyväksytään). Puuttuva sääntö tarkoittaa Game of Lifea. Säännön pääte ":T" leveys "," korkeus tarkoittaa wrap-reunakäyttäytymistä ja ":P" dead-reunakäyttäytymistä annetun kokoisessa ruudukossa; ilman päätettä reunakäyttäytyminen on dead. Alive-reunakäyttäytymistä ei voi esittää, joten se kirjoitetaan dead-reunakäyttäytymisenä.
+    *
+    * Sisällössä "b" tai "." on kuollut solu, "o" tai "A" elävä solu ja "$" rivin loppu, ja kutakin voi edeltää toistojen lukumäärä. Rivin lopun kuolleet solut ja sisällön lopun tyhjät rivit jätetään pois, ja sisältö päättyy merkkiin "!", jonka jälkeinen teksti ohitetaan. Tyhjätilamerkit sisällössä ohitetaan.
+    *
+    * Luku ja kirjoitus käsittelevät tiedostoa virtana kiinteän kokoisen puskurin kautta ja ruudukkoa rivi kerrallaan, joten muistia tarvitaan ruudukon lisäksi vain vakiomäärä riippumatta kuvion koosta.
+    */
+abstract public class RLEFile {
+    /**
+        * RLE-tiedostojen tiedostopääte.
+        */
+    public static final String FILE_EXTENSION = "rle";
+
+    /**
+        * Kirjoitettavien rivien enimmäispituus.
+        */
+    private static final int LINE_LENGTH = 70;
+
+    /**
+        * Otsakerivin enimmäispituus, jota pidemmät rivit hylätään.
+        */
+    private static final int MAX_HEADER_LENGTH = 1024;
+
+    /**
+        * Otsakerivi, josta tyhjätilamerkit on poistettu.
+        */
+    private static final Pattern HEADER = Pattern.compile("x=(\\d{1,10}),y=(\\d{1,10})(?:,rule=(.*))?", Pattern.CASE_INSENSITIVE);
+
+    /**
+        * Säännön pääte, joka määrittää rajatun ruudukon.
+        */
+    private static final Pattern BOUNDED = Pattern.compile("([TP])(\\d{1,10}),(\\d{1,10})", Pattern.CASE_INSENSITIVE);
+
+    /**
+        * Vanhan muodon sääntömerkkijono: eloonjäämissäännöt "/" syntymäsäännöt.
+        */
+    private static final Pattern SURVIVAL_BIRTH = Pattern.compile("(\\d*)/(\\d*)");
+
+    /**
+        * Luo CAState-olion RLE-muotoisesta merkkijonosta.
+        *
+        * @param str RLE-muotoinen merkkijono.
+        *
+        * @return CAState-olio jos merkkijono on validi, muutoin null.
+        */
+    public static CAState read(String str) {
+        try {
+            return read(new StringReader(str));
+        } catch(IOException e) {
+            return null;
+        }
+    }
+
+    /**
+        * Lukee CAState-olion RLE-muotoisesta merkkivirrasta. Elävät solut kootaan rivi kerrallaan sanoiksi ja kopioidaan ruudukkoon, joten koordinaattiluetteloa ei muodosteta. Virtaa ei suljeta.
+        *
+        * @param reader Merkkivirta.
+        *
+        * @return CAState-olio jos virran sisältö on validi, muutoin null.
+        *
+        * @exception IOException Jos virran lukeminen epäonnistui.
+        */
+    public static CAState read(Reader reader) throws IOException {
+        return parse(new CAFile.Input(reader, null));
+    }
+
+    /**
+        * Lukee CAState-olion tavupuskurista, jonka tavut tulkitaan ASCII-merkeiksi. Puskurin sijainti siirtyy luetun sisällön loppuun.
+        *
+        * @param buffer Tavupuskuri, esimerkiksi muistikuvattu tiedosto.
+        *
+        * @return CAState-olio jos puskurin sisältö on validi, muutoin null.
+        */
+    public static CAState read(ByteBuffer buffer) {
+        try {
+            return parse(new CAFile.Input(null, buffer));
+        } catch(IOException e) {
+            return null;
+        }
+    }
+
+    /**
+        * Lukee CAState-olion RLE-tiedostosta kuvaamalla sen muistiin (ks. read(ByteBuffer)).
+        *
+        * @param file Tiedosto.
+        *
+        * @return CAState-olio jos tiedoston sisältö on validi, muutoin null.
+        *
+        * @exception FileNotFoundException Jos tiedoston avaaminen epäonnistui.
+        * @exception IOException Jos tiedoston lukeminen epäonnistui.
+        */
+    public static CAState read(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+        * Jäsentää kommenttirivit, otsakerivin ja sisällön.
+        *
+        * @param in Syöte.
+        *
+        * @return CAState-olio jos syöte on validi, muutoin null.
+        *
+        * @exception IOException Jos syötteen lukeminen epäonnistui.
+        */
+    private static CAState parse(CAFile.Input in) throws IOException {
+        String header;
+        do {
+            header = readLine(in);
+            if(header == null) {
+                return null;
+            }
+        } while(header.isEmpty() || header.charAt(0) == '#');
+
+        Matcher matcher = HEADER.matcher(header.replaceAll("\\s", ""));
+        if(!matcher.matches()) {
+            return null;
+        }
+        long cols = Long.parseLong(matcher.group(1));
+        long rows = Long.parseLong(matcher.group(2));
+        CARules rules = CARules.newLifeRules();
+        String rule = matcher.group(3);
+        if(rule != null) {
+            int colon = rule.indexOf(':');
+            rules = parseRule(colon < 0 ? rule : rule.substring(0, colon));
+            if(rules == null) {
+                return null;
+            }
+            if(colon >= 0) {
+                Matcher bounded = BOUNDED.matcher(rule.substring(colon + 1));
+                if(!bounded.matches()) {
+                    return null;
+                }
+                boolean torus = Character.toUpperCase(bounded.group(1).charAt(0)) == 'T';
+                rules.setEdgeBehavior(torus ? CARules.EdgeBehavior.WRAP : CARules.EdgeBehavior.DEAD);
+                // Rajatun ruudukon nollakoko tarkoittaa rajaamatonta suuntaa, jolloin käytetään kuvion kokoa.
+                cols = Math.max(cols, Long.parseLong(bounded.group(2)));
+                rows = Math.max(rows, Long.parseLong(bounded.group(3)));
+            }
+        }
+        if(cols > Integer.MAX_VALUE || rows > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        CAState state = new CAState();
+        state.setRules(rules);
+        state.setDimensions((int) cols, (int) rows);
+        return readBody(in, state) ? state : null;
+    }
+
+    /**
+        * Jäsentää B/S- tai S/B-muotoisen sääntömerkkijonon ilman rajatun ruudukon päätettä.
+        *
+        * @param str Sääntömerkkijono.
+        *
+        * @return Säännöt dead-reunakäyttäytymisellä, tai null jos merkkijono ei ole validi.
+        */
+    static CARules parseRule(String str) {
+        Matcher matcher = SURVIVAL_BIRTH.matcher(str);
+        if(matcher.matches()) {
+            return CARules.parseRuleString("B" + matcher.group(2) + "/S" + matcher.group(1));
+        }
+        return CARules.parseRuleString(str);
+    }
+
+    /**
+        * Lukee syötteestä rivin ilman rivinvaihtomerkkejä.
+        *
+        * @param in Syöte.
+        *
+        * @return Rivi, tai null jos syöte on lopussa tai rivi on liian pitkä.
+        *
+        * @exception IOException Jos syötteen lukeminen epäonnistui.
+        */
+    private static String readLine(CAFile.Input in) throws IOException {
+        int c = in.read();
+        if(c == -1) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        while(c != -1 && c != '\n') {
+            if(c != '\r') {
+                if(sb.length() == MAX_HEADER_LENGTH) {
+                    return null;
+                }
+                sb.append((char) c);
+            }
+            c = in.read();
+        }
+        return sb.toString();
+    }
+
+    /**
+        * Jäsentää sisällön ja asettaa elävät solut ruudukkoon. Sisältö on valtaosa suuresta tiedostosta, joten se jäsennetään suoraan syötteen puskurista tilakoneella kuten CAFile-tekstimuodon sisältö. Nykyisen rivin elävät ajot asetetaan rivin sanoihin, jotka kopioidaan ruudukkoon rivin vaihtuessa. Kuolleiden ajojen ja rivinvaihtojen ruudukon ulkopuolelle menevät osat ohitetaan, mutta ruudukon ulkopuolinen elävä solu tekee sisällöstä epäkelvon.
+        *
+        * @param in Syöte.
+        * @param state Soluautomaattitila, jonka kaikki solut ovat kuolleita.
+        *
+        * @return Kertoo, oliko sisältö validi.
+        *
+        * @exception IOException Jos syötteen lukeminen epäonnistui.
+        */
+    private static boolean readBody(CAFile.Input in, CAState state) throws IOException {
+        BitGrid grid = state.cells;
+        int cols = state.getCols();
+        int rows = state.getRows();
+        long[] words = new long[grid.getWordsPerRow()];
+        boolean rowLive = false;
+        int row = 0;
+        int col = 0;
+        // Negatiivinen arvo tarkoittaa, ettei toistojen lukumäärää ole annettu.
+        long count = -1;
+        boolean end = false;
+        while(!end && (in.pos < in.limit || in.fill())) {
+            char[] buffer = in.buffer;
+            int limit = in.limit;
+            int i = in.pos;
+            for(; i < limit; i++) {
+                char c = buffer[i];
+                if('0' <= c && c <= '9') {
+                    count = (count < 0 ? 0 : count * 10) + (c - '0');
+                    if(count > Integer.MAX_VALUE) {
+                        return false;
+                    }
+                    continue;
+                }
+                int n = count < 0 ? 1 : (int) count;
+                if(c == 'b' || c == '.') {
+                    col = (int) Math.min((long) col + n, cols);
+                } else if(c == 'o' || c == 'A') {
+                    if(row >= rows || (long) col + n > cols) {
+                        return false;
+                    }
+                    CABinaryFile.setRange(words, col, col + n);
+                    rowLive |= n > 0;
+                    col += n;
+                } else if(c == '$') {
+                    if(rowLive) {
+                        grid.setRow(row, words);
+                        java.util.Arrays.fill(words, 0L);
+                        rowLive = false;
+                    }
+                    row = (int) Math.min((long) row + n, rows);
+                    col = 0;
+                } else if(c == '!') {
+                    end = true;
+                    break;
+                } else if(!Character.isWhitespace(c) || count >= 0) {
+                    return false;
+                }
+                count = -1;
+            }
+            in.pos = i;
+        }
+
+        if(count >= 0) {
+            return false;
+        }
+        if(rowLive) {
+            grid.setRow(row, words);
+        }
+        state.stats.invalidate();
+        return true;
+    }
+
+    /**
+        * Luo soluautomaattitilan RLE-muotoisen merkkijonoesityksen.
+        *
+        * @param game Soluautomaattitila.
+        *
+        * @return RLE-muotoinen merkkijono.
+        */
+    public static String write(CAState game) {
+        StringWriter writer = new StringWriter();
+        try {
+            write(game, writer);
+        } catch(IOException e) {
+            // StringWriter ei heitä poikkeuksia.
+            throw new IllegalStateException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+        * Kirjoittaa soluautomaattitilan RLE-muodossa merkkivirtaan. Ruudukko käydään läpi rivijärjestyksessä, ja ajot etsitään sanoittain, joten aika on lineaarinen ruudukon sanojen ja ajojen lukumäärään nähden. Virtaa ei suljeta eikä tyhjennetä.
+        *
+        * @param game Soluautomaattitila.
+        * @param writer Merkkivirta.
+        *
+        * @exception IOException Jos virtaan kirjoittaminen epäonnistui.
+        */
+    public static void write(CAState game, Writer writer) throws IOException {
+        int cols = game.getCols();
+        int rows = game.getRows();
+        CARules rules = game.getRules();
+        String rule = rules.toRuleString();
+        if(rules.getEdgeBehavior() == CARules.EdgeBehavior.WRAP) {
+            rule += ":T" + cols + "," + rows;
+        }
+
+        CAFile.Output out = new CAFile.Output(writer);
+        out.write("x = " + cols + ", y = " + rows + ", rule = " + rule + "\n");
+        BitGrid grid = game.cells;
+        long[] words = new long[grid.getWordsPerRow()];
+        int line = 0;
+        // Viimeisen kirjoitetun rivin numero; rivien vaihdot kirjoitetaan vasta seuraavan elävän rivin alkaessa.
+        int written = 0;
+        for(int row = 0; row < rows; row++) {
+            grid.getRow(row, words);
+            int col = CABinaryFile.nextChange(words, 0, false, cols);
+            if(col == cols) {
+                continue;
+            }
+            line = writeRun(out, line, row - written, '$');
+            written = row;
+            int end = 0;
+            while(col < cols) {
+                line = writeRun(out, line, col - end, 'b');
+                end = CABinaryFile.nextChange(words, col, true, cols);
+                line = writeRun(out, line, end - col, 'o');
+                col = end < cols ? CABinaryFile.nextChange(words, end, false, cols) : cols;
+            }
+        }
+        out.write("!\n");
+        out.flush();
+    }
+
+    /**
+        * Kirjoittaa soluautomaattitilan RLE-muodossa tavuvirtaan ASCII-merkkeinä (ks. write(CAState, Writer)). Virta tyhjennetään mutta sitä ei suljeta.
+        *
+        * @param game Soluautomaattitila.
+        * @param stream Tavuvirta.
+        *
+        * @exception IOException Jos virtaan kirjoittaminen epäonnistui.
+        */
+    public static void write(CAState game, OutputStream stream) throws IOException {
+        Writer writer = new OutputStreamWriter(stream, "US-ASCII");
+        write(game, writer);
+        writer.flush();
+    }
+
+    /**
+        * Kirjoittaa soluautomaattitilan RLE-tiedostoon (ks. write(CAState, Writer)).
+        *
+        * @param game Soluautomaattitila.
+        * @param file Tiedosto.
+        *
+        * @exception FileNotFoundException Jos tiedoston avaaminen kirjoitettavaksi epäonnistui.
+        * @exception IOException Jos tiedostoon kirjoittaminen epäonnistui.
+        */
+    public static void write(CAState game, File file) throws IOException {
+        OutputStream stream = new FileOutputStream(file);
+        try {
+            write(game, stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+        * Kirjoittaa ajon, jonka lukumäärä jätetään pois jos se on 1. Rivi vaihdetaan ennen ajoa, jos ajo ei muuten mahtuisi riville.
+        *
+        * @param out Tuloste.
+        * @param line Nykyisen rivin pituus.
+        * @param count Ajon pituus; tyhjää ajoa ei kirjoiteta.
+        * @param tag Ajon merkki.
+        *
+        * @return Rivin pituus ajon jälkeen.
+        *
+        * @exception IOException Jos kirjoittaminen epäonnistui.
+        */
+    private static int writeRun(CAFile.Output out, int line, int count, char tag) throws IOException {
+        if(count == 0) {
+            return line;
+        }
+        int length = 1;
+        if(count > 1) {
+            for(int value = count; value > 0; value /= 10) {
+                length++;
+            }
+        }
+        if(line + length > LINE_LENGTH) {
+            out.write('\n');
+            line = 0;
+        }
+        if(count > 1) {
+            out.writeNumber(count);
+        }
+        out.write(tag);
+        return line + length;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,173 @@
+package cellularautomaton;
+
+import java.util.*;
+
+import utils.*;
+
+/**
+    * Tilasiirtymäytimien yhteinen runko. Ydin lukee lähderuudukkoa kolmen rivin liukuvana ikkunana ja laskee kerrallaan yhden rivin, joten se ei oleta mitään ruudukon tallennustavasta rivien lukemisen ja kirjoittamisen lisäksi. Aliluokat määrittelevät, miten rivin seuraava tila lasketaan.
+    */
+abstract class RowKernel {
+    /**
+        * Reunakäyttäytyminen, jonka mukaan ruudukon ulkopuoliset solut tulkitaan.
+        */
+    protected final CARules.EdgeBehavior edgeBehavior;
+
+    /**
+        * evolve()-metodin uudelleenkäytettävät rivipuskurit (kolme reunustettua riviä ja tulosrivi), tai null jos niitä ei ole vielä varattu.
+        */
+    private long[][] buffers;
+
+    /**
+        * @param rules Soluautomaatin säännöt.
+        */
+    RowKernel(CARules rules) {
+        this.edgeBehavior = rules.getEdgeBehavior();
+    }
+
+    /**
+        * Kertoo, onko reunakäyttäytyminen WRAP, jolloin ruudukon vastakkaiset reunat ovat toistensa naapureita.
+        *
+        * @return Totuusarvo.
+        */
+    boolean wraps() {
+        return this.edgeBehavior == CARules.EdgeBehavior.WRAP;
+    }
+
+    /**
+        * Laskee lähderuudukon seuraavan tilan kohderuudukkoon. Ruudukkojen tulee olla samankokoiset ja eri olioita. Rivipuskurit varataan vain ensimmäisellä kutsulla ja ruudukon koon muuttuessa, joten metodia ei saa kutsua samalle ytimelle useasta säikeestä yhtä aikaa.
+        *
+        * @param src Nykyinen tila.
+        * @param dst Seuraava tila.
+        */
+    void evolve(BitGrid src, BitGrid dst) {
+        this.evolve(src, dst, 0, src.getRows(), null);
+    }
+
+    /**
+        * Laskee seuraavan tilan annetuille riveille samoin kuin evolve(BitGrid, BitGrid) ja lisää lasketut rivit annettuihin tilastoihin. Muita kohderuudukon rivejä ei kosketa.
+        *
+        * @param src Nykyinen tila.
+        * @param dst Seuraava tila.
+        * @param fromRow Ensimmäinen laskettava rivi.
+        * @param toRow Viimeistä laskettavaa riviä seuraava rivi.
+        * @param stats Tilastot, tai null jos tilastoja ei koota.
+        */
+    void evolve(BitGrid src, BitGrid dst, int fromRow, int toRow, GridStats stats) {
+        int length = haloLength(src.getCols());
+        if(this.buffers == null || this.buffers[0].length != length) {
+            this.buffers = new long[][] {new long[length], new long[length], new long[length], new long[src.getWordsPerRow()]};
+        }
+        this.evolveRows(src, dst, fromRow, toRow, stats, this.buffers[0], this.buffers[1], this.buffers[2], this.buffers[3]);
+    }
+
+    /**
+        * Laskee seuraavan tilan annetuille riveille omilla rivipuskureilla, joten metodia voi kutsua usealle erilliselle rivivälille yhtä aikaa. Muita kohderuudukon rivejä ei kosketa.
+        *
+        * @param src Nykyinen tila.
+        * @param dst Seuraava tila.
+        * @param fromRow Ensimmäinen laskettava rivi.
+        * @param toRow Viimeistä laskettavaa riviä seuraava rivi.
+        * @param stats Rivivälin tilastot, tai null jos tilastoja ei koota.
+        */
+    void evolveRows(BitGrid src, BitGrid dst, int fromRow, int toRow, GridStats stats) {
+        int length = haloLength(src.getCols());
+        this.evolveRows(src, dst, fromRow, toRow, stats, new long[length], new long[length], new long[length], new long[src.getWordsPerRow()]);
+    }
+
+    /**
+        * Laskee seuraavan tilan annetuille riveille annettuja rivipuskureita käyttäen.
+        *
+        * @param src Nykyinen tila.
+        * @param dst Seuraava tila.
+        * @param fromRow Ensimmäinen laskettava rivi.
+        * @param toRow Viimeistä laskettavaa riviä seuraava rivi.
+        * @param stats Tilastot, tai null jos tilastoja ei koota.
+        * @param up Puskuri, jonka pituus on haloLength(src.getCols()).
+        * @param mid Puskuri, jonka pituus on haloLength(src.getCols()).
+        * @param down Puskuri, jonka pituus on haloLength(src.getCols()).
+        * @param out Puskuri, jonka pituus on src.getWordsPerRow().
+        */
+    private void evolveRows(BitGrid src, BitGrid dst, int fromRow, int toRow, GridStats stats, long[] up, long[] mid, long[] down, long[] out) {
+        this.loadRow(src, fromRow - 1, up);
+        this.loadRow(src, fromRow, mid);
+        for(int row = fromRow; row < toRow; row++) {
+            this.loadRow(src, row + 1, down);
+            this.evolveRow(up, mid, down, out, src.getCols());
+            dst.setRow(row, out);
+            if(stats != null) {
+                stats.addEvolvedRow(row, mid, out, src.getCols());
+            }
+
+            long[] temp = up;
+            up = mid;
+            mid = down;
+            down = temp;
+        }
+    }
+
+    /**
+        * Palauttaa reunustetun rivipuskurin pituuden. Puskurin sana 0 on läntinen reunus, jonka bitti 63 on sarake -1, ja sanasta 1 alkaen puskuri sisältää rivin sanat siten, että sarake cols on itäinen reunussolu. Viimeinen sana takaa, että jokaisella rivin sanalla on naapurisana kummallakin puolella.
+        *
+        * @param cols Sarakkeiden lukumäärä.
+        *
+        * @return Puskurin pituus sanoina.
+        */
+    static int haloLength(int cols) {
+        return BitGrid.wordsPerRow(cols) + 2;
+    }
+
+    /**
+        * Lukee rivin reunustettuun puskuriin ja päivittää reunussolut reunakäyttäytymisen mukaan. Ruudukon ulkopuolisten rivien sisältö määräytyy samoin. Reunukset päivitetään kerran riviä kohden, joten evolveRow() voi lukea naapurisanat ilman reunatarkistuksia.
+        *
+        * @param src Ruudukko.
+        * @param row Rivi, joka voi olla myös ruudukon ulkopuolella.
+        * @param buf Puskuri, jonka pituus on haloLength(src.getCols()).
+        */
+    void loadRow(BitGrid src, int row, long[] buf) {
+        loadRow(src, row, buf, this.edgeBehavior);
+    }
+
+    /**
+        * Lukee rivin reunustettuun puskuriin annetun reunakäyttäytymisen mukaan. Ajonaikaisesti käännetyt ytimet kutsuvat tätä vakiona annetulla reunakäyttäytymisellä, jolloin JIT-kääntäjä voi karsia muiden reunakäyttäytymisten haarat.
+        *
+        * @param src Ruudukko.
+        * @param row Rivi, joka voi olla myös ruudukon ulkopuolella.
+        * @param buf Puskuri, jonka pituus on haloLength(src.getCols()).
+        * @param edgeBehavior Reunakäyttäytyminen.
+        */
+    static void loadRow(BitGrid src, int row, long[] buf, CARules.EdgeBehavior edgeBehavior) {
+        int rows = src.getRows();
+        int cols = src.getCols();
+        long west;
+        long east;
+        if(edgeBehavior == CARules.EdgeBehavior.WRAP) {
+            src.getRow(Maths.mod(row, rows), buf, 1);
+            west = (buf[1 + ((cols - 1) >>> 6)] >>> (cols - 1)) & 1L;
+            east = buf[1] & 1L;
+        } else {
+            west = edgeBehavior == CARules.EdgeBehavior.ALIVE ? 1L : 0L;
+            east = west;
+            if(0 <= row && row < rows) {
+                src.getRow(row, buf, 1);
+            } else {
+                Arrays.fill(buf, -west);
+                buf[buf.length - 2] &= BitGrid.lastWordMask(cols);
+            }
+        }
+        buf[0] = west << 63;
+        int k = 1 + (cols >>> 6);
+        buf[k] = (buf[k] & ~(1L << cols)) | (east << cols);
+    }
+
+    /**
+        * Laskee yhden rivin seuraavan tilan kolmesta peräkkäisestä reunustetusta rivistä. Rivin viimeisen sanan ylimääräisten bittien tulee olla tuloksessa nollia.
+        *
+        * @param up Edellinen rivi reunuksineen.
+        * @param mid Laskettava rivi reunuksineen.
+        * @param down Seuraava rivi reunuksineen.
+        * @param out Puskuri, johon seuraava tila kirjoitetaan ilman reunuksia.
+        * @param cols Sarakkeiden lukumäärä.
+        */
+    abstract void evolveRow(long[] up, long[] mid, long[] down, long[] out, int cols);
+}
\ No newline at end of file
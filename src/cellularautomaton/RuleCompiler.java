@@ -0,0 +1,200 @@
+package cellularautomaton;
+
+import java.io.*;
+import java.lang.invoke.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.tools.*;
+
+/**
+    * Kääntää säännöille erikoistetun tilasiirtymäytimen ajon aikana. Ytimen lähdekoodi muodostetaan säännöistä siten, että syntymä- ja eloonjäämissäännöt ovat sanan bittitasoille kirjoitettuja vakiolausekkeita ja reunakäyttäytyminen on vakio, jolloin JIT-kääntäjä voi sieventää ne eikä sisimmässä silmukassa käydä läpi sääntötaulukoita. Lähdekoodi käännetään muistissa javax.tools-rajapinnalla ja ladataan piilotettuna luokkana (MethodHandles.Lookup.defineHiddenClass()).
+    *
+    * Käännetyt ytimet tallennetaan välimuistiin sääntöjen mukaan, joten samoille säännöille käännetään vain kerran. Mikäli kääntäjä ei ole käytettävissä (esimerkiksi pelkässä JRE-ympäristössä) tai kääntäminen epäonnistuu, compile() palauttaa null, ja kutsujan tulee käyttää tulkitsevaa SwarKernel-ydintä.
+    */
+final class RuleCompiler {
+    /**
+        * Käännettävän luokan nimi paketin sisällä. Piilotetut luokat saavat yksilöllisen nimen, joten sama nimi kelpaa kaikille ytimille.
+        */
+    private static final String CLASS_NAME = "CompiledKernel";
+
+    /**
+        * Käännettyjen ytimien konstruktorit sääntöjen mukaan. Tyhjä arvo tarkoittaa, että kääntäminen on epäonnistunut, jolloin sitä ei yritetä uudelleen.
+        */
+    private static final ConcurrentMap<Integer, Optional<MethodHandle>> CACHE = new ConcurrentHashMap<Integer, Optional<MethodHandle>>();
+
+    private RuleCompiler() {
+    }
+
+    /**
+        * Kertoo, onko ajoympäristössä Java-kääntäjä.
+        *
+        * @return Totuusarvo.
+        */
+    static boolean isAvailable() {
+        return ToolProvider.getSystemJavaCompiler() != null;
+    }
+
+    /**
+        * Palauttaa annetuille säännöille käännetyn ytimen. Ensimmäinen kutsu kullekin säännöille kääntää ytimen, mikä voi kestää sekunnin.
+        *
+        * @param rules Soluautomaatin säännöt.
+        *
+        * @return Ydin, tai null jos kääntäminen ei onnistu.
+        */
+    static RowKernel compile(CARules rules) {
+        Integer key = (RuleTable.ruleKey(rules) << 2) | rules.getEdgeBehavior().ordinal();
+        Optional<MethodHandle> constructor = CACHE.get(key);
+        if(constructor == null) {
+            Optional<MethodHandle> created = Optional.ofNullable(define(source(rules)));
+            constructor = CACHE.putIfAbsent(key, created);
+            if(constructor == null) {
+                constructor = created;
+            }
+        }
+        if(!constructor.isPresent()) {
+            return null;
+        }
+        try {
+            return (RowKernel) constructor.get().invokeExact(rules);
+        } catch(Throwable e) {
+            return null;
+        }
+    }
+
+    /**
+        * Muodostaa ytimen lähdekoodin.
+        *
+        * @param rules Soluautomaatin säännöt.
+        *
+        * @return Lähdekoodi.
+        */
+    static String source(CARules rules) {
+        List<String> born = new ArrayList<String>();
+        List<String> survived = new ArrayList<String>();
+        for(int n = 0; n < CARules.NEIGHBOR_COUNT; n++) {
+            if(rules.getBirthRule(n)) {
+                born.add(countTerm(n));
+            }
+            if(rules.getSurvivalRule(n)) {
+                survived.add(countTerm(n));
+            }
+        }
+        String next;
+        if(born.isEmpty() && survived.isEmpty()) {
+            next = "0L";
+        } else if(born.isEmpty()) {
+            next = "(" + String.join(" | ", survived) + ") & c";
+        } else if(survived.isEmpty()) {
+            next = "(" + String.join(" | ", born) + ") & ~c";
+        } else {
+            next = "((" + String.join(" | ", born) + ") & ~c) | ((" + String.join(" | ", survived) + ") & c)";
+        }
+
+        return "package cellularautomaton;\n"
+            + "\n"
+            + "import utils.*;\n"
+            + "\n"
+            + "final class " + CLASS_NAME + " extends RowKernel {\n"
+            + "    " + CLASS_NAME + "(CARules rules) {\n"
+            + "        super(rules);\n"
+            + "    }\n"
+            + "\n"
+            + "    void loadRow(BitGrid src, int row, long[] buf) {\n"
+            + "        loadRow(src, row, buf, CARules.EdgeBehavior." + rules.getEdgeBehavior().name() + ");\n"
+            + "    }\n"
+            + "\n"
+            + "    void evolveRow(long[] up, long[] mid, long[] down, long[] out, int cols) {\n"
+            + "        for(int k = 0; k < out.length; k++) {\n"
+            + "            long n = up[k + 1];\n"
+            + "            long c = mid[k + 1];\n"
+            + "            long s = down[k + 1];\n"
+            + "            long nw = (n << 1) | (up[k] >>> 63);\n"
+            + "            long w = (c << 1) | (mid[k] >>> 63);\n"
+            + "            long sw = (s << 1) | (down[k] >>> 63);\n"
+            + "            long ne = (n >>> 1) | (up[k + 2] << 63);\n"
+            + "            long e = (c >>> 1) | (mid[k + 2] << 63);\n"
+            + "            long se = (s >>> 1) | (down[k + 2] << 63);\n"
+            + "\n"
+            + "            long t = nw ^ n;\n"
+            + "            long aSum = t ^ ne;\n"
+            + "            long aCarry = (nw & n) | (t & ne);\n"
+            + "            t = w ^ e;\n"
+            + "            long bSum = t ^ sw;\n"
+            + "            long bCarry = (w & e) | (t & sw);\n"
+            + "            long cSum = s ^ se;\n"
+            + "            long cCarry = s & se;\n"
+            + "            t = aSum ^ bSum;\n"
+            + "            long b0 = t ^ cSum;\n"
+            + "            long carry = (aSum & bSum) | (t & cSum);\n"
+            + "            t = aCarry ^ bCarry;\n"
+            + "            long twos = t ^ cCarry;\n"
+            + "            long fours = (aCarry & bCarry) | (t & cCarry);\n"
+            + "            long b1 = twos ^ carry;\n"
+            + "            long fours2 = twos & carry;\n"
+            + "            long b2 = fours ^ fours2;\n"
+            + "            long b3 = fours & fours2;\n"
+            + "\n"
+            + "            out[k] = " + next + ";\n"
+            + "        }\n"
+            + "        out[out.length - 1] &= BitGrid.lastWordMask(cols);\n"
+            + "    }\n"
+            + "}\n";
+    }
+
+    /**
+        * Muodostaa lausekkeen, joka on tosi niissä biteissä, joissa bittitasoina b0...b3 esitetty naapurimäärä on tasan count. Vastaa SwarKernel.countEquals()-metodia.
+        *
+        * @param count Naapurimäärä.
+        *
+        * @return Lauseke.
+        */
+    private static String countTerm(int count) {
+        return "(" + ((count & 1) != 0 ? "b0" : "~b0")
+            + " & " + ((count & 2) != 0 ? "b1" : "~b1")
+            + " & " + ((count & 4) != 0 ? "b2" : "~b2")
+            + " & " + ((count & 8) != 0 ? "b3" : "~b3") + ")";
+    }
+
+    /**
+        * Kääntää lähdekoodin muistissa ja lataa sen piilotettuna luokkana tähän pakettiin.
+        *
+        * @param source Lähdekoodi.
+        *
+        * @return Luokan konstruktori tyypillä (CARules)RowKernel, tai null jos kääntäminen tai lataaminen epäonnistuu.
+        */
+    private static MethodHandle define(final String source) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if(compiler == null) {
+            return null;
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///cellularautomaton/" + CLASS_NAME + ".java"), JavaFileObject.Kind.SOURCE) {
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        try(StandardJavaFileManager standard = compiler.getStandardFileManager(null, null, null)) {
+            JavaFileManager manager = new ForwardingJavaFileManager<StandardJavaFileManager>(standard) {
+                public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+                    return new SimpleJavaFileObject(URI.create("bytes:///" + className.replace('.', '/') + kind.extension), kind) {
+                        public OutputStream openOutputStream() {
+                            return bytes;
+                        }
+                    };
+                }
+            };
+            List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"), "-proc:none", "-g:none", "-nowarn");
+            DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+            if(!compiler.getTask(null, manager, diagnostics, options, null, Collections.singletonList(file)).call()) {
+                return null;
+            }
+
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes.toByteArray(), true);
+            return lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class, CARules.class))
+                .asType(MethodType.methodType(RowKernel.class, CARules.class));
+        } catch(IOException | ReflectiveOperationException | RuntimeException | LinkageError e) {
+            return null;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,121 @@
+package cellularautomaton;
+
+import java.util.concurrent.*;
+
+/**
+    * Säännöistä koottu hakutaulukko, joka kertoo solun seuraavan tilan suoraan sen 3x3-naapuruston bittiasetelmasta. Taulukot ovat muuttumattomia, ja kutakin erilaista syntymä- ja eloonjäämissääntöjen yhdistelmää kohden luodaan vain yksi taulukko.
+    *
+    * Naapuruston bittiasetelmassa bitti 3*(dx+1) + (dy+1) on solun (col+dx, row+dy) tila, eli sarakkeet ovat peräkkäisinä kolmen bitin ryhminä. Tällöin naapurustoa voidaan liu'uttaa sarake kerrallaan kolmen bitin siirrolla.
+    */
+final class RuleTable {
+    /**
+        * 3x3-naapuruston bittiasetelmien lukumäärä.
+        */
+    static final int NEIGHBORHOODS = 1 << 9;
+
+    /**
+        * Keskimmäisen solun bitti naapuruston bittiasetelmassa.
+        */
+    static final int CENTER = 1 << 4;
+
+    /**
+        * Jo luodut taulukot sääntöjen tunnisteen mukaan.
+        */
+    private static final ConcurrentMap<Integer, RuleTable> CACHE = new ConcurrentHashMap<Integer, RuleTable>();
+
+    /**
+        * Solun seuraava tila kullekin naapuruston bittiasetelmalle.
+        */
+    private final boolean[] next = new boolean[NEIGHBORHOODS];
+
+    /**
+        * 4x4-ruudukon keskimmäisten 2x2 solun seuraava tila kullekin 4x4-ruudukon bittiasetelmalle, tai null jos taulukkoa ei ole vielä tarvittu.
+        */
+    private volatile byte[] next4x4;
+
+    /**
+        * Kokoaa taulukon sääntöjen perusteella.
+        *
+        * @param rules Soluautomaatin säännöt.
+        */
+    private RuleTable(CARules rules) {
+        for(int cells = 0; cells < NEIGHBORHOODS; cells++) {
+            int alive = Integer.bitCount(cells & ~CENTER);
+            this.next[cells] = (cells & CENTER) != 0 ? rules.getSurvivalRule(alive) : rules.getBirthRule(alive);
+        }
+    }
+
+    /**
+        * Palauttaa annettuja sääntöjä vastaavan taulukon. Reunakäyttäytyminen ei vaikuta taulukkoon.
+        *
+        * @param rules Soluautomaatin säännöt.
+        *
+        * @return Hakutaulukko.
+        */
+    static RuleTable forRules(CARules rules) {
+        Integer key = ruleKey(rules);
+        RuleTable table = CACHE.get(key);
+        if(table == null) {
+            RuleTable created = new RuleTable(rules);
+            table = CACHE.putIfAbsent(key, created);
+            if(table == null) {
+                table = created;
+            }
+        }
+        return table;
+    }
+
+    /**
+        * Muodostaa sääntöjen tunnisteen, jonka bitti n on syntymäsääntö ja bitti 9 + n eloonjäämissääntö n naapurille.
+        *
+        * @param rules Soluautomaatin säännöt.
+        *
+        * @return Tunniste.
+        */
+    static int ruleKey(CARules rules) {
+        return rules.getKey();
+    }
+
+    /**
+        * Palauttaa solun seuraavan tilan.
+        *
+        * @param neighborhood Solun 3x3-naapuruston bittiasetelma.
+        *
+        * @return Solun seuraava tila.
+        */
+    boolean next(int neighborhood) {
+        return this.next[neighborhood];
+    }
+
+    /**
+        * Palauttaa taulukon, joka kertoo 4x4-ruudukon keskimmäisten 2x2 solun seuraavan tilan. Ruudukon bittiasetelmassa bitti y*4 + x on solu (x, y), ja tuloksen bitti (y-1)*2 + (x-1) on keskisolu (x, y). Taulukko luodaan ensimmäisellä kutsulla.
+        *
+        * @return 65536-alkioinen taulukko.
+        */
+    byte[] next4x4() {
+        byte[] table = this.next4x4;
+        if(table == null) {
+            table = new byte[1 << 16];
+            for(int cells = 0; cells < table.length; cells++) {
+                int result = 0;
+                for(int y = 1; y <= 2; y++) {
+                    for(int x = 1; x <= 2; x++) {
+                        int neighborhood = 0;
+                        for(int dx = -1; dx <= 1; dx++) {
+                            for(int dy = -1; dy <= 1; dy++) {
+                                int bit = (cells >>> ((y + dy) * 4 + (x + dx))) & 1;
+                                neighborhood |= bit << (3 * (dx + 1) + (dy + 1));
+                            }
+                        }
+                        if(this.next[neighborhood]) {
+                            result |= 1 << ((y - 1) * 2 + (x - 1));
+                        }
+                    }
+                }
+                table[cells] = (byte) result;
+            }
+            this.next4x4 = table;
+        }
+        return table;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,116 @@
+package cellularautomaton;
+
+import utils.*;
+
+/**
+    * Erotuvaan summaan perustuva tilasiirtymäydin. Kunkin sanan sarakkeiden pystysuuntaiset kolmen solun summat lasketaan kerran kahteen bittitasoon, ja naapurisummat saadaan liu'uttamalla vaakasuuntaista kolmen sarakkeen ikkunaa näiden summien yli. Jokainen rivisana luetaan siten vain kerran laskettavaa riviä kohden, ja vaakasuuntaisessa summauksessa käytetään saman sanan pystysummia kolmeen kertaan.
+    *
+    * Ikkunan summa sisältää myös solun itsensä, joten eloonjäämissäännöt tarkistetaan yhtä suuremmilla summilla.
+    */
+class RunningSumKernel extends RowKernel {
+    /**
+        * Summat, joilla kuollut solu herää henkiin.
+        */
+    private final int[] birthTotals;
+
+    /**
+        * Summat (solu itse mukaan lukien), joilla elävä solu pysyy hengissä.
+        */
+    private final int[] survivalTotals;
+
+    /**
+        * Luo ytimen annetuille säännöille. Myöhemmät muutokset sääntöolioon eivät vaikuta ytimeen.
+        *
+        * @param rules Soluautomaatin säännöt.
+        */
+    RunningSumKernel(CARules rules) {
+        super(rules);
+        int births = 0;
+        int survivals = 0;
+        for(int n = 0; n < CARules.NEIGHBOR_COUNT; n++) {
+            if(rules.getBirthRule(n)) {
+                births++;
+            }
+            if(rules.getSurvivalRule(n)) {
+                survivals++;
+            }
+        }
+        this.birthTotals = new int[births];
+        this.survivalTotals = new int[survivals];
+        births = 0;
+        survivals = 0;
+        for(int n = 0; n < CARules.NEIGHBOR_COUNT; n++) {
+            if(rules.getBirthRule(n)) {
+                this.birthTotals[births++] = n;
+            }
+            if(rules.getSurvivalRule(n)) {
+                this.survivalTotals[survivals++] = n + 1;
+            }
+        }
+    }
+
+    /**
+        * Laskee yhden rivin seuraavan tilan kolmesta peräkkäisestä reunustetusta rivistä. Edellisen, nykyisen ja seuraavan sanan pystysummat pidetään muuttujissa, joten kunkin sanan pystysumma lasketaan vain kerran.
+        *
+        * @param up Edellinen rivi reunuksineen.
+        * @param mid Laskettava rivi reunuksineen.
+        * @param down Seuraava rivi reunuksineen.
+        * @param out Puskuri, johon seuraava tila kirjoitetaan.
+        * @param cols Sarakkeiden lukumäärä.
+        */
+    void evolveRow(long[] up, long[] mid, long[] down, long[] out, int cols) {
+        long t = up[0] ^ mid[0];
+        long westLo = t ^ down[0];
+        long westHi = (up[0] & mid[0]) | (t & down[0]);
+        t = up[1] ^ mid[1];
+        long lo = t ^ down[1];
+        long hi = (up[1] & mid[1]) | (t & down[1]);
+
+        for(int k = 0; k < out.length; k++) {
+            long u = up[k + 2];
+            long m = mid[k + 2];
+            long d = down[k + 2];
+            t = u ^ m;
+            long eastLo = t ^ d;
+            long eastHi = (u & m) | (t & d);
+
+            // Vaakasuuntaiset naapurit saadaan siirtämällä pystysummien bittitasoja.
+            long wl = (lo << 1) | (westLo >>> 63);
+            long wh = (hi << 1) | (westHi >>> 63);
+            long el = (lo >>> 1) | (eastLo << 63);
+            long eh = (hi >>> 1) | (eastHi << 63);
+
+            // Kolmen kaksibittisen summan yhteenlasku neljään bittitasoon (b0 + 2*b1 + 4*b2 + 8*b3).
+            t = wl ^ lo;
+            long b0 = t ^ el;
+            long carry = (wl & lo) | (t & el);
+
+            t = wh ^ hi;
+            long twos = t ^ eh;
+            long fours = (wh & hi) | (t & eh);
+
+            long b1 = twos ^ carry;
+            long fours2 = twos & carry;
+
+            long b2 = fours ^ fours2;
+            long b3 = fours & fours2;
+
+            long c = mid[k + 1];
+            long born = 0L;
+            for(int total : this.birthTotals) {
+                born |= SwarKernel.countEquals(total, b0, b1, b2, b3);
+            }
+            long survived = 0L;
+            for(int total : this.survivalTotals) {
+                survived |= SwarKernel.countEquals(total, b0, b1, b2, b3);
+            }
+            out[k] = (born & ~c) | (survived & c);
+
+            westLo = lo;
+            westHi = hi;
+            lo = eastLo;
+            hi = eastHi;
+        }
+        out[out.length - 1] &= BitGrid.lastWordMask(cols);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,249 @@
+package cellularautomaton;
+
+import utils.*;
+
+/**
+    * Bittirinnakkainen (SWAR, "SIMD within a register") tilasiirtymäydin. Käsittelee BitGrid-ruudukon 64 solua kerrallaan: kunkin sanan solujen naapurimäärät lasketaan bittitasoisilla summaimilla ja säännöt sovelletaan sanan kaikkiin soluihin yhtä aikaa.
+    *
+    * Ydin lukee lähderuudukkoa kolmen rivin liukuvana ikkunana, joten se ei oleta mitään ruudukon tallennustavasta rivien lukemisen ja kirjoittamisen lisäksi.
+    */
+class SwarKernel extends RowKernel {
+    /**
+        * Naapurimäärät, joilla kuollut solu herää henkiin.
+        */
+    final int[] birthCounts;
+
+    /**
+        * Naapurimäärät, joilla elävä solu pysyy hengissä.
+        */
+    final int[] survivalCounts;
+
+    /**
+        * Luo ytimen annetuille säännöille. Myöhemmät muutokset sääntöolioon eivät vaikuta ytimeen.
+        *
+        * @param rules Soluautomaatin säännöt.
+        */
+    SwarKernel(CARules rules) {
+        super(rules);
+        int births = 0;
+        int survivals = 0;
+        for(int n = 0; n < CARules.NEIGHBOR_COUNT; n++) {
+            if(rules.getBirthRule(n)) {
+                births++;
+            }
+            if(rules.getSurvivalRule(n)) {
+                survivals++;
+            }
+        }
+        this.birthCounts = new int[births];
+        this.survivalCounts = new int[survivals];
+        births = 0;
+        survivals = 0;
+        for(int n = 0; n < CARules.NEIGHBOR_COUNT; n++) {
+            if(rules.getBirthRule(n)) {
+                this.birthCounts[births++] = n;
+            }
+            if(rules.getSurvivalRule(n)) {
+                this.survivalCounts[survivals++] = n;
+            }
+        }
+    }
+
+    /**
+        * Laskee yhden rivin seuraavan tilan kolmesta peräkkäisestä reunustetusta rivistä. Reunusten ansiosta jokaisen sanan naapurisanat luetaan samalla tavalla, eikä silmukassa ole reunatarkistuksia.
+        *
+        * @param up Edellinen rivi reunuksineen.
+        * @param mid Laskettava rivi reunuksineen.
+        * @param down Seuraava rivi reunuksineen.
+        * @param out Puskuri, johon seuraava tila kirjoitetaan.
+        * @param cols Sarakkeiden lukumäärä.
+        */
+    void evolveRow(long[] up, long[] mid, long[] down, long[] out, int cols) {
+        this.evolveWords(up, mid, down, out, 0, out.length);
+        out[out.length - 1] &= BitGrid.lastWordMask(cols);
+    }
+
+    /**
+        * Laskee rivin annettujen sanojen seuraavan tilan reunustetuista riveistä. Viimeisen sanan ylimääräisiä bittejä ei nollata.
+        *
+        * @param up Edellinen rivi reunuksineen.
+        * @param mid Laskettava rivi reunuksineen.
+        * @param down Seuraava rivi reunuksineen.
+        * @param out Puskuri, johon seuraava tila kirjoitetaan.
+        * @param from Ensimmäinen laskettava sana.
+        * @param to Viimeistä laskettavaa sanaa seuraava sana.
+        */
+    void evolveWords(long[] up, long[] mid, long[] down, long[] out, int from, int to) {
+        for(int k = from; k < to; k++) {
+            long u = up[k + 1];
+            long m = mid[k + 1];
+            long d = down[k + 1];
+
+            long uw = (u << 1) | (up[k] >>> 63);
+            long mw = (m << 1) | (mid[k] >>> 63);
+            long dw = (d << 1) | (down[k] >>> 63);
+            long ue = (u >>> 1) | (up[k + 2] << 63);
+            long me = (m >>> 1) | (mid[k + 2] << 63);
+            long de = (d >>> 1) | (down[k + 2] << 63);
+
+            out[k] = this.nextWord(uw, u, ue, mw, m, me, dw, d, de);
+        }
+    }
+
+    /**
+        * Laskee yksittäisen sanan seuraavan tilan. Tätä käytetään, kun vain osa ruudukosta lasketaan uudelleen.
+        *
+        * @param src Nykyinen tila.
+        * @param row Sanan rivi.
+        * @param k Sanan indeksi rivillä.
+        *
+        * @return Sanan 64 solun seuraava tila.
+        */
+    long evolveWord(BitGrid src, int row, int k) {
+        int cols = src.getCols();
+        int last = src.getWordsPerRow() - 1;
+        int lastBit = (cols - 1) & (BitGrid.WORD_SIZE - 1);
+
+        long u = this.rowWord(src, row - 1, k);
+        long m = this.rowWord(src, row, k);
+        long d = this.rowWord(src, row + 1, k);
+
+        long uw = (u << 1) | (k > 0 ? this.rowWord(src, row - 1, k - 1) >>> 63 : this.westEdge(src, row - 1));
+        long mw = (m << 1) | (k > 0 ? this.rowWord(src, row, k - 1) >>> 63 : this.westEdge(src, row));
+        long dw = (d << 1) | (k > 0 ? this.rowWord(src, row + 1, k - 1) >>> 63 : this.westEdge(src, row + 1));
+        long ue = (u >>> 1) | (k < last ? this.rowWord(src, row - 1, k + 1) << 63 : this.eastEdge(src, row - 1) << lastBit);
+        long me = (m >>> 1) | (k < last ? this.rowWord(src, row, k + 1) << 63 : this.eastEdge(src, row) << lastBit);
+        long de = (d >>> 1) | (k < last ? this.rowWord(src, row + 1, k + 1) << 63 : this.eastEdge(src, row + 1) << lastBit);
+
+        long next = this.nextWord(uw, u, ue, mw, m, me, dw, d, de);
+        return k == last ? next & BitGrid.lastWordMask(cols) : next;
+    }
+
+    /**
+        * Palauttaa rivin sanan. Ruudukon ulkopuolisten rivien sanat määräytyvät reunakäyttäytymisen mukaan.
+        *
+        * @param src Ruudukko.
+        * @param row Rivi, joka voi olla myös ruudukon ulkopuolella.
+        * @param k Sanan indeksi rivillä.
+        *
+        * @return Sana.
+        */
+    private long rowWord(BitGrid src, int row, int k) {
+        int rows = src.getRows();
+        if(0 <= row && row < rows) {
+            return src.getWord(row, k);
+        } else if(this.edgeBehavior == CARules.EdgeBehavior.DEAD) {
+            return 0L;
+        } else if(this.edgeBehavior == CARules.EdgeBehavior.ALIVE) {
+            return k == src.getWordsPerRow() - 1 ? BitGrid.lastWordMask(src.getCols()) : -1L;
+        } else { // wrap
+            return src.getWord(Maths.mod(row, rows), k);
+        }
+    }
+
+    /**
+        * Palauttaa annetun rivin vasemmanpuoleisen reunasolun (sarake -1) tilan bittinä.
+        *
+        * @param src Ruudukko.
+        * @param row Rivi, joka voi olla myös ruudukon ulkopuolella.
+        *
+        * @return 1 jos reunasolu on elossa, muutoin 0.
+        */
+    private long westEdge(BitGrid src, int row) {
+        int cols = src.getCols();
+        if(this.edgeBehavior == CARules.EdgeBehavior.WRAP) {
+            return (this.rowWord(src, row, (cols - 1) >>> 6) >>> (cols - 1)) & 1L;
+        } else {
+            return this.edgeBehavior == CARules.EdgeBehavior.ALIVE ? 1L : 0L;
+        }
+    }
+
+    /**
+        * Palauttaa annetun rivin oikeanpuoleisen reunasolun (sarake cols) tilan bittinä.
+        *
+        * @param src Ruudukko.
+        * @param row Rivi, joka voi olla myös ruudukon ulkopuolella.
+        *
+        * @return 1 jos reunasolu on elossa, muutoin 0.
+        */
+    private long eastEdge(BitGrid src, int row) {
+        if(this.edgeBehavior == CARules.EdgeBehavior.WRAP) {
+            return this.rowWord(src, row, 0) & 1L;
+        } else {
+            return this.edgeBehavior == CARules.EdgeBehavior.ALIVE ? 1L : 0L;
+        }
+    }
+
+    /**
+        * Laskee 64 solun seuraavan tilan. Kukin parametri on sana, jonka bitti i on sarakkeen i solun kyseinen naapuri.
+        *
+        * @param nw Luoteinen naapuri.
+        * @param n Pohjoinen naapuri.
+        * @param ne Koillinen naapuri.
+        * @param w Läntinen naapuri.
+        * @param c Solu itse.
+        * @param e Itäinen naapuri.
+        * @param sw Lounainen naapuri.
+        * @param s Eteläinen naapuri.
+        * @param se Kaakkoinen naapuri.
+        *
+        * @return Solujen seuraava tila.
+        */
+    long nextWord(long nw, long n, long ne, long w, long c, long e, long sw, long s, long se) {
+        // Naapurimäärät lasketaan neljään bittitasoon (b0 + 2*b1 + 4*b2 + 8*b3) summainpuulla.
+        long t, aSum, aCarry, bSum, bCarry, cSum, cCarry, carry;
+
+        t = nw ^ n;
+        aSum = t ^ ne;
+        aCarry = (nw & n) | (t & ne);
+
+        t = w ^ e;
+        bSum = t ^ sw;
+        bCarry = (w & e) | (t & sw);
+
+        cSum = s ^ se;
+        cCarry = s & se;
+
+        t = aSum ^ bSum;
+        long b0 = t ^ cSum;
+        carry = (aSum & bSum) | (t & cSum);
+
+        t = aCarry ^ bCarry;
+        long twos = t ^ cCarry;
+        long fours = (aCarry & bCarry) | (t & cCarry);
+
+        long b1 = twos ^ carry;
+        long fours2 = twos & carry;
+
+        long b2 = fours ^ fours2;
+        long b3 = fours & fours2;
+
+        long born = 0L;
+        for(int count : this.birthCounts) {
+            born |= countEquals(count, b0, b1, b2, b3);
+        }
+        long survived = 0L;
+        for(int count : this.survivalCounts) {
+            survived |= countEquals(count, b0, b1, b2, b3);
+        }
+        return (born & ~c) | (survived & c);
+    }
+
+    /**
+        * Palauttaa sanan, jonka bitti on asetettu niissä kohdissa, joissa bittitasoina annettu naapurimäärä on tasan count.
+        *
+        * @param count Naapurimäärä.
+        * @param b0 Naapurimäärän bitti 0.
+        * @param b1 Naapurimäärän bitti 1.
+        * @param b2 Naapurimäärän bitti 2.
+        * @param b3 Naapurimäärän bitti 3.
+        *
+        * @return Vertailun tulos.
+        */
+    static long countEquals(int count, long b0, long b1, long b2, long b3) {
+        return ((count & 1) != 0 ? b0 : ~b0)
+            & ((count & 2) != 0 ? b1 : ~b1)
+            & ((count & 4) != 0 ? b2 : ~b2)
+            & ((count & 8) != 0 ? b3 : ~b3);
+    }
+}
\ No newline at end of file
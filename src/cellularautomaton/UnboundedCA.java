@@ -0,0 +1,528 @@
+package cellularautomaton;
+
+import java.util.*;
+
+import utils.*;
+
+/**
+    * Rajaton soluautomaatti, jonka taso on jaettu 64x64 solun laattoihin. Laatat tallennetaan hajautustauluun laattakoordinaattien mukaan, ja vain elävää solua sisältävät laatat pidetään muistissa. Sekä muistinkäyttö että tilasiirtymän kustannus ovat siten verrannollisia elävän alueen kokoon eivätkä kuvion rajaavan suorakulmion kokoon.
+    *
+    * Taso on rajaton, joten reunakäyttäytymisellä ei ole merkitystä. Sääntöjä, joissa kuollut solu herää henkiin ilman eläviä naapureita (syntymäsääntö 0), ei tueta, koska ne täyttäisivät äärettömän tason.
+    *
+    * Laattakoordinaatit ovat int-tyyppisiä, joten solukoordinaattien tulee olla välillä [MIN_COORDINATE, MAX_COORDINATE] eli [-2^37, 2^37). Tämän ulkopuolisten solujen asettaminen ja alueen reunan yli kasvavan kuvion tilasiirtymä aiheuttavat poikkeuksen.
+    */
+public class UnboundedCA implements Automaton {
+    /**
+        * Laatan sivun pituus soluina. Laatan yksi rivi mahtuu yhteen sanaan.
+        */
+    private static final int TILE_SIZE = BitGrid.WORD_SIZE;
+
+    /**
+        * Laatan sisäisen koordinaatin erottava bittimaski.
+        */
+    private static final int TILE_MASK = TILE_SIZE - 1;
+
+    /**
+        * Laattakoordinaatin ja solukoordinaatin välinen siirtymä bitteinä.
+        */
+    private static final int TILE_SHIFT = 6;
+
+    /**
+        * Pienin tuettu solukoordinaatti.
+        */
+    public static final long MIN_COORDINATE = (long) Integer.MIN_VALUE << TILE_SHIFT;
+
+    /**
+        * Suurin tuettu solukoordinaatti.
+        */
+    public static final long MAX_COORDINATE = ((long) Integer.MAX_VALUE << TILE_SHIFT) | TILE_MASK;
+
+    /**
+        * Minimiarvo tilahistorian pituudelle.
+        */
+    private static final int MIN_HISTORY_LENGTH = 0;
+
+    /**
+        * Oletusarvo historian pituudelle.
+        */
+    private static final int DEFAULT_HISTORY_LENGTH = 2;
+
+    /**
+        * 64x64 solun laatta. Sanan rows[r] bitti c on laatan solu (c, r).
+        */
+    private static final class Tile {
+        /**
+            * Laatan rivit.
+            */
+        final long[] rows = new long[TILE_SIZE];
+
+        /**
+            * Kertoo, onko laatassa yhtään elävää solua.
+            *
+            * @return Totuusarvo.
+            */
+        boolean isEmpty() {
+            for(long row : this.rows) {
+                if(row != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+            * Kertoo, onko laatan annetun suunnan reunalla eläviä soluja, jolloin naapurilaattaan voi syntyä soluja.
+            *
+            * @param dx Vaakasuunta (-1, 0 tai 1).
+            * @param dy Pystysuunta (-1, 0 tai 1).
+            *
+            * @return Totuusarvo.
+            */
+        boolean touches(int dx, int dy) {
+            long colMask = dx < 0 ? 1L : (dx > 0 ? 1L << TILE_MASK : -1L);
+            int fromRow = dy > 0 ? TILE_MASK : 0;
+            int toRow = dy < 0 ? 0 : TILE_MASK;
+            for(int r = fromRow; r <= toRow; r++) {
+                if((this.rows[r] & colMask) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+            * Kertoo, ovatko kaksi laattaa samansisältöiset.
+            *
+            * @param o Verrattava olio.
+            *
+            * @return Totuusarvo.
+            */
+        public boolean equals(Object o) {
+            return o instanceof Tile && Arrays.equals(this.rows, ((Tile) o).rows);
+        }
+
+        /**
+            * Laskee laatan sisältöön perustuvan hajautusarvon.
+            *
+            * @return Hajautusarvo.
+            */
+        public int hashCode() {
+            return Arrays.hashCode(this.rows);
+        }
+    }
+
+    /**
+        * Tyhjä laatta, jota käytetään puuttuvien laattojen sijasta.
+        */
+    private static final Tile EMPTY_TILE = new Tile();
+
+    /**
+        * Automaatin säännöt.
+        */
+    private CARules rules;
+
+    /**
+        * Säännöistä koottu tilasiirtymäydin.
+        */
+    private SwarKernel kernel;
+
+    /**
+        * Nykyisen tilan laatat laattakoordinaattien mukaan. Tilasiirtymä luo aina uuden taulun ja uudet laatat, joten historiaan siirrettyä taulua ei enää muokata.
+        */
+    private Map<Long, Tile> tiles = new HashMap<Long, Tile>();
+
+    /**
+        * Tilahistoria.
+        */
+    private List<Map<Long, Tile>> history;
+
+    /**
+        * Historian pituus.
+        */
+    private int historyLength;
+
+    /**
+        * Luo tyhjän, Game of Life -säännöillä ja oletuspituisella historialla varustetun automaatin.
+        */
+    public UnboundedCA() {
+        this.setRules(CARules.newLifeRules());
+        this.setHistoryLength(DEFAULT_HISTORY_LENGTH);
+    }
+
+    /**
+        * Palauttaa automaatin käyttämät säännöt. Palautettu sääntöolio on kopio automaatin säännöistä, ei suora viittaus.
+        *
+        * @return Automaatin säännöt.
+        */
+    public CARules getRules() {
+        return this.rules.clone();
+    }
+
+    /**
+        * Asettaa automaatille uudet säännöt.
+        *
+        * @param rules Uudet säännöt.
+        *
+        * @exception IllegalArgumentException Jos säännöissä on syntymäsääntö nollalle naapurille.
+        */
+    public void setRules(CARules rules) {
+        if(rules.getBirthRule(0)) {
+            throw new IllegalArgumentException("Unbounded universe does not support birth on 0 neighbors");
+        }
+        this.rules = rules.clone();
+        this.kernel = new SwarKernel(this.rules);
+    }
+
+    /**
+        * Kertoo, onko annetussa sijainnissa oleva solu elossa.
+        *
+        * @param col Solun sarakekoordinaatti.
+        * @param row Solun rivikoordinaatti.
+        *
+        * @return Solun tila. Tuetun alueen ulkopuolinen solu on aina kuollut.
+        */
+    public boolean getCell(long col, long row) {
+        if(!inRange(col, row)) {
+            return false;
+        }
+        Tile tile = this.tiles.get(key(col >> TILE_SHIFT, row >> TILE_SHIFT));
+        return tile != null && ((tile.rows[(int) row & TILE_MASK] >>> col) & 1L) != 0;
+    }
+
+    /**
+        * Asettaa annetussa sijainnissa olevan solun tilan. Laatta luodaan tarvittaessa ja poistetaan, jos se tyhjenee.
+        *
+        * @param col Solun sarakekoordinaatti.
+        * @param row Solun rivikoordinaatti.
+        * @param live Solun uusi tila.
+        *
+        * @exception IllegalArgumentException Jos solu on tuetun alueen ulkopuolella.
+        */
+    public void setCell(long col, long row, boolean live) {
+        if(!inRange(col, row)) {
+            throw new IllegalArgumentException("Cell (" + col + ", " + row + ") is outside the supported range");
+        }
+        Long key = key(col >> TILE_SHIFT, row >> TILE_SHIFT);
+        Tile tile = this.tiles.get(key);
+        if(tile == null) {
+            if(!live) {
+                return;
+            }
+            tile = new Tile();
+            this.tiles.put(key, tile);
+        }
+        int r = (int) row & TILE_MASK;
+        if(live) {
+            tile.rows[r] |= 1L << col;
+        } else {
+            tile.rows[r] &= ~(1L << col);
+            if(tile.isEmpty()) {
+                this.tiles.remove(key);
+            }
+        }
+    }
+
+    /**
+        * Alustaa kaikki solut kuolleiksi.
+        */
+    public void erase() {
+        this.tiles = new HashMap<Long, Tile>();
+    }
+
+    /**
+        * Korvaa automaatin tilan annetun soluautomaattitilan soluilla siten, että tilan solu (col, row) sijoitetaan koordinaatteihin (col, row). Myös säännöt kopioidaan.
+        *
+        * @param state Soluautomaattitila.
+        */
+    public void setState(CAState state) {
+        this.setRules(state.getRules());
+        this.erase();
+        for(int col = 0; col < state.getCols(); col++) {
+            for(int row = 0; row < state.getRows(); row++) {
+                if(state.getCell(col, row)) {
+                    this.setCell(col, row, true);
+                }
+            }
+        }
+        this.resetHistory();
+    }
+
+    /**
+        * Luo soluautomaattitilan, jonka solut kopioidaan annetulta alueelta. Tilaan asetetaan automaatin säännöt.
+        *
+        * @param col Alueen vasemman yläkulman sarakekoordinaatti.
+        * @param row Alueen vasemman yläkulman rivikoordinaatti.
+        * @param cols Alueen sarakkeiden lukumäärä.
+        * @param rows Alueen rivien lukumäärä.
+        *
+        * @return Soluautomaattitila.
+        */
+    public CAState toState(long col, long row, int cols, int rows) {
+        BitGrid grid = new BitGrid(Math.max(CAState.MIN_DIMENSION, cols), Math.max(CAState.MIN_DIMENSION, rows));
+        for(Map.Entry<Long, Tile> entry : this.tiles.entrySet()) {
+            long tileCol = tileX(entry.getKey()) << TILE_SHIFT;
+            long tileRow = tileY(entry.getKey()) << TILE_SHIFT;
+            long[] tileRows = entry.getValue().rows;
+            for(int r = 0; r < TILE_SIZE; r++) {
+                long gridRow = tileRow + r - row;
+                if(tileRows[r] == 0 || gridRow < 0 || gridRow >= grid.getRows()) {
+                    continue;
+                }
+                for(int c = 0; c < TILE_SIZE; c++) {
+                    long gridCol = tileCol + c - col;
+                    if(((tileRows[r] >>> c) & 1L) != 0 && 0 <= gridCol && gridCol < grid.getCols()) {
+                        grid.set((int) gridCol, (int) gridRow, true);
+                    }
+                }
+            }
+        }
+        CAState state = new CAState();
+        state.setRules(this.rules);
+        state.setGrid(grid);
+        return state;
+    }
+
+    /**
+        * Palauttaa elävien solujen lukumäärän.
+        *
+        * @return Elävien solujen lukumäärä.
+        */
+    public long getPopulation() {
+        long population = 0;
+        for(Tile tile : this.tiles.values()) {
+            for(long row : tile.rows) {
+                population += Long.bitCount(row);
+            }
+        }
+        return population;
+    }
+
+    /**
+        * Palauttaa elävien solujen koordinaatit määrittelemättömässä järjestyksessä.
+        *
+        * @return Elävät solut.
+        *
+        * @exception IllegalStateException Jos jonkin elävän solun koordinaatti ei mahdu int-tyyppiin.
+        */
+    public List<Cell> getLiveCells() {
+        List<Cell> cells = new ArrayList<Cell>();
+        for(Map.Entry<Long, Tile> entry : this.tiles.entrySet()) {
+            long tileCol = tileX(entry.getKey()) << TILE_SHIFT;
+            long tileRow = tileY(entry.getKey()) << TILE_SHIFT;
+            // Laatat eivät ylitä int-tyypin rajoja, joten riittää tarkistaa laatan kulma.
+            if(tileCol != (int) tileCol || tileRow != (int) tileRow) {
+                throw new IllegalStateException("Live cells do not fit in int coordinates");
+            }
+            long[] tileRows = entry.getValue().rows;
+            for(int r = 0; r < TILE_SIZE; r++) {
+                long word = tileRows[r];
+                while(word != 0) {
+                    cells.add(new Cell((int) tileCol + Long.numberOfTrailingZeros(word), (int) tileRow + r));
+                    word &= word - 1;
+                }
+            }
+        }
+        return cells;
+    }
+
+    /**
+        * Palauttaa muistissa olevien laattojen lukumäärän.
+        *
+        * @return Laattojen lukumäärä.
+        */
+    public int getTileCount() {
+        return this.tiles.size();
+    }
+
+    /**
+        * Suorittaa yhden sääntöjen mukaisen tilasiirtymän ja säilöö vanhan tilan historiaan. Lasketaan vain olemassa olevat laatat sekä ne naapurilaatat, joiden puoleisella reunalla on eläviä soluja.
+        *
+        * @exception IllegalStateException Jos kuvio kasvaisi tuetun alueen ulkopuolelle. Tila jää tällöin ennalleen.
+        */
+    public void evolve() {
+        Map<Long, Tile> next = new HashMap<Long, Tile>();
+        Set<Long> visited = new HashSet<Long>();
+        for(Map.Entry<Long, Tile> entry : this.tiles.entrySet()) {
+            long tx = tileX(entry.getKey());
+            long ty = tileY(entry.getKey());
+            Tile tile = entry.getValue();
+            for(int dy = -1; dy <= 1; dy++) {
+                for(int dx = -1; dx <= 1; dx++) {
+                    if((dx != 0 || dy != 0) && !tile.touches(dx, dy)) {
+                        continue;
+                    }
+                    if(tx + dx != (int) (tx + dx) || ty + dy != (int) (ty + dy)) {
+                        throw new IllegalStateException("Pattern grows outside the supported range");
+                    }
+                    Long key = key(tx + dx, ty + dy);
+                    if(visited.add(key)) {
+                        Tile evolved = this.evolveTile(tx + dx, ty + dy);
+                        if(evolved != null) {
+                            next.put(key, evolved);
+                        }
+                    }
+                }
+            }
+        }
+        this.updateHistory();
+        this.tiles = next;
+    }
+
+    /**
+        * Laskee yhden laatan seuraavan tilan naapurilaattojen avulla.
+        *
+        * @param tx Laatan vaakasuuntainen laattakoordinaatti.
+        * @param ty Laatan pystysuuntainen laattakoordinaatti.
+        *
+        * @return Uusi laatta tai null, jos laattaan ei jää eläviä soluja.
+        */
+    private Tile evolveTile(long tx, long ty) {
+        long[] nw = this.tileRows(tx - 1, ty - 1);
+        long[] n = this.tileRows(tx, ty - 1);
+        long[] ne = this.tileRows(tx + 1, ty - 1);
+        long[] w = this.tileRows(tx - 1, ty);
+        long[] c = this.tileRows(tx, ty);
+        long[] e = this.tileRows(tx + 1, ty);
+        long[] sw = this.tileRows(tx - 1, ty + 1);
+        long[] s = this.tileRows(tx, ty + 1);
+        long[] se = this.tileRows(tx + 1, ty + 1);
+
+        Tile result = new Tile();
+        boolean empty = true;
+        for(int r = 0; r < TILE_SIZE; r++) {
+            long u = r > 0 ? c[r - 1] : n[TILE_MASK];
+            long uw = r > 0 ? w[r - 1] : nw[TILE_MASK];
+            long ue = r > 0 ? e[r - 1] : ne[TILE_MASK];
+            long m = c[r];
+            long mw = w[r];
+            long me = e[r];
+            long d = r < TILE_MASK ? c[r + 1] : s[0];
+            long dw = r < TILE_MASK ? w[r + 1] : sw[0];
+            long de = r < TILE_MASK ? e[r + 1] : se[0];
+
+            long word = this.kernel.nextWord(
+                (u << 1) | (uw >>> 63), u, (u >>> 1) | (ue << 63),
+                (m << 1) | (mw >>> 63), m, (m >>> 1) | (me << 63),
+                (d << 1) | (dw >>> 63), d, (d >>> 1) | (de << 63)
+            );
+            result.rows[r] = word;
+            empty &= word == 0;
+        }
+        return empty ? null : result;
+    }
+
+    /**
+        * Palauttaa laatan rivit, tai tyhjän laatan rivit jos laattaa ei ole tai se on tuetun alueen ulkopuolella.
+        *
+        * @param tx Vaakasuuntainen laattakoordinaatti.
+        * @param ty Pystysuuntainen laattakoordinaatti.
+        *
+        * @return Laatan rivit.
+        */
+    private long[] tileRows(long tx, long ty) {
+        if(tx != (int) tx || ty != (int) ty) {
+            return EMPTY_TILE.rows;
+        }
+        Tile tile = this.tiles.get(key(tx, ty));
+        return (tile != null ? tile : EMPTY_TILE).rows;
+    }
+
+    /**
+        * Palauttaa automaatin historian pituuden.
+        *
+        * @return Historian pituus.
+        */
+    public int getHistoryLength() {
+        return this.historyLength;
+    }
+
+    /**
+        * Asettaa automaatin historian pituuden ja tyhjentää historian. Mikäli annettu pituus on pienempi kuin historian minimipituus, käytetään minimipituutta.
+        *
+        * @param len Historian uusi pituus.
+        */
+    public void setHistoryLength(int len) {
+        this.historyLength = Math.max(MIN_HISTORY_LENGTH, len);
+        this.history = new LinkedList<Map<Long, Tile>>();
+        for(int i = 0; i < this.historyLength; i++) {
+            this.history.add(new HashMap<Long, Tile>());
+        }
+    }
+
+    /**
+        * Tyhjentää historian.
+        */
+    public void resetHistory() {
+        this.setHistoryLength(this.historyLength);
+    }
+
+    /**
+        * Säilöö automaatin nykyisen tilan historiaan. Mikäli historia on täynnä, vanhin säilötty tila poistetaan. Tilaa ei tarvitse kopioida, koska tilasiirtymä korvaa sen kokonaan uudella.
+        */
+    private void updateHistory() {
+        if(this.historyLength > 0) {
+            this.history.add(0, this.tiles);
+            this.history.remove(this.historyLength);
+        }
+    }
+
+    /**
+        * Kertoo, onko automaatissa havaittavissa toistuva rytmi. Jos automaatin nykyinen tila löytyy historiasta, on rytmi olemassa.
+        *
+        * @return Totuusarvo, joka kertoo havaittiinko rytmi.
+        */
+    public boolean isPeriodic() {
+        for(Map<Long, Tile> state : this.history) {
+            if(state.equals(this.tiles)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+        * Kertoo, onko solu tuetun alueen sisällä.
+        *
+        * @param col Solun sarakekoordinaatti.
+        * @param row Solun rivikoordinaatti.
+        *
+        * @return Totuusarvo.
+        */
+    private static boolean inRange(long col, long row) {
+        return MIN_COORDINATE <= col && col <= MAX_COORDINATE && MIN_COORDINATE <= row && row <= MAX_COORDINATE;
+    }
+
+    /**
+        * Muodostaa hajautusavaimen laattakoordinaateista. Koordinaattien tulee mahtua int-tyyppiin.
+        *
+        * @param tx Vaakasuuntainen laattakoordinaatti.
+        * @param ty Pystysuuntainen laattakoordinaatti.
+        *
+        * @return Avain.
+        */
+    private static Long key(long tx, long ty) {
+        return (tx << 32) | (ty & 0xFFFFFFFFL);
+    }
+
+    /**
+        * Palauttaa avaimen vaakasuuntaisen laattakoordinaatin.
+        *
+        * @param key Avain.
+        *
+        * @return Laattakoordinaatti.
+        */
+    private static long tileX(long key) {
+        return key >> 32;
+    }
+
+    /**
+        * Palauttaa avaimen pystysuuntaisen laattakoordinaatin.
+        *
+        * @param key Avain.
+        *
+        * @return Laattakoordinaatti.
+        */
+    private static long tileY(long key) {
+        return (int) key;
+    }
+}
\ No newline at end of file
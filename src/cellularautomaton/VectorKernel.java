@@ -0,0 +1,140 @@
+package cellularautomaton;
+
+import jdk.incubator.vector.*;
+
+import utils.*;
+
+/**
+    * Vektorisoitu tilasiirtymäydin. Laskee samat bittitasoiset summaimet kuin SwarKernel, mutta käsittelee kerralla prosessorin vektorirekisterin levyisen joukon sanoja (esimerkiksi AVX-512:lla kahdeksan sanaa eli 512 solua) Javan Vector API:n avulla.
+    *
+    * Vector API on JDK:ssa vielä inkubaattorimoduulina, joten ydin on käytettävissä vain, kun ohjelma käynnistetään valitsimella --add-modules jdk.incubator.vector. Rivin loppu, joka ei täytä kokonaista vektoria, ja koko rivi silloin, kun vektorit ovat liian kapeita, lasketaan skalaarisella SwarKernel-ytimellä.
+    */
+class VectorKernel extends RowKernel {
+    /**
+        * Vähimmäismäärä sanoja vektorissa, jotta vektoroitua laskentaa kannattaa käyttää.
+        */
+    private static final int MIN_LANES = 2;
+
+    /**
+        * Alustalle ensisijainen long-vektorien muoto.
+        */
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    /**
+        * Skalaarinen ydin rivien loppuja ja kapeita vektoreita varten.
+        */
+    private final SwarKernel scalar;
+
+    /**
+        * Luo ytimen annetuille säännöille.
+        *
+        * @param rules Soluautomaatin säännöt.
+        */
+    VectorKernel(CARules rules) {
+        super(rules);
+        this.scalar = new SwarKernel(rules);
+    }
+
+    /**
+        * Laskee yhden rivin seuraavan tilan kolmesta peräkkäisestä reunustetusta rivistä vektori kerrallaan. Reunusten ansiosta vektorin naapurisanat voidaan ladata suoraan siirretyistä indekseistä.
+        *
+        * @param up Edellinen rivi reunuksineen.
+        * @param mid Laskettava rivi reunuksineen.
+        * @param down Seuraava rivi reunuksineen.
+        * @param out Puskuri, johon seuraava tila kirjoitetaan.
+        * @param cols Sarakkeiden lukumäärä.
+        */
+    void evolveRow(long[] up, long[] mid, long[] down, long[] out, int cols) {
+        int lanes = SPECIES.length();
+        int bound = lanes >= MIN_LANES ? SPECIES.loopBound(out.length) : 0;
+        int k = 0;
+        for(; k < bound; k += lanes) {
+            LongVector u = LongVector.fromArray(SPECIES, up, k + 1);
+            LongVector m = LongVector.fromArray(SPECIES, mid, k + 1);
+            LongVector d = LongVector.fromArray(SPECIES, down, k + 1);
+
+            LongVector uw = u.lanewise(VectorOperators.LSHL, 1).or(LongVector.fromArray(SPECIES, up, k).lanewise(VectorOperators.LSHR, 63));
+            LongVector mw = m.lanewise(VectorOperators.LSHL, 1).or(LongVector.fromArray(SPECIES, mid, k).lanewise(VectorOperators.LSHR, 63));
+            LongVector dw = d.lanewise(VectorOperators.LSHL, 1).or(LongVector.fromArray(SPECIES, down, k).lanewise(VectorOperators.LSHR, 63));
+            LongVector ue = u.lanewise(VectorOperators.LSHR, 1).or(LongVector.fromArray(SPECIES, up, k + 2).lanewise(VectorOperators.LSHL, 63));
+            LongVector me = m.lanewise(VectorOperators.LSHR, 1).or(LongVector.fromArray(SPECIES, mid, k + 2).lanewise(VectorOperators.LSHL, 63));
+            LongVector de = d.lanewise(VectorOperators.LSHR, 1).or(LongVector.fromArray(SPECIES, down, k + 2).lanewise(VectorOperators.LSHL, 63));
+
+            this.nextWords(uw, u, ue, mw, m, me, dw, d, de).intoArray(out, k);
+        }
+        this.scalar.evolveWords(up, mid, down, out, k, out.length);
+        out[out.length - 1] &= BitGrid.lastWordMask(cols);
+    }
+
+    /**
+        * Laskee vektorillisen sanoja seuraavan tilan. Vastaa SwarKernel.nextWord()-metodia, mutta kukin parametri sisältää usean sanan vastaavat naapurit.
+        *
+        * @param nw Luoteiset naapurit.
+        * @param n Pohjoiset naapurit.
+        * @param ne Koilliset naapurit.
+        * @param w Läntiset naapurit.
+        * @param c Solut itse.
+        * @param e Itäiset naapurit.
+        * @param sw Lounaiset naapurit.
+        * @param s Eteläiset naapurit.
+        * @param se Kaakkoiset naapurit.
+        *
+        * @return Solujen seuraava tila.
+        */
+    private LongVector nextWords(LongVector nw, LongVector n, LongVector ne, LongVector w, LongVector c, LongVector e, LongVector sw, LongVector s, LongVector se) {
+        LongVector t, aSum, aCarry, bSum, bCarry, cSum, cCarry, carry;
+
+        t = nw.lanewise(VectorOperators.XOR, n);
+        aSum = t.lanewise(VectorOperators.XOR, ne);
+        aCarry = nw.and(n).or(t.and(ne));
+
+        t = w.lanewise(VectorOperators.XOR, e);
+        bSum = t.lanewise(VectorOperators.XOR, sw);
+        bCarry = w.and(e).or(t.and(sw));
+
+        cSum = s.lanewise(VectorOperators.XOR, se);
+        cCarry = s.and(se);
+
+        t = aSum.lanewise(VectorOperators.XOR, bSum);
+        LongVector b0 = t.lanewise(VectorOperators.XOR, cSum);
+        carry = aSum.and(bSum).or(t.and(cSum));
+
+        t = aCarry.lanewise(VectorOperators.XOR, bCarry);
+        LongVector twos = t.lanewise(VectorOperators.XOR, cCarry);
+        LongVector fours = aCarry.and(bCarry).or(t.and(cCarry));
+
+        LongVector b1 = twos.lanewise(VectorOperators.XOR, carry);
+        LongVector fours2 = twos.and(carry);
+
+        LongVector b2 = fours.lanewise(VectorOperators.XOR, fours2);
+        LongVector b3 = fours.and(fours2);
+
+        LongVector born = LongVector.zero(SPECIES);
+        for(int count : this.scalar.birthCounts) {
+            born = born.or(countEquals(count, b0, b1, b2, b3));
+        }
+        LongVector survived = LongVector.zero(SPECIES);
+        for(int count : this.scalar.survivalCounts) {
+            survived = survived.or(countEquals(count, b0, b1, b2, b3));
+        }
+        return born.lanewise(VectorOperators.AND_NOT, c).or(survived.and(c));
+    }
+
+    /**
+        * Palauttaa vektorin, jonka bitti on asetettu niissä kohdissa, joissa bittitasoina annettu naapurimäärä on tasan count.
+        *
+        * @param count Naapurimäärä.
+        * @param b0 Naapurimäärän bitti 0.
+        * @param b1 Naapurimäärän bitti 1.
+        * @param b2 Naapurimäärän bitti 2.
+        * @param b3 Naapurimäärän bitti 3.
+        *
+        * @return Vertailun tulos.
+        */
+    private static LongVector countEquals(int count, LongVector b0, LongVector b1, LongVector b2, LongVector b3) {
+        return ((count & 1) != 0 ? b0 : b0.not())
+            .and((count & 2) != 0 ? b1 : b1.not())
+            .and((count & 4) != 0 ? b2 : b2.not())
+            .and((count & 8) != 0 ? b3 : b3.not());
+    }
+}
\ No newline at end of file
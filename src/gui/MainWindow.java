@@ -181,7 +181,7 @@ public class MainWindow extends JFrame implements ActionListener {
     }
     
     /**
-        * Avaa tiedostonvalintadialogin ja lukee uuden soluautomaattitilan valitusta tallennustiedostosta. Virheen tapahtuessa näytetään virheilmoitus.
+        * Avaa tiedostonvalintadialogin ja lukee uuden soluautomaattitilan valitusta tallennustiedostosta, joka voi olla teksti- tai binäärimuotoinen, .rle-päätteinen RLE-tiedosto tai .mc-päätteinen macrocell-tiedosto. Virheen tapahtuessa näytetään virheilmoitus.
         */
     private void load() {
         JFileChooser fc = new JFileChooser();
@@ -194,10 +194,14 @@ public class MainWindow extends JFrame implements ActionListener {
             if(result == JFileChooser.APPROVE_OPTION) {
                 File loadFile = fc.getSelectedFile();
                 try {
-                    FileLoader r = new FileLoader(loadFile);
-                    String data = r.readAll();
-                    r.close();
-                    CAState newState = CAFile.read(data);
+                    CAState newState;
+                    if(loadFile.getName().endsWith("." + RLEFile.FILE_EXTENSION)) {
+                        newState = RLEFile.read(loadFile);
+                    } else if(loadFile.getName().endsWith("." + MacrocellFile.FILE_EXTENSION)) {
+                        newState = MacrocellFile.readState(loadFile);
+                    } else {
+                        newState = CABinaryFile.isBinary(loadFile) ? CABinaryFile.read(loadFile) : CAFile.read(loadFile);
+                    }
                     if(newState != null) {
                         this.grid.updateGameState(newState);
                         this.revertDialogs();
@@ -210,6 +214,8 @@ public class MainWindow extends JFrame implements ActionListener {
                     JOptionPane.showMessageDialog(this, "Error opening file: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
                 } catch(IOException e) {
                     JOptionPane.showMessageDialog(this, "Input/output error: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                } catch(IllegalStateException e) {
+                    JOptionPane.showMessageDialog(this, "The pattern in " + loadFile.getPath() + " is too large to load.", "Error", JOptionPane.ERROR_MESSAGE);
                 }
             } else {
                 loading = false;
@@ -218,7 +224,7 @@ public class MainWindow extends JFrame implements ActionListener {
     }
     
     /**
-        * Avaa tiedostonvalintadialogin ja tallentaa nykyisen soluautomaattitilan valittuun tiedostoon. Virheen tapahtuessa näytetään virheilmoitus.
+        * Avaa tiedostonvalintadialogin ja tallentaa nykyisen soluautomaattitilan valittuun tiedostoon. Tiedosto, jonka pääte on .cellb, tallennetaan pakattuna binäärimuotona tiedosto, jonka pääte on .rle, RLE-muotona ja tiedosto, jonka pääte on .mc, macrocell-muotona; muut tekstimuotona. Virheen tapahtuessa näytetään virheilmoitus.
         */
     private void save() {
         JFileChooser fc = new JFileChooser();
@@ -239,11 +245,22 @@ public class MainWindow extends JFrame implements ActionListener {
                         doSave = false;
                     }
                 }
+                boolean macrocell = saveFile.getName().endsWith("." + MacrocellFile.FILE_EXTENSION);
+                if(doSave && macrocell && this.getGrid().getGame().getRules().getBirthRule(0)) {
+                    JOptionPane.showMessageDialog(this, "Macrocell files cannot store rules with birth on 0 neighbors.", "Error", JOptionPane.ERROR_MESSAGE);
+                    doSave = false;
+                }
                 if(doSave) {
                     try {
-                        FileWriter w = new FileWriter(saveFile);
-                        w.write(CAFile.write(this.getGrid().getGame()));
-                        w.close();
+                        if(saveFile.getName().endsWith("." + CABinaryFile.FILE_EXTENSION)) {
+                            CABinaryFile.write(this.getGrid().getGame(), saveFile, true);
+                        } else if(saveFile.getName().endsWith("." + RLEFile.FILE_EXTENSION)) {
+                            RLEFile.write(this.getGrid().getGame(), saveFile);
+                        } else if(macrocell) {
+                            MacrocellFile.write(this.getGrid().getGame(), saveFile);
+                        } else {
+                            CAFile.write(this.getGrid().getGame(), saveFile);
+                        }
                         this.setTitle(saveFile.getName());
                         saving = false;
                     } catch(FileNotFoundException e) {
@@ -0,0 +1,67 @@
+package test;
+
+import cellularautomaton.*;
+
+/**
+    * Mittaa tilasiirtymäytimien nopeuden satunnaisella alkutilalla eri ruudukkokoilla. Ruudukkojen sivun pituudet voi antaa komentoriviparametreina; oletuksena mitataan koot 64x64...16384x16384.
+    *
+    * Vektoriydin on mukana vain, kun ohjelma käynnistetään valitsimella --add-modules jdk.incubator.vector. Suurimmat ruudukot vaativat noin gigatavun keon (-Xmx1g).
+    */
+public class Benchmark {
+    /**
+        * Solupäivitysten määrä, johon kunkin mittauksen sukupolvimäärä mitoitetaan.
+        */
+    private static final long CELL_UPDATES = 1L << 30;
+
+    /**
+        * Sukupolvien vähimmäismäärä mittausta kohden.
+        */
+    private static final int MIN_GENERATIONS = 4;
+
+    /**
+        * Lämmittelysukupolvien määrä ennen mittausta.
+        */
+    private static final int WARMUP_GENERATIONS = 3;
+
+    public static void main(String[] args) {
+        int[] sizes = {64, 256, 1024, 4096, 16384};
+        if(args.length > 0) {
+            sizes = new int[args.length];
+            for(int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        java.util.Random random = new java.util.Random(2009);
+        for(int size : sizes) {
+            boolean[][] cells = new boolean[size][size];
+            for(int col = 0; col < size; col++) {
+                for(int row = 0; row < size; row++) {
+                    cells[col][row] = random.nextInt(3) == 0;
+                }
+            }
+            int generations = (int) Math.max(MIN_GENERATIONS, CELL_UPDATES / ((long) size * size));
+
+            for(CA.KernelType type : CA.KernelType.values()) {
+                if(!CA.isKernelAvailable(type)) {
+                    System.out.println(size + "x" + size + "\t" + type + "\tei käytettävissä");
+                    continue;
+                }
+                CA game = new CA();
+                game.setHistoryLength(0);
+                game.setKernelType(type);
+                game.setCells(cells);
+                for(int gen = 0; gen < WARMUP_GENERATIONS; gen++) {
+                    game.evolve();
+                }
+
+                long start = System.nanoTime();
+                for(int gen = 0; gen < generations; gen++) {
+                    game.evolve();
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%dx%d\t%s\t%.1f sukupolvea/s\t%.1f Msolua/s%n", size, size, type, generations / seconds, (double) size * size * generations / seconds / 1e6);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -1,5 +1,6 @@
 package test;
 
+import batch.*;
 import cellularautomaton.*;
 import utils.*;
 
@@ -175,6 +176,71 @@ public class Test {
         System.out.println("Saatu vastaus:\t\t\t" + rhythmFound);
         testResult("Rytmin löytyminen", rhythmFound == true);
         
+        System.out.println("Suoritetaan 1000 tilasiirtymää yhdellä kutsulla ja verrataan yksittäisiin tilasiirtymiin.");
+        CA batched = new CA();
+        CA stepped = new CA();
+        java.util.Random batchRandom = new java.util.Random(7);
+        boolean[][] soup = new boolean[40][40];
+        for(int col = 0; col < 40; col++) {
+            for(int row = 0; row < 40; row++) {
+                soup[col][row] = batchRandom.nextInt(3) == 0;
+            }
+        }
+        batched.setCells(soup);
+        stepped.setCells(soup);
+        int batchSteps = batched.evolve(1000);
+        for(int i = 0; i < 1000; i++) {
+            stepped.evolve();
+        }
+        testResult("Usean tilasiirtymän vastaavuus", batchSteps == 1000
+            && Grid.equal(getCells(stepped), getCells(batched))
+            && batched.isPeriodic() == stepped.isPeriodic());
+        
+        System.out.println("Suoritetaan 2-vaiheiselle oskillaattorille enintään 100 tilasiirtymää rytmin havaitsemiseen asti.");
+        game.evolve();
+        game.resetHistory();
+        int periodSteps = game.evolve(100, true);
+        System.out.println("Odotettu vastaus:\t\t2");
+        System.out.println("Saatu vastaus:\t\t\t" + periodSteps);
+        testResult("Usean tilasiirtymän lopetus rytmiin", periodSteps == 2 && game.isPeriodic());
+        
+        System.out.println("Tunnistetaan pitkä rytmi: liukuja palaa 300x300-toruksella alkuasemaansa 1200 sukupolven jälkeen.");
+        boolean longPeriodsFound = true;
+        for(CA.EvolutionMode mode : CA.EvolutionMode.values()) {
+            CA torus = new CA();
+            CARules wrapRules = CARules.newLifeRules();
+            wrapRules.setEdgeBehavior(CARules.EdgeBehavior.WRAP);
+            torus.setRules(wrapRules);
+            torus.setEvolutionMode(mode);
+            boolean[][] torusCells = new boolean[300][300];
+            torusCells[1][0] = torusCells[2][1] = torusCells[0][2] = torusCells[1][2] = torusCells[2][2] = true;
+            torus.setCells(torusCells);
+            torus.setHistoryLength(1000);
+            int shortSearch = torus.evolve(1500, true);
+            torus.setCells(torusCells);
+            torus.setHistoryLength(2000);
+            int longSearch = torus.evolve(1500, true);
+            System.out.println(mode + ": historia 1000: " + shortSearch + ", historia 2000: " + longSearch);
+            longPeriodsFound = longPeriodsFound && shortSearch == 1500 && longSearch == 1200;
+        }
+        testResult("Pitkän rytmin tunnistus", longPeriodsFound);
+        
+        System.out.println("Tunnistetaan oskillaattorin ja avaruusalusten jakso, siirtymä ja nopeus.");
+        testResult("Liikkeen tunnistus", testMotion());
+        
+        System.out.println("Mitataan tilasiirtymien aikaiset muistinvaraukset lämmittelyn jälkeen.");
+        boolean allocationFree = true;
+        for(CA.EvolutionMode mode : CA.EvolutionMode.values()) {
+            CA allocGame = new CA();
+            allocGame.setEvolutionMode(mode);
+            allocGame.setCells(soup);
+            allocGame.setHistoryLength(10);
+            long allocated = allocatedBytes(allocGame, 500, 100);
+            System.out.println(mode + ": " + allocated + " tavua 100 tilasiirtymässä");
+            allocationFree = allocationFree && allocated == 0;
+        }
+        testResult("Tilasiirtymien varauksettomuus", allocationFree);
+        
         System.out.println("Tallennetaan nykyinen tila tilapäismuistiin.");
         game.storePattern();
         boolean[][] storedCells = getCells(game);
@@ -200,6 +266,168 @@ public class Test {
         printCells(cells);
         testResult("Tilan tilapäistallentaminen ja -palauttaminen", Grid.equal(expectedCells, cells));
         
+        System.out.println("Verrataan tiivistetyn ruudukon evoluutiota suoraviivaiseen viitetoteutukseen satunnaisilla ruudukoilla.");
+        testResult("Tiivistetyn evoluution vastaavuus viitetoteutukseen", testAgainstReference(new CA()));
+        
+        System.out.println("Verrataan muuttuneita soluja seuraavaa laskentatapaa viitetoteutukseen.");
+        CA activeGame = new CA();
+        activeGame.setEvolutionMode(CA.EvolutionMode.ACTIVE);
+        testResult("Muutoksia seuraavan evoluution vastaavuus viitetoteutukseen", testAgainstReference(activeGame) && testSparseAgainstFull(activeGame));
+        
+        System.out.println("Verrataan rinnakkaista evoluutiota viitetoteutukseen.");
+        CA parallelGame = new CA();
+        parallelGame.setParallelism(4);
+        parallelGame.setMinBandRows(1);
+        testResult("Rinnakkaisen evoluution vastaavuus viitetoteutukseen", testAgainstReference(parallelGame));
+        
+        System.out.println("Verrataan hakutaulukkoydintä viitetoteutukseen.");
+        CA lookupGame = new CA();
+        lookupGame.setKernelType(CA.KernelType.LOOKUP);
+        testResult("Hakutaulukkoytimen vastaavuus viitetoteutukseen", testAgainstReference(lookupGame));
+        
+        System.out.println("Verrataan erotuvan summan ydintä viitetoteutukseen.");
+        CA runningSumGame = new CA();
+        runningSumGame.setKernelType(CA.KernelType.RUNNING_SUM);
+        testResult("Erotuvan summan ytimen vastaavuus viitetoteutukseen", testAgainstReference(runningSumGame));
+        
+        System.out.println("Verrataan vektoriydintä viitetoteutukseen (" + (CA.isKernelAvailable(CA.KernelType.VECTOR) ? "Vector API käytössä" : "Vector API ei käytössä, käytetään SWAR-ydintä") + ").");
+        CA vectorGame = new CA();
+        vectorGame.setKernelType(CA.KernelType.VECTOR);
+        testResult("Vektoriytimen vastaavuus viitetoteutukseen", testAgainstReference(vectorGame));
+        
+        System.out.println("Verrataan ajon aikana käännettyä ydintä viitetoteutukseen (" + (CA.isKernelAvailable(CA.KernelType.COMPILED) ? "kääntäjä käytössä" : "kääntäjä ei käytössä, käytetään SWAR-ydintä") + ").");
+        CA compiledGame = new CA();
+        compiledGame.setKernelType(CA.KernelType.COMPILED);
+        testResult("Käännetyn ytimen vastaavuus viitetoteutukseen", testAgainstReference(compiledGame));
+        
+        System.out.println("Verrataan keon ulkopuolista ruudukkoa viitetoteutukseen.");
+        GridArena arena = new GridArena();
+        CA offHeapGame = new CA();
+        offHeapGame.setArena(arena);
+        offHeapGame.setEvolutionMode(CA.EvolutionMode.ACTIVE);
+        boolean offHeapMatches = testAgainstReference(offHeapGame) && testSparseAgainstFull(offHeapGame);
+        boolean[][] offHeapCells = offHeapGame.copyCells();
+        boolean allocated = arena.getAllocatedBytes() > 0;
+        offHeapGame.setArena(null);
+        arena.close();
+        System.out.println("Areenan varaus sulkemisen jälkeen: " + arena.getAllocatedBytes() + " tavua");
+        testResult("Keon ulkopuolisen ruudukon vastaavuus viitetoteutukseen", offHeapMatches && allocated
+            && arena.getAllocatedBytes() == 0 && Grid.equal(offHeapCells, offHeapGame.copyCells()));
+        
+        System.out.println("Vaihdetaan areenaa tilapäismuistiin säilötyn tilan kanssa ja suljetaan vanhat areenat.");
+        testResult("Säilötyn tilan siirtyminen areenan vaihdossa", testArenaSwitch());
+        
+        System.out.println("Verrataan populaatiota, rajaavaa suorakulmiota sekä syntyneitä ja kuolleita soluja laskettuihin arvoihin.");
+        CA statsGame = new CA();
+        boolean statsMatch = testStats(statsGame);
+        statsGame.setEvolutionMode(CA.EvolutionMode.ACTIVE);
+        statsMatch &= testStats(statsGame);
+        statsGame.setParallelism(2);
+        statsGame.setMinBandRows(8);
+        statsMatch &= testStats(statsGame);
+        statsGame.setParallelism(1);
+        testResult("Tilastojen vastaavuus", statsMatch);
+        
+        System.out.println("Verrataan muistikuvattua automaattia tavalliseen automaattiin ja jatketaan keskeytyneen tilasiirtymän jälkeen.");
+        testResult("Muistikuvatun automaatin vastaavuus ja palautuminen", testMappedCA());
+        
+        System.out.println("Verrataan HashLife-automaattia tavalliseen automaattiin liukujalla 64x64-ruudukossa.");
+        CA reference = new CA();
+        reference.setRules(CARules.newLifeRules());
+        reference.setCells(readCells(8, 8,
+            "01000000" +
+            "00100000" +
+            "11100000" +
+            "00000000" +
+            "00000000" +
+            "00000000" +
+            "00000000" +
+            "00000000"
+        ));
+        reference.setCells(Grid.resize(reference.copyCells(), 64, 64));
+        HashLife hashLife = new HashLife();
+        hashLife.setState(reference);
+        HashLife jumping = new HashLife();
+        jumping.setState(reference);
+        for(int i = 0; i < 100; i++) {
+            reference.evolve();
+            hashLife.evolve();
+        }
+        jumping.evolve(100);
+        expectedCells = reference.copyCells();
+        boolean hashLifeMatches = Grid.equal(expectedCells, hashLife.toState(0, 0, 64, 64).copyCells())
+            && Grid.equal(expectedCells, jumping.toState(0, 0, 64, 64).copyCells())
+            && hashLife.getPopulation() == 5 && jumping.getGeneration() == 100;
+        testResult("HashLife-evoluution vastaavuus", hashLifeMatches);
+        
+        System.out.println("Tarkistetaan HashLife-automaatin rytmin tunnistus 2-vaiheisella oskillaattorilla.");
+        hashLife = new HashLife();
+        hashLife.setCell(-1, 0, true);
+        hashLife.setCell(0, 0, true);
+        hashLife.setCell(1, 0, true);
+        hashLife.evolve();
+        boolean notYet = !hashLife.isPeriodic();
+        hashLife.evolve();
+        testResult("HashLife-rytmin löytyminen", notYet && hashLife.isPeriodic());
+        
+        System.out.println("Ajetaan R-pentominoa HashLife-automaatilla pienimmällä solmuvälimuistilla ja verrataan oletuskokoiseen välimuistiin.");
+        testResult("HashLife-roskienkeruun vastaavuus", testHashLifeGarbageCollection());
+        
+        System.out.println("Verrataan laatoitettua rajatonta automaattia HashLife-automaattiin liukujalla, joka ylittää laattojen rajoja.");
+        UnboundedCA unbounded = new UnboundedCA();
+        hashLife = new HashLife();
+        int[][] glider = {{-2, -3}, {-1, -2}, {-3, -1}, {-2, -1}, {-1, -1}};
+        for(int[] cell : glider) {
+            unbounded.setCell(cell[0], cell[1], true);
+            hashLife.setCell(cell[0], cell[1], true);
+        }
+        for(int i = 0; i < 300; i++) {
+            unbounded.evolve();
+        }
+        hashLife.evolve(300);
+        boolean unboundedMatches = Grid.equal(hashLife.toState(-10, -10, 100, 100).copyCells(), unbounded.toState(-10, -10, 100, 100).copyCells())
+            && unbounded.getPopulation() == 5 && unbounded.getTileCount() <= 4;
+        testResult("Rajattoman automaatin evoluution vastaavuus", unboundedMatches);
+        
+        System.out.println("Asetetaan rajattoman automaatin soluja tuetun koordinaattialueen reunoille ja sen ulkopuolelle.");
+        testResult("Rajattoman automaatin koordinaattialue", testUnboundedRange());
+        
+        System.out.println("Ajetaan eräajo rinnakkain kolmelle tiedostolle: oskillaattori, liukuja ja virheellinen tiedosto.");
+        testResult("Eräajon tulokset ja lopputilat", testBatchRunner());
+        
+        System.out.println("Muunnetaan säännöt B/S-merkkijonoksi ja tunnisteeksi ja takaisin.");
+        CARules highLife = CARules.parseRuleString("b36/s23");
+        testResult("Sääntömerkkijonot ja -tunnisteet", highLife != null && highLife.toRuleString().equals("B36/S23")
+            && CARules.fromKey(highLife.getKey()).toRuleString().equals("B36/S23") && CARules.parseRuleString("B3/S2x") == null
+            && CARules.newLifeRules().toRuleString().equals("B3/S23") && CARules.parseRuleString("S/B").getKey() == 0);
+        
+        System.out.println("Käydään läpi 32 sääntöä vilkkujalla ja jatketaan keskeytynyttä läpikäyntiä.");
+        testResult("Sääntöavaruuden läpikäynti", testRuleExplorer());
+        
+        System.out.println("Luetaan tiedostomuotoa merkkijonosta, merkkivirrasta, tavupuskurista ja tiedostosta.");
+        testResult("Tiedostomuodon jäsennys", testCAFileParsing());
+        
+        System.out.println("Luetaan tiedostoja, joiden lopussa on ylimääräisiä erotusmerkkejä tai joiden luvuilla on etumerkki.");
+        testResult("Tiedostomuodon sallivuus", testCAFileLeniency());
+        
+        System.out.println("Kirjoitetaan tiedostomuotoa merkkijonoon, merkkivirtaan, tavuvirtaan ja tiedostoon ja verrataan suoraviivaiseen toteutukseen.");
+        testResult("Tiedostomuodon kirjoitus", testCAFileWriting());
+        
+        System.out.println("Muunnetaan tiloja teksti- ja binäärimuodon välillä ja tarkistetaan virheellisten binääritiedostojen hylkääminen.");
+        testResult("Binäärimuodon vastaavuus tekstimuotoon", testCABinaryFile());
+        
+        System.out.println("Luetaan teksti-, RLE- ja binäärimuotoisia otsakkeita, joiden ruudukko ei mahdu yhteen taulukkoon.");
+        testResult("Liian suurten ruudukkojen hylkääminen", testOversizedGrids());
+        
+        System.out.println("Luetaan ja kirjoitetaan RLE-muotoisia kuvioita.");
+        testResult("RLE-muodon jäsennys ja edestakainen muunnos", testRLEFile());
+        
+        System.out.println("Luetaan ja kirjoitetaan macrocell-muotoisia nelipuita, myös ruudukkoon mahtumaton säännöllinen kuvio.");
+        testResult("Macrocell-muodon jäsennys ja edestakainen muunnos", testMacrocellFile());
+        
+        System.out.println("Luokitellaan tunnettuja kuvioita ja haetaan kuvioita satunnaisista alkutiloista.");
+        testResult("Satunnaisten alkutilojen kuviolaskenta", testSoupSearch());
+        
         System.out.println("" + passed + "/" + tests + " testiä onnistui.");
     }
     
@@ -336,6 +564,991 @@ public class Test {
         testResult("" + neighborCount + " naapurin eloonjäämissäännön toimivuus", expectedState == state);
     }
     
+    private static CARules[] referenceRules() {
+        CARules life = CARules.newLifeRules();
+        CARules other = new CARules();
+        for(int n : new int[] {0, 1, 2, 4, 5}) {
+            other.setBirthRule(n, true);
+        }
+        for(int n : new int[] {0, 3, 7, 8}) {
+            other.setSurvivalRule(n, true);
+        }
+        return new CARules[] {life, other};
+    }
+    
+    private static long allocatedBytes(CA game, int warmup, int generations) {
+        java.lang.management.ThreadMXBean bean = java.lang.management.ManagementFactory.getThreadMXBean();
+        if(!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return 0;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        long thread = Thread.currentThread().getId();
+        
+        for(int gen = 0; gen < warmup; gen++) {
+            game.evolve();
+            game.isPeriodic();
+        }
+        long before = threads.getThreadAllocatedBytes(thread);
+        for(int gen = 0; gen < generations; gen++) {
+            game.evolve();
+            game.isPeriodic();
+        }
+        return threads.getThreadAllocatedBytes(thread) - before;
+    }
+    
+    private static boolean testStats(CA game) {
+        java.util.Random random = new java.util.Random(2009);
+        boolean success = true;
+        for(CARules.EdgeBehavior eb : new CARules.EdgeBehavior[] {CARules.EdgeBehavior.DEAD, CARules.EdgeBehavior.WRAP}) {
+            CARules rules = CARules.newLifeRules();
+            rules.setEdgeBehavior(eb);
+            game.setRules(rules);
+            game.setDimensions(150, 100);
+            for(int i = 0; i < 300; i++) {
+                game.setCell(random.nextInt(30) + (eb == CARules.EdgeBehavior.WRAP ? 135 : 60), random.nextInt(20) + 40, true);
+            }
+            success &= checkStats(game, 0, 0);
+            for(int gen = 0; gen < 60; gen++) {
+                boolean[][] before = game.copyCells();
+                game.evolve();
+                boolean[][] after = game.copyCells();
+                int births = 0;
+                int deaths = 0;
+                for(int col = 0; col < 150; col++) {
+                    for(int row = 0; row < 100; row++) {
+                        births += after[col][row] && !before[col][row] ? 1 : 0;
+                        deaths += before[col][row] && !after[col][row] ? 1 : 0;
+                    }
+                }
+                success &= checkStats(game, births, deaths);
+                if(gen % 20 == 0) {
+                    // Reunalla kuoleva solu vanhentaa rajaavan suorakulmion.
+                    Bounds<Cell> bounds = game.getLiveBounds();
+                    for(int col = bounds.a.x; col <= bounds.b.x; col++) {
+                        game.setCell(col, bounds.a.y, false);
+                    }
+                    success &= checkStats(game, births, deaths);
+                }
+            }
+        }
+        if(!success) {
+            System.out.println("Ero tilastoissa: " + game.getEvolutionMode() + ", rinnakkaisuus " + game.getParallelism());
+        }
+        return success;
+    }
+    
+    private static boolean checkStats(CA game, long births, long deaths) {
+        boolean[][] cells = game.copyCells();
+        long population = 0;
+        int minCol = Integer.MAX_VALUE;
+        int minRow = Integer.MAX_VALUE;
+        int maxCol = -1;
+        int maxRow = -1;
+        for(int col = 0; col < cells.length; col++) {
+            for(int row = 0; row < cells[col].length; row++) {
+                if(cells[col][row]) {
+                    population++;
+                    minCol = Math.min(minCol, col);
+                    minRow = Math.min(minRow, row);
+                    maxCol = Math.max(maxCol, col);
+                    maxRow = Math.max(maxRow, row);
+                }
+            }
+        }
+        Bounds<Cell> bounds = game.getLiveBounds();
+        boolean boundsMatch = population == 0 ? bounds == null
+            : bounds != null && bounds.a.x == minCol && bounds.a.y == minRow && bounds.b.x == maxCol && bounds.b.y == maxRow;
+        return boundsMatch && game.getPopulation() == population && game.getBirths() == births && game.getDeaths() == deaths;
+    }
+    
+    private static boolean testHashLifeGarbageCollection() {
+        HashLife collected = new HashLife();
+        collected.setMaxNodes(0);
+        HashLife jumping = new HashLife();
+        jumping.setMaxNodes(0);
+        HashLife reference = new HashLife();
+        int[][] rPentomino = {{1, 0}, {2, 0}, {0, 1}, {1, 1}, {1, 2}};
+        for(int[] cell : rPentomino) {
+            collected.setCell(cell[0], cell[1], true);
+            jumping.setCell(cell[0], cell[1], true);
+            reference.setCell(cell[0], cell[1], true);
+        }
+        boolean success = true;
+        for(int i = 0; i < 1200; i++) {
+            collected.evolve();
+            reference.evolve();
+            success &= collected.getPopulation() == reference.getPopulation();
+        }
+        long[] bounds = reference.getBounds();
+        // Yhden suuren hypyn aikana kerätään roskia kesken laskennan.
+        jumping.evolve(1200);
+        int cols = (int) (bounds[2] - bounds[0] + 1);
+        int rows = (int) (bounds[3] - bounds[1] + 1);
+        boolean[][] expected = reference.toState(bounds[0], bounds[1], cols, rows).copyCells();
+        for(HashLife game : new HashLife[] {collected, jumping}) {
+            success &= game.getPopulation() == 116 && java.util.Arrays.equals(game.getBounds(), bounds)
+                && Grid.equal(game.toState(bounds[0], bounds[1], cols, rows).copyCells(), expected)
+                && game.getNodeCount() <= game.getMaxNodes() && game.getNodeCount() < reference.getNodeCount();
+        }
+        return success;
+    }
+    
+    private static boolean testUnboundedRange() {
+        UnboundedCA game = new UnboundedCA();
+        boolean success = true;
+        game.setCell(UnboundedCA.MIN_COORDINATE, 0, true);
+        success &= !game.getCell(UnboundedCA.MAX_COORDINATE + 1, 0) && game.getCell(UnboundedCA.MIN_COORDINATE, 0);
+        try {
+            game.setCell(UnboundedCA.MAX_COORDINATE + 1, 0, true);
+            success = false;
+        } catch(IllegalArgumentException e) {
+        }
+        try {
+            game.getLiveCells();
+            success = false;
+        } catch(IllegalStateException e) {
+        }
+        
+        game.erase();
+        for(int i = 0; i < 3; i++) {
+            game.setCell(Integer.MAX_VALUE - i, 5, true);
+        }
+        game.evolve();
+        java.util.List<Cell> cells = game.getLiveCells();
+        success &= cells.size() == 3 && game.getCell(Integer.MAX_VALUE - 1, 4) && game.getCell(Integer.MAX_VALUE - 1, 6);
+        
+        game.erase();
+        for(int i = 0; i < 3; i++) {
+            game.setCell(UnboundedCA.MAX_COORDINATE - i, 5, true);
+        }
+        try {
+            game.evolve();
+            success = false;
+        } catch(IllegalStateException e) {
+        }
+        success &= game.getPopulation() == 3 && game.getCell(UnboundedCA.MAX_COORDINATE, 5);
+        
+        game.erase();
+        for(int i = 0; i < 3; i++) {
+            game.setCell(UnboundedCA.MAX_COORDINATE - 1, 5 + i, true);
+        }
+        game.evolve();
+        success &= game.getPopulation() == 3 && game.getCell(UnboundedCA.MAX_COORDINATE, 6) && !game.getCell(UnboundedCA.MIN_COORDINATE, 6);
+        return success;
+    }
+    
+    private static boolean testOversizedGrids() {
+        boolean success = CAFile.read("320,900000000/dead/3/2,3|") == null;
+        try {
+            new BitGrid(320, 900000000);
+            success = false;
+        } catch(IllegalStateException e) {
+        }
+        try {
+            RLEFile.read("x = 320, y = 900000000\no!");
+            success = false;
+        } catch(IllegalStateException e) {
+        }
+        try {
+            java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+            CABinaryFile.write(CAFile.read("8,8/dead/3/2,3|1,1"), bytes, true);
+            java.nio.ByteBuffer data = java.nio.ByteBuffer.wrap(bytes.toByteArray()).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+            data.putInt(8, 320);
+            data.putInt(12, 900000000);
+            CABinaryFile.read(data);
+            success = false;
+        } catch(IllegalStateException e) {
+        } catch(java.io.IOException e) {
+            System.out.println("Virhe: " + e.getMessage());
+            success = false;
+        }
+        return success;
+    }
+    
+    private static boolean testArenaSwitch() {
+        CA game = new CA();
+        game.setDimensions(20, 20);
+        int[][] glider = {{1, 0}, {2, 1}, {0, 2}, {1, 2}, {2, 2}};
+        for(int[] cell : glider) {
+            game.setCell(cell[0], cell[1], true);
+        }
+        boolean[][] original = game.copyCells();
+        boolean success = true;
+        
+        GridArena first = new GridArena();
+        game.setArena(first);
+        game.storePattern();
+        game.evolve(70);
+        game.setArena(null);
+        first.close();
+        game.recallPattern();
+        success &= Grid.equal(original, game.copyCells());
+        game.evolve(70);
+        
+        GridArena second = new GridArena();
+        GridArena third = new GridArena();
+        game.setArena(second);
+        game.recallPattern();
+        game.storePattern();
+        game.evolve(70);
+        game.setArena(third);
+        second.close();
+        success &= second.getAllocatedBytes() == 0;
+        game.recallPattern();
+        success &= Grid.equal(original, game.copyCells());
+        
+        // Suljetun areenan ruudukon käyttö ei saa lukea vapautettua muistia.
+        third.close();
+        try {
+            game.getCell(1, 0);
+            success = false;
+        } catch(IllegalStateException e) {
+            // Odotettu.
+        }
+        return success;
+    }
+    
+    private static boolean testMappedCA() {
+        java.io.File first = null;
+        java.io.File second = null;
+        try {
+            first = java.io.File.createTempFile("cells", ".0");
+            second = java.io.File.createTempFile("cells", ".1");
+            CA reference = new CA();
+            CARules rules = referenceRules()[1];
+            rules.setEdgeBehavior(CARules.EdgeBehavior.WRAP);
+            reference.setRules(rules);
+            reference.setDimensions(130, 67);
+            java.util.Random random = new java.util.Random(2009);
+            for(int col = 0; col < 130; col++) {
+                for(int row = 0; row < 67; row++) {
+                    reference.setCell(col, row, random.nextInt(3) == 0);
+                }
+            }
+            
+            MappedCA mapped = MappedCA.create(first, second, 130, 67, CARules.newLifeRules());
+            mapped.setState(reference);
+            boolean success = true;
+            for(int gen = 0; gen < 20; gen++) {
+                reference.evolve();
+                mapped.evolve();
+                success &= Grid.equal(reference.copyCells(), mapped.toState(0, 0, 130, 67).copyCells());
+            }
+            mapped.close();
+            
+            // Keskeytynyt tilasiirtymä: toinen tiedosto on merkitty keskeneräiseksi ja sen sisältö on rikki.
+            java.io.RandomAccessFile file = new java.io.RandomAccessFile(second, "rw");
+            file.seek(16);
+            file.writeLong(Long.reverseBytes(21));
+            file.seek(32);
+            file.writeInt(0);
+            file.seek(200);
+            file.writeLong(-1L);
+            file.close();
+            
+            mapped = MappedCA.open(first, second);
+            success &= mapped.getGeneration() == 20 && mapped.getRules().getEdgeBehavior() == CARules.EdgeBehavior.WRAP
+                && Grid.equal(reference.copyCells(), mapped.toState(0, 0, 130, 67).copyCells());
+            reference.evolve();
+            mapped.evolve();
+            success &= mapped.getGeneration() == 21 && Grid.equal(reference.copyCells(), mapped.toState(0, 0, 130, 67).copyCells());
+            
+            // Ruudukon ulkopuoliset solut reunakäyttäytymisen mukaan.
+            for(CARules.EdgeBehavior eb : new CARules.EdgeBehavior[] {CARules.EdgeBehavior.WRAP, CARules.EdgeBehavior.ALIVE}) {
+                rules.setEdgeBehavior(eb);
+                reference.setRules(rules);
+                mapped.setRules(rules);
+                for(int col = -140; col < 270; col += 7) {
+                    for(int row = -70; row < 140; row += 3) {
+                        success &= reference.getCell(col, row) == mapped.getCell(col, row);
+                    }
+                }
+            }
+            
+            mapped.setRules(CARules.newLifeRules());
+            mapped.erase();
+            mapped.setCell(5, 5, true);
+            mapped.setCell(6, 5, true);
+            mapped.setCell(5, 6, true);
+            mapped.setCell(6, 6, true);
+            boolean notYet = !mapped.isPeriodic();
+            mapped.evolve();
+            success &= notYet && mapped.isPeriodic();
+            mapped.close();
+            try {
+                mapped.getCell(1, 1);
+                success = false;
+            } catch(IllegalStateException e) {
+            }
+            try {
+                mapped.toState(0, 0, 10, 10);
+                success = false;
+            } catch(IllegalStateException e) {
+            }
+            return success;
+        } catch(java.io.IOException e) {
+            System.out.println("Virhe: " + e.getMessage());
+            return false;
+        } finally {
+            if(first != null) {
+                first.delete();
+            }
+            if(second != null) {
+                second.delete();
+            }
+        }
+    }
+    
+    private static boolean testBatchRunner() {
+        java.io.File dir = null;
+        try {
+            dir = java.nio.file.Files.createTempDirectory("cells").toFile();
+            CA blinker = new CA();
+            blinker.setCells(Grid.getDeadGrid(8, 8));
+            blinker.setCell(2, 3, true);
+            blinker.setCell(3, 3, true);
+            blinker.setCell(4, 3, true);
+            BatchRunner.save(blinker, new java.io.File(dir, "blinker.cells"));
+            
+            CA glider = new CA();
+            glider.setCells(readCells(8, 8,
+                "01000000" +
+                "00100000" +
+                "11100000" +
+                "00000000" +
+                "00000000" +
+                "00000000" +
+                "00000000" +
+                "00000000"
+            ));
+            CARules rules = glider.getRules();
+            rules.setEdgeBehavior(CARules.EdgeBehavior.WRAP);
+            glider.setRules(rules);
+            BatchRunner.save(glider, new java.io.File(dir, "glider.cells"));
+            
+            java.io.FileWriter w = new java.io.FileWriter(new java.io.File(dir, "broken.cells"));
+            w.write("8,8/wrap/3");
+            w.close();
+            
+            BatchRunner runner = new BatchRunner();
+            runner.setGenerations(10);
+            runner.setStopWhenPeriodic(true);
+            runner.setThreads(3);
+            java.util.List<BatchResult> results = runner.run(BatchRunner.expand(java.util.Collections.singletonList(dir)));
+            for(int gen = 0; gen < 10; gen++) {
+                glider.evolve();
+            }
+            
+            BatchResult oscillator = results.get(0);
+            BatchResult broken = results.get(1);
+            BatchResult moving = results.get(2);
+            CAState blinkerOut = BatchRunner.load(new java.io.File(dir, "blinker-2.cells"));
+            CAState gliderOut = BatchRunner.load(new java.io.File(dir, "glider-10.cells"));
+            return results.size() == 3 && broken.getError() != null
+                && oscillator.getError() == null && oscillator.getGenerations() == 2 && oscillator.isPeriodic() && oscillator.getPopulation() == 3
+                && Grid.equal(blinker.copyCells(), blinkerOut.copyCells())
+                && moving.getError() == null && moving.getGenerations() == 10 && !moving.isPeriodic() && moving.getPopulation() == 5
+                && Grid.equal(glider.copyCells(), gliderOut.copyCells()) && gliderOut.getRules().getEdgeBehavior() == CARules.EdgeBehavior.WRAP;
+        } catch(Exception e) {
+            System.out.println("Virhe: " + e);
+            return false;
+        } finally {
+            if(dir != null) {
+                for(java.io.File file : dir.listFiles()) {
+                    file.delete();
+                }
+                dir.delete();
+            }
+        }
+    }
+    
+    private static boolean testRuleExplorer() {
+        java.io.File file = null;
+        try {
+            file = java.io.File.createTempFile("rules", ".csv");
+            file.delete();
+            CA blinker = new CA();
+            blinker.setCells(Grid.getDeadGrid(3, 3));
+            blinker.setCell(0, 1, true);
+            blinker.setCell(1, 1, true);
+            blinker.setCell(2, 1, true);
+            
+            RuleExplorer explorer = new RuleExplorer();
+            explorer.setPattern(blinker);
+            explorer.setBoardSize(16);
+            explorer.setThreads(2);
+            boolean success = explorer.explore(CARules.newLifeRules()).getOutcome() == Outcome.OSCILLATES
+                && explorer.explore(CARules.newLifeRules()).getPeriod() == 2
+                && explorer.explore(new CARules()).getOutcome() == Outcome.DIES_OUT
+                && explorer.explore(CARules.parseRuleString("B3/S012345678")).getOutcome() == Outcome.STABLE
+                && explorer.explore(CARules.parseRuleString("B1/S")).getOutcome() == Outcome.GROWS;
+            
+            // B3 ja mikä tahansa osajoukko B4...B8, S23.
+            explorer.setRequired(CARules.parseRuleString("B3/S23"));
+            explorer.setExcluded(CARules.parseRuleString("B012/S0145678"));
+            success &= explorer.run(file) == 32 && explorer.getTotal(Outcome.OSCILLATES) >= 1;
+            java.util.List<String> lines = java.nio.file.Files.readAllLines(file.toPath());
+            success &= lines.size() == 33 && lines.get(0).equals(RuleResult.CSV_HEADER) && lines.contains("6152,B3/S23,OSCILLATES,2,0,0,1,0,0");
+            
+            // Keskeytynyt ajo: kymmenen viimeistä riviä puuttuu ja viimeinen rivi on kesken.
+            StringBuilder partial = new StringBuilder();
+            for(int i = 0; i < 23; i++) {
+                partial.append(lines.get(i)).append('\n');
+            }
+            partial.append(lines.get(23), 0, 5);
+            java.nio.file.Files.write(file.toPath(), partial.toString().getBytes("UTF-8"));
+            success &= explorer.run(file) == 10;
+            java.util.List<String> resumed = java.nio.file.Files.readAllLines(file.toPath());
+            success &= resumed.size() == 33 && new java.util.HashSet<String>(resumed).equals(new java.util.HashSet<String>(lines));
+            return success;
+        } catch(Exception e) {
+            System.out.println("Virhe: " + e);
+            return false;
+        } finally {
+            if(file != null) {
+                file.delete();
+            }
+        }
+    }
+    
+    private static boolean testCAFileParsing() {
+        java.util.Random random = new java.util.Random(2009);
+        boolean success = true;
+        for(int size : new int[] {3, 40, 300}) {
+            CAState state = new CAState();
+            CARules rules = CARules.fromKey(random.nextInt(CARules.KEY_COUNT));
+            rules.setEdgeBehavior(CARules.EdgeBehavior.values()[random.nextInt(3)]);
+            state.setRules(rules);
+            state.setDimensions(size, size + 1);
+            for(int i = 0; i < size * size / 4; i++) {
+                state.setCell(random.nextInt(size), random.nextInt(size + 1), true);
+            }
+            String data = CAFile.write(state);
+            java.io.File file = null;
+            try {
+                file = java.io.File.createTempFile("parse", ".cells");
+                java.io.Writer w = new java.io.FileWriter(file);
+                w.write(data);
+                w.close();
+                CAState[] results = {
+                    CAFile.read(data),
+                    CAFile.read(new java.io.StringReader(data + "\n")),
+                    CAFile.read(java.nio.ByteBuffer.wrap(data.getBytes("US-ASCII"))),
+                    CAFile.read(file)
+                };
+                for(CAState result : results) {
+                    success &= result != null && result.getRules().getKey() == rules.getKey()
+                        && result.getRules().getEdgeBehavior() == rules.getEdgeBehavior()
+                        && result.getPopulation() == state.getPopulation() && Grid.equal(result.copyCells(), state.copyCells());
+                }
+            } catch(java.io.IOException e) {
+                System.out.println("Virhe: " + e.getMessage());
+                success = false;
+            } finally {
+                if(file != null) {
+                    file.delete();
+                }
+            }
+        }
+        
+        CAState empty = CAFile.read("5,4/wrap//|");
+        success &= empty != null && empty.getPopulation() == 0 && empty.getCols() == 5 && empty.getRows() == 4
+            && empty.getRules().getKey() == 0 && CAFile.write(empty).equals("5,4/wrap//|");
+        String[] invalid = {
+            "", "5,5/dead/3/2,3", "5,5/dead/3/2,3|5,0", "5,5/dead/3/2,3|1,", "5,5/dead/3/2,3|/1,1",
+            "5,5/dead/3/2,3|1,1 2,2", "5,5/dead/3/2,3|1,1,1", "5,5/foo/3/2,3|", "5,5/deadly/3/2,3|", "2,5/dead/3/2,3|",
+            "5,5/dead/9/2,3|", "99999999999,5/dead/3/2,3|", "5,5/dead/3/2,3|1,99999999999", " 5,5/dead/3/2,3|",
+            "5,5/dead/3/2,3|1,1//2,2", "5,5/dead/3/2,3|1,,1", "5,5/dead/3/2,3|1,1,/,2", "5,5/dead/3,,2/2,3|", "5,5/dead/3/2,3|1,1|2,2",
+            "5,5/dead/3/2,3|-1,1", "5,5/dead/3/2,3|+,1", "5,5/dead/3/2,3|1,+-1", "5,,5/dead/3/2,3|", "5,5/dead/3/2,3|1,1|/"
+        };
+        for(String data : invalid) {
+            if(CAFile.read(data) != null) {
+                System.out.println("Virheellinen syöte hyväksyttiin: " + data);
+                success = false;
+            }
+        }
+        return success;
+    }
+    
+    private static boolean testCAFileLeniency() {
+        String[][] cases = {
+            {"8,6/dead/1/7,7|4,0/7,2/7,5/", "8,6/dead/1/7|4,0/7,2/7,5"},
+            {"6,8/alive/5/5|5,6,", "6,8/alive/5/5|5,6"},
+            {"10,6/wrap/+5/5|5,3", "10,6/wrap/5/5|5,3"},
+            {"5,5/dead/3/2,3|1,1|", "5,5/dead/3/2,3|1,1"},
+            {"5,5/dead/3/2,3|1,1/||", "5,5/dead/3/2,3|1,1"},
+            {"5,5,/dead/3,/2,3,,//|1,1,,/2,2//", "5,5/dead/3/2,3|1,1/2,2"},
+            {"+5,+5/dead/-0/2|-0,+4", "5,5/dead/0/2|0,4"},
+            {"5,5/dead/3/2,3|/", "5,5/dead/3/2,3|"}
+        };
+        boolean success = true;
+        for(String[] c : cases) {
+            CAState state = CAFile.read(c[0]);
+            CAState streamed = null;
+            try {
+                streamed = CAFile.read(new java.io.StringReader(c[0]));
+            } catch(java.io.IOException e) {
+                System.out.println("Virhe: " + e.getMessage());
+            }
+            if(state == null || streamed == null || !CAFile.write(state).equals(c[1]) || !CAFile.write(streamed).equals(c[1])) {
+                System.out.println("Syöte jäsennettiin väärin: " + c[0]);
+                success = false;
+            }
+        }
+        return success;
+    }
+    
+    private static boolean testCAFileWriting() {
+        java.util.Random random = new java.util.Random(2009);
+        boolean success = true;
+        for(int size : new int[] {3, 63, 64, 65, 200}) {
+            CAState state = new CAState();
+            CARules rules = CARules.fromKey(random.nextInt(CARules.KEY_COUNT));
+            state.setRules(rules);
+            state.setDimensions(size + 7, size);
+            for(int i = 0; i < size * size / 3; i++) {
+                state.setCell(random.nextInt(size + 7), random.nextInt(size), true);
+            }
+            
+            StringBuilder expected = new StringBuilder();
+            expected.append(size + 7).append(',').append(size).append("/dead/");
+            String birth = "";
+            String survival = "";
+            for(int n = 0; n < CARules.NEIGHBOR_COUNT; n++) {
+                birth += rules.getBirthRule(n) ? (birth.isEmpty() ? "" : ",") + n : "";
+                survival += rules.getSurvivalRule(n) ? (survival.isEmpty() ? "" : ",") + n : "";
+            }
+            expected.append(birth).append('/').append(survival).append('|');
+            boolean first = true;
+            for(int col = 0; col < size + 7; col++) {
+                for(int row = 0; row < size; row++) {
+                    if(state.getCell(col, row)) {
+                        expected.append(first ? "" : "/").append(col).append(',').append(row);
+                        first = false;
+                    }
+                }
+            }
+            
+            java.io.File file = null;
+            try {
+                java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+                CAFile.write(state, bytes);
+                file = java.io.File.createTempFile("write", ".cells");
+                CAFile.write(state, file);
+                String written = CAFile.write(state);
+                success &= written.equals(expected.toString()) && bytes.toString("US-ASCII").equals(written)
+                    && new FileLoader(file).readAll().equals(written);
+            } catch(java.io.IOException e) {
+                System.out.println("Virhe: " + e.getMessage());
+                success = false;
+            } finally {
+                if(file != null) {
+                    file.delete();
+                }
+            }
+        }
+        return success;
+    }
+    
+    private static boolean testMacrocellFile() {
+        boolean success = true;
+        String glider = "[M2] (Cells)\n#R B3/S23\n#G 12\n.*$..*$***$\n4 0 0 0 1\n";
+        HashLife life = MacrocellFile.read("[M2] (golly 4.0)\n#C Comment\n#R B3/S23\n#G 12\n\n.*$..*$***$\n4 0 0 0 1\n");
+        success &= life != null && life.getPopulation() == 5 && life.getGeneration() == 12;
+        success &= java.util.Arrays.equals(life.getBounds(), new long[] {0, 0, 2, 2});
+        success &= CAFile.write(life.toState()).equals("3,3/dead/3/2,3|0,2/1,0/1,2/2,1/2,2");
+        success &= MacrocellFile.write(life).equals(glider);
+        
+        // Tason 30 solmu, jonka jokaisessa 8x8 solun lohkossa on liitäjä: tiedostossa on 28 solmua, mutta alueella on yli 10^18 solua.
+        StringBuilder sb = new StringBuilder("[M2]\n.*$..*$***$\n");
+        for(int level = 4; level <= 30; level++) {
+            int child = level - 3;
+            sb.append(level).append(' ').append(child).append(' ').append(child).append(' ').append(child).append(' ').append(child).append('\n');
+        }
+        HashLife tiled = MacrocellFile.read(sb.toString());
+        success &= tiled != null && tiled.getPopulation() == 5L << 54 && tiled.getNodeCount() < 100;
+        success &= java.util.Arrays.equals(tiled.getBounds(), new long[] {-(1L << 29), -(1L << 29), (1L << 29) - 6, (1L << 29) - 6});
+        success &= tiled.toState(0, 0, 16, 8).getPopulation() == 10;
+        success &= MacrocellFile.write(MacrocellFile.read(MacrocellFile.write(tiled))).equals(MacrocellFile.write(tiled));
+        
+        String[] invalid = {
+            "",
+            ".*$..*$***$",
+            "[M2]\n.*$..*$***$\n4 0 0 0 2\n",
+            "[M2]\n.*$..*$***$\n5 0 0 0 1\n",
+            "[M2]\n.*$..*$***$\n4 0 0 1\n",
+            "[M2]\n.*$..x$***$\n",
+            "[M2]\n.........*$\n",
+            "[M2]\n$$$$$$$$.*\n",
+            "[M2]\n#R B03/S23\n.*$\n",
+            "[M2]\n3 0 0 0 0\n"
+        };
+        for(String str : invalid) {
+            success &= MacrocellFile.read(str) == null;
+        }
+        
+        java.util.Random random = new java.util.Random(2011);
+        int[][] shapes = {{3, 3}, {20, 9}, {70, 33}};
+        for(int[] shape : shapes) {
+            CAState state = new CAState();
+            CARules rules = CARules.fromKey(random.nextInt(CARules.KEY_COUNT) & ~1);
+            state.setRules(rules);
+            state.setDimensions(shape[0], shape[1]);
+            for(int row = 0; row < shape[1]; row++) {
+                for(int col = 0; col < shape[0]; col++) {
+                    state.setCell(col, row, random.nextInt(4) == 0);
+                }
+            }
+            java.io.StringWriter writer = new java.io.StringWriter();
+            try {
+                MacrocellFile.write(state, writer);
+            } catch(java.io.IOException e) {
+                success = false;
+            }
+            HashLife result = MacrocellFile.read(writer.toString());
+            success &= result != null && CAFile.write(result.toState(0, 0, shape[0], shape[1])).equals(CAFile.write(state));
+        }
+        return success;
+    }
+    
+    private static boolean testRLEFile() {
+        boolean success = true;
+        CAState glider = RLEFile.read("#N Glider\n#C Comment\n\nx = 3, y = 3, rule = B3/S23\nbo\r\n$2bo$ 3o!\ntrailing text");
+        success &= glider != null && CAFile.write(glider).equals("3,3/dead/3/2,3|0,2/1,0/1,2/2,1/2,2");
+        success &= RLEFile.write(glider).equals("x = 3, y = 3, rule = B3/S23\nbo$2bo$3o!\n");
+        
+        CAState gun = RLEFile.read("x = 36, y = 9, rule = b3/s23:T40,20\n24bo$22bobo$12b2o6b2o12b2o$11bo3bo4b2o12b2o$2o8bo5bo3b2o$2o8bo3bob2o4b\nobo$10bo5bo7bo$11bo3bo$12b2o!");
+        success &= gun != null && gun.getPopulation() == 36 && gun.getCols() == 40 && gun.getRows() == 20 && gun.getRules().getEdgeBehavior() == CARules.EdgeBehavior.WRAP;
+        CAState legacy = RLEFile.read("x = 4, y = 2, rule = 23/36\n2$!");
+        success &= legacy != null && legacy.getRules().toRuleString().equals("B36/S23") && legacy.getPopulation() == 0;
+        CAState noRule = RLEFile.read("x = 0, y = 0\n!");
+        success &= noRule != null && noRule.getRules().toRuleString().equals("B3/S23") && noRule.getCols() == CAState.MIN_DIMENSION;
+        
+        String[] invalid = {
+            "",
+            "#C Only a comment",
+            "3o!",
+            "x = 3, y = 3\n4o!",
+            "x = 3, y = 3\n3$o!",
+            "x = 3, y = 3\n2q!",
+            "x = 3, y = 3\n2 o!",
+            "x = 3, y = 3\nbo3",
+            "x = 3, y = 3, rule = B9/S23\no!",
+            "x = 3, y = 3, rule = B3/S23:K3,3\no!",
+            "x = 3000000000, y = 3\no!"
+        };
+        for(String str : invalid) {
+            success &= RLEFile.read(str) == null;
+        }
+        
+        java.util.Random random = new java.util.Random(2010);
+        int[][] shapes = {{3, 3}, {64, 5}, {65, 40}, {500, 30}};
+        for(int[] shape : shapes) {
+            CAState state = new CAState();
+            CARules rules = CARules.fromKey(random.nextInt(CARules.KEY_COUNT));
+            rules.setEdgeBehavior(random.nextBoolean() ? CARules.EdgeBehavior.WRAP : CARules.EdgeBehavior.DEAD);
+            state.setRules(rules);
+            state.setDimensions(shape[0], shape[1]);
+            for(int row = 0; row < shape[1]; row++) {
+                // Osa riveistä jätetään tyhjiksi, jotta kirjoitetaan myös toistettuja rivinvaihtoja.
+                int density = row % 3 == 0 ? 0 : random.nextInt(100);
+                for(int col = 0; col < shape[0]; col++) {
+                    state.setCell(col, row, random.nextInt(100) < density);
+                }
+            }
+            String rle = RLEFile.write(state);
+            CAState result = RLEFile.read(rle);
+            success &= result != null && CAFile.write(result).equals(CAFile.write(state));
+            for(String line : rle.split("\n")) {
+                success &= line.startsWith("x") || line.length() <= 70;
+            }
+        }
+        return success;
+    }
+    
+    private static boolean testCABinaryFile() {
+        java.util.Random random = new java.util.Random(2009);
+        boolean success = true;
+        int[][] shapes = {{3, 3}, {64, 10}, {65, 70}, {300, 40}};
+        for(int[] shape : shapes) {
+            for(int density : new int[] {0, 1, 50, 100}) {
+                CAState state = new CAState();
+                CARules rules = CARules.fromKey(random.nextInt(CARules.KEY_COUNT));
+                rules.setEdgeBehavior(CARules.EdgeBehavior.values()[random.nextInt(3)]);
+                state.setRules(rules);
+                state.setDimensions(shape[0], shape[1]);
+                for(int row = 0; row < shape[1]; row++) {
+                    // Joka neljännellä rivillä on pitkä elävä ajo, muilla satunnaisia soluja annetulla tiheydellä.
+                    int from = random.nextInt(shape[0]);
+                    for(int col = 0; col < shape[0]; col++) {
+                        state.setCell(col, row, row % 4 == 3 ? col >= from : random.nextInt(100) < density);
+                    }
+                }
+                String text = CAFile.write(state);
+                for(boolean deflate : new boolean[] {false, true}) {
+                    java.io.File file = null;
+                    try {
+                        java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+                        CABinaryFile.write(CAFile.read(text), bytes, deflate);
+                        byte[] data = bytes.toByteArray();
+                        file = java.io.File.createTempFile("binary", "." + CABinaryFile.FILE_EXTENSION);
+                        CAFile.write(state, file);
+                        success &= !CABinaryFile.isBinary(file);
+                        BatchRunner.save(state, file);
+                        CAState[] results = {
+                            CABinaryFile.read(java.nio.ByteBuffer.wrap(data)),
+                            CABinaryFile.read(new java.io.ByteArrayInputStream(data)),
+                            BatchRunner.load(file)
+                        };
+                        for(CAState result : results) {
+                            success &= result != null && CAFile.write(result).equals(text) && result.getPopulation() == state.getPopulation();
+                        }
+                        // Pakkaamaton tiedosto ei saa olla suurempi kuin bittipakatut rivit otsakkeineen.
+                        success &= CABinaryFile.isBinary(file) && (deflate || data.length <= 20 + shape[1] * (1 + (shape[0] + 63) / 64 * 8));
+                    } catch(java.io.IOException e) {
+                        System.out.println("Virhe: " + e.getMessage());
+                        success = false;
+                    } finally {
+                        if(file != null) {
+                            file.delete();
+                        }
+                    }
+                }
+            }
+        }
+        
+        try {
+            CAState glider = CAFile.read("8,8/wrap/3/2,3|1,0/2,1/0,2/1,2/2,2");
+            for(boolean deflate : new boolean[] {false, true}) {
+                java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+                CABinaryFile.write(glider, bytes, deflate);
+                byte[] data = bytes.toByteArray();
+                success &= CAFile.write(CABinaryFile.read(java.nio.ByteBuffer.wrap(data))).equals(CAFile.write(glider));
+                
+                java.util.List<byte[]> invalid = new java.util.ArrayList<byte[]>();
+                invalid.add(java.util.Arrays.copyOf(data, data.length - 1));
+                invalid.add(java.util.Arrays.copyOf(data, data.length + 1));
+                invalid.add(java.util.Arrays.copyOf(data, 10));
+                for(int offset : new int[] {0, 4, 5, 6, 7, 13, 17, 19}) {
+                    byte[] corrupted = data.clone();
+                    corrupted[offset] ^= 0x10;
+                    invalid.add(corrupted);
+                }
+                byte[] badRow = data.clone();
+                badRow[badRow.length - 1] ^= 0x40;
+                invalid.add(badRow);
+                for(byte[] bad : invalid) {
+                    success &= CABinaryFile.read(java.nio.ByteBuffer.wrap(bad)) == null && CABinaryFile.read(new java.io.ByteArrayInputStream(bad)) == null;
+                }
+            }
+        } catch(java.io.IOException e) {
+            System.out.println("Virhe: " + e.getMessage());
+            success = false;
+        }
+        return success;
+    }
+    
+    private static boolean testMotion() {
+        boolean success = new Motion(4, 1, 1).getSpeed().equals("c/4") && new Motion(4, -2, 0).getSpeed().equals("c/2")
+            && new Motion(5, 2, 0).getSpeed().equals("2c/5") && new Motion(1, 1, 0).getSpeed().equals("c")
+            && new Motion(2, 0, 0).getSpeed().equals("0") && new Motion(6, 2, 1).getDirection().equals("oblique");
+        
+        int[][] glider = {{1, 0}, {2, 1}, {0, 2}, {1, 2}, {2, 2}};
+        int[][] lwss = {{1, 0}, {4, 0}, {0, 1}, {0, 2}, {4, 2}, {0, 3}, {1, 3}, {2, 3}, {3, 3}};
+        int[][] blinker = {{0, 1}, {1, 1}, {2, 1}};
+        for(CA.EvolutionMode mode : CA.EvolutionMode.values()) {
+            for(CARules.EdgeBehavior eb : new CARules.EdgeBehavior[] {CARules.EdgeBehavior.DEAD, CARules.EdgeBehavior.WRAP}) {
+                // Liukuja ylittää WRAP-reunat, ja DEAD-reunoilla se törmää reunaan ja jähmettyy blockiksi.
+                CA game = motionGame(mode, eb, 20, 20, glider, 8, 8);
+                game.evolve(3);
+                success &= game.getMotion() == null;
+                game.evolve();
+                success &= new Motion(4, 1, 1).equals(game.getMotion());
+                game.evolve(20);
+                success &= new Motion(4, 1, 1).equals(game.getMotion());
+                game.evolve(60);
+                success &= (eb == CARules.EdgeBehavior.WRAP ? new Motion(4, 1, 1) : new Motion(1, 0, 0)).equals(game.getMotion());
+                
+                game = motionGame(mode, eb, 40, 12, lwss, 20, 4);
+                game.evolve(30);
+                success &= new Motion(4, -2, 0).equals(game.getMotion());
+                
+                game = motionGame(mode, eb, 10, 10, blinker, 3, 3);
+                game.evolve(5);
+                success &= new Motion(2, 0, 0).equals(game.getMotion()) && game.isPeriodic();
+                game.setCell(0, 0, true);
+                success &= game.getMotion() == null;
+                game.setMotionWindow(0);
+                game.evolve(5);
+                success &= game.getMotion() == null;
+            }
+        }
+        
+        // Examples/Gliders.cells: neljä liukujaparvea palaa 28x28-toruksella siirtyneenä samaan asuun 56 sukupolven välein.
+        CA game = new CA();
+        game.setMotionWindow(64);
+        game = game.deriveNewCA(CAFile.read("28,28/wrap/3/2,3|5,10/5,15/5,16/5,17/6,10/6,12/6,15/7,10/7,11/7,16/10,5/10,10/10,15/10,16/10,17/10,20/10,21/10,22/11,5/11,7/11,10/11,12/11,15/11,20/12,5/12,6/12,10/12,11/12,16/12,21/15,6/15,11/15,16/15,17/15,21/15,22/16,7/16,12/16,15/16,17/16,20/16,22/17,5/17,6/17,7/17,10/17,11/17,12/17,17/17,22/20,11/20,16/20,17/21,12/21,15/21,17/22,10/22,11/22,12/22,17"));
+        game.evolve(100);
+        success &= new Motion(56, 14, 14).equals(game.getMotion()) && !game.isPeriodic();
+        return success;
+    }
+    
+    private static CA motionGame(CA.EvolutionMode mode, CARules.EdgeBehavior eb, int cols, int rows, int[][] pattern, int col, int row) {
+        CA game = new CA();
+        CARules rules = CARules.newLifeRules();
+        rules.setEdgeBehavior(eb);
+        game.setRules(rules);
+        game.setEvolutionMode(mode);
+        game.setDimensions(cols, rows);
+        for(int[] cell : pattern) {
+            game.setCell(col + cell[0], row + cell[1], true);
+        }
+        game.setMotionWindow(16);
+        return game;
+    }
+    
+    private static boolean testSoupSearch() {
+        SoupSearch search = new SoupSearch();
+        boolean success = search.classify(cellList(0, 0, 1, 0, 0, 1, 1, 1)).equals("xs4_33")
+            && search.classify(cellList(5, 5, 5, 6, 5, 7)).equals("xp2_7")
+            && search.classify(cellList(1, 0, 2, 1, 0, 2, 1, 2, 2, 2)).equals("xq4_153")
+            && search.classify(cellList(1, 0, 2, 0, 0, 1, 3, 1, 1, 2, 2, 2)).equals("xs6_696")
+            && search.classify(cellList(1, 0, 4, 0, 0, 1, 0, 2, 4, 2, 0, 3, 1, 3, 2, 3, 3, 3)).equals("xq4_6frc")
+            && search.classify(cellList(0, 0, 1, 1)).equals(SoupSearch.UNKNOWN);
+        
+        Census serial = new Census();
+        Census parallel = new Census();
+        try {
+            search.setThreads(1);
+            search.run(serial, 0, 12);
+            search.setThreads(3);
+            search.run(parallel, 0, 8);
+            search.run(parallel, 8, 4);
+        } catch(InterruptedException e) {
+            return false;
+        }
+        success &= serial.getSoups() == 12 && serial.getCount("xs4_33") > 0 && serial.getCodes().equals(parallel.getCodes());
+        for(String code : serial.getCodes()) {
+            success &= serial.getCount(code) == parallel.getCount(code);
+        }
+        
+        java.io.File file = null;
+        try {
+            file = java.io.File.createTempFile("census", ".txt");
+            serial.write(file);
+            Census merged = Census.read(file);
+            merged.merge(parallel);
+            success &= merged.getSoups() == 24 && merged.getCount("xs4_33") == 2 * serial.getCount("xs4_33")
+                && merged.getCodes().equals(serial.getCodes());
+        } catch(java.io.IOException e) {
+            System.out.println("Virhe: " + e.getMessage());
+            success = false;
+        } finally {
+            if(file != null) {
+                file.delete();
+            }
+        }
+        return success;
+    }
+    
+    private static java.util.List<Cell> cellList(int... coords) {
+        java.util.List<Cell> cells = new java.util.ArrayList<Cell>();
+        for(int i = 0; i < coords.length; i += 2) {
+            cells.add(new Cell(coords[i], coords[i + 1]));
+        }
+        return cells;
+    }
+    
+    private static boolean testAgainstReference(CA game) {
+        int[][] sizes = {{3, 3}, {70, 5}, {64, 64}, {130, 67}};
+        java.util.Random random = new java.util.Random(2009);
+        boolean success = true;
+        
+        for(CARules rules : referenceRules()) {
+            for(CARules.EdgeBehavior eb : CARules.EdgeBehavior.values()) {
+                rules.setEdgeBehavior(eb);
+                for(int[] size : sizes) {
+                    boolean[][] expected = new boolean[size[0]][size[1]];
+                    for(int col = 0; col < size[0]; col++) {
+                        for(int row = 0; row < size[1]; row++) {
+                            expected[col][row] = random.nextInt(3) == 0;
+                        }
+                    }
+                    game.setRules(rules);
+                    game.setCells(expected);
+                    for(int gen = 0; gen < 8; gen++) {
+                        game.evolve();
+                        expected = referenceEvolve(expected, rules);
+                        if(!Grid.equal(expected, getCells(game))) {
+                            System.out.println("Ero: " + eb + ", " + size[0] + "x" + size[1] + ", sukupolvi " + (gen + 1));
+                            success = false;
+                        }
+                    }
+                }
+            }
+        }
+        return success;
+    }
+    
+    private static boolean testSparseAgainstFull(CA game) {
+        CA full = new CA();
+        boolean success = true;
+        
+        for(CARules.EdgeBehavior eb : CARules.EdgeBehavior.values()) {
+            CARules rules = CARules.newLifeRules();
+            rules.setEdgeBehavior(eb);
+            boolean[][] cells = new boolean[200][150];
+            cells[1][0] = cells[2][1] = cells[0][2] = cells[1][2] = cells[2][2] = true;
+            cells[100][70] = cells[101][70] = cells[102][70] = true;
+            for(CA ca : new CA[] {game, full}) {
+                ca.setRules(rules);
+                ca.setCells(cells);
+            }
+            for(int gen = 0; gen < 400; gen++) {
+                game.evolve();
+                full.evolve();
+                if(!Grid.equal(game.copyCells(), full.copyCells())) {
+                    System.out.println("Ero: " + eb + ", sukupolvi " + (gen + 1));
+                    success = false;
+                    break;
+                }
+            }
+        }
+        return success;
+    }
+    
+    private static boolean[][] referenceEvolve(boolean[][] cells, CARules rules) {
+        int cols = Grid.getCols(cells);
+        int rows = Grid.getRows(cells);
+        boolean[][] next = new boolean[cols][rows];
+        
+        for(int col = 0; col < cols; col++) {
+            for(int row = 0; row < rows; row++) {
+                int alive = 0;
+                for(int c = col - 1; c <= col + 1; c++) {
+                    for(int r = row - 1; r <= row + 1; r++) {
+                        if(c == col && r == row) {
+                            continue;
+                        }
+                        boolean live;
+                        if(0 <= c && c < cols && 0 <= r && r < rows) {
+                            live = cells[c][r];
+                        } else if(rules.getEdgeBehavior() == CARules.EdgeBehavior.WRAP) {
+                            live = cells[Maths.mod(c, cols)][Maths.mod(r, rows)];
+                        } else {
+                            live = rules.getEdgeBehavior() == CARules.EdgeBehavior.ALIVE;
+                        }
+                        if(live) {
+                            alive++;
+                        }
+                    }
+                }
+                next[col][row] = cells[col][row] ? rules.getSurvivalRule(alive) : rules.getBirthRule(alive);
+            }
+        }
+        return next;
+    }
+    
     private static boolean[][] readCells(int cols, int rows, String str) {
         boolean[][] cells = new boolean[cols][rows];
         for(int col = 0; col < cols; col++) {
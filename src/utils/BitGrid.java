@@ -0,0 +1,387 @@
+package utils;
+
+import java.util.*;
+
+/**
+    * Bittitiivistetty soluruudukko. Jokainen rivi on tallennettu peräkkäisiin long-sanoihin siten, että sanan k bitti i vastaa saraketta 64*k + i. Rivin viimeisen sanan ylimääräiset bitit pidetään aina nollina.
+    *
+    * Tiivistetty esitysmuoto vie kahdeksasosan boolean[][]-ruudukon muistista ja mahdollistaa 64 solun käsittelemisen yhdellä sanaoperaatiolla. Hyvin suuret ruudukot voi varata Javan keon ulkopuolelta GridArena-luokan avulla.
+    */
+public class BitGrid {
+    /**
+        * Yhteen sanaan mahtuvien solujen lukumäärä.
+        */
+    public static final int WORD_SIZE = 64;
+
+    /**
+        * Sarakkeiden lukumäärä.
+        */
+    private final int cols;
+
+    /**
+        * Rivien lukumäärä.
+        */
+    private final int rows;
+
+    /**
+        * Yhden rivin tallentamiseen tarvittavien sanojen lukumäärä.
+        */
+    private final int wordsPerRow;
+
+    /**
+        * Solut riveittäin tiivistettynä, tai null jos aliluokka tallentaa solut muualle.
+        */
+    private final long[] words;
+
+    /**
+        * Suurin sanojen lukumäärä, jonka Javan taulukko voi sisältää.
+        */
+    private static final int MAX_WORDS = Integer.MAX_VALUE - 8;
+
+    /**
+        * Luo annetun kokoisen ruudukon, jonka kaikki solut ovat kuolleita.
+        *
+        * @param cols Sarakkeiden lukumäärä.
+        * @param rows Rivien lukumäärä.
+        *
+        * @exception IllegalStateException Jos ruudukko on liian suuri yhteen taulukkoon.
+        */
+    public BitGrid(int cols, int rows) {
+        this(cols, rows, true);
+    }
+
+    /**
+        * Luo annetun kokoisen ruudukon. Aliluokka, joka tallentaa solut muualle kuin Javan kekoon, ei varaa taulukkoa, ja sen on korvattava kaikki sanoja käsittelevät metodit.
+        *
+        * @param cols Sarakkeiden lukumäärä.
+        * @param rows Rivien lukumäärä.
+        * @param onHeap Varataanko soluille taulukko.
+        *
+        * @exception IllegalStateException Jos soluille varataan taulukko ja ruudukko on liian suuri siihen.
+        */
+    BitGrid(int cols, int rows, boolean onHeap) {
+        this.cols = cols;
+        this.rows = rows;
+        this.wordsPerRow = wordsPerRow(cols);
+        long size = (long) this.wordsPerRow * rows;
+        if(onHeap && size > MAX_WORDS) {
+            throw new IllegalStateException("Grid of " + cols + "x" + rows + " cells is too large");
+        }
+        this.words = onHeap ? new long[(int) size] : null;
+    }
+
+    /**
+        * Luo tiivistetyn ruudukon boolean[][]-muotoisesta soluruudukosta.
+        *
+        * @param cells Soluruudukko.
+        *
+        * @return Tiivistetty ruudukko.
+        */
+    public static BitGrid fromCells(boolean[][] cells) {
+        int cols = Grid.getCols(cells);
+        int rows = Grid.getRows(cells);
+        BitGrid grid = new BitGrid(cols, rows);
+        for(int col = 0; col < cols; col++) {
+            for(int row = 0; row < rows; row++) {
+                if(cells[col][row]) {
+                    grid.set(col, row, true);
+                }
+            }
+        }
+        return grid;
+    }
+
+    /**
+        * Purkaa ruudukon boolean[][]-muotoiseksi soluruudukoksi.
+        *
+        * @return Soluruudukko.
+        */
+    public boolean[][] toCells() {
+        boolean[][] cells = new boolean[this.cols][this.rows];
+        for(int col = 0; col < this.cols; col++) {
+            for(int row = 0; row < this.rows; row++) {
+                cells[col][row] = this.get(col, row);
+            }
+        }
+        return cells;
+    }
+
+    /**
+        * Palauttaa annetun sarakemäärän tallentamiseen tarvittavien sanojen lukumäärän.
+        *
+        * @param cols Sarakkeiden lukumäärä.
+        *
+        * @return Sanojen lukumäärä.
+        */
+    public static int wordsPerRow(int cols) {
+        return (int) (((long) cols + WORD_SIZE - 1) / WORD_SIZE);
+    }
+
+    /**
+        * Palauttaa peitteen, joka valitsee rivin viimeisestä sanasta ruudukkoon kuuluvat bitit.
+        *
+        * @param cols Sarakkeiden lukumäärä.
+        *
+        * @return Viimeisen sanan peite.
+        */
+    public static long lastWordMask(int cols) {
+        return -1L >>> (WORD_SIZE - 1 - ((cols - 1) & (WORD_SIZE - 1)));
+    }
+
+    /**
+        * Palauttaa sarakkeiden lukumäärän.
+        *
+        * @return Sarakkeiden lukumäärä.
+        */
+    public int getCols() {
+        return this.cols;
+    }
+
+    /**
+        * Palauttaa rivien lukumäärän.
+        *
+        * @return Rivien lukumäärä.
+        */
+    public int getRows() {
+        return this.rows;
+    }
+
+    /**
+        * Palauttaa yhden rivin sanojen lukumäärän.
+        *
+        * @return Sanojen lukumäärä.
+        */
+    public int getWordsPerRow() {
+        return this.wordsPerRow;
+    }
+
+    /**
+        * Palauttaa solun tilan. Metodi olettaa koordinaattien olevan ruudukon sisällä.
+        *
+        * @param col Solun sarakekoordinaatti.
+        * @param row Solun rivikoordinaatti.
+        *
+        * @return Solun tila.
+        */
+    public boolean get(int col, int row) {
+        long word = this.words[row * this.wordsPerRow + (col >>> 6)];
+        return ((word >>> col) & 1L) != 0;
+    }
+
+    /**
+        * Asettaa solun tilan. Metodi olettaa koordinaattien olevan ruudukon sisällä.
+        *
+        * @param col Solun sarakekoordinaatti.
+        * @param row Solun rivikoordinaatti.
+        * @param live Solun uusi tila.
+        */
+    public void set(int col, int row, boolean live) {
+        int i = row * this.wordsPerRow + (col >>> 6);
+        long bit = 1L << col;
+        if(live) {
+            this.words[i] |= bit;
+        } else {
+            this.words[i] &= ~bit;
+        }
+    }
+
+    /**
+        * Palauttaa yksittäisen sanan.
+        *
+        * @param row Rivi.
+        * @param k Sanan indeksi rivillä.
+        *
+        * @return Sana.
+        */
+    public long getWord(int row, int k) {
+        return this.words[row * this.wordsPerRow + k];
+    }
+
+    /**
+        * Asettaa yksittäisen sanan. Kutsujan vastuulla on pitää rivin viimeisen sanan ylimääräiset bitit nollina.
+        *
+        * @param row Rivi.
+        * @param k Sanan indeksi rivillä.
+        * @param word Uusi sana.
+        */
+    public void setWord(int row, int k, long word) {
+        this.words[row * this.wordsPerRow + k] = word;
+    }
+
+    /**
+        * Kopioi rivin sanat annettuun taulukkoon.
+        *
+        * @param row Rivi.
+        * @param dst Kohdetaulukko, jonka pituus on vähintään getWordsPerRow().
+        */
+    public void getRow(int row, long[] dst) {
+        this.getRow(row, dst, 0);
+    }
+
+    /**
+        * Kopioi rivin sanat annettuun taulukkoon alkaen annetusta indeksistä.
+        *
+        * @param row Rivi.
+        * @param dst Kohdetaulukko, jonka pituus on vähintään offset + getWordsPerRow().
+        * @param offset Ensimmäisen sanan indeksi kohdetaulukossa.
+        */
+    public void getRow(int row, long[] dst, int offset) {
+        System.arraycopy(this.words, row * this.wordsPerRow, dst, offset, this.wordsPerRow);
+    }
+
+    /**
+        * Korvaa rivin sanat annetun taulukon sanoilla.
+        *
+        * @param row Rivi.
+        * @param src Lähdetaulukko, jonka pituus on vähintään getWordsPerRow().
+        */
+    public void setRow(int row, long[] src) {
+        System.arraycopy(src, 0, this.words, row * this.wordsPerRow, this.wordsPerRow);
+    }
+
+    /**
+        * Kertoo, ovatko kaikki solut kuolleita.
+        *
+        * @return Totuusarvo.
+        */
+    public boolean isEmpty() {
+        for(long word : this.words) {
+            if(word != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+        * Laskee ruudukon sisällöstä 64-bittisen tiivisteen. Tiiviste on sanojen sijaintikohtaisten tiivisteiden (ks. wordHash()) XOR-summa Zobrist-tiivisteiden tapaan, joten sen voi päivittää muuttuneiden sanojen osalta laskematta koko ruudukkoa uudelleen. Tyhjän ruudukon tiiviste on 0.
+        *
+        * @return Tiiviste.
+        */
+    public long stateHash() {
+        long hash = 0L;
+        for(int i = 0; i < this.words.length; i++) {
+            hash ^= wordHash(this.words[i], i);
+        }
+        return hash;
+    }
+
+    /**
+        * Laskee yksittäisen sanan tiivisteen sen sijainnin mukaan. Nollasanan tiiviste on aina 0.
+        *
+        * @param word Sana.
+        * @param index Sanan indeksi ruudukossa (rivi * getWordsPerRow() + sanan indeksi rivillä).
+        *
+        * @return Tiiviste.
+        */
+    public static long wordHash(long word, int index) {
+        if(word == 0L) {
+            return 0L;
+        }
+        // MurmurHash3:n 64-bittinen viimeistelyfunktio.
+        long h = word ^ (index * 0x9E3779B97F4A7C15L);
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+        * Alustaa kaikki solut kuolleiksi.
+        */
+    public void clear() {
+        Arrays.fill(this.words, 0L);
+    }
+
+    /**
+        * Kopioi toisen samankokoisen ruudukon sisällön tähän ruudukkoon. Ruudukot voivat olla eri muisteissa.
+        *
+        * @param other Lähderuudukko.
+        */
+    public void copyFrom(BitGrid other) {
+        if(other.words != null) {
+            System.arraycopy(other.words, 0, this.words, 0, this.words.length);
+        } else {
+            for(int row = 0; row < this.rows; row++) {
+                other.getRow(row, this.words, row * this.wordsPerRow);
+            }
+        }
+    }
+
+    /**
+        * Luo kopion ruudukosta samaan muistiin kuin tämä ruudukko.
+        *
+        * @return Kopio ruudukosta.
+        */
+    public BitGrid copy() {
+        BitGrid grid = this.like(this.cols, this.rows);
+        grid.copyFrom(this);
+        return grid;
+    }
+
+    /**
+        * Luo annetun kokoisen tyhjän ruudukon samaan muistiin kuin tämä ruudukko.
+        *
+        * @param cols Sarakkeiden lukumäärä.
+        * @param rows Rivien lukumäärä.
+        *
+        * @return Uusi ruudukko.
+        */
+    public BitGrid like(int cols, int rows) {
+        return new BitGrid(cols, rows);
+    }
+
+    /**
+        * Vapauttaa ruudukon muistin heti, mikäli se on varattu Javan keon ulkopuolelta. Keossa olevat ruudukot vapautuvat roskienkeruussa, joten niille metodi ei tee mitään. Ruudukkoa ei saa käyttää vapauttamisen jälkeen.
+        */
+    public void release() {
+    }
+
+    /**
+        * Kertoo, onko ruudukon muisti vapautettu.
+        *
+        * @return Totuusarvo.
+        */
+    public boolean isReleased() {
+        return false;
+    }
+
+    /**
+        * Kertoo, ovatko kaksi ruudukkoa samankokoiset ja samansisältöiset.
+        *
+        * @param o Verrattava olio.
+        *
+        * @return Ruudukkojen samanlaisuudesta kertova totuusarvo.
+        */
+    public boolean equals(Object o) {
+        if(!(o instanceof BitGrid)) {
+            return false;
+        }
+        BitGrid other = (BitGrid) o;
+        if(this.cols != other.cols || this.rows != other.rows) {
+            return false;
+        }
+        if(this.words != null && other.words != null) {
+            return Arrays.equals(this.words, other.words);
+        }
+        for(int row = 0; row < this.rows; row++) {
+            for(int k = 0; k < this.wordsPerRow; k++) {
+                if(this.getWord(row, k) != other.getWord(row, k)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+        * Laskee ruudukon sisältöön perustuvan hajautusarvon.
+        *
+        * @return Hajautusarvo.
+        */
+    public int hashCode() {
+        return 31 * (31 * this.cols + this.rows) + Long.hashCode(this.stateHash());
+    }
+}
\ No newline at end of file
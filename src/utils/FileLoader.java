@@ -6,6 +6,11 @@ import java.io.*;
     * FileReaderin laajennus, joka mahdollistaa koko tiedoston sisällön lukemisen kerralla.
     */
 public class FileLoader extends FileReader {
+    /**
+        * Kerralla luettavien merkkien lukumäärä.
+        */
+    private static final int BUFFER_SIZE = 1 << 16;
+    
     /**
         * Avaa annetun tiedoston luettavaksi.
         *
@@ -26,16 +31,11 @@ public class FileLoader extends FileReader {
         */
     public String readAll() throws IOException {
         StringBuilder sb = new StringBuilder();
-        boolean eof = false;
-        do {
-            int c = this.read();
-            if(c != -1) {
-                sb.append((char) c);
-            } else {
-                eof = true;
-            }
-        } while(!eof);
-        
+        char[] buffer = new char[BUFFER_SIZE];
+        int n;
+        while((n = this.read(buffer, 0, buffer.length)) != -1) {
+            sb.append(buffer, 0, n);
+        }
         return sb.toString();
     }
 }
\ No newline at end of file
@@ -0,0 +1,143 @@
+package utils;
+
+import java.lang.reflect.*;
+import java.nio.*;
+import java.util.*;
+
+/**
+    * Areena, josta varataan Javan keon ulkopuolelle tallennettuja soluruudukkoja. Keon ulkopuoliset ruudukot eivät kasvata keon kokoa eivätkä pidennä roskienkeruun taukoja, joten niillä voi käsitellä hyvin suuria ruudukkoja pienelläkin keolla.
+    *
+    * Areenan ruudukot vapautetaan yksitellen release()-metodilla tai kaikki kerralla sulkemalla areena. Vapautetun ruudukon käyttö heittää IllegalStateException-poikkeuksen. Mikäli muistia ei voida vapauttaa heti, se vapautuu viimeistään roskienkeruussa.
+    */
+public class GridArena implements AutoCloseable {
+    /**
+        * Suurin yhden ruudukon koko tavuina. Yksi suora puskuri voi olla enintään tämän kokoinen.
+        */
+    public static final long MAX_GRID_BYTES = Integer.MAX_VALUE & ~7L;
+
+    /**
+        * Metodi, jolla suoran puskurin muisti vapautetaan heti, tai null jos sitä ei ole saatavilla.
+        */
+    private static final Method INVOKE_CLEANER;
+
+    /**
+        * Olio, jolle INVOKE_CLEANER kutsutaan.
+        */
+    private static final Object UNSAFE;
+
+    static {
+        Method invokeCleaner = null;
+        Object unsafe = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch(ReflectiveOperationException | RuntimeException e) {
+            invokeCleaner = null;
+            unsafe = null;
+        }
+        INVOKE_CLEANER = invokeCleaner;
+        UNSAFE = unsafe;
+    }
+
+    /**
+        * Areenasta varatut, vielä vapauttamattomat ruudukot.
+        */
+    private final Set<OffHeapBitGrid> grids = Collections.newSetFromMap(new IdentityHashMap<OffHeapBitGrid, Boolean>());
+
+    /**
+        * Vapauttamattomien ruudukkojen yhteiskoko tavuina.
+        */
+    private long allocatedBytes = 0;
+
+    /**
+        * Kertoo, onko areena suljettu.
+        */
+    private boolean closed = false;
+
+    /**
+        * Varaa areenasta annetun kokoisen ruudukon, jonka kaikki solut ovat kuolleita.
+        *
+        * @param cols Sarakkeiden lukumäärä.
+        * @param rows Rivien lukumäärä.
+        *
+        * @return Uusi ruudukko.
+        *
+        * @exception IllegalArgumentException Jos ruudukko on liian suuri yhteen puskuriin.
+        * @exception IllegalStateException Jos areena on suljettu.
+        */
+    public synchronized BitGrid allocate(int cols, int rows) {
+        if(this.closed) {
+            throw new IllegalStateException("Grid arena is closed");
+        }
+        long bytes = (long) BitGrid.wordsPerRow(cols) * rows * 8;
+        if(bytes > MAX_GRID_BYTES) {
+            throw new IllegalArgumentException("Grid of " + cols + "x" + rows + " cells does not fit in one off-heap buffer");
+        }
+        OffHeapBitGrid grid = new OffHeapBitGrid(this, ByteBuffer.allocateDirect((int) bytes), cols, rows);
+        this.grids.add(grid);
+        this.allocatedBytes += bytes;
+        return grid;
+    }
+
+    /**
+        * Vapauttaa yksittäisen areenasta varatun ruudukon muistin. Jo vapautetun ruudukon vapauttaminen ei tee mitään.
+        *
+        * @param grid Ruudukko.
+        */
+    synchronized void release(OffHeapBitGrid grid) {
+        if(this.grids.remove(grid)) {
+            grid.markReleased();
+            this.allocatedBytes -= grid.getBuffer().capacity();
+            free(grid.getBuffer());
+        }
+    }
+
+    /**
+        * Palauttaa vapauttamattomien ruudukkojen yhteiskoon.
+        *
+        * @return Koko tavuina.
+        */
+    public synchronized long getAllocatedBytes() {
+        return this.allocatedBytes;
+    }
+
+    /**
+        * Kertoo, onko areena suljettu.
+        *
+        * @return Totuusarvo.
+        */
+    public synchronized boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+        * Sulkee areenan ja vapauttaa kaikkien sen ruudukkojen muistin.
+        */
+    public synchronized void close() {
+        for(OffHeapBitGrid grid : this.grids) {
+            grid.markReleased();
+            free(grid.getBuffer());
+        }
+        this.grids.clear();
+        this.allocatedBytes = 0;
+        this.closed = true;
+    }
+
+    /**
+        * Vapauttaa suoran tai muistikuvatun puskurin muistin heti, mikäli ajoympäristö sen sallii.
+        *
+        * @param buffer Puskuri.
+        */
+    static void free(ByteBuffer buffer) {
+        if(INVOKE_CLEANER != null) {
+            try {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } catch(ReflectiveOperationException e) {
+                // Muisti vapautuu roskienkeruussa.
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,274 @@
+package utils;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+    * Bittitiivistetty soluruudukko, jonka sanat ovat muistikuvatussa tiedostossa. Käyttöjärjestelmä lataa tiedostosta muistiin vain käsiteltävät sivut ja kirjoittaa muutetut sivut takaisin, joten ruudukko voi olla suurempi kuin käytettävissä oleva keskusmuisti, kunhan sitä käsitellään riveittäin.
+    *
+    * Sanojen järjestys on sama kuin BitGrid-luokassa, ja ne tallennetaan tiedostoon little-endian-järjestyksessä. Yksi muistikuvaus voi olla enintään kaksi gigatavua, joten suuret ruudukot kuvataan usean kokonaisista riveistä koostuvan lohkon avulla.
+    */
+public class MappedBitGrid extends BitGrid {
+    /**
+        * Yhden muistikuvatun lohkon enimmäiskoko tavuina.
+        */
+    private static final long MAX_CHUNK_BYTES = 1L << 30;
+
+    /**
+        * Muistikuvatut lohkot.
+        */
+    private final MappedByteBuffer[] chunks;
+
+    /**
+        * Lohkojen sanat long-näkyminä.
+        */
+    private final LongBuffer[] words;
+
+    /**
+        * Rivien lukumäärä yhdessä lohkossa.
+        */
+    private final int rowsPerChunk;
+
+    /**
+        * Kertoo, onko muistikuvaus vapautettu.
+        */
+    private volatile boolean released = false;
+
+    /**
+        * Kuvaa ruudukon tiedostokanavaan alkaen annetusta kohdasta. Tiedostoa kasvatetaan tarvittaessa, ja kasvatettu osa tulkitaan kuolleiksi soluiksi. Kanavan tulee olla avattu sekä lukemista että kirjoittamista varten; kanavan voi sulkea kuvaamisen jälkeen.
+        *
+        * @param channel Tiedostokanava.
+        * @param offset Ruudukon ensimmäisen tavun sijainti tiedostossa.
+        * @param cols Sarakkeiden lukumäärä.
+        * @param rows Rivien lukumäärä.
+        *
+        * @exception IOException Jos tiedoston kuvaaminen epäonnistuu.
+        */
+    public MappedBitGrid(FileChannel channel, long offset, int cols, int rows) throws IOException {
+        super(cols, rows, false);
+        long rowBytes = (long) this.getWordsPerRow() * 8;
+        this.rowsPerChunk = (int) Math.max(1, Math.min(rows, MAX_CHUNK_BYTES / rowBytes));
+        int count = (rows + this.rowsPerChunk - 1) / this.rowsPerChunk;
+        this.chunks = new MappedByteBuffer[count];
+        this.words = new LongBuffer[count];
+        for(int i = 0; i < count; i++) {
+            int chunkRows = Math.min(this.rowsPerChunk, rows - i * this.rowsPerChunk);
+            long position = offset + i * this.rowsPerChunk * rowBytes;
+            this.chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, chunkRows * rowBytes);
+            this.words[i] = this.chunks[i].order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        }
+    }
+
+    /**
+        * Palauttaa tavuina koon, jonka annetun kokoinen ruudukko vie tiedostosta.
+        *
+        * @param cols Sarakkeiden lukumäärä.
+        * @param rows Rivien lukumäärä.
+        *
+        * @return Koko tavuina.
+        */
+    public static long byteSize(int cols, int rows) {
+        return (long) wordsPerRow(cols) * rows * 8;
+    }
+
+    /**
+        * Palauttaa lohkojen sanat. Puretun muistikuvauksen muistia ei saa lukea, koska se kaataisi virtuaalikoneen.
+        *
+        * @return Lohkojen sanat.
+        *
+        * @exception IllegalStateException Jos muistikuvaus on purettu.
+        */
+    private LongBuffer[] words() {
+        if(this.released) {
+            throw new IllegalStateException("Mapped grid has been released");
+        }
+        return this.words;
+    }
+
+    /**
+        * Palauttaa rivin sisältävän lohkon sanat.
+        *
+        * @param row Rivi.
+        *
+        * @return Lohkon sanat.
+        *
+        * @exception IllegalStateException Jos muistikuvaus on purettu.
+        */
+    private LongBuffer chunk(int row) {
+        return this.words()[row / this.rowsPerChunk];
+    }
+
+    /**
+        * Palauttaa rivin sanan sijainnin rivin lohkossa.
+        *
+        * @param row Rivi.
+        * @param k Sanan indeksi rivillä.
+        *
+        * @return Sanan indeksi lohkossa.
+        */
+    private int index(int row, int k) {
+        return (row % this.rowsPerChunk) * this.getWordsPerRow() + k;
+    }
+
+    /**
+        * Palauttaa solun tilan. Metodi olettaa koordinaattien olevan ruudukon sisällä.
+        *
+        * @param col Solun sarakekoordinaatti.
+        * @param row Solun rivikoordinaatti.
+        *
+        * @return Solun tila.
+        */
+    public boolean get(int col, int row) {
+        return ((this.getWord(row, col >>> 6) >>> col) & 1L) != 0;
+    }
+
+    /**
+        * Asettaa solun tilan. Metodi olettaa koordinaattien olevan ruudukon sisällä.
+        *
+        * @param col Solun sarakekoordinaatti.
+        * @param row Solun rivikoordinaatti.
+        * @param live Solun uusi tila.
+        */
+    public void set(int col, int row, boolean live) {
+        LongBuffer chunk = this.chunk(row);
+        int i = this.index(row, col >>> 6);
+        long bit = 1L << col;
+        chunk.put(i, live ? chunk.get(i) | bit : chunk.get(i) & ~bit);
+    }
+
+    /**
+        * Palauttaa yksittäisen sanan.
+        *
+        * @param row Rivi.
+        * @param k Sanan indeksi rivillä.
+        *
+        * @return Sana.
+        */
+    public long getWord(int row, int k) {
+        return this.chunk(row).get(this.index(row, k));
+    }
+
+    /**
+        * Asettaa yksittäisen sanan.
+        *
+        * @param row Rivi.
+        * @param k Sanan indeksi rivillä.
+        * @param word Uusi sana.
+        */
+    public void setWord(int row, int k, long word) {
+        this.chunk(row).put(this.index(row, k), word);
+    }
+
+    /**
+        * Kopioi rivin sanat annettuun taulukkoon alkaen annetusta indeksistä.
+        *
+        * @param row Rivi.
+        * @param dst Kohdetaulukko.
+        * @param offset Ensimmäisen sanan indeksi kohdetaulukossa.
+        */
+    public void getRow(int row, long[] dst, int offset) {
+        this.chunk(row).get(this.index(row, 0), dst, offset, this.getWordsPerRow());
+    }
+
+    /**
+        * Korvaa rivin sanat annetun taulukon sanoilla.
+        *
+        * @param row Rivi.
+        * @param src Lähdetaulukko.
+        */
+    public void setRow(int row, long[] src) {
+        this.chunk(row).put(this.index(row, 0), src, 0, this.getWordsPerRow());
+    }
+
+    /**
+        * Kertoo, ovatko kaikki solut kuolleita.
+        *
+        * @return Totuusarvo.
+        */
+    public boolean isEmpty() {
+        for(LongBuffer chunk : this.words()) {
+            int length = chunk.capacity();
+            for(int i = 0; i < length; i++) {
+                if(chunk.get(i) != 0L) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+        * Laskee ruudukon sisällöstä saman tiivisteen kuin vastaava BitGrid.
+        *
+        * @return Tiiviste.
+        */
+    public long stateHash() {
+        long hash = 0L;
+        int base = 0;
+        for(LongBuffer chunk : this.words()) {
+            int length = chunk.capacity();
+            for(int i = 0; i < length; i++) {
+                hash ^= wordHash(chunk.get(i), base + i);
+            }
+            base += length;
+        }
+        return hash;
+    }
+
+    /**
+        * Alustaa kaikki solut kuolleiksi.
+        */
+    public void clear() {
+        for(LongBuffer chunk : this.words()) {
+            int length = chunk.capacity();
+            for(int i = 0; i < length; i++) {
+                chunk.put(i, 0L);
+            }
+        }
+    }
+
+    /**
+        * Kopioi toisen samankokoisen ruudukon sisällön tähän ruudukkoon riveittäin.
+        *
+        * @param other Lähderuudukko.
+        */
+    public void copyFrom(BitGrid other) {
+        long[] row = new long[this.getWordsPerRow()];
+        for(int i = 0; i < this.getRows(); i++) {
+            other.getRow(i, row);
+            this.setRow(i, row);
+        }
+    }
+
+    /**
+        * Kirjoittaa muutetut sivut tiedostoon ja odottaa, kunnes ne ovat tallessa.
+        */
+    public void force() {
+        this.words();
+        for(MappedByteBuffer chunk : this.chunks) {
+            chunk.force();
+        }
+    }
+
+    /**
+        * Purkaa muistikuvauksen heti. Tiedosto säilyy, mutta ruudukon käyttäminen aiheuttaa tämän jälkeen IllegalStateException-poikkeuksen.
+        */
+    public void release() {
+        if(!this.released) {
+            this.released = true;
+            for(MappedByteBuffer chunk : this.chunks) {
+                GridArena.free(chunk);
+            }
+        }
+    }
+
+    /**
+        * Kertoo, onko muistikuvaus purettu.
+        *
+        * @return Totuusarvo.
+        */
+    public boolean isReleased() {
+        return this.released;
+    }
+}
\ No newline at end of file
@@ -20,4 +20,64 @@ abstract public class Maths {
             return modulus;
         }
     }
+
+    /**
+        * Laskee tulon jakojäännöksen. Tulo lasketaan 64-bittisenä, ja liukulukuna laskettu osamäärä korjaa ylivuodon, joten moduli saa olla enintään 2^50.
+        *
+        * @param a Ensimmäinen tekijä väliltä [0, m-1].
+        * @param b Toinen tekijä väliltä [0, m-1].
+        * @param m Moduli.
+        *
+        * @return Tulon a*b jäännös modulo m.
+        */
+    public static long mulMod(long a, long b, long m) {
+        long q = (long) ((double) a * b / m);
+        long r = a * b - q * m;
+        if(r < 0) {
+            r += m;
+        } else if(r >= m) {
+            r -= m;
+        }
+        return r;
+    }
+
+    /**
+        * Laskee potenssin jakojäännöksen neliöi ja kerro -menetelmällä.
+        *
+        * @param a Kantaluku väliltä [0, m-1].
+        * @param e Ei-negatiivinen eksponentti.
+        * @param m Moduli, enintään 2^50 (ks. mulMod()).
+        *
+        * @return Potenssin a^e jäännös modulo m.
+        */
+    public static long powMod(long a, long e, long m) {
+        long result = 1 % m;
+        while(e > 0) {
+            if((e & 1) != 0) {
+                result = mulMod(result, a, m);
+            }
+            a = mulMod(a, a, m);
+            e >>>= 1;
+        }
+        return result;
+    }
+
+    /**
+        * Laskee suurimman yhteisen tekijän Eukleideen algoritmilla.
+        *
+        * @param a Ensimmäinen luku.
+        * @param b Toinen luku.
+        *
+        * @return Lukujen itseisarvojen suurin yhteinen tekijä.
+        */
+    public static long gcd(long a, long b) {
+        a = Math.abs(a);
+        b = Math.abs(b);
+        while(b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,232 @@
+package utils;
+
+import java.nio.*;
+
+/**
+    * Bittitiivistetty soluruudukko, jonka sanat on tallennettu Javan keon ulkopuolelle suoraan tavupuskuriin. Sanojen järjestys on sama kuin BitGrid-luokassa. Ruudukot luodaan GridArena-olion kautta, joka vastaa myös niiden vapauttamisesta.
+    */
+class OffHeapBitGrid extends BitGrid {
+    /**
+        * Areena, josta ruudukko on varattu.
+        */
+    private final GridArena arena;
+
+    /**
+        * Sanat sisältävä suora puskuri.
+        */
+    private final ByteBuffer buffer;
+
+    /**
+        * Puskurin sanat long-näkymänä.
+        */
+    private final LongBuffer words;
+
+    /**
+        * Kertoo, onko ruudukon muisti vapautettu.
+        */
+    private volatile boolean released = false;
+
+    /**
+        * Luo ruudukon annettuun puskuriin, jonka tulee olla nollattu ja riittävän suuri.
+        *
+        * @param arena Areena, josta ruudukko on varattu.
+        * @param buffer Suora puskuri.
+        * @param cols Sarakkeiden lukumäärä.
+        * @param rows Rivien lukumäärä.
+        */
+    OffHeapBitGrid(GridArena arena, ByteBuffer buffer, int cols, int rows) {
+        super(cols, rows, false);
+        this.arena = arena;
+        this.buffer = buffer;
+        this.words = buffer.order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+
+    /**
+        * Palauttaa ruudukon sanat sisältävän puskurin.
+        *
+        * @return Puskuri.
+        */
+    ByteBuffer getBuffer() {
+        return this.buffer;
+    }
+
+    /**
+        * Merkitsee ruudukon vapautetuksi ennen kuin areena vapauttaa sen muistin.
+        */
+    void markReleased() {
+        this.released = true;
+    }
+
+    /**
+        * Palauttaa puskurin sanat long-näkymänä. Vapautetun puskurin muistia ei saa lukea, koska se voi jo olla käytössä muualla.
+        *
+        * @return Sanat.
+        *
+        * @exception IllegalStateException Jos ruudukko on vapautettu.
+        */
+    private LongBuffer words() {
+        if(this.released) {
+            throw new IllegalStateException("Off-heap grid has been released");
+        }
+        return this.words;
+    }
+
+    /**
+        * Palauttaa solun tilan. Metodi olettaa koordinaattien olevan ruudukon sisällä.
+        *
+        * @param col Solun sarakekoordinaatti.
+        * @param row Solun rivikoordinaatti.
+        *
+        * @return Solun tila.
+        */
+    public boolean get(int col, int row) {
+        long word = this.words().get(row * this.getWordsPerRow() + (col >>> 6));
+        return ((word >>> col) & 1L) != 0;
+    }
+
+    /**
+        * Asettaa solun tilan. Metodi olettaa koordinaattien olevan ruudukon sisällä.
+        *
+        * @param col Solun sarakekoordinaatti.
+        * @param row Solun rivikoordinaatti.
+        * @param live Solun uusi tila.
+        */
+    public void set(int col, int row, boolean live) {
+        int i = row * this.getWordsPerRow() + (col >>> 6);
+        long bit = 1L << col;
+        LongBuffer words = this.words();
+        words.put(i, live ? words.get(i) | bit : words.get(i) & ~bit);
+    }
+
+    /**
+        * Palauttaa yksittäisen sanan.
+        *
+        * @param row Rivi.
+        * @param k Sanan indeksi rivillä.
+        *
+        * @return Sana.
+        */
+    public long getWord(int row, int k) {
+        return this.words().get(row * this.getWordsPerRow() + k);
+    }
+
+    /**
+        * Asettaa yksittäisen sanan.
+        *
+        * @param row Rivi.
+        * @param k Sanan indeksi rivillä.
+        * @param word Uusi sana.
+        */
+    public void setWord(int row, int k, long word) {
+        this.words().put(row * this.getWordsPerRow() + k, word);
+    }
+
+    /**
+        * Kopioi rivin sanat annettuun taulukkoon alkaen annetusta indeksistä.
+        *
+        * @param row Rivi.
+        * @param dst Kohdetaulukko.
+        * @param offset Ensimmäisen sanan indeksi kohdetaulukossa.
+        */
+    public void getRow(int row, long[] dst, int offset) {
+        this.words().get(row * this.getWordsPerRow(), dst, offset, this.getWordsPerRow());
+    }
+
+    /**
+        * Korvaa rivin sanat annetun taulukon sanoilla.
+        *
+        * @param row Rivi.
+        * @param src Lähdetaulukko.
+        */
+    public void setRow(int row, long[] src) {
+        this.words().put(row * this.getWordsPerRow(), src, 0, this.getWordsPerRow());
+    }
+
+    /**
+        * Kertoo, ovatko kaikki solut kuolleita.
+        *
+        * @return Totuusarvo.
+        */
+    public boolean isEmpty() {
+        LongBuffer words = this.words();
+        int length = words.capacity();
+        for(int i = 0; i < length; i++) {
+            if(words.get(i) != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+        * Laskee ruudukon sisällöstä saman tiivisteen kuin vastaava BitGrid.
+        *
+        * @return Tiiviste.
+        */
+    public long stateHash() {
+        long hash = 0L;
+        LongBuffer words = this.words();
+        int length = words.capacity();
+        for(int i = 0; i < length; i++) {
+            hash ^= wordHash(words.get(i), i);
+        }
+        return hash;
+    }
+
+    /**
+        * Alustaa kaikki solut kuolleiksi.
+        */
+    public void clear() {
+        LongBuffer words = this.words();
+        int length = words.capacity();
+        for(int i = 0; i < length; i++) {
+            words.put(i, 0L);
+        }
+    }
+
+    /**
+        * Kopioi toisen samankokoisen ruudukon sisällön tähän ruudukkoon. Toisesta keon ulkopuolisesta ruudukosta kopioidaan yhdellä siirrolla.
+        *
+        * @param other Lähderuudukko.
+        */
+    public void copyFrom(BitGrid other) {
+        if(other instanceof OffHeapBitGrid) {
+            LongBuffer words = this.words();
+            words.put(0, ((OffHeapBitGrid) other).words(), 0, words.capacity());
+        } else {
+            long[] row = new long[this.getWordsPerRow()];
+            for(int i = 0; i < this.getRows(); i++) {
+                other.getRow(i, row);
+                this.setRow(i, row);
+            }
+        }
+    }
+
+    /**
+        * Luo annetun kokoisen tyhjän ruudukon samasta areenasta.
+        *
+        * @param cols Sarakkeiden lukumäärä.
+        * @param rows Rivien lukumäärä.
+        *
+        * @return Uusi ruudukko.
+        */
+    public BitGrid like(int cols, int rows) {
+        return this.arena.allocate(cols, rows);
+    }
+
+    /**
+        * Vapauttaa ruudukon muistin areenasta.
+        */
+    public void release() {
+        this.arena.release(this);
+    }
+
+    /**
+        * Kertoo, onko ruudukon muisti vapautettu joko yksittäin tai sulkemalla areena.
+        *
+        * @return Totuusarvo.
+        */
+    public boolean isReleased() {
+        return this.released;
+    }
+}
\ No newline at end of file